@@ -3,12 +3,16 @@ package samba.cli;
 import samba.Samba;
 import samba.config.InvalidConfigurationException;
 import samba.config.SambaConfiguration;
+import samba.config.StorageConfig;
 import samba.network.NetworkType;
 import samba.samba.exceptions.ExceptionUtil;
 import samba.services.discovery.Bootnodes;
 import samba.services.storage.DatabaseStorageException;
+import samba.storage.rocksdb.WalSyncPolicy;
 
 import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.Callable;
 
@@ -74,6 +78,226 @@ public class SambaCommand implements Callable<Integer> {
       arity = "1")
   private String jsonRpcHost = null;
 
+  @Option(
+      names = {"--data-path"},
+      paramLabel = "<PATH>",
+      description = "Directory the database is stored in",
+      arity = "1")
+  private Path dataPath = null;
+
+  @Option(
+      names = {"--storage-capacity-mb"},
+      paramLabel = "<LONG>",
+      description =
+          "Maximum amount of content to store, in megabytes. Once reached, the content farthest from the local node is evicted and the advertised radius shrinks",
+      arity = "1")
+  private Long storageCapacityMb = null;
+
+  @Option(
+      names = {"--content-cache-size-mb"},
+      paramLabel = "<LONG>",
+      description =
+          "Amount of memory, in megabytes, used to serve the most requested content without reading the database. 0 disables the cache",
+      arity = "1")
+  private Long contentCacheSizeMb = null;
+
+  @Option(
+      names = {"--era1-import-dir"},
+      paramLabel = "<PATH>",
+      description =
+          "Directory of era1 archives whose headers, bodies and receipts are imported into the database on startup",
+      arity = "1")
+  private Path era1ImportDirectory = null;
+
+  @Option(
+      names = {"--era1-export-dir"},
+      paramLabel = "<PATH>",
+      description = "Directory the stored history is exported to, as era1 archives, on startup",
+      arity = "1")
+  private Path era1ExportDirectory = null;
+
+  @Option(
+      names = {"--era1-export-rate-limit-mb"},
+      paramLabel = "<LONG>",
+      description = "Maximum rate, in megabytes per second, at which era1 archives are written",
+      arity = "1")
+  private Long era1ExportRateLimitMb = null;
+
+  @Option(
+      names = {"--database-memory-budget-mb"},
+      paramLabel = "<LONG>",
+      description =
+          "Memory, in megabytes, shared by the database block cache and memtables across all its column families",
+      arity = "1")
+  private Long databaseMemoryBudgetMb = null;
+
+  @Option(
+      names = {"--database-cache-index-and-filter-blocks"},
+      paramLabel = "<BOOLEAN>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description =
+          "Keeps the database index and filter blocks in the block cache, counting them against the memory budget",
+      fallbackValue = "true",
+      arity = "0..1")
+  private boolean cacheIndexAndFilterBlocks = true;
+
+  @Option(
+      names = {"--database-wal-sync-policy"},
+      paramLabel = "<POLICY>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description =
+          "When database commits are synced to disk: SYNC on every commit, NO_SYNC to leave it to the OS, or PERIODIC (valid values: ${COMPLETION-CANDIDATES})",
+      arity = "1")
+  private WalSyncPolicy databaseWalSyncPolicy = StorageConfig.DEFAULT_DATABASE_WAL_SYNC_POLICY;
+
+  @Option(
+      names = {"--database-commit-window-ms"},
+      paramLabel = "<LONG>",
+      description =
+          "Time, in milliseconds, the database waits for concurrent writes to commit them together",
+      arity = "1")
+  private Long databaseCommitWindowMs = null;
+
+  @Option(
+      names = {"--database-wal-sync-interval-ms"},
+      paramLabel = "<LONG>",
+      description =
+          "Interval, in milliseconds, at which database commits are synced to disk under the PERIODIC sync policy",
+      arity = "1")
+  private Long databaseWalSyncIntervalMs = null;
+
+  @Option(
+      names = {"--write-behind-buffer-mb"},
+      paramLabel = "<LONG>",
+      description =
+          "Memory, in megabytes, holding content received from the network until it is written to the database. 0 writes it before handling the next message",
+      arity = "1")
+  private Long writeBehindBufferMb = null;
+
+  @Option(
+      names = {"--max-in-flight-requests-per-peer"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Maximum number of requests sent to a single peer and not answered yet. Further requests are queued",
+      arity = "1")
+  private Integer maxInFlightRequestsPerPeer = null;
+
+  @Option(
+      names = {"--max-in-flight-requests"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Maximum number of requests sent to all peers and not answered yet. Further requests are queued",
+      arity = "1")
+  private Integer maxInFlightRequests = null;
+
+  @Option(
+      names = {"--max-concurrent-node-verifications"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Maximum number of newly discovered nodes pinged at the same time. Further nodes are queued",
+      arity = "1")
+  private Integer maxConcurrentNodeVerifications = null;
+
+  @Option(
+      names = {"--find-content-max-hedges"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Maximum number of extra peers asked for a content when the first one is slower than usual. 0 disables hedging",
+      arity = "1")
+  private Integer findContentMaxHedges = null;
+
+  @Option(
+      names = {"--content-prefetch-enabled"},
+      paramLabel = "<BOOLEAN>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description =
+          "Fetches the body and the receipts of a block in the background once its header is retrieved",
+      fallbackValue = "true",
+      arity = "0..1")
+  private boolean contentPrefetchEnabled = false;
+
+  @Option(
+      names = {"--max-concurrent-prefetches"},
+      paramLabel = "<INTEGER>",
+      description = "Maximum number of content items prefetched at the same time",
+      arity = "1")
+  private Integer maxConcurrentPrefetches = null;
+
+  @Option(
+      names = {"--prefetch-rate-limit-mb"},
+      paramLabel = "<LONG>",
+      description = "Maximum rate, in megabytes per second, at which content is prefetched",
+      arity = "1")
+  private Long prefetchRateLimitMb = null;
+
+  @Option(
+      names = {"--recent-content-filter-size-mb"},
+      paramLabel = "<LONG>",
+      description =
+          "Amount of memory, in megabytes, used to recognise content keys offered again shortly after",
+      arity = "1")
+  private Long recentContentFilterSizeMb = null;
+
+  @Option(
+      names = {"--max-content-size-mb"},
+      paramLabel = "<LONG>",
+      description = "Maximum size, in megabytes, of a content received from a peer",
+      arity = "1")
+  private Long maxContentSizeMb = null;
+
+  @Option(
+      names = {"--seeder-enabled"},
+      paramLabel = "<BOOLEAN>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description = "Offers the stored content to the closest interested peers",
+      fallbackValue = "true",
+      arity = "0..1")
+  private boolean seederEnabled = false;
+
+  @Option(
+      names = {"--seeder-items-per-second"},
+      paramLabel = "<INTEGER>",
+      description = "Maximum number of content items the seeder offers per second",
+      arity = "1")
+  private Integer seederItemsPerSecond = null;
+
+  @Option(
+      names = {"--seeder-rate-limit-mb"},
+      paramLabel = "<LONG>",
+      description =
+          "Maximum amount of content, in megabytes per second, the seeder offers across all peers",
+      arity = "1")
+  private Long seederRateLimitMb = null;
+
+  @Option(
+      names = {"--seeder-peers-per-content"},
+      paramLabel = "<INTEGER>",
+      description = "Number of the closest interested peers each content item is offered to",
+      arity = "1")
+  private Integer seederPeersPerContent = null;
+
+  @Option(
+      names = {"--backfill-start-block"},
+      paramLabel = "<LONG>",
+      description = "First block of the range backfilled from the network",
+      arity = "1")
+  private Long backfillStartBlock = null;
+
+  @Option(
+      names = {"--backfill-end-block"},
+      paramLabel = "<LONG>",
+      description =
+          "Last block, inclusive, of the range backfilled from the network. Setting it enables the backfill",
+      arity = "1")
+  private Long backfillEndBlock = null;
+
+  @Option(
+      names = {"--backfill-window-size"},
+      paramLabel = "<INTEGER>",
+      description = "Number of blocks the backfill looks up in parallel and stores in one batch",
+      arity = "1")
+  private Integer backfillWindowSize = null;
+
   public SambaCommand(
       final PrintWriter outputWriter,
       final PrintWriter errorWriter,
@@ -119,6 +343,96 @@ public class SambaCommand implements Callable<Integer> {
               jsonRpc.setHost(jsonRpcHost);
             }
           });
+      builder.storage(
+          storageConfig -> {
+            if (dataPath != null) {
+              storageConfig.dataDirectory(dataPath);
+            }
+            if (storageCapacityMb != null) {
+              storageConfig.storageCapacityBytes(storageCapacityMb * 1024 * 1024);
+            }
+            if (contentCacheSizeMb != null) {
+              storageConfig.contentCacheSizeBytes(contentCacheSizeMb * 1024 * 1024);
+            }
+            if (era1ImportDirectory != null) {
+              storageConfig.era1ImportDirectory(era1ImportDirectory);
+            }
+            if (era1ExportDirectory != null) {
+              storageConfig.era1ExportDirectory(era1ExportDirectory);
+            }
+            if (era1ExportRateLimitMb != null) {
+              storageConfig.era1ExportRateLimitBytesPerSecond(era1ExportRateLimitMb * 1024 * 1024);
+            }
+            if (databaseMemoryBudgetMb != null) {
+              storageConfig.databaseMemoryBudgetBytes(databaseMemoryBudgetMb * 1024 * 1024);
+            }
+            storageConfig.cacheIndexAndFilterBlocks(cacheIndexAndFilterBlocks);
+            storageConfig.databaseWalSyncPolicy(databaseWalSyncPolicy);
+            if (databaseCommitWindowMs != null) {
+              storageConfig.databaseCommitWindow(Duration.ofMillis(databaseCommitWindowMs));
+            }
+            if (databaseWalSyncIntervalMs != null) {
+              storageConfig.databaseWalSyncInterval(Duration.ofMillis(databaseWalSyncIntervalMs));
+            }
+            if (writeBehindBufferMb != null) {
+              storageConfig.writeBehindBufferBytes(writeBehindBufferMb * 1024 * 1024);
+            }
+          });
+      builder.historyNetwork(
+          historyNetworkConfig -> {
+            if (maxInFlightRequestsPerPeer != null) {
+              historyNetworkConfig.maxInFlightRequestsPerPeer(maxInFlightRequestsPerPeer);
+            }
+            if (maxInFlightRequests != null) {
+              historyNetworkConfig.maxInFlightRequests(maxInFlightRequests);
+            }
+            if (maxConcurrentNodeVerifications != null) {
+              historyNetworkConfig.maxConcurrentNodeVerifications(maxConcurrentNodeVerifications);
+            }
+            if (findContentMaxHedges != null) {
+              historyNetworkConfig.findContentMaxHedges(findContentMaxHedges);
+            }
+            historyNetworkConfig.contentPrefetchEnabled(contentPrefetchEnabled);
+            if (maxConcurrentPrefetches != null) {
+              historyNetworkConfig.maxConcurrentPrefetches(maxConcurrentPrefetches);
+            }
+            if (prefetchRateLimitMb != null) {
+              historyNetworkConfig.prefetchBytesPerSecond(prefetchRateLimitMb * 1024 * 1024);
+            }
+            if (recentContentFilterSizeMb != null) {
+              historyNetworkConfig.recentContentFilterSizeBytes(
+                  recentContentFilterSizeMb * 1024 * 1024);
+            }
+            if (maxContentSizeMb != null) {
+              historyNetworkConfig.maxContentSizeBytes(maxContentSizeMb * 1024 * 1024);
+            }
+          });
+      builder.seeder(
+          seederConfig -> {
+            seederConfig.enabled(seederEnabled);
+            if (seederItemsPerSecond != null) {
+              seederConfig.itemsPerSecond(seederItemsPerSecond);
+            }
+            if (seederRateLimitMb != null) {
+              seederConfig.bytesPerSecond(seederRateLimitMb * 1024 * 1024);
+            }
+            if (seederPeersPerContent != null) {
+              seederConfig.peersPerContent(seederPeersPerContent);
+            }
+          });
+      builder.backfill(
+          backfillConfig -> {
+            backfillConfig.enabled(backfillEndBlock != null);
+            if (backfillStartBlock != null) {
+              backfillConfig.startBlockNumber(backfillStartBlock);
+            }
+            if (backfillEndBlock != null) {
+              backfillConfig.endBlockNumber(backfillEndBlock);
+            }
+            if (backfillWindowSize != null) {
+              backfillConfig.windowSize(backfillWindowSize);
+            }
+          });
       if (unsafePrivateKey != null) {
         builder.secretKey(unsafePrivateKey);
       }
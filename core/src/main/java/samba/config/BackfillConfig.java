@@ -0,0 +1,129 @@
+package samba.config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class BackfillConfig {
+
+  public static final int DEFAULT_WINDOW_SIZE = 64;
+  public static final Path DEFAULT_CURSOR_FILE = Paths.get("backfill-cursor");
+
+  private final boolean enabled;
+  private final long startBlockNumber;
+  private final long endBlockNumber;
+  private final int windowSize;
+  private final Path cursorFile;
+
+  private BackfillConfig(
+      final boolean enabled,
+      final long startBlockNumber,
+      final long endBlockNumber,
+      final int windowSize,
+      final Path cursorFile) {
+    this.enabled = enabled;
+    this.startBlockNumber = startBlockNumber;
+    this.endBlockNumber = endBlockNumber;
+    this.windowSize = windowSize;
+    this.cursorFile = cursorFile;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static BackfillConfig createDefault() {
+    return builder().build();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public long getStartBlockNumber() {
+    return startBlockNumber;
+  }
+
+  /**
+   * Last block of the backfilled range, inclusive.
+   *
+   * @return the end block number
+   */
+  public long getEndBlockNumber() {
+    return endBlockNumber;
+  }
+
+  /**
+   * Number of blocks looked up in parallel. The blocks of a window are stored in a single batch.
+   *
+   * @return the number of blocks per window
+   */
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  /**
+   * File recording the next block to backfill, so a restart resumes instead of starting over.
+   *
+   * @return the path of the cursor file
+   */
+  public Path getCursorFile() {
+    return cursorFile;
+  }
+
+  public static class Builder {
+
+    private boolean enabled = false;
+    private long startBlockNumber = 0;
+    private long endBlockNumber = 0;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private Path cursorFile = DEFAULT_CURSOR_FILE;
+
+    private Builder() {}
+
+    public BackfillConfig build() {
+      if (enabled && startBlockNumber > endBlockNumber) {
+        throw new InvalidConfigurationException(
+            String.format(
+                "Backfill start block (%d) can not be greater than the end block (%d)",
+                startBlockNumber, endBlockNumber));
+      }
+      return new BackfillConfig(enabled, startBlockNumber, endBlockNumber, windowSize, cursorFile);
+    }
+
+    public Builder enabled(final boolean enabled) {
+      this.enabled = enabled;
+      return this;
+    }
+
+    public Builder startBlockNumber(final long startBlockNumber) {
+      this.startBlockNumber = validateBlockNumber(startBlockNumber, "--backfill-start-block");
+      return this;
+    }
+
+    public Builder endBlockNumber(final long endBlockNumber) {
+      this.endBlockNumber = validateBlockNumber(endBlockNumber, "--backfill-end-block");
+      return this;
+    }
+
+    public Builder windowSize(final int windowSize) {
+      if (windowSize <= 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --backfill-window-size: %d", windowSize));
+      }
+      this.windowSize = windowSize;
+      return this;
+    }
+
+    public Builder cursorFile(final Path cursorFile) {
+      this.cursorFile = cursorFile;
+      return this;
+    }
+
+    private static long validateBlockNumber(final long blockNumber, final String name) {
+      if (blockNumber < 0) {
+        throw new InvalidConfigurationException(String.format("Invalid %s: %d", name, blockNumber));
+      }
+      return blockNumber;
+    }
+  }
+}
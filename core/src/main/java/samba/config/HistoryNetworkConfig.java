@@ -0,0 +1,438 @@
+package samba.config;
+
+import samba.domain.content.ContentType;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+public class HistoryNetworkConfig {
+
+  public static final Duration DEFAULT_INITIAL_REQUEST_TIMEOUT = Duration.ofSeconds(5);
+  public static final Duration DEFAULT_MIN_REQUEST_TIMEOUT = Duration.ofMillis(500);
+  public static final Duration DEFAULT_MAX_REQUEST_TIMEOUT = Duration.ofSeconds(15);
+  public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS_PER_PEER = 4;
+  public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 64;
+  public static final int DEFAULT_NEGATIVE_LOOKUP_CACHE_SIZE = 10_000;
+  public static final int DEFAULT_MAX_CONCURRENT_NODE_VERIFICATIONS = 8;
+  public static final int DEFAULT_NODE_INTAKE_QUEUE_SIZE = 1024;
+  public static final Duration DEFAULT_FAILED_NODE_RETRY_DELAY = Duration.ofMinutes(10);
+  public static final int DEFAULT_FIND_CONTENT_MAX_HEDGES = 0;
+  public static final int DEFAULT_MAX_CONCURRENT_PREFETCHES = 4;
+  public static final int DEFAULT_PREFETCH_QUEUE_SIZE = 1024;
+  public static final long DEFAULT_PREFETCH_BYTES_PER_SECOND = 1024L * 1024; // 1 MB/s
+  public static final long DEFAULT_RECENT_CONTENT_FILTER_SIZE_BYTES = 1024L * 1024; // 1 MB
+  public static final double DEFAULT_RECENT_CONTENT_FILTER_FALSE_POSITIVE_RATE = 0.01;
+  public static final Duration DEFAULT_RECENT_CONTENT_FILTER_TTL = Duration.ofMinutes(1);
+  public static final long DEFAULT_MAX_CONTENT_SIZE_BYTES = 64L * 1024 * 1024; // 64 MB
+  // Headers near the chain head become available quickly, bodies and receipts follow later.
+  public static final Map<ContentType, Duration> DEFAULT_NEGATIVE_LOOKUP_TTLS =
+      Map.of(
+          ContentType.BLOCK_HEADER, Duration.ofSeconds(30),
+          ContentType.BLOCK_HEADER_BY_NUMBER, Duration.ofSeconds(30),
+          ContentType.BLOCK_BODY, Duration.ofMinutes(2),
+          ContentType.RECEIPT, Duration.ofMinutes(2));
+
+  private final Duration initialRequestTimeout;
+  private final Duration minRequestTimeout;
+  private final Duration maxRequestTimeout;
+  private final int maxInFlightRequestsPerPeer;
+  private final int maxInFlightRequests;
+  private final int negativeLookupCacheSize;
+  private final Map<ContentType, Duration> negativeLookupTtls;
+  private final int maxConcurrentNodeVerifications;
+  private final int nodeIntakeQueueSize;
+  private final Duration failedNodeRetryDelay;
+  private final int findContentMaxHedges;
+  private final boolean contentPrefetchEnabled;
+  private final int maxConcurrentPrefetches;
+  private final int prefetchQueueSize;
+  private final long prefetchBytesPerSecond;
+  private final long recentContentFilterSizeBytes;
+  private final double recentContentFilterFalsePositiveRate;
+  private final Duration recentContentFilterTtl;
+  private final long maxContentSizeBytes;
+
+  private HistoryNetworkConfig(
+      final Duration initialRequestTimeout,
+      final Duration minRequestTimeout,
+      final Duration maxRequestTimeout,
+      final int maxInFlightRequestsPerPeer,
+      final int maxInFlightRequests,
+      final int negativeLookupCacheSize,
+      final Map<ContentType, Duration> negativeLookupTtls,
+      final int maxConcurrentNodeVerifications,
+      final int nodeIntakeQueueSize,
+      final Duration failedNodeRetryDelay,
+      final int findContentMaxHedges,
+      final boolean contentPrefetchEnabled,
+      final int maxConcurrentPrefetches,
+      final int prefetchQueueSize,
+      final long prefetchBytesPerSecond,
+      final long recentContentFilterSizeBytes,
+      final double recentContentFilterFalsePositiveRate,
+      final Duration recentContentFilterTtl,
+      final long maxContentSizeBytes) {
+    this.initialRequestTimeout = initialRequestTimeout;
+    this.minRequestTimeout = minRequestTimeout;
+    this.maxRequestTimeout = maxRequestTimeout;
+    this.maxInFlightRequestsPerPeer = maxInFlightRequestsPerPeer;
+    this.maxInFlightRequests = maxInFlightRequests;
+    this.negativeLookupCacheSize = negativeLookupCacheSize;
+    this.negativeLookupTtls = negativeLookupTtls;
+    this.maxConcurrentNodeVerifications = maxConcurrentNodeVerifications;
+    this.nodeIntakeQueueSize = nodeIntakeQueueSize;
+    this.failedNodeRetryDelay = failedNodeRetryDelay;
+    this.findContentMaxHedges = findContentMaxHedges;
+    this.contentPrefetchEnabled = contentPrefetchEnabled;
+    this.maxConcurrentPrefetches = maxConcurrentPrefetches;
+    this.prefetchQueueSize = prefetchQueueSize;
+    this.prefetchBytesPerSecond = prefetchBytesPerSecond;
+    this.recentContentFilterSizeBytes = recentContentFilterSizeBytes;
+    this.recentContentFilterFalsePositiveRate = recentContentFilterFalsePositiveRate;
+    this.recentContentFilterTtl = recentContentFilterTtl;
+    this.maxContentSizeBytes = maxContentSizeBytes;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static HistoryNetworkConfig createDefault() {
+    return builder().build();
+  }
+
+  /**
+   * Deadline applied to requests sent to a peer we have no round-trip samples for yet.
+   *
+   * @return the initial request timeout
+   */
+  public Duration getInitialRequestTimeout() {
+    return initialRequestTimeout;
+  }
+
+  public Duration getMinRequestTimeout() {
+    return minRequestTimeout;
+  }
+
+  public Duration getMaxRequestTimeout() {
+    return maxRequestTimeout;
+  }
+
+  public int getMaxInFlightRequestsPerPeer() {
+    return maxInFlightRequestsPerPeer;
+  }
+
+  public int getMaxInFlightRequests() {
+    return maxInFlightRequests;
+  }
+
+  public int getNegativeLookupCacheSize() {
+    return negativeLookupCacheSize;
+  }
+
+  /**
+   * How long a content key that could not be found is answered as missing without asking the
+   * network again.
+   *
+   * @param contentType the type of the missing content
+   * @return the time to live of the negative lookup
+   */
+  public Duration getNegativeLookupTtl(final ContentType contentType) {
+    return negativeLookupTtls.get(contentType);
+  }
+
+  /**
+   * Maximum number of newly discovered nodes being verified at the same time.
+   *
+   * @return the verification concurrency
+   */
+  public int getMaxConcurrentNodeVerifications() {
+    return maxConcurrentNodeVerifications;
+  }
+
+  public int getNodeIntakeQueueSize() {
+    return nodeIntakeQueueSize;
+  }
+
+  /**
+   * How long a node that failed verification is ignored when discovered again.
+   *
+   * @return the retry delay of failed nodes
+   */
+  public Duration getFailedNodeRetryDelay() {
+    return failedNodeRetryDelay;
+  }
+
+  /**
+   * Maximum number of extra peers a FIND_CONTENT is sent to when the first one is slower than
+   * usual. Zero disables hedging.
+   *
+   * @return the maximum number of hedges per request
+   */
+  public int getFindContentMaxHedges() {
+    return findContentMaxHedges;
+  }
+
+  /**
+   * Whether the body and the receipts of a block are fetched in the background once its header
+   * has been retrieved.
+   *
+   * @return whether content prefetching is enabled
+   */
+  public boolean isContentPrefetchEnabled() {
+    return contentPrefetchEnabled;
+  }
+
+  public int getMaxConcurrentPrefetches() {
+    return maxConcurrentPrefetches;
+  }
+
+  public int getPrefetchQueueSize() {
+    return prefetchQueueSize;
+  }
+
+  /**
+   * Maximum rate, in bytes per second, at which prefetched content is downloaded.
+   *
+   * @return the prefetch rate limit in bytes per second
+   */
+  public long getPrefetchBytesPerSecond() {
+    return prefetchBytesPerSecond;
+  }
+
+  /**
+   * Memory, in bytes, used to remember the content keys seen recently.
+   *
+   * @return the size of the recently seen content filter in bytes
+   */
+  public long getRecentContentFilterSizeBytes() {
+    return recentContentFilterSizeBytes;
+  }
+
+  /**
+   * Probability that a content key never seen is taken for one seen recently.
+   *
+   * @return the false positive rate of the recently seen content filter
+   */
+  public double getRecentContentFilterFalsePositiveRate() {
+    return recentContentFilterFalsePositiveRate;
+  }
+
+  /**
+   * Minimum time a content key is remembered as seen. Keys are forgotten after twice that time.
+   *
+   * @return the time to live of the recently seen content keys
+   */
+  public Duration getRecentContentFilterTtl() {
+    return recentContentFilterTtl;
+  }
+
+  /**
+   * Maximum size, in bytes, of a content received over uTP. Larger streams are reset.
+   *
+   * @return the maximum content size in bytes
+   */
+  public long getMaxContentSizeBytes() {
+    return maxContentSizeBytes;
+  }
+
+  public static class Builder {
+
+    private Duration initialRequestTimeout = DEFAULT_INITIAL_REQUEST_TIMEOUT;
+    private Duration minRequestTimeout = DEFAULT_MIN_REQUEST_TIMEOUT;
+    private Duration maxRequestTimeout = DEFAULT_MAX_REQUEST_TIMEOUT;
+    private int maxInFlightRequestsPerPeer = DEFAULT_MAX_IN_FLIGHT_REQUESTS_PER_PEER;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private int negativeLookupCacheSize = DEFAULT_NEGATIVE_LOOKUP_CACHE_SIZE;
+    private final Map<ContentType, Duration> negativeLookupTtls =
+        new EnumMap<>(DEFAULT_NEGATIVE_LOOKUP_TTLS);
+    private int maxConcurrentNodeVerifications = DEFAULT_MAX_CONCURRENT_NODE_VERIFICATIONS;
+    private int nodeIntakeQueueSize = DEFAULT_NODE_INTAKE_QUEUE_SIZE;
+    private Duration failedNodeRetryDelay = DEFAULT_FAILED_NODE_RETRY_DELAY;
+    private int findContentMaxHedges = DEFAULT_FIND_CONTENT_MAX_HEDGES;
+    private boolean contentPrefetchEnabled = false;
+    private int maxConcurrentPrefetches = DEFAULT_MAX_CONCURRENT_PREFETCHES;
+    private int prefetchQueueSize = DEFAULT_PREFETCH_QUEUE_SIZE;
+    private long prefetchBytesPerSecond = DEFAULT_PREFETCH_BYTES_PER_SECOND;
+    private long recentContentFilterSizeBytes = DEFAULT_RECENT_CONTENT_FILTER_SIZE_BYTES;
+    private double recentContentFilterFalsePositiveRate =
+        DEFAULT_RECENT_CONTENT_FILTER_FALSE_POSITIVE_RATE;
+    private Duration recentContentFilterTtl = DEFAULT_RECENT_CONTENT_FILTER_TTL;
+    private long maxContentSizeBytes = DEFAULT_MAX_CONTENT_SIZE_BYTES;
+
+    private Builder() {}
+
+    public HistoryNetworkConfig build() {
+      if (minRequestTimeout.compareTo(maxRequestTimeout) > 0) {
+        throw new InvalidConfigurationException(
+            String.format(
+                "Minimum request timeout (%s) can not be greater than the maximum (%s)",
+                minRequestTimeout, maxRequestTimeout));
+      }
+      return new HistoryNetworkConfig(
+          initialRequestTimeout,
+          minRequestTimeout,
+          maxRequestTimeout,
+          maxInFlightRequestsPerPeer,
+          maxInFlightRequests,
+          negativeLookupCacheSize,
+          Map.copyOf(negativeLookupTtls),
+          maxConcurrentNodeVerifications,
+          nodeIntakeQueueSize,
+          failedNodeRetryDelay,
+          findContentMaxHedges,
+          contentPrefetchEnabled,
+          maxConcurrentPrefetches,
+          prefetchQueueSize,
+          prefetchBytesPerSecond,
+          recentContentFilterSizeBytes,
+          recentContentFilterFalsePositiveRate,
+          recentContentFilterTtl,
+          maxContentSizeBytes);
+    }
+
+    public Builder initialRequestTimeout(final Duration initialRequestTimeout) {
+      this.initialRequestTimeout =
+          validatePositive(initialRequestTimeout, "initial request timeout");
+      return this;
+    }
+
+    public Builder minRequestTimeout(final Duration minRequestTimeout) {
+      this.minRequestTimeout = validatePositive(minRequestTimeout, "minimum request timeout");
+      return this;
+    }
+
+    public Builder maxRequestTimeout(final Duration maxRequestTimeout) {
+      this.maxRequestTimeout = validatePositive(maxRequestTimeout, "maximum request timeout");
+      return this;
+    }
+
+    public Builder maxInFlightRequestsPerPeer(final int maxInFlightRequestsPerPeer) {
+      this.maxInFlightRequestsPerPeer =
+          validatePositive(maxInFlightRequestsPerPeer, "--max-in-flight-requests-per-peer");
+      return this;
+    }
+
+    public Builder maxInFlightRequests(final int maxInFlightRequests) {
+      this.maxInFlightRequests = validatePositive(maxInFlightRequests, "--max-in-flight-requests");
+      return this;
+    }
+
+    public Builder negativeLookupCacheSize(final int negativeLookupCacheSize) {
+      if (negativeLookupCacheSize < 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid negative lookup cache size: %d", negativeLookupCacheSize));
+      }
+      this.negativeLookupCacheSize = negativeLookupCacheSize;
+      return this;
+    }
+
+    public Builder negativeLookupTtl(final ContentType contentType, final Duration ttl) {
+      negativeLookupTtls.put(contentType, validatePositive(ttl, "negative lookup TTL"));
+      return this;
+    }
+
+    public Builder maxConcurrentNodeVerifications(final int maxConcurrentNodeVerifications) {
+      this.maxConcurrentNodeVerifications =
+          validatePositive(maxConcurrentNodeVerifications, "--max-concurrent-node-verifications");
+      return this;
+    }
+
+    public Builder nodeIntakeQueueSize(final int nodeIntakeQueueSize) {
+      this.nodeIntakeQueueSize = validatePositive(nodeIntakeQueueSize, "node intake queue size");
+      return this;
+    }
+
+    public Builder failedNodeRetryDelay(final Duration failedNodeRetryDelay) {
+      this.failedNodeRetryDelay = validatePositive(failedNodeRetryDelay, "failed node retry delay");
+      return this;
+    }
+
+    public Builder findContentMaxHedges(final int findContentMaxHedges) {
+      if (findContentMaxHedges < 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --find-content-max-hedges: %d", findContentMaxHedges));
+      }
+      this.findContentMaxHedges = findContentMaxHedges;
+      return this;
+    }
+
+    public Builder contentPrefetchEnabled(final boolean contentPrefetchEnabled) {
+      this.contentPrefetchEnabled = contentPrefetchEnabled;
+      return this;
+    }
+
+    public Builder maxConcurrentPrefetches(final int maxConcurrentPrefetches) {
+      this.maxConcurrentPrefetches =
+          validatePositive(maxConcurrentPrefetches, "--max-concurrent-prefetches");
+      return this;
+    }
+
+    public Builder prefetchQueueSize(final int prefetchQueueSize) {
+      this.prefetchQueueSize = validatePositive(prefetchQueueSize, "prefetch queue size");
+      return this;
+    }
+
+    public Builder prefetchBytesPerSecond(final long prefetchBytesPerSecond) {
+      if (prefetchBytesPerSecond <= 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --prefetch-rate-limit-mb: %d bytes", prefetchBytesPerSecond));
+      }
+      this.prefetchBytesPerSecond = prefetchBytesPerSecond;
+      return this;
+    }
+
+    public Builder recentContentFilterSizeBytes(final long recentContentFilterSizeBytes) {
+      if (recentContentFilterSizeBytes <= 0) {
+        throw new InvalidConfigurationException(
+            String.format(
+                "Invalid --recent-content-filter-size-mb: %d bytes", recentContentFilterSizeBytes));
+      }
+      this.recentContentFilterSizeBytes = recentContentFilterSizeBytes;
+      return this;
+    }
+
+    public Builder recentContentFilterFalsePositiveRate(final double falsePositiveRate) {
+      if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+        throw new InvalidConfigurationException(
+            String.format(
+                "Invalid recent content filter false positive rate: %s. It must be in (0, 1)",
+                falsePositiveRate));
+      }
+      this.recentContentFilterFalsePositiveRate = falsePositiveRate;
+      return this;
+    }
+
+    public Builder recentContentFilterTtl(final Duration recentContentFilterTtl) {
+      this.recentContentFilterTtl =
+          validatePositive(recentContentFilterTtl, "recent content filter TTL");
+      return this;
+    }
+
+    public Builder maxContentSizeBytes(final long maxContentSizeBytes) {
+      if (maxContentSizeBytes <= 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --max-content-size-mb: %d bytes", maxContentSizeBytes));
+      }
+      this.maxContentSizeBytes = maxContentSizeBytes;
+      return this;
+    }
+
+    private static int validatePositive(final int value, final String name) {
+      if (value <= 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid %s: %d. It must be positive", name, value));
+      }
+      return value;
+    }
+
+    private static Duration validatePositive(final Duration duration, final String name) {
+      if (duration.isNegative() || duration.isZero()) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid %s: %s. It must be positive", name, duration));
+      }
+      return duration;
+    }
+  }
+}
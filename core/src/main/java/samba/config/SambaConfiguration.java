@@ -19,6 +19,10 @@ public class SambaConfiguration {
   private final PortalRestApiConfig portalRestApiConfig;
   private final DiscoveryConfig discoveryConfig;
   private final JsonRpcConfiguration jsonRpcConfigurationn;
+  private final StorageConfig storageConfig;
+  private final HistoryNetworkConfig historyNetworkConfig;
+  private final SeederConfig seederConfig;
+  private final BackfillConfig backfillConfig;
 
   private final SECP256K1.SecretKey secretKey;
 
@@ -27,11 +31,19 @@ public class SambaConfiguration {
       final PortalRestApiConfig portalRestApiConfig,
       final DiscoveryConfig discoveryConfig,
       final JsonRpcConfiguration jsonRpcConfigurationn,
+      final StorageConfig storageConfig,
+      final HistoryNetworkConfig historyNetworkConfig,
+      final SeederConfig seederConfig,
+      final BackfillConfig backfillConfig,
       final SECP256K1.SecretKey secretKey) {
     this.metricsConfig = metricsConfig;
     this.portalRestApiConfig = portalRestApiConfig;
     this.jsonRpcConfigurationn = jsonRpcConfigurationn;
     this.discoveryConfig = discoveryConfig;
+    this.storageConfig = storageConfig;
+    this.historyNetworkConfig = historyNetworkConfig;
+    this.seederConfig = seederConfig;
+    this.backfillConfig = backfillConfig;
     this.secretKey = secretKey;
   }
 
@@ -51,6 +63,22 @@ public class SambaConfiguration {
     return discoveryConfig;
   }
 
+  public StorageConfig getStorageConfig() {
+    return storageConfig;
+  }
+
+  public HistoryNetworkConfig getHistoryNetworkConfig() {
+    return historyNetworkConfig;
+  }
+
+  public SeederConfig getSeederConfig() {
+    return seederConfig;
+  }
+
+  public BackfillConfig getBackfillConfig() {
+    return backfillConfig;
+  }
+
   public SECP256K1.SecretKey getSecreteKey() {
     return secretKey;
   }
@@ -64,6 +92,11 @@ public class SambaConfiguration {
     private final PortalRestApiConfig.PortalRestApiConfigBuilder portalRestApiConfigBuilder =
         PortalRestApiConfig.builder();
     private final DiscoveryConfig.Builder discoveryConfigBuilder = DiscoveryConfig.builder();
+    private final StorageConfig.Builder storageConfigBuilder = StorageConfig.builder();
+    private final HistoryNetworkConfig.Builder historyNetworkConfigBuilder =
+        HistoryNetworkConfig.builder();
+    private final SeederConfig.Builder seederConfigBuilder = SeederConfig.builder();
+    private final BackfillConfig.Builder backfillConfigBuilder = BackfillConfig.builder();
     private final JsonRpcConfiguration jsonRpcConfiguration =
         JsonRpcConfiguration
             .createDefault(); // TODO change this once JsonConfiguration is turned into a builder
@@ -82,6 +115,10 @@ public class SambaConfiguration {
           portalRestApiConfigBuilder.build(),
           discoveryConfigBuilder.build(),
           jsonRpcConfiguration, // TODO change this once JsonConfiguration is turned into a builder
+          storageConfigBuilder.build(),
+          historyNetworkConfigBuilder.build(),
+          seederConfigBuilder.build(),
+          backfillConfigBuilder.build(),
           secretKey.get());
     }
 
@@ -103,11 +140,38 @@ public class SambaConfiguration {
       return this;
     }
 
+    public Builder restApi(
+        final Consumer<PortalRestApiConfig.PortalRestApiConfigBuilder> restApiConfigConsumer) {
+      restApiConfigConsumer.accept(portalRestApiConfigBuilder);
+      return this;
+    }
+
     public Builder discovery(final Consumer<DiscoveryConfig.Builder> discoveryConfigConsumer) {
       discoveryConfigConsumer.accept(discoveryConfigBuilder);
       return this;
     }
 
+    public Builder storage(final Consumer<StorageConfig.Builder> storageConfigConsumer) {
+      storageConfigConsumer.accept(storageConfigBuilder);
+      return this;
+    }
+
+    public Builder historyNetwork(
+        final Consumer<HistoryNetworkConfig.Builder> historyNetworkConfigConsumer) {
+      historyNetworkConfigConsumer.accept(historyNetworkConfigBuilder);
+      return this;
+    }
+
+    public Builder seeder(final Consumer<SeederConfig.Builder> seederConfigConsumer) {
+      seederConfigConsumer.accept(seederConfigBuilder);
+      return this;
+    }
+
+    public Builder backfill(final Consumer<BackfillConfig.Builder> backfillConfigConsumer) {
+      backfillConfigConsumer.accept(backfillConfigBuilder);
+      return this;
+    }
+
     public Builder jsonRpc(final Consumer<JsonRpcConfiguration> jsonRpcConfigurationConsumer) {
       jsonRpcConfigurationConsumer.accept(jsonRpcConfiguration);
       return this;
@@ -0,0 +1,131 @@
+package samba.config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class SeederConfig {
+
+  public static final int DEFAULT_ITEMS_PER_SECOND = 500;
+  public static final long DEFAULT_BYTES_PER_SECOND = 8L * 1024 * 1024; // 8 MB/s
+  public static final int DEFAULT_PEERS_PER_CONTENT = 3;
+  public static final Path DEFAULT_CURSOR_FILE = Paths.get("seeder-cursor");
+
+  private final boolean enabled;
+  private final int itemsPerSecond;
+  private final long bytesPerSecond;
+  private final int peersPerContent;
+  private final Path cursorFile;
+
+  private SeederConfig(
+      final boolean enabled,
+      final int itemsPerSecond,
+      final long bytesPerSecond,
+      final int peersPerContent,
+      final Path cursorFile) {
+    this.enabled = enabled;
+    this.itemsPerSecond = itemsPerSecond;
+    this.bytesPerSecond = bytesPerSecond;
+    this.peersPerContent = peersPerContent;
+    this.cursorFile = cursorFile;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static SeederConfig createDefault() {
+    return builder().build();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Maximum number of content items offered per second, across all peers.
+   *
+   * @return the item rate limit
+   */
+  public int getItemsPerSecond() {
+    return itemsPerSecond;
+  }
+
+  /**
+   * Maximum amount of offered content per second, in bytes, across all peers.
+   *
+   * @return the byte rate limit
+   */
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  /**
+   * Number of the closest peers whose radius covers a content item that it is offered to.
+   *
+   * @return the number of peers each item is offered to
+   */
+  public int getPeersPerContent() {
+    return peersPerContent;
+  }
+
+  /**
+   * File recording how far the seeder went, so a restart resumes instead of starting over.
+   *
+   * @return the path of the cursor file
+   */
+  public Path getCursorFile() {
+    return cursorFile;
+  }
+
+  public static class Builder {
+
+    private boolean enabled = false;
+    private int itemsPerSecond = DEFAULT_ITEMS_PER_SECOND;
+    private long bytesPerSecond = DEFAULT_BYTES_PER_SECOND;
+    private int peersPerContent = DEFAULT_PEERS_PER_CONTENT;
+    private Path cursorFile = DEFAULT_CURSOR_FILE;
+
+    private Builder() {}
+
+    public SeederConfig build() {
+      return new SeederConfig(enabled, itemsPerSecond, bytesPerSecond, peersPerContent, cursorFile);
+    }
+
+    public Builder enabled(final boolean enabled) {
+      this.enabled = enabled;
+      return this;
+    }
+
+    public Builder itemsPerSecond(final int itemsPerSecond) {
+      if (itemsPerSecond <= 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --seeder-items-per-second: %d", itemsPerSecond));
+      }
+      this.itemsPerSecond = itemsPerSecond;
+      return this;
+    }
+
+    public Builder bytesPerSecond(final long bytesPerSecond) {
+      if (bytesPerSecond <= 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --seeder-rate-limit-mb: %d bytes", bytesPerSecond));
+      }
+      this.bytesPerSecond = bytesPerSecond;
+      return this;
+    }
+
+    public Builder peersPerContent(final int peersPerContent) {
+      if (peersPerContent <= 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --seeder-peers-per-content: %d", peersPerContent));
+      }
+      this.peersPerContent = peersPerContent;
+      return this;
+    }
+
+    public Builder cursorFile(final Path cursorFile) {
+      this.cursorFile = cursorFile;
+      return this;
+    }
+  }
+}
@@ -1,15 +1,369 @@
 package samba.config;
 
+import samba.storage.rocksdb.RocksDBConfiguration;
+import samba.storage.rocksdb.WalSyncPolicy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
 public class StorageConfig {
 
+  public static final Path DEFAULT_DATA_DIRECTORY = Path.of("");
   public static final long DEFAULT_STORAGE_FREQUENCY = 2048L;
+  public static final long DEFAULT_STORAGE_CAPACITY_BYTES = 1_000L * 1024 * 1024; // 1000 MB
+  public static final double DEFAULT_HIGH_WATER_MARK = 0.95;
+  public static final double DEFAULT_LOW_WATER_MARK = 0.90;
+  public static final long DEFAULT_CONTENT_CACHE_SIZE_BYTES = 64L * 1024 * 1024; // 64 MB
+  public static final long DEFAULT_ERA1_EXPORT_RATE_LIMIT_BYTES = 16L * 1024 * 1024; // 16 MB/s
+  public static final WalSyncPolicy DEFAULT_DATABASE_WAL_SYNC_POLICY = WalSyncPolicy.NO_SYNC;
+  public static final Duration DEFAULT_DATABASE_WAL_SYNC_INTERVAL = Duration.ofSeconds(1);
+  public static final Duration DEFAULT_DATABASE_COMMIT_WINDOW = Duration.ZERO;
+  public static final long DEFAULT_WRITE_BEHIND_BUFFER_BYTES = 64L * 1024 * 1024; // 64 MB
+
+  private final Path dataDirectory;
   private final long dataStorageFrequency;
+  private final long storageCapacityBytes;
+  private final double highWaterMark;
+  private final double lowWaterMark;
+  private final long contentCacheSizeBytes;
+  private final Optional<Path> era1ImportDirectory;
+  private final Optional<Path> era1ExportDirectory;
+  private final long era1ExportRateLimitBytesPerSecond;
+  private final long databaseMemoryBudgetBytes;
+  private final boolean cacheIndexAndFilterBlocks;
+  private final WalSyncPolicy databaseWalSyncPolicy;
+  private final Duration databaseWalSyncInterval;
+  private final Duration databaseCommitWindow;
+  private final long writeBehindBufferBytes;
 
-  public StorageConfig(final long dataStorageFrequency) {
+  private StorageConfig(
+      final Path dataDirectory,
+      final long dataStorageFrequency,
+      final long storageCapacityBytes,
+      final double highWaterMark,
+      final double lowWaterMark,
+      final long contentCacheSizeBytes,
+      final Optional<Path> era1ImportDirectory,
+      final Optional<Path> era1ExportDirectory,
+      final long era1ExportRateLimitBytesPerSecond,
+      final long databaseMemoryBudgetBytes,
+      final boolean cacheIndexAndFilterBlocks,
+      final WalSyncPolicy databaseWalSyncPolicy,
+      final Duration databaseWalSyncInterval,
+      final Duration databaseCommitWindow,
+      final long writeBehindBufferBytes) {
+    this.dataDirectory = dataDirectory;
     this.dataStorageFrequency = dataStorageFrequency;
+    this.storageCapacityBytes = storageCapacityBytes;
+    this.highWaterMark = highWaterMark;
+    this.lowWaterMark = lowWaterMark;
+    this.contentCacheSizeBytes = contentCacheSizeBytes;
+    this.era1ImportDirectory = era1ImportDirectory;
+    this.era1ExportDirectory = era1ExportDirectory;
+    this.era1ExportRateLimitBytesPerSecond = era1ExportRateLimitBytesPerSecond;
+    this.databaseMemoryBudgetBytes = databaseMemoryBudgetBytes;
+    this.cacheIndexAndFilterBlocks = cacheIndexAndFilterBlocks;
+    this.databaseWalSyncPolicy = databaseWalSyncPolicy;
+    this.databaseWalSyncInterval = databaseWalSyncInterval;
+    this.databaseCommitWindow = databaseCommitWindow;
+    this.writeBehindBufferBytes = writeBehindBufferBytes;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static StorageConfig createDefault() {
+    return builder().build();
+  }
+
+  /**
+   * Directory the database is created in, and opened again on restart.
+   *
+   * @return the data directory
+   */
+  public Path getDataDirectory() {
+    return dataDirectory;
   }
 
   public long getDataStorageFrequency() {
     return dataStorageFrequency;
   }
+
+  public long getStorageCapacityBytes() {
+    return storageCapacityBytes;
+  }
+
+  /**
+   * Usage, in bytes, above which the content farthest from the home node starts being evicted.
+   *
+   * @return the high-water mark in bytes
+   */
+  public long getHighWaterMarkBytes() {
+    return (long) (storageCapacityBytes * highWaterMark);
+  }
+
+  /**
+   * Usage, in bytes, that an eviction round brings the storage back down to.
+   *
+   * @return the low-water mark in bytes
+   */
+  public long getLowWaterMarkBytes() {
+    return (long) (storageCapacityBytes * lowWaterMark);
+  }
+
+  /**
+   * Amount of memory, in bytes, used to keep the most requested content in front of the database.
+   * Zero disables the cache.
+   *
+   * @return the content cache size in bytes
+   */
+  public long getContentCacheSizeBytes() {
+    return contentCacheSizeBytes;
+  }
+
+  /**
+   * Directory of era1 archives imported into the database when the storage starts.
+   *
+   * @return the era1 directory, if an import was requested
+   */
+  public Optional<Path> getEra1ImportDirectory() {
+    return era1ImportDirectory;
+  }
+
+  /**
+   * Directory the stored history is exported to, as era1 archives, when the storage starts.
+   *
+   * @return the era1 directory, if an export was requested
+   */
+  public Optional<Path> getEra1ExportDirectory() {
+    return era1ExportDirectory;
+  }
+
+  /**
+   * Maximum rate, in bytes per second, at which era1 archives are written.
+   *
+   * @return the export rate limit in bytes per second
+   */
+  public long getEra1ExportRateLimitBytesPerSecond() {
+    return era1ExportRateLimitBytesPerSecond;
+  }
+
+  /**
+   * Memory, in bytes, the database block cache and memtables share across all its column families.
+   *
+   * @return the database memory budget in bytes
+   */
+  public long getDatabaseMemoryBudgetBytes() {
+    return databaseMemoryBudgetBytes;
+  }
+
+  /**
+   * Whether the database index and filter blocks are kept in the block cache, and so counted
+   * against the memory budget.
+   *
+   * @return true if index and filter blocks are cached
+   */
+  public boolean isCacheIndexAndFilterBlocks() {
+    return cacheIndexAndFilterBlocks;
+  }
+
+  /**
+   * When the database commits are synced to disk.
+   *
+   * @return the write-ahead log sync policy
+   */
+  public WalSyncPolicy getDatabaseWalSyncPolicy() {
+    return databaseWalSyncPolicy;
+  }
+
+  /**
+   * How often the database write-ahead log is synced to disk under the periodic sync policy.
+   *
+   * @return the write-ahead log sync interval
+   */
+  public Duration getDatabaseWalSyncInterval() {
+    return databaseWalSyncInterval;
+  }
+
+  /**
+   * How long the database waits for concurrent writes to commit them together. Zero only groups
+   * the writes queued while the previous commit was written.
+   *
+   * @return the commit window
+   */
+  public Duration getDatabaseCommitWindow() {
+    return databaseCommitWindow;
+  }
+
+  /**
+   * Amount of content, in bytes, received from the network and not yet committed to the database.
+   * Content arriving once it is full is dropped. Zero writes the content before returning.
+   *
+   * @return the write-behind buffer size in bytes
+   */
+  public long getWriteBehindBufferBytes() {
+    return writeBehindBufferBytes;
+  }
+
+  public static class Builder {
+
+    private Path dataDirectory = DEFAULT_DATA_DIRECTORY;
+    private long dataStorageFrequency = DEFAULT_STORAGE_FREQUENCY;
+    private long storageCapacityBytes = DEFAULT_STORAGE_CAPACITY_BYTES;
+    private double highWaterMark = DEFAULT_HIGH_WATER_MARK;
+    private double lowWaterMark = DEFAULT_LOW_WATER_MARK;
+    private long contentCacheSizeBytes = DEFAULT_CONTENT_CACHE_SIZE_BYTES;
+    private Optional<Path> era1ImportDirectory = Optional.empty();
+    private Optional<Path> era1ExportDirectory = Optional.empty();
+    private long era1ExportRateLimitBytesPerSecond = DEFAULT_ERA1_EXPORT_RATE_LIMIT_BYTES;
+    private long databaseMemoryBudgetBytes = RocksDBConfiguration.DEFAULT_MEMORY_BUDGET_BYTES;
+    private boolean cacheIndexAndFilterBlocks = true;
+    private WalSyncPolicy databaseWalSyncPolicy = DEFAULT_DATABASE_WAL_SYNC_POLICY;
+    private Duration databaseWalSyncInterval = DEFAULT_DATABASE_WAL_SYNC_INTERVAL;
+    private Duration databaseCommitWindow = DEFAULT_DATABASE_COMMIT_WINDOW;
+    private long writeBehindBufferBytes = DEFAULT_WRITE_BEHIND_BUFFER_BYTES;
+
+    private Builder() {}
+
+    public StorageConfig build() {
+      if (lowWaterMark > highWaterMark) {
+        throw new InvalidConfigurationException(
+            String.format(
+                "Storage low-water mark (%s) can not be greater than the high-water mark (%s)",
+                lowWaterMark, highWaterMark));
+      }
+      return new StorageConfig(
+          dataDirectory,
+          dataStorageFrequency,
+          storageCapacityBytes,
+          highWaterMark,
+          lowWaterMark,
+          contentCacheSizeBytes,
+          era1ImportDirectory,
+          era1ExportDirectory,
+          era1ExportRateLimitBytesPerSecond,
+          databaseMemoryBudgetBytes,
+          cacheIndexAndFilterBlocks,
+          databaseWalSyncPolicy,
+          databaseWalSyncInterval,
+          databaseCommitWindow,
+          writeBehindBufferBytes);
+    }
+
+    public Builder dataDirectory(final Path dataDirectory) {
+      this.dataDirectory = dataDirectory;
+      return this;
+    }
+
+    public Builder dataStorageFrequency(final long dataStorageFrequency) {
+      this.dataStorageFrequency = dataStorageFrequency;
+      return this;
+    }
+
+    public Builder storageCapacityBytes(final long storageCapacityBytes) {
+      if (storageCapacityBytes <= 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --storage-capacity-mb: %d bytes", storageCapacityBytes));
+      }
+      this.storageCapacityBytes = storageCapacityBytes;
+      return this;
+    }
+
+    public Builder highWaterMark(final double highWaterMark) {
+      validateWaterMark(highWaterMark, "high-water");
+      this.highWaterMark = highWaterMark;
+      return this;
+    }
+
+    public Builder lowWaterMark(final double lowWaterMark) {
+      validateWaterMark(lowWaterMark, "low-water");
+      this.lowWaterMark = lowWaterMark;
+      return this;
+    }
+
+    public Builder contentCacheSizeBytes(final long contentCacheSizeBytes) {
+      if (contentCacheSizeBytes < 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --content-cache-size-mb: %d bytes", contentCacheSizeBytes));
+      }
+      this.contentCacheSizeBytes = contentCacheSizeBytes;
+      return this;
+    }
+
+    public Builder era1ImportDirectory(final Path era1ImportDirectory) {
+      this.era1ImportDirectory = Optional.of(era1ImportDirectory);
+      return this;
+    }
+
+    public Builder era1ExportDirectory(final Path era1ExportDirectory) {
+      this.era1ExportDirectory = Optional.of(era1ExportDirectory);
+      return this;
+    }
+
+    public Builder era1ExportRateLimitBytesPerSecond(final long rateLimitBytesPerSecond) {
+      if (rateLimitBytesPerSecond <= 0) {
+        throw new InvalidConfigurationException(
+            String.format(
+                "Invalid --era1-export-rate-limit-mb: %d bytes", rateLimitBytesPerSecond));
+      }
+      this.era1ExportRateLimitBytesPerSecond = rateLimitBytesPerSecond;
+      return this;
+    }
+
+    public Builder databaseMemoryBudgetBytes(final long databaseMemoryBudgetBytes) {
+      if (databaseMemoryBudgetBytes <= 0) {
+        throw new InvalidConfigurationException(
+            String.format(
+                "Invalid --database-memory-budget-mb: %d bytes", databaseMemoryBudgetBytes));
+      }
+      this.databaseMemoryBudgetBytes = databaseMemoryBudgetBytes;
+      return this;
+    }
+
+    public Builder cacheIndexAndFilterBlocks(final boolean cacheIndexAndFilterBlocks) {
+      this.cacheIndexAndFilterBlocks = cacheIndexAndFilterBlocks;
+      return this;
+    }
+
+    public Builder databaseWalSyncPolicy(final WalSyncPolicy databaseWalSyncPolicy) {
+      this.databaseWalSyncPolicy = databaseWalSyncPolicy;
+      return this;
+    }
+
+    public Builder databaseWalSyncInterval(final Duration databaseWalSyncInterval) {
+      if (!databaseWalSyncInterval.isPositive()) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --database-wal-sync-interval-ms: %s", databaseWalSyncInterval));
+      }
+      this.databaseWalSyncInterval = databaseWalSyncInterval;
+      return this;
+    }
+
+    public Builder databaseCommitWindow(final Duration databaseCommitWindow) {
+      if (databaseCommitWindow.isNegative()) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --database-commit-window-ms: %s", databaseCommitWindow));
+      }
+      this.databaseCommitWindow = databaseCommitWindow;
+      return this;
+    }
+
+    public Builder writeBehindBufferBytes(final long writeBehindBufferBytes) {
+      if (writeBehindBufferBytes < 0) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid --write-behind-buffer-mb: %d bytes", writeBehindBufferBytes));
+      }
+      this.writeBehindBufferBytes = writeBehindBufferBytes;
+      return this;
+    }
+
+    private void validateWaterMark(final double waterMark, final String name) {
+      if (waterMark <= 0 || waterMark > 1) {
+        throw new InvalidConfigurationException(
+            String.format("Invalid storage %s mark: %s. It must be in (0, 1]", name, waterMark));
+      }
+    }
+  }
 }
@@ -0,0 +1,29 @@
+package samba.domain.content;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+import org.apache.tuweni.units.bigints.UInt256;
+
+/**
+ * Content addressing of the history network: content_id = sha256(content_key), and the distance
+ * between a content and a node is content_id XOR node_id, read as an unsigned 256 bit integer.
+ */
+public class ContentDistance {
+
+  public static Bytes32 contentId(Bytes contentKey) {
+    return Hash.sha2_256(contentKey);
+  }
+
+  public static UInt256 distance(Bytes contentId, Bytes nodeId) {
+    return UInt256.fromBytes(contentId.xor(nodeId));
+  }
+
+  public static UInt256 distanceFromContentKey(Bytes contentKey, Bytes nodeId) {
+    return distance(contentId(contentKey), nodeId);
+  }
+
+  public static boolean isWithinRadius(Bytes contentKey, Bytes nodeId, UInt256 radius) {
+    return distanceFromContentKey(contentKey, nodeId).compareTo(radius) <= 0;
+  }
+}
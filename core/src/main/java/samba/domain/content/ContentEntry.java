@@ -0,0 +1,11 @@
+package samba.domain.content;
+
+import org.apache.tuweni.bytes.Bytes;
+
+/** A content key and the content it addresses, as received from the network or an archive. */
+public record ContentEntry(Bytes contentKey, Bytes value) {
+
+  public ContentType getContentType() {
+    return ContentType.fromContentKey(contentKey);
+  }
+}
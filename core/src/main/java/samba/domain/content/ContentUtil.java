@@ -1,32 +1,148 @@
 package samba.domain.content;
 
+import samba.schema.content.BlockBodyPostShanghaiContainer;
+import samba.schema.content.BlockBodyPreShanghaiContainer;
+import samba.schema.content.BlockHeaderWithProofContainer;
+import samba.schema.content.ReceiptsList;
+
+import java.nio.ByteOrder;
+import java.util.List;
 import java.util.Optional;
 
 import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.datatypes.Hash;
 import org.hyperledger.besu.ethereum.core.BlockBody;
 import org.hyperledger.besu.ethereum.core.BlockHeader;
 import org.hyperledger.besu.ethereum.core.BlockWithReceipts;
+import org.hyperledger.besu.ethereum.core.Transaction;
+import org.hyperledger.besu.ethereum.core.TransactionReceipt;
+import org.hyperledger.besu.ethereum.core.Withdrawal;
+import org.hyperledger.besu.ethereum.core.encoding.EncodingContext;
+import org.hyperledger.besu.ethereum.core.encoding.TransactionDecoder;
+import org.hyperledger.besu.ethereum.core.encoding.WithdrawalDecoder;
+import org.hyperledger.besu.ethereum.mainnet.BodyValidation;
+import org.hyperledger.besu.ethereum.mainnet.MainnetBlockHeaderFunctions;
+import org.hyperledger.besu.ethereum.rlp.RLP;
 
-/*TODO remove once SSZ decoded is done*/
 public class ContentUtil {
 
+  private static final MainnetBlockHeaderFunctions BLOCK_HEADER_FUNCTIONS =
+      new MainnetBlockHeaderFunctions();
+
+  /**
+   * Decodes the header of an SSZ BlockHeaderWithProof.
+   *
+   * @param bytes the SSZ encoded BlockHeaderWithProof
+   * @return the header, or empty if the container or its RLP header can not be decoded
+   */
   public static Optional<BlockHeader> createBlockHeaderfromSSZBytes(byte[] bytes) {
-    // TODO
-    return Optional.empty();
+    return createRlpBlockHeaderFromSSZBytes(bytes)
+        .flatMap(
+            header -> {
+              try {
+                return Optional.of(BlockHeader.readFrom(RLP.input(header), BLOCK_HEADER_FUNCTIONS));
+              } catch (RuntimeException e) {
+                return Optional.empty();
+              }
+            });
   }
 
+  /**
+   * Checks an SSZ block body against the roots of its header. The header tells which encoding the
+   * body uses, since only bodies from Shanghai on carry withdrawals.
+   *
+   * @param blockHeader the header of the block
+   * @param blockBody the SSZ encoded BlockBodyPreShanghai or BlockBodyPostShanghai
+   * @return whether the transactions, ommers and withdrawals match the header
+   */
   public static boolean isBlockBodyValid(BlockHeader blockHeader, Bytes blockBody) {
-    // TODO given a BlockHeader we should validate that value that is a sszbytes of a blockBody
-    /*
-    Compare header timestamp against SHANGHAI_TIMESTAMP to determine what encoding scheme the block body uses.
-    Decode the block body using either pre-shanghai or post-shanghai encoding.
-    Validate the decoded block body against the roots in the header.*/
-    return true;
+    try {
+      final List<Bytes> transactions;
+      final Bytes uncles;
+      if (blockHeader.getWithdrawalsRoot().isPresent()) {
+        BlockBodyPostShanghaiContainer body = BlockBodyPostShanghaiContainer.decode(blockBody);
+        List<Withdrawal> withdrawals =
+            body.getWithdrawals().stream()
+                .map(withdrawal -> WithdrawalDecoder.decode(RLP.input(withdrawal)))
+                .toList();
+        if (!BodyValidation.withdrawalsRoot(withdrawals)
+            .equals(blockHeader.getWithdrawalsRoot().get())) {
+          return false;
+        }
+        transactions = body.getTransactions();
+        uncles = body.getUncles();
+      } else {
+        BlockBodyPreShanghaiContainer body = BlockBodyPreShanghaiContainer.decode(blockBody);
+        transactions = body.getTransactions();
+        uncles = body.getUncles();
+      }
+      List<Transaction> decodedTransactions =
+          transactions.stream()
+              .map(
+                  transaction ->
+                      TransactionDecoder.decodeOpaqueBytes(
+                          transaction, EncodingContext.BLOCK_BODY))
+              .toList();
+      List<BlockHeader> ommers =
+          RLP.input(uncles).readList(ommer -> BlockHeader.readFrom(ommer, BLOCK_HEADER_FUNCTIONS));
+      return BodyValidation.transactionsRoot(decodedTransactions)
+              .equals(blockHeader.getTransactionsRoot())
+          && BodyValidation.ommersHash(ommers).equals(blockHeader.getOmmersHash());
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks SSZ receipts against the receipts root of their header. Legacy receipts are RLP lists,
+   * typed receipts are their type byte followed by the RLP list, which besu reads as an RLP string.
+   *
+   * @param blockHeader the header of the block
+   * @param receipts the SSZ encoded receipts of the block
+   * @return whether the receipts decode and match the header
+   */
+  public static boolean isReceiptsValid(BlockHeader blockHeader, Bytes receipts) {
+    try {
+      List<TransactionReceipt> decodedReceipts =
+          ReceiptsList.decode(receipts).stream()
+              .map(
+                  receipt ->
+                      TransactionReceipt.readFrom(
+                          RLP.input(
+                              (receipt.get(0) & 0xff) >= 0xc0 ? receipt : RLP.encodeOne(receipt))))
+              .toList();
+      return BodyValidation.receiptsRoot(decodedReceipts).equals(blockHeader.getReceiptsRoot());
+    } catch (RuntimeException e) {
+      return false;
+    }
   }
 
+  /**
+   * Checks that the header of an SSZ BlockHeaderWithProof hashes to the requested block hash. The
+   * proof is not checked, since that needs the historical accumulators the node does not ship.
+   *
+   * @param blockHash the block hash of the content key
+   * @param blockHeader the SSZ encoded BlockHeaderWithProof
+   * @return whether the header decodes and has the requested hash
+   */
   public static boolean isBlockHeaderValid(Bytes blockHash, Bytes blockHeader) {
-    // TODO validate blockHeader.
-    return true;
+    return createBlockHeaderfromSSZBytes(blockHeader.toArrayUnsafe())
+        .map(header -> header.getHash().equals(blockHash))
+        .orElse(false);
+  }
+
+  /**
+   * Checks that the header of an SSZ BlockHeaderWithProof is the one of the requested block number.
+   *
+   * @param blockNumber the SSZ encoded block number of the content key
+   * @param blockHeader the SSZ encoded BlockHeaderWithProof
+   * @return whether the header decodes and has the requested number
+   */
+  public static boolean isBlockHeaderByNumberValid(Bytes blockNumber, Bytes blockHeader) {
+    return blockNumber.size() == Long.BYTES
+        && createBlockHeaderfromSSZBytes(blockHeader.toArrayUnsafe())
+            .map(header -> header.getNumber() == blockNumber.toLong(ByteOrder.LITTLE_ENDIAN))
+            .orElse(false);
   }
 
   public static Optional<? extends BlockWithReceipts> createBlockWithReceiptsfromSSZBytes(
@@ -38,7 +154,29 @@ public class ContentUtil {
     return Optional.empty();
   }
 
-  public static Optional<? extends Bytes> createBlockHashFromSSZBytes(byte[] bytes) {
-    return Optional.empty();
+  /**
+   * Extracts the RLP encoded header of an SSZ BlockHeaderWithProof, the content of both header
+   * content types.
+   *
+   * @param bytes the SSZ encoded BlockHeaderWithProof
+   * @return the RLP encoded header, or empty if the container can not be decoded
+   */
+  public static Optional<Bytes> createRlpBlockHeaderFromSSZBytes(byte[] bytes) {
+    try {
+      return Optional.of(BlockHeaderWithProofContainer.decode(Bytes.wrap(bytes)).getHeader());
+    } catch (RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Computes the block hash of an SSZ BlockHeaderWithProof, which is the hash of its RLP header
+   * rather than of the whole container.
+   *
+   * @param bytes the SSZ encoded BlockHeaderWithProof
+   * @return the block hash, or empty if the container can not be decoded
+   */
+  public static Optional<Hash> createBlockHashFromSSZBytes(byte[] bytes) {
+    return createRlpBlockHeaderFromSSZBytes(bytes).map(Hash::hash);
   }
 }
@@ -0,0 +1,73 @@
+package samba.domain.content;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.ethereum.core.BlockHeader;
+
+/**
+ * Validates content against its content key before it is stored. Validation does not touch the
+ * storage directly: block bodies and receipts are checked against the header returned by the given
+ * lookup, so callers validating a batch can resolve headers from the same batch.
+ */
+public class ContentValidator {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final Function<Bytes, Optional<BlockHeader>> blockHeaderLookup;
+
+  public ContentValidator(final Function<Bytes, Optional<BlockHeader>> blockHeaderLookup) {
+    this.blockHeaderLookup = blockHeaderLookup;
+  }
+
+  public boolean isValid(final ContentEntry entry) {
+    final Bytes key = entry.contentKey().slice(1); // blockHash or blockNumber, in ssz.
+    final Bytes value = entry.value();
+    return switch (entry.getContentType()) {
+      case BLOCK_HEADER -> {
+        // block_header_with_proof = BlockHeaderWithProof(header: rlp.encode(header), proof: proof)
+        if (!ContentUtil.isBlockHeaderValid(key, value)) {
+          LOG.info("BlockHeader for blockHash: {} is invalid", key);
+          yield false;
+        }
+        yield true;
+      }
+      case BLOCK_BODY -> {
+        final Optional<BlockHeader> blockHeader = blockHeaderLookup.apply(key);
+        if (blockHeader.isEmpty()) {
+          // Without its header the body can not be checked, it is accepted again once the header
+          // is stored.
+          LOG.info("Block Header for {} not found locally", key);
+          yield false;
+        }
+        if (!ContentUtil.isBlockBodyValid(blockHeader.get(), value)) {
+          LOG.info("BlockBody for blockHash: {} is invalid", key);
+          yield false;
+        }
+        yield true;
+      }
+      case RECEIPT -> {
+        final Optional<BlockHeader> blockHeader = blockHeaderLookup.apply(key);
+        if (blockHeader.isEmpty()) {
+          LOG.info("Block Header for {} not found locally", key);
+          yield false;
+        }
+        if (!ContentUtil.isReceiptsValid(blockHeader.get(), value)) {
+          LOG.info("Receipts for blockHash: {} are invalid", key);
+          yield false;
+        }
+        yield true;
+      }
+      case BLOCK_HEADER_BY_NUMBER -> {
+        if (!ContentUtil.isBlockHeaderByNumberValid(key, value)) {
+          LOG.info("BlockHeader for blockNumber: {} is invalid", key);
+          yield false;
+        }
+        yield true;
+      }
+    };
+  }
+}
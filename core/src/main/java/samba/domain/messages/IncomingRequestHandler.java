@@ -21,6 +21,7 @@ public class IncomingRequestHandler implements TalkHandler {
   private static final Logger LOG = LoggerFactory.getLogger(IncomingRequestHandler.class);
 
   private final Map<MessageType, PortalWireMessageHandler> messageHandlers = new HashMap<>();
+  private final Map<Bytes, TalkHandler> protocolHandlers = new HashMap<>();
   private final AtomicBoolean started = new AtomicBoolean(false);
   private HistoryNetworkIncomingRequests network;
 
@@ -40,8 +41,22 @@ public class IncomingRequestHandler implements TalkHandler {
     return this;
   }
 
+  /** Hands the TALKREQ messages of another protocol, such as uTP, to its own handler. */
+  public IncomingRequestHandler addProtocolHandler(Bytes protocol, TalkHandler handler) {
+    if (started.get()) {
+      throw new RuntimeException(
+          "IncomingRequestProcessor already started, couldn't add any handlers");
+    }
+    this.protocolHandlers.put(protocol, handler);
+    return this;
+  }
+
   @Override
   public CompletableFuture<Bytes> talk(NodeRecord srcNode, Bytes protocol, Bytes request) {
+    TalkHandler protocolHandler = protocolHandlers.get(protocol);
+    if (protocolHandler != null) {
+      return protocolHandler.talk(srcNode, protocol, request);
+    }
     checkArgument(
         this.network.getNetworkType().isEquals(protocol),
         "TALKKREQ message is not from the {}",
@@ -51,8 +66,13 @@ public class IncomingRequestHandler implements TalkHandler {
     PortalWireMessageHandler handler = messageHandlers.get(message.getMessageType());
     Bytes response = Bytes.EMPTY;
     if (handler != null) {
-      PortalWireMessage responsePacket = handler.handle(this.network, srcNode, message);
-      response = responsePacket.getSszBytes();
+      try {
+        PortalWireMessage responsePacket = handler.handle(this.network, srcNode, message);
+        response = responsePacket.getSszBytes();
+      } catch (RuntimeException e) {
+        // Answered with an empty TALKRESP, which the peer takes as an error.
+        LOG.debug("Could not answer the {} of {}", message.getMessageType(), srcNode.asEnr(), e);
+      }
     } else {
       LOG.info(
           "{} message not expected in TALKREQ",
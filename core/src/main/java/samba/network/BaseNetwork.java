@@ -23,15 +23,29 @@ public abstract class BaseNetwork implements Network {
   protected NetworkType networkType;
   protected Discv5Client discv5Client;
   protected UInt256 nodeRadius;
+  private final RequestTimeouts requestTimeouts;
+  private final OutboundRequestScheduler requestScheduler;
 
-  public BaseNetwork(NetworkType networkType, Discv5Client discv5Client, UInt256 nodeRadius) {
+  public BaseNetwork(
+      NetworkType networkType,
+      Discv5Client discv5Client,
+      UInt256 nodeRadius,
+      RequestTimeouts requestTimeouts,
+      OutboundRequestScheduler requestScheduler) {
     this.networkType = networkType;
     this.discv5Client = discv5Client;
     this.nodeRadius = nodeRadius;
+    this.requestTimeouts = requestTimeouts;
+    this.requestScheduler = requestScheduler;
   }
 
   protected SafeFuture<Optional<PortalWireMessage>> sendMessage(
       NodeRecord destinationNode, PortalWireMessage messageRequest) {
+    return sendMessage(destinationNode, messageRequest, RequestPriority.NORMAL);
+  }
+
+  protected SafeFuture<Optional<PortalWireMessage>> sendMessage(
+      NodeRecord destinationNode, PortalWireMessage messageRequest, RequestPriority priority) {
     LOG.info(
         "Send Portal {} message to {}",
         messageRequest.getMessageType(),
@@ -43,16 +57,49 @@ public abstract class BaseNetwork implements Network {
       return SafeFuture.failedFuture(new MessageToOurselfException());
     }
     // TODO FIX chain order
-    return SafeFuture.of(
-            discv5Client
-                .sendDisv5Message(
-                    destinationNode, this.networkType.getValue(), messageRequest.getSszBytes())
-                .thenApply(
-                    (sszbytes) ->
-                        parseResponse(sszbytes, destinationNode, messageRequest)) // Change
-                .thenApply(Optional::of))
-        .thenPeek(this::logResponse)
-        .exceptionallyCompose(error -> handleSendMessageError(messageRequest, error));
+    final SafeFuture<Bytes> scheduledRequest =
+        requestScheduler.submit(
+            destinationNode.getNodeId(),
+            priority,
+            () ->
+                requestTimeouts.apply(
+                    destinationNode.getNodeId(),
+                    messageRequest.getMessageType(),
+                    SafeFuture.of(
+                        discv5Client.sendDisv5Message(
+                            destinationNode,
+                            this.networkType.getValue(),
+                            messageRequest.getSszBytes()))));
+    // Cancelling the response drops the request if it is still waiting for an in-flight slot.
+    return cancelOnCancellation(
+        scheduledRequest,
+        scheduledRequest
+            .thenApply(
+                (sszbytes) -> parseResponse(sszbytes, destinationNode, messageRequest)) // Change
+            .thenApply(Optional::of)
+            .thenPeek(this::logResponse)
+            .exceptionallyCompose(error -> handleSendMessageError(messageRequest, error)));
+  }
+
+  /**
+   * Cancels the upstream future when the downstream one is cancelled, which dependent stages do not
+   * do on their own.
+   *
+   * @return the downstream future
+   */
+  protected static <T> SafeFuture<T> cancelOnCancellation(
+      SafeFuture<?> upstream, SafeFuture<T> downstream) {
+    downstream.whenComplete(
+        (__, error) -> {
+          if (downstream.isCancelled()) {
+            upstream.cancel(false);
+          }
+        });
+    return downstream;
+  }
+
+  protected RequestTimeouts getRequestTimeouts() {
+    return requestTimeouts;
   }
 
   private boolean isOurself(NodeRecord node) {
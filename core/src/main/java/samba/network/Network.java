@@ -1,5 +1,7 @@
 package samba.network;
 
+import java.util.Optional;
+
 import org.apache.tuweni.units.bigints.UInt256;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import tech.pegasys.teku.infrastructure.async.SafeFuture;
@@ -8,6 +10,16 @@ public interface Network {
 
   SafeFuture<String> connect(NodeRecord node);
 
+  /**
+   * Hands a newly discovered node to the intake queue, which verifies it before it joins the
+   * routing table.
+   *
+   * @param node the discovered node
+   * @return whether the node answered its verification, empty if it was dropped as known or
+   *     recently failed rather than queued
+   */
+  Optional<SafeFuture<Boolean>> addNodeCandidate(NodeRecord node);
+
   int getNumberOfConnectedPeers();
 
   boolean isNodeConnected(NodeRecord node);
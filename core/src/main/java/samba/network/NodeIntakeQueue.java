@@ -0,0 +1,170 @@
+package samba.network;
+
+import samba.config.HistoryNetworkConfig;
+import samba.metrics.SambaMetricCategory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * Single entry point for nodes learnt from discovery or from NODES answers. Candidates that are
+ * already known, already queued or that recently failed verification are dropped, the others wait
+ * in a bounded FIFO queue and are verified with a bounded number of concurrent requests, so a
+ * discovery burst turns into a steady load instead of a ping storm.
+ */
+public class NodeIntakeQueue {
+
+  private static final int RECENTLY_FAILED_CACHE_SIZE = 10_000;
+
+  private final int maxConcurrentVerifications;
+  private final int maxQueueSize;
+  private final Predicate<Bytes> isKnownNode;
+  private final Function<NodeRecord, SafeFuture<Boolean>> verifier;
+  private final Cache<Bytes, Boolean> recentlyFailed;
+  private final Counter queuedCounter;
+  private final Counter duplicateCounter;
+  private final Counter droppedCounter;
+  private final Counter verifiedCounter;
+  private final Counter failedCounter;
+
+  private final Deque<Candidate> queue = new ArrayDeque<>();
+  private final Set<Bytes> pendingNodeIds = new HashSet<>();
+  private int inFlightVerifications;
+
+  /**
+   * @param isKnownNode whether a node id is already part of the routing table
+   * @param verifier verifies a candidate, typically with a PING, and tells whether it answered
+   */
+  public NodeIntakeQueue(
+      final HistoryNetworkConfig historyNetworkConfig,
+      final Predicate<Bytes> isKnownNode,
+      final Function<NodeRecord, SafeFuture<Boolean>> verifier,
+      final MetricsSystem metricsSystem) {
+    this.maxConcurrentVerifications = historyNetworkConfig.getMaxConcurrentNodeVerifications();
+    this.maxQueueSize = historyNetworkConfig.getNodeIntakeQueueSize();
+    this.isKnownNode = isKnownNode;
+    this.verifier = verifier;
+    this.recentlyFailed =
+        Caffeine.newBuilder()
+            .maximumSize(RECENTLY_FAILED_CACHE_SIZE)
+            .expireAfterWrite(historyNetworkConfig.getFailedNodeRetryDelay())
+            .build();
+    final LabelledMetric<Counter> candidateCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "node_intake_candidates_total",
+            "Total number of node candidates handled by the intake queue",
+            "result");
+    this.queuedCounter = candidateCounter.labels("queued");
+    this.duplicateCounter = candidateCounter.labels("duplicate");
+    this.droppedCounter = candidateCounter.labels("dropped");
+    this.verifiedCounter = candidateCounter.labels("verified");
+    this.failedCounter = candidateCounter.labels("failed");
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.NETWORK,
+        "node_intake_queue_depth",
+        "Number of node candidates waiting to be verified",
+        this::getQueueDepth);
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.NETWORK,
+        "node_intake_verifications_in_flight",
+        "Number of node candidates currently being verified",
+        this::getInFlightVerifications);
+  }
+
+  /**
+   * Queues the node for verification unless it is already known, already queued, recently failed
+   * or the queue is full.
+   *
+   * @param node the candidate
+   * @return whether the node answered its verification, empty if the node was not queued
+   */
+  public Optional<SafeFuture<Boolean>> add(final NodeRecord node) {
+    final Bytes nodeId = node.getNodeId();
+    final Candidate candidate = new Candidate(node, new SafeFuture<>());
+    synchronized (this) {
+      if (pendingNodeIds.contains(nodeId)
+          || recentlyFailed.getIfPresent(nodeId) != null
+          || isKnownNode.test(nodeId)) {
+        duplicateCounter.inc();
+        return Optional.empty();
+      }
+      if (queue.size() >= maxQueueSize) {
+        droppedCounter.inc();
+        return Optional.empty();
+      }
+      pendingNodeIds.add(nodeId);
+      queue.addLast(candidate);
+      queuedCounter.inc();
+    }
+    drain();
+    return Optional.of(candidate.verified());
+  }
+
+  private void drain() {
+    while (true) {
+      final Candidate candidate;
+      synchronized (this) {
+        if (inFlightVerifications >= maxConcurrentVerifications || queue.isEmpty()) {
+          return;
+        }
+        candidate = queue.pollFirst();
+        inFlightVerifications++;
+      }
+      verify(candidate);
+    }
+  }
+
+  private void verify(final Candidate candidate) {
+    SafeFuture<Boolean> verification;
+    try {
+      verification = verifier.apply(candidate.node());
+    } catch (RuntimeException e) {
+      verification = SafeFuture.failedFuture(e);
+    }
+    verification
+        .exceptionally(__ -> false)
+        .thenAccept(verified -> onVerified(candidate, verified))
+        .ifExceptionGetsHereRaiseABug();
+  }
+
+  private void onVerified(final Candidate candidate, final boolean verified) {
+    final Bytes nodeId = candidate.node().getNodeId();
+    synchronized (this) {
+      inFlightVerifications--;
+      pendingNodeIds.remove(nodeId);
+    }
+    if (verified) {
+      verifiedCounter.inc();
+    } else {
+      failedCounter.inc();
+      recentlyFailed.put(nodeId, Boolean.TRUE);
+    }
+    candidate.verified().complete(verified);
+    drain();
+  }
+
+  public synchronized long getQueueDepth() {
+    return queue.size();
+  }
+
+  public synchronized long getInFlightVerifications() {
+    return inFlightVerifications;
+  }
+
+  private record Candidate(NodeRecord node, SafeFuture<Boolean> verified) {}
+}
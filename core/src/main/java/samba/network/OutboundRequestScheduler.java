@@ -0,0 +1,203 @@
+package samba.network;
+
+import samba.config.HistoryNetworkConfig;
+import samba.metrics.SambaMetricCategory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * Bounds the number of requests in flight towards each peer and overall. Requests over either
+ * limit wait in a per-peer queue, ordered by {@link RequestPriority} and then by submission order,
+ * and are dispatched as soon as a slot frees up. A free slot goes to the highest priority request
+ * across all peers, and peers with requests of the same priority are served round-robin so a burst
+ * towards one peer does not starve the others.
+ */
+public class OutboundRequestScheduler {
+
+  private final int maxInFlightRequestsPerPeer;
+  private final int maxInFlightRequests;
+  private final LabelledMetric<OperationTimer> queueDelayTimer;
+
+  private final Map<Bytes, PeerQueue> peers = new HashMap<>();
+  private final Deque<PeerQueue> peersWithPendingRequests = new ArrayDeque<>();
+  private int inFlightRequests;
+  private int pendingRequests;
+  private long sequence;
+
+  public OutboundRequestScheduler(
+      final HistoryNetworkConfig historyNetworkConfig, final MetricsSystem metricsSystem) {
+    this.maxInFlightRequestsPerPeer = historyNetworkConfig.getMaxInFlightRequestsPerPeer();
+    this.maxInFlightRequests = historyNetworkConfig.getMaxInFlightRequests();
+    this.queueDelayTimer =
+        metricsSystem.createLabelledTimer(
+            SambaMetricCategory.NETWORK,
+            "outbound_request_queue_delay_seconds",
+            "Time outbound requests spent waiting for an in-flight slot",
+            "priority");
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.NETWORK,
+        "outbound_requests_in_flight",
+        "Number of outbound requests currently in flight",
+        this::getInFlightRequests);
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.NETWORK,
+        "outbound_requests_queued",
+        "Number of outbound requests waiting for an in-flight slot",
+        this::getPendingRequests);
+  }
+
+  /**
+   * Sends the request once the peer and global in-flight limits allow it.
+   *
+   * @param nodeId the destination peer
+   * @param priority the priority of the request among the queued requests
+   * @param request sends the request and returns its response
+   * @return the response of the request
+   */
+  public <T> SafeFuture<T> submit(
+      final Bytes nodeId, final RequestPriority priority, final Supplier<SafeFuture<T>> request) {
+    final OperationTimer.TimingContext queueDelay =
+        queueDelayTimer.labels(priority.name()).startTimer();
+    final PendingRequest<T> pendingRequest;
+    synchronized (this) {
+      pendingRequest = new PendingRequest<>(priority, sequence++, request, queueDelay);
+      final PeerQueue peer = peers.computeIfAbsent(nodeId, PeerQueue::new);
+      if (peer.pending.isEmpty()) {
+        peersWithPendingRequests.addLast(peer);
+      }
+      peer.pending.add(pendingRequest);
+      pendingRequests++;
+    }
+    dispatch();
+    return pendingRequest.result;
+  }
+
+  public synchronized int getInFlightRequests() {
+    return inFlightRequests;
+  }
+
+  public synchronized int getPendingRequests() {
+    return pendingRequests;
+  }
+
+  private void dispatch() {
+    final List<Runnable> toStart = new ArrayList<>();
+    synchronized (this) {
+      while (inFlightRequests < maxInFlightRequests) {
+        final PeerQueue peer = nextPeerToServe();
+        if (peer == null) {
+          break;
+        }
+        peersWithPendingRequests.remove(peer);
+        final PendingRequest<?> pendingRequest = peer.pending.poll();
+        peer.inFlight++;
+        inFlightRequests++;
+        pendingRequests--;
+        toStart.add(() -> start(peer, pendingRequest));
+        if (!peer.pending.isEmpty()) {
+          peersWithPendingRequests.addLast(peer);
+        }
+      }
+    }
+    // Requests are sent outside the lock, a response may already be there when they return.
+    toStart.forEach(Runnable::run);
+  }
+
+  /**
+   * Picks the peer whose next request has the highest priority among the peers below their
+   * in-flight limit, the longest waiting one on a tie, so a free global slot goes to a lookup
+   * before background traffic queued for another peer.
+   */
+  private PeerQueue nextPeerToServe() {
+    PeerQueue next = null;
+    for (PeerQueue peer : peersWithPendingRequests) {
+      if (peer.inFlight < maxInFlightRequestsPerPeer
+          && (next == null
+              || peer.pending.peek().priority.compareTo(next.pending.peek().priority) < 0)) {
+        next = peer;
+      }
+    }
+    return next;
+  }
+
+  private <T> void start(final PeerQueue peer, final PendingRequest<T> pendingRequest) {
+    pendingRequest.queueDelay.stopTimer();
+    if (pendingRequest.result.isCancelled()) {
+      // Cancelled while queued, e.g. a hedged request whose sibling already answered.
+      onRequestCompleted(peer);
+      return;
+    }
+    SafeFuture<T> response;
+    try {
+      response = pendingRequest.request.get();
+    } catch (final Throwable t) {
+      response = SafeFuture.failedFuture(t);
+    }
+    response.whenComplete(
+        (result, error) -> {
+          onRequestCompleted(peer);
+          if (error != null) {
+            pendingRequest.result.completeExceptionally(error);
+          } else {
+            pendingRequest.result.complete(result);
+          }
+        });
+  }
+
+  private void onRequestCompleted(final PeerQueue peer) {
+    synchronized (this) {
+      peer.inFlight--;
+      inFlightRequests--;
+      if (peer.inFlight == 0 && peer.pending.isEmpty()) {
+        peers.remove(peer.nodeId);
+      }
+    }
+    dispatch();
+  }
+
+  private static class PendingRequest<T> {
+    private final RequestPriority priority;
+    private final long sequence;
+    private final Supplier<SafeFuture<T>> request;
+    private final OperationTimer.TimingContext queueDelay;
+    private final SafeFuture<T> result = new SafeFuture<>();
+
+    private PendingRequest(
+        final RequestPriority priority,
+        final long sequence,
+        final Supplier<SafeFuture<T>> request,
+        final OperationTimer.TimingContext queueDelay) {
+      this.priority = priority;
+      this.sequence = sequence;
+      this.request = request;
+      this.queueDelay = queueDelay;
+    }
+  }
+
+  private static class PeerQueue {
+    private final Bytes nodeId;
+    private final PriorityQueue<PendingRequest<?>> pending =
+        new PriorityQueue<>(
+            Comparator.<PendingRequest<?>, RequestPriority>comparing(request -> request.priority)
+                .thenComparingLong(request -> request.sequence));
+    private int inFlight;
+
+    private PeerQueue(final Bytes nodeId) {
+      this.nodeId = nodeId;
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package samba.network;
+
+import samba.domain.messages.MessageType;
+import samba.metrics.SambaMetricCategory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import io.netty.util.Timeout;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * Sends a request to a list of candidate peers, closest first, so one straggler does not set the
+ * latency of the whole request. The next candidate is asked when the current one has not answered
+ * within the 95th percentile of its round-trip times (a hedge), or as soon as it answers without
+ * the expected result. At most {@code 1 + maxHedges} requests are in flight at once, while every
+ * candidate remains a fallback. The first expected answer wins and the other attempts are
+ * cancelled.
+ */
+public class RequestHedger {
+
+  private final RequestTimeouts requestTimeouts;
+  private final int maxHedges;
+  private final LabelledMetric<Counter> requestCounter;
+  private final LabelledMetric<Counter> hedgeCounter;
+  private final LabelledMetric<Counter> hedgeWinCounter;
+
+  public RequestHedger(
+      final RequestTimeouts requestTimeouts,
+      final int maxHedges,
+      final MetricsSystem metricsSystem) {
+    this.requestTimeouts = requestTimeouts;
+    this.maxHedges = maxHedges;
+    this.requestCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "hedged_requests_total",
+            "Total number of requests eligible for hedging",
+            "message_type");
+    this.hedgeCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "request_hedges_total",
+            "Total number of hedges sent because a peer was slower than its usual latency",
+            "message_type");
+    this.hedgeWinCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "request_hedge_wins_total",
+            "Total number of hedged requests won by an attempt sent as a hedge",
+            "message_type");
+  }
+
+  /**
+   * Sends the request to the candidates until one gives the expected answer, with at most {@code
+   * 1 + maxHedges} of them asked at the same time.
+   *
+   * @param candidates the peers to ask, in order of preference
+   * @param messageType the type of the request, used to label the metrics
+   * @param request sends the request to one peer
+   * @param isExpectedAnswer whether an answer ends the request
+   * @return the first expected answer, else the last answer received, else empty
+   */
+  public <T> SafeFuture<Optional<T>> send(
+      final List<NodeRecord> candidates,
+      final MessageType messageType,
+      final Function<NodeRecord, SafeFuture<Optional<T>>> request,
+      final Predicate<T> isExpectedAnswer) {
+    if (candidates.isEmpty()) {
+      return SafeFuture.completedFuture(Optional.empty());
+    }
+    requestCounter.labels(messageType.name()).inc();
+    final HedgedRequest<T> hedgedRequest =
+        new HedgedRequest<>(List.copyOf(candidates), messageType, request, isExpectedAnswer);
+    hedgedRequest.sendNext(false);
+    return hedgedRequest.result;
+  }
+
+  private class HedgedRequest<T> {
+    private final List<NodeRecord> candidates;
+    private final MessageType messageType;
+    private final Function<NodeRecord, SafeFuture<Optional<T>>> request;
+    private final Predicate<T> isExpectedAnswer;
+    private final SafeFuture<Optional<T>> result = new SafeFuture<>();
+    private final List<SafeFuture<Optional<T>>> attempts = new ArrayList<>();
+    private Optional<T> lastAnswer = Optional.empty();
+    private int sentAttempts;
+    private int completedAttempts;
+    private Timeout hedgeTimeout;
+
+    private HedgedRequest(
+        final List<NodeRecord> candidates,
+        final MessageType messageType,
+        final Function<NodeRecord, SafeFuture<Optional<T>>> request,
+        final Predicate<T> isExpectedAnswer) {
+      this.candidates = candidates;
+      this.messageType = messageType;
+      this.request = request;
+      this.isExpectedAnswer = isExpectedAnswer;
+    }
+
+    private void sendNext(final boolean isHedge) {
+      final NodeRecord candidate;
+      final int attempt;
+      synchronized (this) {
+        if (result.isDone() || sentAttempts == candidates.size() || !hasRoomInFlight()) {
+          return;
+        }
+        attempt = sentAttempts++;
+        candidate = candidates.get(attempt);
+        if (isHedge) {
+          hedgeCounter.labels(messageType.name()).inc();
+        }
+        if (attempt + 1 < candidates.size() && hasRoomInFlight()) {
+          hedgeTimeout =
+              RequestTimeouts.TIMER.newTimeout(
+                  __ -> sendNext(true),
+                  requestTimeouts.getP95LatencyMillis(candidate.getNodeId()),
+                  TimeUnit.MILLISECONDS);
+        }
+      }
+      SafeFuture<Optional<T>> response;
+      try {
+        response = request.apply(candidate);
+      } catch (RuntimeException e) {
+        response = SafeFuture.failedFuture(e);
+      }
+      final boolean alreadyAnswered;
+      synchronized (this) {
+        attempts.add(response);
+        alreadyAnswered = result.isDone();
+      }
+      if (alreadyAnswered) {
+        response.cancel(false);
+      }
+      response
+          .exceptionally(__ -> Optional.empty())
+          .thenAccept(answer -> onAnswer(isHedge, answer))
+          .ifExceptionGetsHereRaiseABug();
+    }
+
+    private void onAnswer(final boolean isHedge, final Optional<T> answer) {
+      final boolean sendNext;
+      final List<SafeFuture<Optional<T>>> losers;
+      synchronized (this) {
+        completedAttempts++;
+        if (result.isDone()) {
+          return;
+        }
+        if (answer.isPresent() && isExpectedAnswer.test(answer.get())) {
+          // A fallback asked after an unexpected answer did not win over a slow peer.
+          if (isHedge) {
+            hedgeWinCounter.labels(messageType.name()).inc();
+          }
+          cancelHedgeTimeout();
+          losers = new ArrayList<>(attempts);
+          result.complete(answer);
+          sendNext = false;
+        } else {
+          if (answer.isPresent()) {
+            lastAnswer = answer;
+          }
+          losers = List.of();
+          final boolean allAnswered = completedAttempts == candidates.size();
+          if (allAnswered) {
+            result.complete(lastAnswer);
+          }
+          // Without an expected answer the next candidate is asked right away.
+          sendNext = sentAttempts < candidates.size() && hasRoomInFlight();
+          if (sendNext) {
+            cancelHedgeTimeout();
+          }
+        }
+      }
+      losers.forEach(loser -> loser.cancel(false));
+      if (sendNext) {
+        sendNext(false);
+      }
+    }
+
+    private boolean hasRoomInFlight() {
+      return sentAttempts - completedAttempts < 1 + maxHedges;
+    }
+
+    private void cancelHedgeTimeout() {
+      if (hedgeTimeout != null) {
+        hedgeTimeout.cancel();
+      }
+    }
+  }
+}
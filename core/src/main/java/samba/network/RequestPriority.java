@@ -0,0 +1,9 @@
+package samba.network;
+
+public enum RequestPriority {
+  /** Requests a caller is waiting on, such as content lookups. */
+  HIGH,
+  NORMAL,
+  /** Background traffic, such as pinging the nodes learnt from a NODES response. */
+  LOW
+}
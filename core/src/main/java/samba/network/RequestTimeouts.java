@@ -0,0 +1,151 @@
+package samba.network;
+
+import samba.config.HistoryNetworkConfig;
+import samba.domain.messages.MessageType;
+import samba.metrics.SambaMetricCategory;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * Applies a deadline to each outbound request, derived from the round-trip times observed for the
+ * destination peer: twice the 95th percentile of its recent samples, bounded by the configured
+ * minimum and maximum. Peers without samples get the configured initial timeout.
+ *
+ * <p>All deadlines are scheduled on a single hashed-wheel timer shared by every network, so
+ * thousands of in-flight requests cost one thread and no per-request scheduler task.
+ */
+public class RequestTimeouts {
+
+  static final HashedWheelTimer TIMER =
+      new HashedWheelTimer(
+          new DefaultThreadFactory("portal-request-timeouts", true), 10, TimeUnit.MILLISECONDS);
+  private static final int MAX_TRACKED_PEERS = 4096;
+  private static final int TIMEOUT_RTT_MULTIPLIER = 2;
+
+  private final long initialTimeoutMillis;
+  private final long minTimeoutMillis;
+  private final long maxTimeoutMillis;
+  private final Cache<Bytes, RttSamples> rttByPeer =
+      CacheBuilder.newBuilder().maximumSize(MAX_TRACKED_PEERS).build();
+  private final LabelledMetric<Counter> timeoutCounter;
+  private final LabelledMetric<Counter> lateResponseCounter;
+
+  public RequestTimeouts(
+      final HistoryNetworkConfig historyNetworkConfig, final MetricsSystem metricsSystem) {
+    this.initialTimeoutMillis = historyNetworkConfig.getInitialRequestTimeout().toMillis();
+    this.minTimeoutMillis = historyNetworkConfig.getMinRequestTimeout().toMillis();
+    this.maxTimeoutMillis = historyNetworkConfig.getMaxRequestTimeout().toMillis();
+    this.timeoutCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "request_timeouts_total",
+            "Total number of outbound requests that timed out",
+            "message_type");
+    this.lateResponseCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "late_responses_total",
+            "Total number of responses received after their request timed out",
+            "message_type");
+  }
+
+  /**
+   * Completes with the outcome of the request, or with a {@link TimeoutException} if the peer does
+   * not answer within its current deadline. A response arriving after the deadline is still used as
+   * a round-trip sample, so the deadline of a peer that became slower catches up.
+   *
+   * @param nodeId the destination peer
+   * @param messageType the type of the request, used to label the metrics
+   * @param request the in-flight request
+   * @return the request outcome bounded by the peer deadline
+   */
+  public <T> SafeFuture<T> apply(
+      final Bytes nodeId, final MessageType messageType, final SafeFuture<T> request) {
+    final long timeoutMillis = getTimeoutMillis(nodeId);
+    final long startNanos = System.nanoTime();
+    final SafeFuture<T> result = new SafeFuture<>();
+    final Timeout timeout =
+        TIMER.newTimeout(
+            __ -> {
+              if (result.completeExceptionally(
+                  new TimeoutException(
+                      String.format("%s timed out after %d ms", messageType, timeoutMillis)))) {
+                timeoutCounter.labels(messageType.name()).inc();
+              }
+            },
+            timeoutMillis,
+            TimeUnit.MILLISECONDS);
+    request.whenComplete(
+        (response, error) -> {
+          timeout.cancel();
+          if (error == null) {
+            recordRtt(nodeId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+          }
+          final boolean completed =
+              error == null ? result.complete(response) : result.completeExceptionally(error);
+          if (!completed && error == null) {
+            lateResponseCounter.labels(messageType.name()).inc();
+          }
+        });
+    return result;
+  }
+
+  long getTimeoutMillis(final Bytes nodeId) {
+    final RttSamples samples = rttByPeer.getIfPresent(nodeId);
+    if (samples == null) {
+      return initialTimeoutMillis;
+    }
+    final long timeoutMillis = samples.percentile(0.95) * TIMEOUT_RTT_MULTIPLIER;
+    return Math.min(maxTimeoutMillis, Math.max(minTimeoutMillis, timeoutMillis));
+  }
+
+  /**
+   * The 95th percentile of the peer's recent round-trip times, or half the initial timeout when
+   * the peer has no samples yet.
+   *
+   * @param nodeId the peer
+   * @return the round-trip time most requests to the peer complete within
+   */
+  long getP95LatencyMillis(final Bytes nodeId) {
+    final RttSamples samples = rttByPeer.getIfPresent(nodeId);
+    return samples == null ? initialTimeoutMillis / 2 : samples.percentile(0.95);
+  }
+
+  void recordRtt(final Bytes nodeId, final long rttMillis) {
+    rttByPeer.asMap().computeIfAbsent(nodeId, __ -> new RttSamples()).add(rttMillis);
+  }
+
+  /** Fixed-size ring of the most recent round-trip times of one peer. */
+  private static class RttSamples {
+    private static final int WINDOW = 32;
+
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+
+    synchronized void add(final long rttMillis) {
+      samples[next] = rttMillis;
+      next = (next + 1) % WINDOW;
+      count = Math.min(count + 1, WINDOW);
+    }
+
+    synchronized long percentile(final double percentile) {
+      final long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      return sorted[(int) Math.ceil(percentile * count) - 1];
+    }
+  }
+}
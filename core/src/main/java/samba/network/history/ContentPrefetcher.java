@@ -0,0 +1,207 @@
+package samba.network.history;
+
+import samba.config.HistoryNetworkConfig;
+import samba.domain.content.ContentType;
+import samba.metrics.SambaMetricCategory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * Fetches the body and the receipts of a block in the background once its header has been
+ * retrieved, since a client walking the chain nearly always asks for them next. Prefetches wait in
+ * a bounded FIFO queue and run a bounded number at a time, within a bandwidth budget: the bytes a
+ * prefetch downloaded delay the next one, so the budget holds on average without knowing the size
+ * of the content up front.
+ */
+public class ContentPrefetcher {
+
+  private static final ContentType[] PREFETCHED_CONTENT_TYPES = {
+    ContentType.BLOCK_BODY, ContentType.RECEIPT
+  };
+
+  private final int maxConcurrentPrefetches;
+  private final int maxQueueSize;
+  private final long bytesPerSecond;
+  private final Predicate<Bytes> isAvailable;
+  private final Function<Bytes, SafeFuture<Long>> fetcher;
+  private final ScheduledExecutorService scheduler;
+  private final Counter queuedCounter;
+  private final Counter skippedCounter;
+  private final Counter droppedCounter;
+  private final Counter foundCounter;
+  private final Counter notFoundCounter;
+
+  private final Deque<Bytes> queue = new ArrayDeque<>();
+  private final Set<Bytes> pendingContentKeys = new HashSet<>();
+  private int inFlightPrefetches;
+  private long budgetAvailableAtNanos = System.nanoTime();
+  private boolean drainScheduled;
+
+  /**
+   * @param isAvailable whether a content key is already stored locally
+   * @param fetcher looks the content up with a low priority and tells how many bytes it retrieved
+   */
+  public ContentPrefetcher(
+      final HistoryNetworkConfig historyNetworkConfig,
+      final Predicate<Bytes> isAvailable,
+      final Function<Bytes, SafeFuture<Long>> fetcher,
+      final MetricsSystem metricsSystem) {
+    this.maxConcurrentPrefetches = historyNetworkConfig.getMaxConcurrentPrefetches();
+    this.maxQueueSize = historyNetworkConfig.getPrefetchQueueSize();
+    this.bytesPerSecond = historyNetworkConfig.getPrefetchBytesPerSecond();
+    this.isAvailable = isAvailable;
+    this.fetcher = fetcher;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("content-prefetch-%d")
+                .setDaemon(true)
+                .build());
+    final LabelledMetric<Counter> prefetchCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "content_prefetches_total",
+            "Total number of content items considered for prefetching",
+            "result");
+    this.queuedCounter = prefetchCounter.labels("queued");
+    this.skippedCounter = prefetchCounter.labels("skipped");
+    this.droppedCounter = prefetchCounter.labels("dropped");
+    this.foundCounter = prefetchCounter.labels("found");
+    this.notFoundCounter = prefetchCounter.labels("not_found");
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.NETWORK,
+        "content_prefetch_queue_depth",
+        "Number of content items waiting to be prefetched",
+        this::getQueueDepth);
+  }
+
+  /** Stops prefetching. Prefetches already sent are left to complete. */
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Queues the body and the receipts of the block, unless they are already available, already
+   * queued or the queue is full.
+   *
+   * @param blockHash the hash of the block whose header was retrieved
+   */
+  public void onBlockHeaderRetrieved(final Bytes blockHash) {
+    for (ContentType contentType : PREFETCHED_CONTENT_TYPES) {
+      add(Bytes.concatenate(Bytes.of(contentType.getByteValue()), blockHash));
+    }
+    drain();
+  }
+
+  private void add(final Bytes contentKey) {
+    synchronized (this) {
+      if (pendingContentKeys.contains(contentKey)) {
+        skippedCounter.inc();
+        return;
+      }
+      if (queue.size() >= maxQueueSize) {
+        droppedCounter.inc();
+        return;
+      }
+      pendingContentKeys.add(contentKey);
+      queue.addLast(contentKey);
+    }
+    queuedCounter.inc();
+  }
+
+  private void drain() {
+    while (true) {
+      final Bytes contentKey;
+      synchronized (this) {
+        if (inFlightPrefetches >= maxConcurrentPrefetches || queue.isEmpty()) {
+          return;
+        }
+        final long waitNanos = budgetAvailableAtNanos - System.nanoTime();
+        if (waitNanos > 0) {
+          scheduleDrain(waitNanos);
+          return;
+        }
+        contentKey = queue.pollFirst();
+        inFlightPrefetches++;
+      }
+      prefetch(contentKey);
+    }
+  }
+
+  private void scheduleDrain(final long delayNanos) {
+    if (drainScheduled || scheduler.isShutdown()) {
+      return;
+    }
+    drainScheduled = true;
+    scheduler.schedule(
+        () -> {
+          synchronized (this) {
+            drainScheduled = false;
+          }
+          drain();
+        },
+        delayNanos,
+        TimeUnit.NANOSECONDS);
+  }
+
+  private void prefetch(final Bytes contentKey) {
+    if (isAvailable.test(contentKey)) {
+      skippedCounter.inc();
+      release(contentKey, 0);
+      return;
+    }
+    SafeFuture<Long> prefetch;
+    try {
+      prefetch = fetcher.apply(contentKey);
+    } catch (RuntimeException e) {
+      prefetch = SafeFuture.failedFuture(e);
+    }
+    prefetch
+        .exceptionally(__ -> 0L)
+        .thenAccept(retrievedBytes -> onPrefetched(contentKey, retrievedBytes))
+        .ifExceptionGetsHereRaiseABug();
+  }
+
+  private void onPrefetched(final Bytes contentKey, final long retrievedBytes) {
+    release(contentKey, retrievedBytes);
+    if (retrievedBytes > 0) {
+      foundCounter.inc();
+    } else {
+      notFoundCounter.inc();
+    }
+    drain();
+  }
+
+  private synchronized void release(final Bytes contentKey, final long retrievedBytes) {
+    inFlightPrefetches--;
+    pendingContentKeys.remove(contentKey);
+    if (retrievedBytes > 0) {
+      budgetAvailableAtNanos =
+          Math.max(budgetAvailableAtNanos, System.nanoTime())
+              + TimeUnit.SECONDS.toNanos(retrievedBytes) / bytesPerSecond;
+    }
+  }
+
+  public synchronized long getQueueDepth() {
+    return queue.size();
+  }
+
+  public synchronized long getInFlightPrefetches() {
+    return inFlightPrefetches;
+  }
+}
@@ -1,6 +1,11 @@
 package samba.network.history;
 
+import samba.config.HistoryNetworkConfig;
+import samba.config.StorageConfig;
+import samba.domain.content.ContentDistance;
+import samba.domain.content.ContentEntry;
 import samba.domain.content.ContentType;
+import samba.domain.content.ContentUtil;
 import samba.domain.dht.LivenessChecker;
 import samba.domain.messages.MessageType;
 import samba.domain.messages.PortalWireMessage;
@@ -14,49 +19,173 @@ import samba.domain.messages.response.Nodes;
 import samba.domain.messages.response.Pong;
 import samba.network.BaseNetwork;
 import samba.network.NetworkType;
+import samba.network.NodeIntakeQueue;
+import samba.network.OutboundRequestScheduler;
+import samba.network.RequestHedger;
+import samba.network.RequestPriority;
+import samba.network.RequestTimeouts;
 import samba.network.RoutingTable;
 import samba.services.discovery.Discv5Client;
+import samba.services.utp.ContentItems;
+import samba.services.utp.UTP;
+import samba.services.utp.UtpException;
+import samba.services.utp.UtpService;
+import samba.storage.ContentValidationPipeline;
 import samba.storage.HistoryDB;
+import samba.storage.rocksdb.ValueView;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt256;
 import org.ethereum.beacon.discovery.schema.IdentitySchemaV4Interpreter;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordFactory;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.jetbrains.annotations.NotNull;
 import tech.pegasys.teku.infrastructure.async.SafeFuture;
 import tech.pegasys.teku.infrastructure.unsigned.UInt64;
 
 public class HistoryNetwork extends BaseNetwork
-    implements HistoryNetworkRequests, HistoryNetworkIncomingRequests, LivenessChecker {
+    implements HistoryNetworkRequests,
+        HistoryNetworkIncomingRequests,
+        LivenessChecker,
+        AutoCloseable {
+
+  private static final int RETRIEVAL_CANDIDATES = 3;
+
+  /** A CONTENT answer, with the content whether it came in the message or over uTP. */
+  private record ContentResponse(Content message, Optional<Bytes> content) {}
 
-  private UInt256 nodeRadius;
   private final HistoryDB historyDB;
+  private final ContentValidationPipeline contentValidationPipeline;
+  // Whether the pipeline was created here, rather than by the storage that closes it.
+  private final boolean ownsContentValidationPipeline;
+  private final NodeRadiusManager nodeRadiusManager;
+  private final NegativeContentCache negativeContentCache;
+  private final NodeIntakeQueue nodeIntakeQueue;
+  private final RequestHedger requestHedger;
+  private final Optional<ContentPrefetcher> contentPrefetcher;
+  private final RecentContentKeyFilter recentContentKeys;
+  // Keys accepted from an offer, from the ACCEPT until their content is stored or fails to be.
+  private final Set<Bytes> acceptedContentKeys = ConcurrentHashMap.newKeySet();
+  private final UTP utp;
   final NodeRecordFactory nodeRecordFactory;
   protected RoutingTable routingTable;
 
+  /** Creates a network with its own validation pipeline, which {@link #close} shuts down. */
   public HistoryNetwork(Discv5Client client, HistoryDB historyDB) {
-    super(NetworkType.EXECUTION_HISTORY_NETWORK, client, UInt256.ONE);
-    this.nodeRadius = UInt256.ONE; // TODO must come from argument
+    this(
+        client,
+        historyDB,
+        new ContentValidationPipeline(
+            historyDB,
+            1,
+            ContentValidationPipeline.DEFAULT_QUEUE_CAPACITY,
+            new NoOpMetricsSystem()),
+        true,
+        StorageConfig.createDefault(),
+        HistoryNetworkConfig.createDefault(),
+        new NoOpMetricsSystem(),
+        new UtpService(client, new NoOpMetricsSystem()));
+  }
+
+  /** Creates a network storing content through a pipeline its creator closes. */
+  public HistoryNetwork(
+      Discv5Client client,
+      HistoryDB historyDB,
+      ContentValidationPipeline contentValidationPipeline,
+      StorageConfig storageConfig,
+      HistoryNetworkConfig historyNetworkConfig,
+      MetricsSystem metricsSystem,
+      UTP utp) {
+    this(
+        client,
+        historyDB,
+        contentValidationPipeline,
+        false,
+        storageConfig,
+        historyNetworkConfig,
+        metricsSystem,
+        utp);
+  }
+
+  private HistoryNetwork(
+      Discv5Client client,
+      HistoryDB historyDB,
+      ContentValidationPipeline contentValidationPipeline,
+      boolean ownsContentValidationPipeline,
+      StorageConfig storageConfig,
+      HistoryNetworkConfig historyNetworkConfig,
+      MetricsSystem metricsSystem,
+      UTP utp) {
+    super(
+        NetworkType.EXECUTION_HISTORY_NETWORK,
+        client,
+        UInt256.MAX_VALUE,
+        new RequestTimeouts(historyNetworkConfig, metricsSystem),
+        new OutboundRequestScheduler(historyNetworkConfig, metricsSystem));
     this.routingTable = new HistoryRoutingTable(client.getHomeNodeRecord(), this);
     this.historyDB = historyDB;
+    this.contentValidationPipeline = contentValidationPipeline;
+    this.ownsContentValidationPipeline = ownsContentValidationPipeline;
+    this.nodeRadiusManager = new NodeRadiusManager(historyDB, storageConfig);
+    this.negativeContentCache = new NegativeContentCache(historyNetworkConfig, metricsSystem);
+    this.nodeIntakeQueue =
+        new NodeIntakeQueue(
+            historyNetworkConfig,
+            nodeId -> routingTable.isNodeConnected(nodeId),
+            node ->
+                ping(node, new Ping(node.getSeq(), getNodeRadius().toBytes()), RequestPriority.LOW)
+                    .thenApply(Optional::isPresent),
+            metricsSystem);
+    this.requestHedger =
+        new RequestHedger(
+            getRequestTimeouts(), historyNetworkConfig.getFindContentMaxHedges(), metricsSystem);
+    this.contentPrefetcher =
+        historyNetworkConfig.isContentPrefetchEnabled()
+            ? Optional.of(
+                new ContentPrefetcher(
+                    historyNetworkConfig, this::isContentAvailable, this::prefetch, metricsSystem))
+            : Optional.empty();
+    this.recentContentKeys = new RecentContentKeyFilter(historyNetworkConfig, metricsSystem);
+    this.utp = utp;
     this.nodeRecordFactory = new NodeRecordFactory(new IdentitySchemaV4Interpreter());
     LOG.info("Home Record :{}", client.getHomeNodeRecord().asEnr());
   }
 
+  /** Stops prefetching, and closes the validation pipeline if it was created with the network. */
+  @Override
+  public void close() {
+    contentPrefetcher.ifPresent(ContentPrefetcher::close);
+    if (ownsContentValidationPipeline) {
+      contentValidationPipeline.close();
+    }
+  }
+
   @Override
   public SafeFuture<Optional<Pong>> ping(NodeRecord nodeRecord, Ping message) {
-    return sendMessage(nodeRecord, message)
-        .orTimeout(30, TimeUnit.SECONDS)
+    return ping(nodeRecord, message, RequestPriority.NORMAL);
+  }
+
+  private SafeFuture<Optional<Pong>> ping(
+      NodeRecord nodeRecord, Ping message, RequestPriority priority) {
+    return sendMessage(nodeRecord, message, priority)
         .thenApply(Optional::get)
         .thenCompose(
             pongMessage -> {
@@ -89,7 +218,6 @@ public class HistoryNetwork extends BaseNetwork
   @Override
   public SafeFuture<Optional<Nodes>> findNodes(NodeRecord nodeRecord, FindNodes message) {
     return sendMessage(nodeRecord, message)
-        .orTimeout(3, TimeUnit.SECONDS)
         .thenApply(Optional::get)
         .thenCompose(
             nodesMessage -> {
@@ -99,9 +227,7 @@ public class HistoryNetwork extends BaseNetwork
                   .map(nodeRecordFactory::fromEnr)
                   .filter(this::isNotHomeNode)
                   .filter(node -> !node.asEnr().equals(nodeRecord.asEnr()))
-                  .filter(this::isPossibleNodeCandidate)
-                  .forEach(
-                      node -> this.ping(node, new Ping(node.getSeq(), this.nodeRadius.toBytes())));
+                  .forEach(nodeIntakeQueue::add);
               //   });
               return SafeFuture.completedFuture(Optional.of(nodes));
             })
@@ -112,7 +238,162 @@ public class HistoryNetwork extends BaseNetwork
   // for example that the is not valid ?
   @Override
   public SafeFuture<Optional<Content>> findContent(NodeRecord nodeRecord, FindContent message) {
-    return sendMessage(nodeRecord, message)
+    SafeFuture<Optional<ContentResponse>> lookup =
+        lookupContent(nodeRecord, message, RequestPriority.HIGH, true);
+    return cancelOnCancellation(
+        lookup, lookup.thenApply(response -> response.map(ContentResponse::message)));
+  }
+
+  private SafeFuture<Optional<ContentResponse>> lookupContent(
+      NodeRecord nodeRecord, FindContent message, RequestPriority priority, boolean store) {
+    SafeFuture<Optional<PortalWireMessage>> request = sendMessage(nodeRecord, message, priority);
+    return cancelOnCancellation(
+        request, handleContentResponse(nodeRecord, message, request, store));
+  }
+
+  /**
+   * Asks the nodes for the content, closest first. A node that answers with ENRs hands over to the
+   * next one, and a node slower than its usual latency is hedged with the next one, up to the
+   * configured number of hedges. Content none of the nodes holds is remembered as missing for a
+   * while, and not looked up again meanwhile.
+   *
+   * @param nodeRecords the nodes to ask, in order of preference
+   * @param message the FIND_CONTENT request
+   * @return the first content answer, else the last ENRs answer, else empty
+   */
+  public SafeFuture<Optional<Content>> findContent(
+      List<NodeRecord> nodeRecords, FindContent message) {
+    if (isKnownMissing(message.getContentKey())) {
+      return SafeFuture.completedFuture(Optional.empty());
+    }
+    return requestHedger
+        .send(
+            nodeRecords,
+            MessageType.FIND_CONTENT,
+            nodeRecord -> findContent(nodeRecord, message),
+            content -> content.getContentType() != Content.ENRS)
+        .thenPeek(
+            content -> {
+              if (content.isEmpty() || content.get().getContentType() == Content.ENRS) {
+                onLookupExhausted(message.getContentKey());
+              }
+            });
+  }
+
+  /**
+   * Looks the content up from the closest nodes whose radius covers it, without storing it, for
+   * callers that validate and store content in batches.
+   *
+   * @param contentKey the content key
+   * @param priority the priority of the requests
+   * @return the content, if a node returned it
+   */
+  public SafeFuture<Optional<Bytes>> retrieveContent(Bytes contentKey, RequestPriority priority) {
+    if (isKnownMissing(contentKey)) {
+      return SafeFuture.completedFuture(Optional.empty());
+    }
+    FindContent message = new FindContent(contentKey);
+    return requestHedger
+        .send(
+            getClosestInterestedNodes(contentKey, RETRIEVAL_CANDIDATES),
+            MessageType.FIND_CONTENT,
+            nodeRecord -> lookupContent(nodeRecord, message, priority, false),
+            response -> response.content().isPresent())
+        .thenApply(response -> response.flatMap(ContentResponse::content))
+        .thenPeek(
+            content -> {
+              if (content.isEmpty()) {
+                onLookupExhausted(contentKey);
+              }
+            });
+  }
+
+  private boolean isKnownMissing(Bytes contentKey) {
+    if (negativeContentCache.isKnownMissing(contentKey)) {
+      LOG.trace("Content {} recently not found, skipping lookup", contentKey);
+      return true;
+    }
+    return false;
+  }
+
+  /** Every node of the lookup was asked without any of them returning the content. */
+  private void onLookupExhausted(Bytes contentKey) {
+    LOG.debug("Content {} not found, remembering it as missing", contentKey);
+    negativeContentCache.onLookupFailed(contentKey);
+  }
+
+  private boolean isContentAvailable(Bytes contentKey) {
+    return historyDB
+        .getContentSize(ContentType.fromContentKey(contentKey), contentKey.slice(1))
+        .isPresent();
+  }
+
+  /**
+   * Queues the body and receipts of a stored header. A header stored by number is keyed by the
+   * block number, so the block hash is read from the header itself.
+   */
+  private static void prefetchBlockContent(ContentPrefetcher prefetcher, ContentEntry entry) {
+    switch (entry.getContentType()) {
+      case BLOCK_HEADER -> prefetcher.onBlockHeaderRetrieved(entry.contentKey().slice(1));
+      case BLOCK_HEADER_BY_NUMBER ->
+          ContentUtil.createBlockHashFromSSZBytes(entry.value().toArrayUnsafe())
+              .ifPresent(prefetcher::onBlockHeaderRetrieved);
+      default -> {}
+    }
+  }
+
+  private SafeFuture<Long> prefetch(Bytes contentKey) {
+    if (isKnownMissing(contentKey)) {
+      return SafeFuture.completedFuture(0L);
+    }
+    // Low priority so prefetches only use the request slots foreground lookups leave free.
+    return getClosestInterestedNodes(contentKey, 1).stream()
+        .findFirst()
+        .map(
+            nodeRecord ->
+                lookupContent(nodeRecord, new FindContent(contentKey), RequestPriority.LOW, true)
+                    .thenApply(
+                        response ->
+                            response
+                                .flatMap(ContentResponse::content)
+                                .map(content -> (long) content.size())
+                                .orElse(0L)))
+        .orElseGet(() -> SafeFuture.completedFuture(0L));
+  }
+
+  /**
+   * Validates and stores content received from the network through the validation pipeline.
+   *
+   * @param entries the content received together
+   * @return a future completing once the valid items are stored
+   */
+  private SafeFuture<Void> storeContent(List<ContentEntry> entries) {
+    return contentValidationPipeline
+        .submit(entries)
+        .thenAccept(
+            stored -> {
+              for (int i = 0; i < entries.size(); i++) {
+                if (stored.get(i)) {
+                  onContentStored(entries.get(i));
+                }
+              }
+            });
+  }
+
+  private void onContentStored(ContentEntry entry) {
+    nodeRadiusManager.onContentStored();
+    contentPrefetcher.ifPresent(prefetcher -> prefetchBlockContent(prefetcher, entry));
+    // Remembered so the peers gossiping it next are not asked for it again.
+    recentContentKeys.add(entry.contentKey());
+    // gossipNetwork
+  }
+
+  private SafeFuture<Optional<ContentResponse>> handleContentResponse(
+      NodeRecord nodeRecord,
+      FindContent message,
+      SafeFuture<Optional<PortalWireMessage>> request,
+      boolean store) {
+    return request
         .thenApply(Optional::get)
         .thenCompose(
             contentMessage -> {
@@ -122,18 +403,18 @@ public class HistoryNetwork extends BaseNetwork
 
               switch (content.getContentType()) {
                 case Content.UTP_CONNECTION_ID -> {
-                  /*
-                  Open a uTP Connection on this port content.getConnectionId()
-                  SafeFuture.runAsync(() -> {
-                  //TODO async UTP opperation once we get the specific content we should call    historyDB.saveContent(
-                  });*/
+                  // Too large for a TALKRESP, the node streams it once we connect.
+                  int connectionId = content.getConnectionId();
+                  return utp.connect(nodeRecord, connectionId)
+                      .thenCompose(__ -> utp.getContent(nodeRecord, connectionId))
+                      .thenApply(
+                          transferred ->
+                              onContentFound(message.getContentKey(), content, transferred, store));
                 }
                 case Content.CONTENT_TYPE -> {
-                  boolean successfullySaved =
-                      historyDB.saveContent(message.getContentKey(), content.getContent());
-                  if (successfullySaved) {
-                    // gossipNetwork
-                  }
+                  Bytes value = content.getContent();
+                  return SafeFuture.completedFuture(
+                      onContentFound(message.getContentKey(), content, value, store));
                 }
                 case Content
                     .ENRS -> { // ENR records of nodes that are closest to the requested content.
@@ -153,30 +434,78 @@ public class HistoryNetwork extends BaseNetwork
                         "Node: {} does not hold the requested content or knows any eligible node",
                         nodeRecord.asEnr());
                   }
+                  return SafeFuture.completedFuture(
+                      Optional.of(new ContentResponse(content, Optional.empty())));
                 }
                 default -> throw new IllegalArgumentException("CONTENT: Invalid payload type");
               }
-              return SafeFuture.completedFuture(Optional.of(content));
             })
         .exceptionallyCompose(createDefaultErrorWhenSendingMessage(message.getMessageType()));
   }
 
+  private Optional<ContentResponse> onContentFound(
+      Bytes contentKey, Content message, Bytes content, boolean store) {
+    negativeContentCache.onContentFound(contentKey);
+    if (store) {
+      storeContent(List.of(new ContentEntry(contentKey, content)))
+          .finish(error -> LOG.debug("Could not store {}", contentKey, error));
+    }
+    return Optional.of(new ContentResponse(message, Optional.of(content)));
+  }
+
   @Override
   public SafeFuture<Optional<Accept>> offer(NodeRecord nodeRecord, Offer message) {
-    return sendMessage(nodeRecord, message)
+    return offer(nodeRecord, message, RequestPriority.NORMAL);
+  }
+
+  public SafeFuture<Optional<Accept>> offer(
+      NodeRecord nodeRecord, Offer message, RequestPriority priority) {
+    return sendMessage(nodeRecord, message, priority)
         .thenApply(Optional::get)
         .thenCompose(
             acceptMessage -> {
               Accept accept = acceptMessage.getMessage();
-              // TODO create UTP stream using connectionId
-              return SafeFuture.completedFuture(Optional.of(accept));
+              List<Bytes> acceptedContent = getAcceptedContent(message, accept);
+              if (acceptedContent.isEmpty()) {
+                return SafeFuture.completedFuture(Optional.of(accept));
+              }
+              int connectionId = accept.getConnectionId();
+              return utp.connect(nodeRecord, connectionId)
+                  .thenCompose(
+                      __ ->
+                          utp.sendContent(
+                              nodeRecord, connectionId, ContentItems.encode(acceptedContent)))
+                  .thenApply(__ -> Optional.of(accept));
             })
         .exceptionallyCompose(createDefaultErrorWhenSendingMessage(message.getMessageType()));
   }
 
+  /**
+   * One item per accepted key, in the order of the keys. A content no longer stored is sent as an
+   * empty item, so only that item fails on the receiving side.
+   */
+  private List<Bytes> getAcceptedContent(Offer offer, Accept accept) {
+    List<Bytes> contentKeys = offer.getContentKeys();
+    BitSet accepted = BitSet.valueOf(accept.getContentKeys().toArrayUnsafe());
+    List<Bytes> content = new ArrayList<>();
+    for (int i = accepted.nextSetBit(0); i >= 0; i = accepted.nextSetBit(i + 1)) {
+      if (i >= contentKeys.size()) {
+        break;
+      }
+      Bytes contentKey = contentKeys.get(i);
+      Optional<byte[]> value =
+          historyDB.get(ContentType.fromContentKey(contentKey), contentKey.slice(1));
+      if (value.isEmpty()) {
+        LOG.debug("Offered content {} is no longer stored", contentKey);
+      }
+      content.add(value.map(Bytes::wrap).orElse(Bytes.EMPTY));
+    }
+    return content;
+  }
+
   @Override
   public SafeFuture<String> connect(NodeRecord nodeRecord) {
-    Ping ping = new Ping(nodeRecord.getSeq(), this.nodeRadius.toBytes());
+    Ping ping = new Ping(nodeRecord.getSeq(), getNodeRadius().toBytes());
     return this.ping(nodeRecord, ping)
         .thenApply(Optional::get)
         .thenCompose(
@@ -185,6 +514,11 @@ public class HistoryNetwork extends BaseNetwork
             });
   }
 
+  @Override
+  public Optional<SafeFuture<Boolean>> addNodeCandidate(NodeRecord nodeRecord) {
+    return nodeIntakeQueue.add(nodeRecord);
+  }
+
   @Override
   public int getNumberOfConnectedPeers() {
     return routingTable.getActiveNodes();
@@ -205,7 +539,7 @@ public class HistoryNetwork extends BaseNetwork
     Bytes srcNodeId = srcNode.getNodeId();
     routingTable.addOrUpdateNode(srcNode);
     routingTable.updateRadius(srcNodeId, UInt256.fromBytes(ping.getCustomPayload()));
-    return new Pong(getLocalEnrSeg(), this.nodeRadius.toBytes());
+    return new Pong(getLocalEnrSeg(), getNodeRadius().toBytes());
   }
 
   @Override
@@ -233,34 +567,144 @@ public class HistoryNetwork extends BaseNetwork
   public PortalWireMessage handleFindContent(NodeRecord srcNode, FindContent findContent) {
     Bytes contentKey = findContent.getContentKey();
     ContentType contentType = ContentType.fromContentKey(contentKey);
-    Bytes value = contentKey.slice(0, 1);
-    Optional<byte[]> content = historyDB.get(contentType, value);
+    Optional<ValueView> content = historyDB.getContent(contentType, contentKey.slice(1));
     if (content.isEmpty()) {
       // TODO return list of ENRs that we know of that are closest to the requested content
       /*If the node does not hold the requested content, and the node does not know of any nodes with eligible ENR values, then the node MUST return enrs as an empty list.*/
       return new Content(List.of());
     }
-    if (content.get().length > PortalWireMessage.MAX_CUSTOM_PAYLOAD_BYTES) {
-      // TODO initiate UTP connection and UTP async listen on connectionId
-      return new Content(0);
+    ValueView value = content.get();
+    if (value.size() <= PortalWireMessage.MAX_CUSTOM_PAYLOAD_BYTES) {
+      try (value) {
+        return new Content(value.bytes());
+      }
+    }
+    Optional<Integer> connectionId = utp.listen(srcNode);
+    if (connectionId.isEmpty()) {
+      value.close();
+      throw new UtpException("No uTP connection left to stream " + contentKey);
     }
-    return new Content(Bytes.of(content.get()));
+    // Streamed from the buffer it was read into, without copying it to the heap, and given back
+    // once the stream is over.
+    utp.sendContent(srcNode, connectionId.get(), value.bytes())
+        .alwaysRun(value::close)
+        .finish(error -> LOG.debug("Could not stream {} to {}", contentKey, srcNode.asEnr()));
+    return new Content(connectionId.get());
   }
 
   @Override
   public PortalWireMessage handleOffer(NodeRecord srcNode, Offer offer) {
-    BitSet missingContent = new BitSet(offer.getContentKeys().size());
-    //    for (int i = 0; i < offer.getContentKeys().size(); i++) {
-    //        if (!historyDB.contains(offer.getContentKeys().get(i))) {
-    //            missingContent.set(i);
-    //        }
-    //    }
+    List<Bytes> contentKeys = offer.getContentKeys();
+    BitSet missingContent = new BitSet(contentKeys.size());
+    // Content outside the radius, stored recently, or accepted from another offer and still on
+    // its way, is declined without reading the storage. Keys are only recorded once their content
+    // is stored, so an offer whose transfer fails does not hide the key.
+    Bytes homeNodeId = discv5Client.getHomeNodeRecord().getNodeId();
+    UInt256 radius = getNodeRadius();
+    List<Integer> newKeyIndexes =
+        IntStream.range(0, contentKeys.size())
+            .filter(i -> ContentDistance.isWithinRadius(contentKeys.get(i), homeNodeId, radius))
+            .filter(i -> !acceptedContentKeys.contains(contentKeys.get(i)))
+            .filter(i -> !recentContentKeys.mightContain(contentKeys.get(i)))
+            .boxed()
+            .toList();
+    List<Optional<byte[]>> storedContent =
+        historyDB.multiGet(
+            newKeyIndexes.stream()
+                .map(contentKeys::get)
+                .map(key -> Pair.of(ContentType.fromContentKey(key), key.slice(1)))
+                .toList());
+    for (int i = 0; i < newKeyIndexes.size(); i++) {
+      // Claimed here, so concurrent offers of the same key only accept it once.
+      if (storedContent.get(i).isEmpty()
+          && acceptedContentKeys.add(contentKeys.get(newKeyIndexes.get(i)))) {
+        missingContent.set(newKeyIndexes.get(i));
+      }
+    }
+
+    int sliceLength = (contentKeys.size() + 7) / 8;
+    Bytes contentKeysBitList = Bytes.wrap(Arrays.copyOf(missingContent.toByteArray(), sliceLength));
+    if (missingContent.isEmpty()) {
+      return new Accept(0, contentKeysBitList);
+    }
+    List<Bytes> acceptedKeys = missingContent.stream().mapToObj(contentKeys::get).toList();
+    Optional<Integer> connectionId = utp.listen(srcNode);
+    if (connectionId.isEmpty()) {
+      acceptedKeys.forEach(acceptedContentKeys::remove);
+      return new Accept(0, Bytes.wrap(new byte[sliceLength]));
+    }
+    utp.getContent(srcNode, connectionId.get())
+        .thenCompose(stream -> storeOfferedContent(acceptedKeys, ContentItems.decode(stream)))
+        .alwaysRun(() -> acceptedKeys.forEach(acceptedContentKeys::remove))
+        .finish(error -> LOG.debug("Could not store the content offered by {}", srcNode.asEnr()));
+    return new Accept(connectionId.get(), contentKeysBitList);
+  }
 
-    int sliceLength = (offer.getContentKeys().size() + 7) / 8;
-    Bytes contentKeysBitList = Bytes.wrap(missingContent.toByteArray()).slice(sliceLength);
-    // int connectionId = UTP.generateConnectionId();
-    Accept accept = new Accept(0, contentKeysBitList);
-    return accept;
+  private SafeFuture<Void> storeOfferedContent(List<Bytes> contentKeys, List<Bytes> content) {
+    if (content.size() != contentKeys.size()) {
+      LOG.debug(
+          "Received {} content items for {} accepted keys", content.size(), contentKeys.size());
+      return SafeFuture.COMPLETE;
+    }
+    // An empty item is a content the peer no longer had.
+    return storeContent(
+        IntStream.range(0, contentKeys.size())
+            .filter(i -> !content.get(i).isEmpty())
+            .mapToObj(i -> new ContentEntry(contentKeys.get(i), content.get(i)))
+            .toList());
+  }
+
+  /**
+   * Live nodes whose advertised radius covers the content, closest to the content first.
+   *
+   * @param contentKey the content key
+   * @param limit the maximum number of nodes to return
+   * @return the closest interested nodes
+   */
+  public List<NodeRecord> getClosestInterestedNodes(Bytes contentKey, int limit) {
+    return getClosestInterestedNodes(List.of(contentKey), limit).get(contentKey);
+  }
+
+  /**
+   * Live nodes whose advertised radius covers each content, closest to the content first. The
+   * routing table is walked once for the whole batch.
+   *
+   * @param contentKeys the content keys
+   * @param limit the maximum number of nodes to return per content
+   * @return the closest interested nodes by content key
+   */
+  public Map<Bytes, List<NodeRecord>> getClosestInterestedNodes(
+      List<Bytes> contentKeys, int limit) {
+    List<Pair<NodeRecord, UInt256>> nodes =
+        IntStream.rangeClosed(1, 256)
+            .boxed()
+            .flatMap(routingTable::getNodes)
+            .map(node -> Pair.of(node, routingTable.getRadius(node.getNodeId())))
+            .filter(node -> node.getValue() != null)
+            .toList();
+    Map<Bytes, List<NodeRecord>> interestedNodes = new HashMap<>();
+    for (Bytes contentKey : contentKeys) {
+      Bytes contentId = ContentDistance.contentId(contentKey);
+      List<Pair<NodeRecord, UInt256>> coveringNodes = new ArrayList<>();
+      for (Pair<NodeRecord, UInt256> node : nodes) {
+        UInt256 distance = ContentDistance.distance(contentId, node.getKey().getNodeId());
+        if (distance.compareTo(node.getValue()) <= 0) {
+          coveringNodes.add(Pair.of(node.getKey(), distance));
+        }
+      }
+      interestedNodes.put(
+          contentKey,
+          coveringNodes.stream()
+              .sorted(Comparator.comparing((Pair<NodeRecord, UInt256> node) -> node.getValue()))
+              .limit(limit)
+              .map(Pair::getKey)
+              .toList());
+    }
+    return interestedNodes;
+  }
+
+  public UInt256 getNodeRadius() {
+    return nodeRadiusManager.getRadius();
   }
 
   private org.apache.tuweni.units.bigints.UInt64 getLocalEnrSeg() {
@@ -276,7 +720,7 @@ public class HistoryNetwork extends BaseNetwork
   public CompletableFuture<Void> checkLiveness(NodeRecord nodeRecord) {
     LOG.info("checkLiveness");
     Ping pingMessage =
-        new Ping(UInt64.valueOf(nodeRecord.getSeq().toBytes().toLong()), this.nodeRadius);
+        new Ping(UInt64.valueOf(nodeRecord.getSeq().toBytes().toLong()), getNodeRadius());
     return CompletableFuture.supplyAsync(() -> this.ping(nodeRecord, pingMessage))
         .thenCompose((__) -> new CompletableFuture<>());
   }
@@ -285,11 +729,6 @@ public class HistoryNetwork extends BaseNetwork
     return this.discv5Client.getHomeNodeRecord().asEnr();
   }
 
-  private boolean isPossibleNodeCandidate(NodeRecord node) {
-    return !this.routingTable.isNodeConnected(node.getNodeId())
-        || !this.routingTable.isNodeIgnored(node);
-  }
-
   private boolean isNotHomeNode(NodeRecord node) {
     return !(this.discv5Client.getHomeNodeRecord().equals(node));
   }
@@ -0,0 +1,87 @@
+package samba.network.history;
+
+import samba.config.HistoryNetworkConfig;
+import samba.domain.content.ContentType;
+import samba.metrics.SambaMetricCategory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+
+/**
+ * Remembers the content keys the network could not serve for a while, so repeated requests for a
+ * missing block are answered locally instead of turning into a new lookup each time. Entries expire
+ * after a time to live that depends on the content type and the cache is bounded in entries.
+ */
+public class NegativeContentCache {
+
+  private final Map<Byte, Long> ttlNanosByContentType = new HashMap<>();
+  private final long minTtlNanos;
+  private final Cache<Bytes, Boolean> missingContent;
+
+  public NegativeContentCache(
+      final HistoryNetworkConfig historyNetworkConfig, final MetricsSystem metricsSystem) {
+    for (ContentType contentType : ContentType.values()) {
+      ttlNanosByContentType.put(
+          contentType.getByteValue(),
+          historyNetworkConfig.getNegativeLookupTtl(contentType).toNanos());
+    }
+    // Keys with an unknown selector are kept for the shortest time.
+    this.minTtlNanos = Collections.min(ttlNanosByContentType.values());
+    this.missingContent =
+        Caffeine.newBuilder()
+            .maximumSize(historyNetworkConfig.getNegativeLookupCacheSize())
+            .expireAfter(
+                new Expiry<Bytes, Boolean>() {
+                  @Override
+                  public long expireAfterCreate(
+                      Bytes contentKey, Boolean value, long currentTime) {
+                    return getTtlNanos(contentKey);
+                  }
+
+                  @Override
+                  public long expireAfterUpdate(
+                      Bytes contentKey, Boolean value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(contentKey, value, currentTime);
+                  }
+
+                  @Override
+                  public long expireAfterRead(
+                      Bytes contentKey, Boolean value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                  }
+                })
+            .recordStats()
+            .build();
+    metricsSystem.createGauge(
+        SambaMetricCategory.NETWORK,
+        "negative_lookup_cache_hit_ratio",
+        "Ratio of content lookups answered as missing without querying the network",
+        () -> missingContent.stats().hitRate());
+  }
+
+  public boolean isKnownMissing(final Bytes contentKey) {
+    return missingContent.getIfPresent(contentKey) != null;
+  }
+
+  public void onLookupFailed(final Bytes contentKey) {
+    missingContent.put(contentKey, Boolean.TRUE);
+  }
+
+  public void onContentFound(final Bytes contentKey) {
+    missingContent.invalidate(contentKey);
+  }
+
+  private long getTtlNanos(final Bytes contentKey) {
+    if (contentKey.isEmpty()) {
+      return minTtlNanos;
+    }
+    return ttlNanosByContentType.getOrDefault(contentKey.get(0), minTtlNanos);
+  }
+}
@@ -0,0 +1,89 @@
+package samba.network.history;
+
+import samba.config.StorageConfig;
+import samba.storage.HistoryDB;
+
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.units.bigints.UInt256;
+
+/**
+ * Keeps the radius of the home node in line with the configured storage capacity. The radius is
+ * derived from the stored content on startup and shrinks each time the stored content goes over
+ * the high-water mark and the content farthest from the home node is evicted.
+ */
+public class NodeRadiusManager {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final HistoryDB historyDB;
+  private final StorageConfig storageConfig;
+  private final AtomicBoolean pruning = new AtomicBoolean(false);
+  private volatile UInt256 radius;
+
+  public NodeRadiusManager(final HistoryDB historyDB, final StorageConfig storageConfig) {
+    this.historyDB = historyDB;
+    this.storageConfig = storageConfig;
+    this.radius = deriveRadius();
+    LOG.info("Radius on startup: {}", radius.toHexString());
+  }
+
+  /**
+   * Derives the radius from the content already stored, so a node that shrank its radius does not
+   * take in the whole key space again after a restart. The stored content is taken as spread evenly
+   * up to the farthest stored distance, and the radius is the distance at which it would fill the
+   * storage up to the low-water mark, at most the whole key space.
+   */
+  private UInt256 deriveRadius() {
+    final long usage = historyDB.getStorageUsage();
+    final Optional<UInt256> farthestDistance = historyDB.getFarthestContentDistance();
+    if (usage <= 0 || farthestDistance.isEmpty()) {
+      return UInt256.MAX_VALUE;
+    }
+    final long lowWaterMarkBytes = storageConfig.getLowWaterMarkBytes();
+    if (usage >= lowWaterMarkBytes) {
+      return farthestDistance.get();
+    }
+    final BigInteger scaledDistance =
+        farthestDistance
+            .get()
+            .toBigInteger()
+            .multiply(BigInteger.valueOf(lowWaterMarkBytes))
+            .divide(BigInteger.valueOf(usage));
+    return scaledDistance.compareTo(UInt256.MAX_VALUE.toBigInteger()) >= 0
+        ? UInt256.MAX_VALUE
+        : UInt256.valueOf(scaledDistance);
+  }
+
+  public UInt256 getRadius() {
+    return radius;
+  }
+
+  public void onContentStored() {
+    if (historyDB.getStorageUsage() <= storageConfig.getHighWaterMarkBytes()) {
+      return;
+    }
+    if (!pruning.compareAndSet(false, true)) {
+      // Another thread is already bringing the usage down.
+      return;
+    }
+    try {
+      // Nothing left stored says nothing about how much would fit, so the radius is kept then.
+      final Optional<UInt256> farthestDistance =
+          historyDB.pruneFarthestContent(storageConfig.getLowWaterMarkBytes());
+      if (farthestDistance.isPresent() && farthestDistance.get().compareTo(radius) < 0) {
+        radius = farthestDistance.get();
+        LOG.info(
+            "Storage usage {} bytes, radius shrunk to {}",
+            historyDB.getStorageUsage(),
+            radius.toHexString());
+      }
+    } finally {
+      pruning.set(false);
+    }
+  }
+}
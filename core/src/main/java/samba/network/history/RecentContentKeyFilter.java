@@ -0,0 +1,134 @@
+package samba.network.history;
+
+import samba.config.HistoryNetworkConfig;
+import samba.metrics.SambaMetricCategory;
+
+import java.util.function.LongSupplier;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+
+/**
+ * Approximate set of the content keys seen recently, so a key offered by many peers within seconds
+ * is recognised without touching the storage. Keys go into the current of two Bloom filters; when
+ * it is full or older than the time to live, it becomes the previous one and the oldest filter is
+ * dropped. A key is therefore remembered between one and two times to live, and a false positive,
+ * which makes a new key look already seen, happens with at most the configured probability.
+ */
+public class RecentContentKeyFilter {
+
+  private final long capacity;
+  private final double generationFalsePositiveRate;
+  private final long ttlNanos;
+  private final LongSupplier nanoTime;
+  private final Counter newKeyCounter;
+  private final Counter duplicateKeyCounter;
+
+  private BloomFilter<byte[]> current;
+  private BloomFilter<byte[]> previous;
+  private long currentInsertions;
+  private long currentCreatedAtNanos;
+
+  public RecentContentKeyFilter(
+      final HistoryNetworkConfig historyNetworkConfig, final MetricsSystem metricsSystem) {
+    this(historyNetworkConfig, metricsSystem, System::nanoTime);
+  }
+
+  RecentContentKeyFilter(
+      final HistoryNetworkConfig historyNetworkConfig,
+      final MetricsSystem metricsSystem,
+      final LongSupplier nanoTime) {
+    // A key is looked up in both generations, so each gets half of the false positive budget.
+    this.generationFalsePositiveRate =
+        historyNetworkConfig.getRecentContentFilterFalsePositiveRate() / 2;
+    this.capacity =
+        capacity(
+            historyNetworkConfig.getRecentContentFilterSizeBytes() / 2,
+            generationFalsePositiveRate);
+    this.ttlNanos = historyNetworkConfig.getRecentContentFilterTtl().toNanos();
+    this.nanoTime = nanoTime;
+    final LabelledMetric<Counter> keyCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "recent_content_keys_total",
+            "Total number of content keys checked against the recently seen filter",
+            "result");
+    this.newKeyCounter = keyCounter.labels("new");
+    this.duplicateKeyCounter = keyCounter.labels("duplicate");
+    this.current = createFilter();
+    this.previous = createFilter();
+    this.currentCreatedAtNanos = nanoTime.getAsLong();
+  }
+
+  /**
+   * Number of keys a filter of the given size holds at the given false positive rate, from
+   * {@code m = -n ln(p) / ln(2)^2}.
+   */
+  private static long capacity(final long sizeBytes, final double falsePositiveRate) {
+    return Math.max(
+        1, (long) (-sizeBytes * 8 * Math.log(2) * Math.log(2) / Math.log(falsePositiveRate)));
+  }
+
+  /**
+   * Records the key as seen.
+   *
+   * @param contentKey the content key
+   * @return whether the key was not seen recently
+   */
+  public synchronized boolean add(final Bytes contentKey) {
+    rotateIfExpired();
+    final byte[] key = contentKey.toArrayUnsafe();
+    if (current.mightContain(key) || previous.mightContain(key)) {
+      return false;
+    }
+    current.put(key);
+    if (++currentInsertions >= capacity) {
+      rotate();
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether the key was seen recently, without recording it.
+   *
+   * @param contentKey the content key
+   * @return whether the key might have been seen recently
+   */
+  public synchronized boolean mightContain(final Bytes contentKey) {
+    rotateIfExpired();
+    final byte[] key = contentKey.toArrayUnsafe();
+    final boolean seen = current.mightContain(key) || previous.mightContain(key);
+    (seen ? duplicateKeyCounter : newKeyCounter).inc();
+    return seen;
+  }
+
+  private void rotateIfExpired() {
+    final long age = nanoTime.getAsLong() - currentCreatedAtNanos;
+    if (age >= 2 * ttlNanos) {
+      // Idle for a while, both generations are older than the time to live.
+      previous = createFilter();
+      rotate();
+    } else if (age >= ttlNanos) {
+      rotate();
+    }
+  }
+
+  private void rotate() {
+    previous = current;
+    current = createFilter();
+    currentInsertions = 0;
+    currentCreatedAtNanos = nanoTime.getAsLong();
+  }
+
+  private BloomFilter<byte[]> createFilter() {
+    return BloomFilter.create(Funnels.byteArrayFunnel(), capacity, generationFalsePositiveRate);
+  }
+
+  long getCapacity() {
+    return capacity;
+  }
+}
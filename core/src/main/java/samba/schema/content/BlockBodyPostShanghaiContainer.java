@@ -0,0 +1,94 @@
+package samba.schema.content;
+
+import static samba.schema.content.BlockBodyPreShanghaiContainer.MAX_ENCODED_UNCLES_LENGTH;
+
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.infrastructure.ssz.SszList;
+import tech.pegasys.teku.infrastructure.ssz.collections.SszByteList;
+import tech.pegasys.teku.infrastructure.ssz.containers.Container3;
+import tech.pegasys.teku.infrastructure.ssz.containers.ContainerSchema3;
+import tech.pegasys.teku.infrastructure.ssz.schema.SszListSchema;
+import tech.pegasys.teku.infrastructure.ssz.schema.collections.SszByteListSchema;
+import tech.pegasys.teku.infrastructure.ssz.tree.TreeNode;
+
+/**
+ * The content of BLOCK_BODY items for blocks from Shanghai on, which also carry the withdrawals.
+ *
+ * <pre>
+ * BlockBodyPostShanghai = Container(
+ *     transactions: List[ByteList[MAX_TRANSACTION_LENGTH], MAX_TRANSACTION_COUNT],
+ *     uncles: ByteList[MAX_ENCODED_UNCLES_LENGTH],
+ *     withdrawals: List[ByteList[MAX_WITHDRAWAL_LENGTH], MAX_WITHDRAWALS_COUNT])
+ * </pre>
+ */
+public class BlockBodyPostShanghaiContainer
+    extends Container3<
+        BlockBodyPostShanghaiContainer, SszList<SszByteList>, SszByteList, SszList<SszByteList>> {
+
+  public static final int MAX_WITHDRAWAL_LENGTH = 64;
+  public static final int MAX_WITHDRAWALS_COUNT = 16;
+
+  public BlockBodyPostShanghaiContainer(
+      List<Bytes> transactions, Bytes uncles, List<Bytes> withdrawals) {
+    super(
+        BlockBodyPostShanghaiSchema.INSTANCE,
+        BlockBodyPreShanghaiContainer.createTransactionList(transactions),
+        SszByteListSchema.create(MAX_ENCODED_UNCLES_LENGTH).fromBytes(uncles),
+        createWithdrawalList(withdrawals));
+  }
+
+  public BlockBodyPostShanghaiContainer(TreeNode backingNode) {
+    super(BlockBodyPostShanghaiSchema.INSTANCE, backingNode);
+  }
+
+  private static SszList<SszByteList> createWithdrawalList(List<Bytes> withdrawals) {
+    SszByteListSchema byteListSchema = SszByteListSchema.create(MAX_WITHDRAWAL_LENGTH);
+    return createWithdrawalListSchema()
+        .createFromElements(withdrawals.stream().map(byteListSchema::fromBytes).toList());
+  }
+
+  private static SszListSchema<SszByteList, SszList<SszByteList>> createWithdrawalListSchema() {
+    return SszListSchema.create(
+        SszByteListSchema.create(MAX_WITHDRAWAL_LENGTH), MAX_WITHDRAWALS_COUNT);
+  }
+
+  public List<Bytes> getTransactions() {
+    return getField0().stream().map(SszByteList::getBytes).toList();
+  }
+
+  public Bytes getUncles() {
+    return getField1().getBytes();
+  }
+
+  public List<Bytes> getWithdrawals() {
+    return getField2().stream().map(SszByteList::getBytes).toList();
+  }
+
+  public static BlockBodyPostShanghaiContainer decode(Bytes content) {
+    return BlockBodyPostShanghaiSchema.INSTANCE.sszDeserialize(content);
+  }
+
+  public static class BlockBodyPostShanghaiSchema
+      extends ContainerSchema3<
+          BlockBodyPostShanghaiContainer,
+          SszList<SszByteList>,
+          SszByteList,
+          SszList<SszByteList>> {
+
+    public static final BlockBodyPostShanghaiSchema INSTANCE = new BlockBodyPostShanghaiSchema();
+
+    private BlockBodyPostShanghaiSchema() {
+      super(
+          BlockBodyPreShanghaiContainer.createTransactionListSchema(),
+          SszByteListSchema.create(MAX_ENCODED_UNCLES_LENGTH),
+          createWithdrawalListSchema());
+    }
+
+    @Override
+    public BlockBodyPostShanghaiContainer createFromBackingNode(TreeNode node) {
+      return new BlockBodyPostShanghaiContainer(node);
+    }
+  }
+}
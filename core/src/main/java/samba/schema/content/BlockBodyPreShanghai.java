@@ -1,3 +0,0 @@
-package samba.schema.content;
-
-public class BlockBodyPreShanghai {}
@@ -0,0 +1,79 @@
+package samba.schema.content;
+
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.infrastructure.ssz.SszList;
+import tech.pegasys.teku.infrastructure.ssz.collections.SszByteList;
+import tech.pegasys.teku.infrastructure.ssz.containers.Container2;
+import tech.pegasys.teku.infrastructure.ssz.containers.ContainerSchema2;
+import tech.pegasys.teku.infrastructure.ssz.schema.SszListSchema;
+import tech.pegasys.teku.infrastructure.ssz.schema.collections.SszByteListSchema;
+import tech.pegasys.teku.infrastructure.ssz.tree.TreeNode;
+
+/**
+ * The content of BLOCK_BODY items for blocks before Shanghai.
+ *
+ * <pre>
+ * BlockBodyPreShanghai = Container(
+ *     transactions: List[ByteList[MAX_TRANSACTION_LENGTH], MAX_TRANSACTION_COUNT],
+ *     uncles: ByteList[MAX_ENCODED_UNCLES_LENGTH])
+ * </pre>
+ */
+public class BlockBodyPreShanghaiContainer
+    extends Container2<BlockBodyPreShanghaiContainer, SszList<SszByteList>, SszByteList> {
+
+  public static final int MAX_TRANSACTION_LENGTH = 1 << 24;
+  public static final int MAX_TRANSACTION_COUNT = 1 << 14;
+  public static final int MAX_ENCODED_UNCLES_LENGTH =
+      BlockHeaderWithProofContainer.MAX_HEADER_LENGTH << 4;
+
+  public BlockBodyPreShanghaiContainer(List<Bytes> transactions, Bytes uncles) {
+    super(
+        BlockBodyPreShanghaiSchema.INSTANCE,
+        createTransactionList(transactions),
+        SszByteListSchema.create(MAX_ENCODED_UNCLES_LENGTH).fromBytes(uncles));
+  }
+
+  public BlockBodyPreShanghaiContainer(TreeNode backingNode) {
+    super(BlockBodyPreShanghaiSchema.INSTANCE, backingNode);
+  }
+
+  static SszList<SszByteList> createTransactionList(List<Bytes> transactions) {
+    SszByteListSchema byteListSchema = SszByteListSchema.create(MAX_TRANSACTION_LENGTH);
+    return createTransactionListSchema()
+        .createFromElements(transactions.stream().map(byteListSchema::fromBytes).toList());
+  }
+
+  static SszListSchema<SszByteList, SszList<SszByteList>> createTransactionListSchema() {
+    return SszListSchema.create(
+        SszByteListSchema.create(MAX_TRANSACTION_LENGTH), MAX_TRANSACTION_COUNT);
+  }
+
+  public List<Bytes> getTransactions() {
+    return getField0().stream().map(SszByteList::getBytes).toList();
+  }
+
+  public Bytes getUncles() {
+    return getField1().getBytes();
+  }
+
+  public static BlockBodyPreShanghaiContainer decode(Bytes content) {
+    return BlockBodyPreShanghaiSchema.INSTANCE.sszDeserialize(content);
+  }
+
+  public static class BlockBodyPreShanghaiSchema
+      extends ContainerSchema2<BlockBodyPreShanghaiContainer, SszList<SszByteList>, SszByteList> {
+
+    public static final BlockBodyPreShanghaiSchema INSTANCE = new BlockBodyPreShanghaiSchema();
+
+    private BlockBodyPreShanghaiSchema() {
+      super(createTransactionListSchema(), SszByteListSchema.create(MAX_ENCODED_UNCLES_LENGTH));
+    }
+
+    @Override
+    public BlockBodyPreShanghaiContainer createFromBackingNode(TreeNode node) {
+      return new BlockBodyPreShanghaiContainer(node);
+    }
+  }
+}
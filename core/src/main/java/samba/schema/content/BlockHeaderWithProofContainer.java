@@ -0,0 +1,63 @@
+package samba.schema.content;
+
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.infrastructure.ssz.collections.SszByteList;
+import tech.pegasys.teku.infrastructure.ssz.containers.Container2;
+import tech.pegasys.teku.infrastructure.ssz.containers.ContainerSchema2;
+import tech.pegasys.teku.infrastructure.ssz.schema.collections.SszByteListSchema;
+import tech.pegasys.teku.infrastructure.ssz.tree.TreeNode;
+
+/**
+ * The content of BLOCK_HEADER and BLOCK_HEADER_BY_NUMBER items: the RLP encoded header along with
+ * the proof that it is part of the canonical chain.
+ *
+ * <pre>
+ * BlockHeaderWithProof = Container(header: ByteList[MAX_HEADER_LENGTH], proof: ByteList[1024])
+ * </pre>
+ */
+public class BlockHeaderWithProofContainer
+    extends Container2<BlockHeaderWithProofContainer, SszByteList, SszByteList> {
+
+  public static final int MAX_HEADER_LENGTH = 8192;
+  public static final int MAX_HEADER_PROOF_LENGTH = 1024;
+
+  public BlockHeaderWithProofContainer(Bytes header, Bytes proof) {
+    super(
+        BlockHeaderWithProofSchema.INSTANCE,
+        SszByteListSchema.create(MAX_HEADER_LENGTH).fromBytes(header),
+        SszByteListSchema.create(MAX_HEADER_PROOF_LENGTH).fromBytes(proof));
+  }
+
+  public BlockHeaderWithProofContainer(TreeNode backingNode) {
+    super(BlockHeaderWithProofSchema.INSTANCE, backingNode);
+  }
+
+  public Bytes getHeader() {
+    return getField0().getBytes();
+  }
+
+  public Bytes getProof() {
+    return getField1().getBytes();
+  }
+
+  public static BlockHeaderWithProofContainer decode(Bytes content) {
+    return BlockHeaderWithProofSchema.INSTANCE.sszDeserialize(content);
+  }
+
+  public static class BlockHeaderWithProofSchema
+      extends ContainerSchema2<BlockHeaderWithProofContainer, SszByteList, SszByteList> {
+
+    public static final BlockHeaderWithProofSchema INSTANCE = new BlockHeaderWithProofSchema();
+
+    private BlockHeaderWithProofSchema() {
+      super(
+          SszByteListSchema.create(MAX_HEADER_LENGTH),
+          SszByteListSchema.create(MAX_HEADER_PROOF_LENGTH));
+    }
+
+    @Override
+    public BlockHeaderWithProofContainer createFromBackingNode(TreeNode node) {
+      return new BlockHeaderWithProofContainer(node);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package samba.schema.content;
+
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.infrastructure.ssz.SszList;
+import tech.pegasys.teku.infrastructure.ssz.collections.SszByteList;
+import tech.pegasys.teku.infrastructure.ssz.schema.SszListSchema;
+import tech.pegasys.teku.infrastructure.ssz.schema.collections.SszByteListSchema;
+
+/**
+ * The content of RECEIPT items: the receipts of a block, each encoded as on the eth wire protocol.
+ *
+ * <pre>
+ * Receipts = List[ByteList[MAX_RECEIPT_LENGTH], MAX_TRANSACTION_COUNT]
+ * </pre>
+ */
+public final class ReceiptsList {
+
+  public static final int MAX_RECEIPT_LENGTH = 1 << 27;
+  private static final SszByteListSchema RECEIPT_SCHEMA =
+      SszByteListSchema.create(MAX_RECEIPT_LENGTH);
+  private static final SszListSchema<SszByteList, SszList<SszByteList>> SCHEMA =
+      SszListSchema.create(RECEIPT_SCHEMA, BlockBodyPreShanghaiContainer.MAX_TRANSACTION_COUNT);
+
+  private ReceiptsList() {}
+
+  public static Bytes encode(List<Bytes> receipts) {
+    return SCHEMA
+        .createFromElements(receipts.stream().map(RECEIPT_SCHEMA::fromBytes).toList())
+        .sszSerialize();
+  }
+
+  public static List<Bytes> decode(Bytes content) {
+    return SCHEMA.sszDeserialize(content).stream().map(SszByteList::getBytes).toList();
+  }
+}
@@ -17,6 +17,7 @@ import samba.jsonrpc.reponse.JsonRpcMethod;
 import samba.network.history.HistoryNetwork;
 import samba.services.api.PortalAPI;
 import samba.services.api.PortalRestAPI;
+import samba.services.backfill.BackfillService;
 import samba.services.connecton.ConnectionService;
 import samba.services.discovery.Discv5Service;
 import samba.services.jsonrpc.JsonRpcService;
@@ -24,7 +25,11 @@ import samba.services.jsonrpc.methods.ClientVersion;
 import samba.services.jsonrpc.methods.discv5.Discv5GetEnr;
 import samba.services.jsonrpc.methods.discv5.Discv5NodeInfo;
 import samba.services.jsonrpc.methods.discv5.Discv5UpdateNodeInfo;
+import samba.services.jsonrpc.methods.history.PortalHistoryBackfillStatus;
+import samba.services.seeder.SeederService;
 import samba.services.storage.StorageService;
+import samba.services.utp.UtpService;
+import samba.storage.HistoryDB;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -61,9 +66,13 @@ public class PortalNodeMainService extends Service {
 
   private final Vertx vertx;
   private Discv5Service discoveryService;
-  private ConnectionService connectionService;
-  private HistoryNetwork historyNetwork;
   private StorageService storageService;
+  // Built on start, once the storage is started.
+  private volatile ConnectionService connectionService;
+  private volatile HistoryNetwork historyNetwork;
+  private volatile UtpService utpService;
+  private volatile Optional<SeederService> seederService = Optional.empty();
+  private volatile Optional<BackfillService> backfillService = Optional.empty();
   private final IncomingRequestHandler incomingRequestProcessor = new IncomingRequestHandler();
 
   public PortalNodeMainService(
@@ -80,10 +89,17 @@ public class PortalNodeMainService extends Service {
     this.vertx = vertx;
     initDiscoveryService();
     initStorageService();
+  }
+
+  /** The services reading or writing content, built once the storage has opened the database. */
+  private void initStorageDependentServices() {
     initHistoryNetwork();
     initConnectionService();
+    initSeederService();
+    initBackfillService();
     initRestAPI();
     initJsonRPCService();
+    this.incomingRequestProcessor.build(this.historyNetwork);
   }
 
   private void initJsonRPCService() {
@@ -102,6 +118,11 @@ public class PortalNodeMainService extends Service {
           new Discv5UpdateNodeInfo(this.discoveryService));
       methods.put(
           RpcMethod.DISCV5_GET_ENR.getMethodName(), new Discv5GetEnr(this.discoveryService));
+      backfillService.ifPresent(
+          service ->
+              methods.put(
+                  RpcMethod.PORTAL_HISTORY_BACKFILL_STATUS.getMethodName(),
+                  new PortalHistoryBackfillStatus(service)));
 
       jsonRpcService =
           Optional.of(
@@ -116,14 +137,27 @@ public class PortalNodeMainService extends Service {
 
   private void initHistoryNetwork() {
     LOG.info("PortalNodeMainService.initHistoryNetwork()");
+    this.utpService =
+        new UtpService(
+            this.discoveryService,
+            this.metricsSystem,
+            this.sambaConfiguration.getHistoryNetworkConfig().getMaxContentSizeBytes());
     // Get and initialize HistoryDB object from persistent storage
     this.historyNetwork =
-        new HistoryNetwork(this.discoveryService, this.storageService.getDatabase());
+        new HistoryNetwork(
+            this.discoveryService,
+            this.storageService.getDatabase(),
+            this.storageService.getContentValidationPipeline(),
+            this.sambaConfiguration.getStorageConfig(),
+            this.sambaConfiguration.getHistoryNetworkConfig(),
+            this.metricsSystem,
+            this.utpService);
     incomingRequestProcessor
         .addHandler(MessageType.PING, new PingHandler())
         .addHandler(MessageType.FIND_NODES, new FindNodesHandler())
         .addHandler(MessageType.FIND_CONTENT, new FindContentHandler())
-        .addHandler(MessageType.OFFER, new OfferHandler());
+        .addHandler(MessageType.OFFER, new OfferHandler())
+        .addProtocolHandler(UtpService.UTP_PROTOCOL, utpService);
   }
 
   private void initConnectionService() {
@@ -133,6 +167,34 @@ public class PortalNodeMainService extends Service {
             this.metricsSystem, this.asyncRunner, this.discoveryService, this.historyNetwork);
   }
 
+  private void initSeederService() {
+    if (sambaConfiguration.getSeederConfig().isEnabled()) {
+      LOG.info("PortalNodeMainService.initSeederService()");
+      this.seederService =
+          Optional.of(
+              new SeederService(
+                  this.metricsSystem,
+                  this.sambaConfiguration.getSeederConfig(),
+                  this.storageService.getDatabase(),
+                  this.historyNetwork,
+                  this.discoveryService.getHomeNodeRecord().getNodeId()));
+    }
+  }
+
+  private void initBackfillService() {
+    if (sambaConfiguration.getBackfillConfig().isEnabled()) {
+      LOG.info("PortalNodeMainService.initBackfillService()");
+      this.backfillService =
+          Optional.of(
+              new BackfillService(
+                  this.metricsSystem,
+                  this.sambaConfiguration.getBackfillConfig(),
+                  this.storageService.getDatabase(),
+                  this.historyNetwork,
+                  this.storageService.getContentValidationPipeline()));
+    }
+  }
+
   protected void initDiscoveryService() {
     LOG.info("PortalNodeMainService.initDiscoveryService()");
 
@@ -147,15 +209,30 @@ public class PortalNodeMainService extends Service {
 
   protected void initStorageService() {
     LOG.info("PortalNodeMainService.initStorageService()");
-    this.storageService = new StorageService(this.metricsSystem, this.asyncRunner, null);
+    this.storageService =
+        new StorageService(
+            this.metricsSystem,
+            this.asyncRunner,
+            this.sambaConfiguration.getStorageConfig(),
+            this.discoveryService.getHomeNodeRecord().getNodeId());
   }
 
   @Override
   protected SafeFuture<?> doStart() {
     LOG.debug("Starting {}", this.getClass().getSimpleName());
-    this.incomingRequestProcessor.build(this.historyNetwork);
-    return SafeFuture.allOfFailFast(discoveryService.start())
+    return storageService
+        .start()
+        .thenRun(this::initStorageDependentServices)
+        .thenCompose(__ -> discoveryService.start())
+        .thenCompose(__ -> utpService.start())
         .thenCompose(__ -> connectionService.start())
+        .thenCompose(
+            __ -> seederService.map(SeederService::start).orElse(SafeFuture.completedFuture(null)))
+        .thenCompose(
+            __ ->
+                backfillService
+                    .map(BackfillService::start)
+                    .orElse(SafeFuture.completedFuture(null)))
         .thenCompose(
             __ ->
                 jsonRpcService.map(JsonRpcService::start).orElse(SafeFuture.completedFuture(null)))
@@ -167,9 +244,24 @@ public class PortalNodeMainService extends Service {
   protected SafeFuture<?> doStop() {
     LOG.debug("Stopping {}", this.getClass().getSimpleName());
     return SafeFuture.allOf(
-        discoveryService.stop(),
-        connectionService.stop(),
-        portalRestAPI.map(PortalRestAPI::stop).orElse(SafeFuture.completedFuture(null)));
+            discoveryService.stop(),
+            utpService.stop(),
+            connectionService.stop(),
+            seederService.map(SeederService::stop).orElse(SafeFuture.completedFuture(null)),
+            backfillService.map(BackfillService::stop).orElse(SafeFuture.completedFuture(null)),
+            portalRestAPI.map(PortalRestAPI::stop).orElse(SafeFuture.completedFuture(null)))
+        .thenRun(
+            () -> {
+              if (historyNetwork != null) {
+                historyNetwork.close();
+              }
+            })
+        // The database is closed once nothing uses it anymore.
+        .thenCompose(__ -> storageService.stop());
+  }
+
+  HistoryDB getHistoryDB() {
+    return storageService.getDatabase();
   }
 
   public void initRestAPI() {
@@ -0,0 +1,397 @@
+package samba.services.backfill;
+
+import samba.config.BackfillConfig;
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
+import samba.domain.content.ContentUtil;
+import samba.metrics.SambaMetricCategory;
+import samba.network.RequestPriority;
+import samba.network.history.HistoryNetwork;
+import samba.storage.ContentValidationPipeline;
+import samba.storage.HistoryDB;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.datatypes.Hash;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+import tech.pegasys.teku.service.serviceutils.Service;
+
+/**
+ * Fills a configured range of blocks from the network instead of waiting for the content to be
+ * offered. The range is walked in windows: the headers of a window are looked up by number in
+ * parallel, then the bodies and receipts of the blocks found, and the window is validated and
+ * stored as one batch. The next block to backfill is persisted after each window so a restart
+ * resumes where the backfill stopped. Content that is already stored is not looked up again.
+ *
+ * <p>The cursor never moves past a block whose header, body or receipts could not be retrieved or
+ * stored. The backfill retries from that block after a delay instead, skipping the content of the
+ * following blocks that is stored by then.
+ */
+public class BackfillService extends Service {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+  private static final List<ContentType> BLOCK_CONTENT_TYPES =
+      List.of(ContentType.BLOCK_BODY, ContentType.RECEIPT);
+
+  private final BackfillConfig backfillConfig;
+  private final HistoryDB historyDB;
+  private final HistoryNetwork historyNetwork;
+  private final ContentValidationPipeline contentValidationPipeline;
+  private final ScheduledExecutorService executor;
+  private final LabelledMetric<Counter> contentCounter;
+  private final Counter backfilledBlocksCounter;
+  private final Counter failedWindowsCounter;
+  private final AtomicLong retrievedItems = new AtomicLong();
+  private final AtomicLong missingItems = new AtomicLong();
+  private final AtomicLong invalidItems = new AtomicLong();
+  private final AtomicLong failedWindows = new AtomicLong();
+  private final AtomicLong backfilledBlocks = new AtomicLong();
+  private volatile long cursor;
+  private volatile long startNanos;
+
+  public BackfillService(
+      final MetricsSystem metricsSystem,
+      final BackfillConfig backfillConfig,
+      final HistoryDB historyDB,
+      final HistoryNetwork historyNetwork,
+      final ContentValidationPipeline contentValidationPipeline) {
+    this.backfillConfig = backfillConfig;
+    this.historyDB = historyDB;
+    this.historyNetwork = historyNetwork;
+    this.contentValidationPipeline = contentValidationPipeline;
+    this.cursor = backfillConfig.getStartBlockNumber();
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("backfill-%d").setDaemon(true).build());
+    this.contentCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "backfill_content_total",
+            "Total number of content items looked up by the backfill",
+            "content_type",
+            "result");
+    this.backfilledBlocksCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.NETWORK,
+            "backfill_blocks_total",
+            "Total number of blocks the backfill went through");
+    this.failedWindowsCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.NETWORK,
+            "backfill_failed_windows_total",
+            "Total number of backfill windows that failed and were retried");
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.NETWORK,
+        "backfill_next_block_number",
+        "Number of the next block the backfill looks up",
+        this::getNextBlockNumber);
+  }
+
+  @Override
+  protected SafeFuture<?> doStart() {
+    cursor = loadCursor();
+    startNanos = System.nanoTime();
+    LOG.info(
+        "Starting backfill of blocks {} to {} from block {}",
+        backfillConfig.getStartBlockNumber(),
+        backfillConfig.getEndBlockNumber(),
+        cursor);
+    executor.execute(this::backfillNextWindow);
+    return SafeFuture.COMPLETE;
+  }
+
+  @Override
+  protected SafeFuture<?> doStop() {
+    executor.shutdownNow();
+    return SafeFuture.COMPLETE;
+  }
+
+  void backfillNextWindow() {
+    if (!isRunning()) {
+      return;
+    }
+    final long from = cursor;
+    if (isComplete()) {
+      LOG.info(
+          "Backfilled blocks {} to {}",
+          backfillConfig.getStartBlockNumber(),
+          backfillConfig.getEndBlockNumber());
+      return;
+    }
+    final long to =
+        Math.min(backfillConfig.getEndBlockNumber(), from + backfillConfig.getWindowSize() - 1);
+    final Map<Long, Bytes> storedBlockHashes = readStoredBlockHashes(from, to);
+    SafeFuture.collectAll(
+            LongStream.rangeClosed(from, to)
+                .mapToObj(
+                    blockNumber ->
+                        retrieveBlock(
+                            blockNumber, Optional.ofNullable(storedBlockHashes.get(blockNumber)))))
+        .thenCompose(
+            blocks ->
+                store(blocks.stream().flatMap(RetrievedBlock::entries).toList())
+                    .thenApply(rejected -> nextBlockToBackfill(blocks, rejected, to + 1)))
+        .thenAccept(
+            next -> {
+              backfilledBlocks.addAndGet(next - from);
+              backfilledBlocksCounter.inc(next - from);
+              updateCursor(next);
+              if (next > to) {
+                executor.execute(this::backfillNextWindow);
+                return;
+              }
+              LOG.debug("Block {} not fully backfilled, retrying in {}", next, RETRY_DELAY);
+              executor.schedule(
+                  this::backfillNextWindow, RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+            })
+        .finish(
+            error -> {
+              LOG.warn("Backfill of blocks {} to {} failed, retrying in {}", from, to, RETRY_DELAY);
+              LOG.debug("Backfill failure", error);
+              failedWindows.incrementAndGet();
+              failedWindowsCounter.inc();
+              executor.schedule(
+                  this::backfillNextWindow, RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+            });
+  }
+
+  /**
+   * The cursor only moves past blocks whose content is all stored. The lowest block with a header,
+   * body or receipts missing or rejected is retried from the next window.
+   */
+  private static long nextBlockToBackfill(
+      final List<RetrievedBlock> blocks, final Set<ContentEntry> rejected, final long end) {
+    return blocks.stream()
+        .filter(block -> !block.isComplete(rejected))
+        .mapToLong(RetrievedBlock::blockNumber)
+        .min()
+        .orElse(end);
+  }
+
+  /** Reads the block hashes of a window already indexed with a single scan of the index. */
+  private Map<Long, Bytes> readStoredBlockHashes(final long from, final long to) {
+    try (Stream<Pair<Bytes, Bytes>> index = historyDB.streamBlockHashesByBlockNumber(from, to)) {
+      return index.collect(
+          Collectors.toMap(
+              entry -> entry.getKey().toLong(ByteOrder.LITTLE_ENDIAN), Pair::getValue));
+    }
+  }
+
+  private SafeFuture<RetrievedBlock> retrieveBlock(
+      final long blockNumber, final Optional<Bytes> storedBlockHash) {
+    final Bytes blockNumberKey = Bytes.ofUnsignedLong(blockNumber, ByteOrder.LITTLE_ENDIAN);
+    if (storedBlockHash.isPresent()) {
+      return retrieveBlockContent(storedBlockHash.get())
+          .thenApply(content -> new RetrievedBlock(blockNumber, true, Optional.empty(), content));
+    }
+    final Bytes headerKey = contentKey(ContentType.BLOCK_HEADER_BY_NUMBER, blockNumberKey);
+    return retrieve(headerKey)
+        .thenCompose(
+            header -> {
+              final Optional<Hash> blockHash =
+                  header.flatMap(
+                      value -> ContentUtil.createBlockHashFromSSZBytes(value.toArrayUnsafe()));
+              if (blockHash.isEmpty()) {
+                header.ifPresent(__ -> countInvalid(headerKey));
+                return SafeFuture.completedFuture(
+                    new RetrievedBlock(blockNumber, false, Optional.empty(), List.of()));
+              }
+              final ContentEntry headerEntry = new ContentEntry(headerKey, header.get());
+              return retrieveBlockContent(blockHash.get())
+                  .thenApply(
+                      content ->
+                          new RetrievedBlock(blockNumber, true, Optional.of(headerEntry), content));
+            });
+  }
+
+  /**
+   * Looks up the bodies and receipts of a block that are not stored yet, checked with the distance
+   * index so the stored content is not read.
+   *
+   * @return the content looked up, empty where the network could not serve it
+   */
+  private SafeFuture<List<Optional<ContentEntry>>> retrieveBlockContent(final Bytes blockHash) {
+    final Stream<SafeFuture<Optional<ContentEntry>>> lookups =
+        BLOCK_CONTENT_TYPES.stream()
+            .filter(contentType -> historyDB.getContentSize(contentType, blockHash).isEmpty())
+            .map(contentType -> contentKey(contentType, blockHash))
+            .map(
+                contentKey ->
+                    retrieve(contentKey)
+                        .thenApply(
+                            content -> content.map(value -> new ContentEntry(contentKey, value))));
+    return SafeFuture.collectAll(lookups);
+  }
+
+  private SafeFuture<Optional<Bytes>> retrieve(final Bytes contentKey) {
+    final String contentType = ContentType.fromContentKey(contentKey).name();
+    return historyNetwork
+        .retrieveContent(contentKey, RequestPriority.NORMAL)
+        .thenApply(
+            content -> {
+              if (content.isPresent()) {
+                retrievedItems.incrementAndGet();
+                contentCounter.labels(contentType, "retrieved").inc();
+              } else {
+                missingItems.incrementAndGet();
+                contentCounter.labels(contentType, "missing").inc();
+              }
+              return content;
+            });
+  }
+
+  /**
+   * Validates and stores the content of a window.
+   *
+   * @return the entries that were not stored
+   */
+  private SafeFuture<Set<ContentEntry>> store(final List<ContentEntry> batch) {
+    if (batch.isEmpty()) {
+      return SafeFuture.completedFuture(Set.of());
+    }
+    return contentValidationPipeline
+        .submit(batch)
+        .thenApply(
+            stored -> {
+              final Set<ContentEntry> rejected = new HashSet<>();
+              for (int i = 0; i < batch.size(); i++) {
+                if (!stored.get(i)) {
+                  rejected.add(batch.get(i));
+                  countInvalid(batch.get(i).contentKey());
+                }
+              }
+              return rejected;
+            });
+  }
+
+  private void countInvalid(final Bytes contentKey) {
+    invalidItems.incrementAndGet();
+    contentCounter.labels(ContentType.fromContentKey(contentKey).name(), "invalid").inc();
+  }
+
+  private static Bytes contentKey(final ContentType contentType, final Bytes key) {
+    return Bytes.concatenate(Bytes.of(contentType.getByteValue()), key);
+  }
+
+  private long loadCursor() {
+    final Path cursorFile = backfillConfig.getCursorFile();
+    final long start = backfillConfig.getStartBlockNumber();
+    if (!Files.exists(cursorFile)) {
+      return start;
+    }
+    try {
+      final long saved =
+          Long.parseLong(Files.readString(cursorFile, StandardCharsets.UTF_8).trim());
+      // A cursor outside the range belongs to a previous range, which starts over.
+      return saved >= start && saved <= backfillConfig.getEndBlockNumber() + 1 ? saved : start;
+    } catch (IOException | NumberFormatException e) {
+      LOG.warn("Could not read the backfill cursor from {}, starting over", cursorFile, e);
+      return start;
+    }
+  }
+
+  private void updateCursor(final long nextBlockNumber) {
+    final Path cursorFile = backfillConfig.getCursorFile();
+    final Path tempFile = cursorFile.resolveSibling(cursorFile.getFileName() + ".tmp");
+    try {
+      Files.writeString(tempFile, Long.toString(nextBlockNumber), StandardCharsets.UTF_8);
+      Files.move(
+          tempFile,
+          cursorFile,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Could not persist the backfill cursor to {}", cursorFile, e);
+    }
+    cursor = nextBlockNumber;
+  }
+
+  /**
+   * The content retrieved for a block.
+   *
+   * @param headerFound whether the block hash is known, from the index or a retrieved header
+   * @param header the retrieved header, to be stored along with the content
+   * @param content the bodies and receipts looked up, empty where the network could not serve them
+   */
+  private record RetrievedBlock(
+      long blockNumber,
+      boolean headerFound,
+      Optional<ContentEntry> header,
+      List<Optional<ContentEntry>> content) {
+
+    Stream<ContentEntry> entries() {
+      return Stream.concat(header.stream(), content.stream().flatMap(Optional::stream));
+    }
+
+    boolean isComplete(final Set<ContentEntry> rejected) {
+      return headerFound
+          && content.stream().allMatch(Optional::isPresent)
+          && entries().noneMatch(rejected::contains);
+    }
+  }
+
+  public BackfillConfig getBackfillConfig() {
+    return backfillConfig;
+  }
+
+  public long getNextBlockNumber() {
+    return cursor;
+  }
+
+  public boolean isComplete() {
+    return cursor > backfillConfig.getEndBlockNumber();
+  }
+
+  public long getRetrievedItems() {
+    return retrievedItems.get();
+  }
+
+  public long getMissingItems() {
+    return missingItems.get();
+  }
+
+  public long getInvalidItems() {
+    return invalidItems.get();
+  }
+
+  public long getFailedWindows() {
+    return failedWindows.get();
+  }
+
+  /**
+   * Blocks backfilled per second since the service started.
+   *
+   * @return the backfill throughput
+   */
+  public double getBlocksPerSecond() {
+    final double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+    return elapsedSeconds > 0 ? backfilledBlocks.get() / elapsedSeconds : 0;
+  }
+}
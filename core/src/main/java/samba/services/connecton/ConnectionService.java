@@ -95,22 +95,27 @@ public class ConnectionService extends Service {
   }
 
   private void connectToPeers(final NodeRecord nodeRecord) {
-    LOG.trace("Attempting to connect to {}", nodeRecord.getNodeId());
-
-    attemptedConnectionCounter.inc();
+    // Verification is bounded and de-duplicated by the network's node intake queue.
     network
-        .connect(nodeRecord)
-        .finish(
-            peer -> {
-              LOG.info("Successfully connected to node {}", nodeRecord.getNodeId());
-              successfulConnectionCounter.inc();
-              //                    peer.subscribeDisconnect((reason, locallyInitiated) ->
-              // peerPools.forgetPeer(peer.getId()));
-            },
-            error -> {
-              LOG.trace(() -> "Failed to connect to node: " + nodeRecord.getNodeId());
-              failedConnectionCounter.inc();
-              //                    peerPools.forgetPeer(peerAddress.getId());
+        .addNodeCandidate(nodeRecord)
+        .ifPresent(
+            verification -> {
+              LOG.trace("Attempting to connect to {}", nodeRecord.getNodeId());
+              attemptedConnectionCounter.inc();
+              verification.finish(
+                  verified -> {
+                    if (verified) {
+                      LOG.info("Successfully connected to node {}", nodeRecord.getNodeId());
+                      successfulConnectionCounter.inc();
+                    } else {
+                      LOG.trace(() -> "Failed to connect to node: " + nodeRecord.getNodeId());
+                      failedConnectionCounter.inc();
+                    }
+                  },
+                  error -> {
+                    LOG.trace(() -> "Failed to connect to node: " + nodeRecord.getNodeId());
+                    failedConnectionCounter.inc();
+                  });
             });
   }
 
@@ -0,0 +1,39 @@
+package samba.services.jsonrpc.methods.history;
+
+import samba.jsonrpc.config.RpcMethod;
+import samba.jsonrpc.reponse.JsonRpcMethod;
+import samba.jsonrpc.reponse.JsonRpcRequestContext;
+import samba.jsonrpc.reponse.JsonRpcResponse;
+import samba.jsonrpc.reponse.JsonRpcSuccessResponse;
+import samba.services.backfill.BackfillService;
+import samba.services.jsonrpc.methods.results.BackfillStatus;
+
+public class PortalHistoryBackfillStatus implements JsonRpcMethod {
+
+  private final BackfillService backfillService;
+
+  public PortalHistoryBackfillStatus(BackfillService backfillService) {
+    this.backfillService = backfillService;
+  }
+
+  @Override
+  public String getName() {
+    return RpcMethod.PORTAL_HISTORY_BACKFILL_STATUS.getMethodName();
+  }
+
+  @Override
+  public JsonRpcResponse response(JsonRpcRequestContext requestContext) {
+    BackfillStatus backfillStatus =
+        new BackfillStatus(
+            backfillService.getBackfillConfig().getStartBlockNumber(),
+            backfillService.getBackfillConfig().getEndBlockNumber(),
+            backfillService.getNextBlockNumber(),
+            backfillService.isComplete(),
+            backfillService.getBlocksPerSecond(),
+            backfillService.getRetrievedItems(),
+            backfillService.getMissingItems(),
+            backfillService.getInvalidItems(),
+            backfillService.getFailedWindows());
+    return new JsonRpcSuccessResponse(requestContext.getRequest().getId(), backfillStatus);
+  }
+}
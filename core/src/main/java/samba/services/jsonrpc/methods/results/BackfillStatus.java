@@ -0,0 +1,94 @@
+package samba.services.jsonrpc.methods.results;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+@JsonPropertyOrder({
+  "startBlock",
+  "endBlock",
+  "nextBlock",
+  "complete",
+  "blocksPerSecond",
+  "retrievedItems",
+  "missingItems",
+  "invalidItems",
+  "failedWindows"
+})
+public class BackfillStatus {
+
+  private final long startBlock;
+  private final long endBlock;
+  private final long nextBlock;
+  private final boolean complete;
+  private final double blocksPerSecond;
+  private final long retrievedItems;
+  private final long missingItems;
+  private final long invalidItems;
+  private final long failedWindows;
+
+  public BackfillStatus(
+      long startBlock,
+      long endBlock,
+      long nextBlock,
+      boolean complete,
+      double blocksPerSecond,
+      long retrievedItems,
+      long missingItems,
+      long invalidItems,
+      long failedWindows) {
+    this.startBlock = startBlock;
+    this.endBlock = endBlock;
+    this.nextBlock = nextBlock;
+    this.complete = complete;
+    this.blocksPerSecond = blocksPerSecond;
+    this.retrievedItems = retrievedItems;
+    this.missingItems = missingItems;
+    this.invalidItems = invalidItems;
+    this.failedWindows = failedWindows;
+  }
+
+  @JsonGetter(value = "startBlock")
+  public long getStartBlock() {
+    return startBlock;
+  }
+
+  @JsonGetter(value = "endBlock")
+  public long getEndBlock() {
+    return endBlock;
+  }
+
+  @JsonGetter(value = "nextBlock")
+  public long getNextBlock() {
+    return nextBlock;
+  }
+
+  @JsonGetter(value = "complete")
+  public boolean isComplete() {
+    return complete;
+  }
+
+  @JsonGetter(value = "blocksPerSecond")
+  public double getBlocksPerSecond() {
+    return blocksPerSecond;
+  }
+
+  @JsonGetter(value = "retrievedItems")
+  public long getRetrievedItems() {
+    return retrievedItems;
+  }
+
+  @JsonGetter(value = "missingItems")
+  public long getMissingItems() {
+    return missingItems;
+  }
+
+  @JsonGetter(value = "invalidItems")
+  public long getInvalidItems() {
+    return invalidItems;
+  }
+
+  @JsonGetter(value = "failedWindows")
+  public long getFailedWindows() {
+    return failedWindows;
+  }
+}
@@ -0,0 +1,215 @@
+package samba.services.seeder;
+
+import samba.config.SeederConfig;
+import samba.domain.content.ContentDistance;
+import samba.domain.content.ContentType;
+import samba.domain.messages.PortalWireMessage;
+import samba.domain.messages.requests.Offer;
+import samba.metrics.SambaMetricCategory;
+import samba.network.RequestPriority;
+import samba.network.history.HistoryNetwork;
+import samba.storage.HistoryDB;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+import tech.pegasys.teku.service.serviceutils.Service;
+
+/**
+ * Pushes the stored content into the network. Content is walked in distance index order, each item
+ * is offered to the closest peers whose radius covers it, and offers are batched per peer up to
+ * {@link PortalWireMessage#MAX_KEYS} keys. Offers are sent at low priority, so they only use the
+ * in-flight slots lookups leave free, and a round waits for its offers to be answered before the
+ * next one starts. The distance of the last offered item is persisted after each round so a
+ * restart resumes where the seeder stopped.
+ */
+public class SeederService extends Service {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int ROUND_SIZE = 1024;
+  private static final Duration IDLE_INTERVAL = Duration.ofMinutes(10);
+
+  private final SeederConfig seederConfig;
+  private final HistoryDB historyDB;
+  private final HistoryNetwork historyNetwork;
+  private final Bytes localNodeId;
+  private final RateLimiter itemRateLimiter;
+  private final RateLimiter byteRateLimiter;
+  private final ScheduledExecutorService executor;
+  private final Counter offeredContentCounter;
+  private final Counter acceptedContentCounter;
+  private volatile UInt256 cursor = UInt256.ZERO;
+
+  public SeederService(
+      final MetricsSystem metricsSystem,
+      final SeederConfig seederConfig,
+      final HistoryDB historyDB,
+      final HistoryNetwork historyNetwork,
+      final Bytes localNodeId) {
+    this.seederConfig = seederConfig;
+    this.historyDB = historyDB;
+    this.historyNetwork = historyNetwork;
+    this.localNodeId = localNodeId;
+    this.itemRateLimiter = RateLimiter.create(seederConfig.getItemsPerSecond());
+    this.byteRateLimiter = RateLimiter.create(seederConfig.getBytesPerSecond());
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("seeder-%d").setDaemon(true).build());
+    this.offeredContentCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.NETWORK,
+            "seeder_offered_content_total",
+            "Total number of content keys offered to peers by the seeder");
+    this.acceptedContentCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.NETWORK,
+            "seeder_accepted_content_total",
+            "Total number of content keys offered by the seeder that peers accepted");
+  }
+
+  @Override
+  protected SafeFuture<?> doStart() {
+    cursor = loadCursor();
+    LOG.info("Starting seeder from distance {}", cursor);
+    executor.execute(this::seedNextRound);
+    return SafeFuture.COMPLETE;
+  }
+
+  @Override
+  protected SafeFuture<?> doStop() {
+    executor.shutdownNow();
+    return SafeFuture.COMPLETE;
+  }
+
+  void seedNextRound() {
+    if (!isRunning()) {
+      return;
+    }
+    final List<Bytes> contentKeys;
+    // Content at distance zero would need a content id equal to the node id, so it is skipped.
+    try (Stream<Bytes> stored = historyDB.streamContentKeysOutsideRadius(cursor)) {
+      contentKeys = stored.limit(ROUND_SIZE).toList();
+    }
+    if (contentKeys.isEmpty()) {
+      LOG.info("Offered all stored content, starting over in {}", IDLE_INTERVAL);
+      executor.schedule(
+          () -> {
+            updateCursor(UInt256.ZERO);
+            seedNextRound();
+          },
+          IDLE_INTERVAL.toMillis(),
+          TimeUnit.MILLISECONDS);
+      return;
+    }
+    final List<SafeFuture<Void>> offers = new ArrayList<>();
+    final Map<Bytes, List<Bytes>> pendingOffers = new HashMap<>();
+    final Map<Bytes, NodeRecord> peers = new HashMap<>();
+    final Map<Bytes, List<NodeRecord>> interestedPeersByKey =
+        historyNetwork.getClosestInterestedNodes(contentKeys, seederConfig.getPeersPerContent());
+    for (Bytes contentKey : contentKeys) {
+      final int size =
+          historyDB
+              .getContentSize(ContentType.fromContentKey(contentKey), contentKey.slice(1))
+              .orElse(0);
+      if (size == 0) {
+        continue; // evicted since the round started
+      }
+      final List<NodeRecord> interestedPeers = interestedPeersByKey.get(contentKey);
+      if (interestedPeers.isEmpty()) {
+        continue;
+      }
+      itemRateLimiter.acquire();
+      // Large receipts offered to many peers would overflow an int.
+      byteRateLimiter.acquire(
+          (int) Math.min(Integer.MAX_VALUE, (long) size * interestedPeers.size()));
+      for (NodeRecord peer : interestedPeers) {
+        peers.put(peer.getNodeId(), peer);
+        final List<Bytes> keys =
+            pendingOffers.computeIfAbsent(peer.getNodeId(), __ -> new ArrayList<>());
+        keys.add(contentKey);
+        if (keys.size() == PortalWireMessage.MAX_KEYS) {
+          offers.add(offer(peer, pendingOffers.remove(peer.getNodeId())));
+        }
+      }
+    }
+    pendingOffers.forEach((nodeId, keys) -> offers.add(offer(peers.get(nodeId), keys)));
+    final UInt256 lastDistance =
+        ContentDistance.distanceFromContentKey(contentKeys.getLast(), localNodeId);
+    SafeFuture.allOf(offers.toArray(SafeFuture[]::new))
+        .alwaysRun(
+            () -> {
+              updateCursor(lastDistance);
+              executor.execute(this::seedNextRound);
+            })
+        .finish(error -> LOG.debug("Seeding round failed", error));
+  }
+
+  private SafeFuture<Void> offer(final NodeRecord peer, final List<Bytes> contentKeys) {
+    offeredContentCounter.inc(contentKeys.size());
+    return historyNetwork
+        .offer(peer, new Offer(contentKeys), RequestPriority.LOW)
+        .thenAccept(
+            accept ->
+                accept.ifPresent(
+                    answer ->
+                        acceptedContentCounter.inc(
+                            BitSet.valueOf(answer.getContentKeys().toArrayUnsafe())
+                                .cardinality())));
+  }
+
+  private UInt256 loadCursor() {
+    final Path cursorFile = seederConfig.getCursorFile();
+    if (!Files.exists(cursorFile)) {
+      return UInt256.ZERO;
+    }
+    try {
+      return UInt256.fromHexString(Files.readString(cursorFile, StandardCharsets.UTF_8).trim());
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.warn("Could not read the seeder cursor from {}, starting over", cursorFile, e);
+      return UInt256.ZERO;
+    }
+  }
+
+  private void updateCursor(final UInt256 distance) {
+    cursor = distance;
+    final Path cursorFile = seederConfig.getCursorFile();
+    final Path tempFile = cursorFile.resolveSibling(cursorFile.getFileName() + ".tmp");
+    try {
+      Files.writeString(tempFile, distance.toHexString(), StandardCharsets.UTF_8);
+      Files.move(
+          tempFile,
+          cursorFile,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Could not persist the seeder cursor to {}", cursorFile, e);
+    }
+  }
+
+  UInt256 getCursor() {
+    return cursor;
+  }
+}
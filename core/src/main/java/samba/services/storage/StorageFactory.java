@@ -1,6 +1,8 @@
 package samba.services.storage;
 
+import samba.config.StorageConfig;
 import samba.storage.HistoryRocksDB;
+import samba.storage.rocksdb.RocksDBConfiguration;
 import samba.storage.rocksdb.RocksDBMetricsFactory;
 
 import java.io.File;
@@ -9,6 +11,7 @@ import java.nio.file.Path;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 
 public class StorageFactory {
@@ -22,9 +25,17 @@ public class StorageFactory {
   private final File dbDirectory;
 
   private final MetricsSystem metricsSystem;
+  private final StorageConfig storageConfig;
+  private final Bytes localNodeId;
 
-  public StorageFactory(final MetricsSystem metricsSystem, final Path dataDirectory) {
+  public StorageFactory(
+      final MetricsSystem metricsSystem,
+      final StorageConfig storageConfig,
+      final Path dataDirectory,
+      final Bytes localNodeId) {
     this.metricsSystem = metricsSystem;
+    this.storageConfig = storageConfig;
+    this.localNodeId = localNodeId;
     this.dataDirectory = dataDirectory.toFile();
     this.dbDirectory = this.dataDirectory.toPath().resolve(DB_PATH).toFile();
   }
@@ -35,15 +46,24 @@ public class StorageFactory {
     createDirectories();
     // TODO do we need versions, and a metadata file ?
     return new HistoryRocksDB(
-        this.dataDirectory.toPath(),
+        RocksDBConfiguration.create(
+            this.dataDirectory.toPath(),
+            storageConfig.getDatabaseMemoryBudgetBytes(),
+            storageConfig.isCacheIndexAndFilterBlocks(),
+            storageConfig.getDatabaseWalSyncPolicy(),
+            storageConfig.getDatabaseWalSyncInterval(),
+            storageConfig.getDatabaseCommitWindow()),
         this.metricsSystem,
-        RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+        RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS,
+        this.localNodeId,
+        storageConfig.getWriteBehindBufferBytes());
   }
 
   private void validateDataPaths() {
-    if (dbDirectory.exists()) {
+    // An existing database is opened again on restart.
+    if (dbDirectory.exists() && !dbDirectory.isDirectory()) {
       throw DatabaseStorageException.unrecoverable(
-          String.format("The database path %s exists.", dataDirectory.getAbsolutePath()));
+          String.format("The database path %s is not a directory.", dbDirectory.getAbsolutePath()));
     }
   }
 
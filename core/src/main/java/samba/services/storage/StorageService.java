@@ -1,12 +1,18 @@
 package samba.services.storage;
 
 import samba.config.StorageConfig;
+import samba.storage.CachedHistoryDB;
+import samba.storage.ContentValidationPipeline;
+import samba.storage.HistoryDB;
 import samba.storage.HistoryRocksDB;
+import samba.storage.era1.Era1Exporter;
+import samba.storage.era1.Era1Importer;
 
-import java.nio.file.Paths;
+import java.nio.file.Path;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 import tech.pegasys.teku.infrastructure.async.AsyncRunner;
 import tech.pegasys.teku.infrastructure.async.SafeFuture;
@@ -17,15 +23,21 @@ public class StorageService extends Service {
   private final StorageConfig storageConfig;
   private final AsyncRunner asyncRunner;
   private final MetricsSystem metricsSystem;
+  private final Bytes localNodeId;
 
   private volatile HistoryRocksDB database;
+  private volatile HistoryDB historyDB;
+  private volatile ContentValidationPipeline contentValidationPipeline;
+  private volatile Era1Importer era1Importer;
   private static final Logger LOG = LogManager.getLogger();
 
   public StorageService(
       final MetricsSystem metricsSystem,
       final AsyncRunner asyncRunner,
-      final StorageConfig storageConfig) {
+      final StorageConfig storageConfig,
+      final Bytes localNodeId) {
     this.storageConfig = storageConfig;
+    this.localNodeId = localNodeId;
     this.asyncRunner = asyncRunner;
     this.metricsSystem = metricsSystem;
   }
@@ -34,17 +46,70 @@ public class StorageService extends Service {
   protected SafeFuture<?> doStart() {
     return SafeFuture.fromRunnable(
         () -> {
-          StorageFactory storageFactory = new StorageFactory(this.metricsSystem, Paths.get(""));
+          StorageFactory storageFactory =
+              new StorageFactory(
+                  this.metricsSystem,
+                  this.storageConfig,
+                  this.storageConfig.getDataDirectory(),
+                  this.localNodeId);
           database = storageFactory.create();
+          historyDB =
+              storageConfig.getContentCacheSizeBytes() > 0
+                  ? new CachedHistoryDB(
+                      database, storageConfig.getContentCacheSizeBytes(), metricsSystem)
+                  : database;
+          contentValidationPipeline = new ContentValidationPipeline(historyDB, metricsSystem);
+          final SafeFuture<Void> imported =
+              storageConfig
+                  .getEra1ImportDirectory()
+                  .map(this::importEra1Archives)
+                  .orElse(SafeFuture.COMPLETE);
+          // The export walks the block number index, which the import populates.
+          storageConfig
+              .getEra1ExportDirectory()
+              .ifPresent(directory -> imported.alwaysRun(() -> exportEra1Archives(directory)));
         });
   }
 
   @Override
   protected SafeFuture<?> doStop() {
-    return SafeFuture.fromRunnable(database::close);
+    return SafeFuture.fromRunnable(
+        () -> {
+          if (era1Importer != null) {
+            era1Importer.close();
+          }
+          contentValidationPipeline.close();
+          database.close();
+        });
+  }
+
+  private void exportEra1Archives(final Path directory) {
+    // Export from the database itself so the scan does not evict the cached hot content.
+    final Era1Exporter exporter =
+        new Era1Exporter(
+            database, storageConfig.getEra1ExportRateLimitBytesPerSecond(), metricsSystem);
+    asyncRunner
+        .runAsync(() -> exporter.export(directory))
+        .finish(error -> LOG.error("Export of era1 archives to {} failed", directory, error));
+  }
+
+  private SafeFuture<Void> importEra1Archives(final Path directory) {
+    era1Importer = new Era1Importer(contentValidationPipeline, metricsSystem);
+    final SafeFuture<Void> imported =
+        asyncRunner.runAsync(
+            () -> {
+              final long importedBlocks = era1Importer.importDirectory(directory);
+              LOG.info("Imported {} blocks from era1 archives in {}", importedBlocks, directory);
+            });
+    imported.finish(error -> LOG.error("Import of era1 archives from {} failed", directory, error));
+    return imported;
+  }
+
+  public HistoryDB getDatabase() {
+    return this.historyDB;
   }
 
-  public HistoryRocksDB getDatabase() {
-    return this.database;
+  public ContentValidationPipeline getContentValidationPipeline() {
+    return this.contentValidationPipeline;
   }
 }
@@ -0,0 +1,67 @@
+package samba.services.utp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.MutableBytes;
+
+/**
+ * The content items of an OFFER sent over a single uTP stream, each prefixed with its length as an
+ * unsigned LEB128 varint.
+ */
+public final class ContentItems {
+
+  private ContentItems() {}
+
+  public static Bytes encode(List<Bytes> items) {
+    int size = 0;
+    for (Bytes item : items) {
+      size += varintSize(item.size()) + item.size();
+    }
+    final MutableBytes encoded = MutableBytes.create(size);
+    int offset = 0;
+    for (Bytes item : items) {
+      int length = item.size();
+      while (length >= 0x80) {
+        encoded.set(offset++, (byte) (length & 0x7F | 0x80));
+        length >>>= 7;
+      }
+      encoded.set(offset++, (byte) length);
+      item.copyTo(encoded, offset);
+      offset += item.size();
+    }
+    return encoded;
+  }
+
+  public static List<Bytes> decode(Bytes encoded) {
+    final List<Bytes> items = new ArrayList<>();
+    int offset = 0;
+    while (offset < encoded.size()) {
+      long length = 0;
+      int shift = 0;
+      int b;
+      do {
+        checkArgument(offset < encoded.size() && shift < 32, "Invalid content item length");
+        b = encoded.get(offset++) & 0xFF;
+        length |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      checkArgument(length <= encoded.size() - offset, "Content item longer than the stream");
+      items.add(encoded.slice(offset, (int) length));
+      offset += (int) length;
+    }
+    return items;
+  }
+
+  private static int varintSize(int value) {
+    int size = 1;
+    while (value >= 0x80) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+}
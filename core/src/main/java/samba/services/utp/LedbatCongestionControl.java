@@ -0,0 +1,90 @@
+package samba.services.utp;
+
+/**
+ * LEDBAT congestion window (RFC 6817), as used by libutp. The window grows while the one way delay
+ * measured by the peer stays below the target above the base delay, and shrinks as soon as the
+ * queueing it causes goes beyond it, so bulk transfers yield to interactive traffic. A loss halves
+ * the window and a retransmission timeout resets it to a single packet.
+ *
+ * <p>LEDBAT alone adds at most a few packets per round trip, which would take minutes to fill a
+ * long path. Until the first loss, or until the queueing delay reaches half the target, the window
+ * grows by the bytes acknowledged instead, doubling every round trip.
+ */
+class LedbatCongestionControl {
+
+  static final long TARGET_DELAY_MICROS = 100_000;
+  static final long MAX_WINDOW_INCREASE_BYTES_PER_RTT = 3000;
+  static final long MAX_WINDOW_BYTES = 4L * 1024 * 1024;
+
+  private static final long BASE_DELAY_BUCKET_MICROS = 60_000_000;
+  private static final long MAX_DELAY_MICROS = 0xFFFFFFFFL;
+
+  private final long minWindowBytes;
+  // Minimum delay of the current minute and of the previous one, so the base delay follows route
+  // changes after at most two minutes.
+  private long currentBucketMinDelay = MAX_DELAY_MICROS;
+  private long previousBucketMinDelay = MAX_DELAY_MICROS;
+  private long currentBucketStartMicros = -1;
+  private long windowBytes;
+  private boolean slowStart = true;
+
+  LedbatCongestionControl(int packetBytes) {
+    this.minWindowBytes = packetBytes;
+    this.windowBytes = 2L * packetBytes;
+  }
+
+  /**
+   * Grows or shrinks the window after an ACK.
+   *
+   * @param bytesAcked the bytes newly acknowledged by the ACK
+   * @param delayMicros the one way delay of the acknowledged packets measured by the peer
+   * @param nowMicros the current time
+   */
+  void onAck(long bytesAcked, long delayMicros, long nowMicros) {
+    if (bytesAcked <= 0) {
+      return;
+    }
+    updateBaseDelay(delayMicros, nowMicros);
+    final long queuingDelay = delayMicros - getBaseDelayMicros();
+    if (slowStart && queuingDelay < TARGET_DELAY_MICROS / 2) {
+      windowBytes = Math.min(windowBytes + bytesAcked, MAX_WINDOW_BYTES);
+      return;
+    }
+    slowStart = false;
+    final double delayFactor =
+        (double) (TARGET_DELAY_MICROS - queuingDelay) / (double) TARGET_DELAY_MICROS;
+    final double windowFactor =
+        (double) Math.min(bytesAcked, windowBytes) / (double) Math.max(bytesAcked, windowBytes);
+    final long increase = (long) (MAX_WINDOW_INCREASE_BYTES_PER_RTT * windowFactor * delayFactor);
+    windowBytes = Math.clamp(windowBytes + increase, minWindowBytes, MAX_WINDOW_BYTES);
+  }
+
+  void onLoss() {
+    slowStart = false;
+    windowBytes = Math.max(windowBytes / 2, minWindowBytes);
+  }
+
+  void onTimeout() {
+    slowStart = false;
+    windowBytes = minWindowBytes;
+  }
+
+  long getWindowBytes() {
+    return windowBytes;
+  }
+
+  long getBaseDelayMicros() {
+    return Math.min(currentBucketMinDelay, previousBucketMinDelay);
+  }
+
+  private void updateBaseDelay(long delayMicros, long nowMicros) {
+    if (currentBucketStartMicros < 0) {
+      currentBucketStartMicros = nowMicros;
+    } else if (nowMicros - currentBucketStartMicros >= BASE_DELAY_BUCKET_MICROS) {
+      previousBucketMinDelay = currentBucketMinDelay;
+      currentBucketMinDelay = MAX_DELAY_MICROS;
+      currentBucketStartMicros = nowMicros;
+    }
+    currentBucketMinDelay = Math.min(currentBucketMinDelay, delayMicros);
+  }
+}
@@ -1,12 +1,40 @@
 package samba.services.utp;
 
+import java.util.Optional;
+
 import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
 import tech.pegasys.teku.infrastructure.async.SafeFuture;
 
+/**
+ * uTP streams used to transfer content too large for a TALKRESP. The node that answers a
+ * FIND_CONTENT or an OFFER listens on a connection id it hands to the peer in its CONTENT or ACCEPT
+ * message, and the peer connects to it.
+ */
 public interface UTP {
-  public SafeFuture<?> connect(int connectionId);
 
-  public SafeFuture<?> sendContent(int connectionId, Bytes content);
+  /**
+   * Reserves a connection id for the peer to connect to.
+   *
+   * @param peer the node expected to connect
+   * @return the connection id, empty if no more connections can be opened
+   */
+  public Optional<Integer> listen(NodeRecord peer);
+
+  public SafeFuture<?> connect(NodeRecord peer, int connectionId);
+
+  /**
+   * Writes the content on the connection then closes it. On a listening connection the content is
+   * sent once the peer connects.
+   *
+   * @return a future completed once the peer acknowledged the whole content
+   */
+  public SafeFuture<?> sendContent(NodeRecord peer, int connectionId, Bytes content);
 
-  public SafeFuture<Bytes> getContent(int connectionId);
+  /**
+   * Reads the content of the connection until the peer closes it.
+   *
+   * @return the content sent on the connection
+   */
+  public SafeFuture<Bytes> getContent(NodeRecord peer, int connectionId);
 }
@@ -0,0 +1,603 @@
+package samba.services.utp;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.MutableBytes;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * One uTP stream with a peer. The sender keeps the packets in flight until they are acknowledged,
+ * cumulatively or by a selective ACK, sends as much as the LEDBAT window and the peer receive
+ * window allow, and resends a packet when three packets sent after it were selectively
+ * acknowledged or when the retransmission timeout expires. The receiver reorders the packets,
+ * acknowledges each of them and reports the ones received past a gap in a selective ACK. A stream
+ * growing past the maximum content size is reset.
+ *
+ * <p>Portal streams carry content one way, so a connection is either written or read, then closed
+ * by a FIN from the writer. A closed connection lingers for a while to acknowledge a FIN sent again
+ * because its ACK was lost.
+ */
+class UtpConnection {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  static final int MAX_PAYLOAD_BYTES = 1024;
+  static final long RECEIVE_WINDOW_BYTES = 1024 * 1024;
+  static final Duration IDLE_TIMEOUT = Duration.ofSeconds(20);
+  static final Duration LINGER = Duration.ofSeconds(5);
+
+  private static final int SEQ_MASK = 0xFFFF;
+  private static final int MAX_TRANSMISSIONS = 6;
+  private static final int FAST_RESEND_THRESHOLD = 3;
+  private static final int MAX_SELECTIVE_ACK_BYTES = 32;
+  private static final long INITIAL_RTO_MILLIS = 1000;
+  private static final long MIN_RTO_MILLIS = 500;
+  private static final long MAX_RTO_MILLIS = 30_000;
+  private static final Random RANDOM = new Random();
+
+  enum State {
+    AWAITING_SYN,
+    SYN_SENT,
+    CONNECTED,
+    CLOSED
+  }
+
+  private static class OutgoingPacket {
+    private final UtpPacketType type;
+    private final int seqNr;
+    private final Bytes payload;
+    private long sentAtMicros;
+    private int transmissions;
+    private boolean fastResent;
+
+    private OutgoingPacket(UtpPacketType type, int seqNr, Bytes payload) {
+      this.type = type;
+      this.seqNr = seqNr;
+      this.payload = payload;
+    }
+  }
+
+  private final int receiveId;
+  private final int sendId;
+  private final Consumer<UtpPacket> packetSender;
+  private final Timer timer;
+  private final LongSupplier clockMicros;
+  private final Runnable onClosed;
+  private final Counter retransmissionCounter;
+  private final long maxContentBytes;
+  private final LedbatCongestionControl congestionControl =
+      new LedbatCongestionControl(MAX_PAYLOAD_BYTES);
+
+  private final SafeFuture<Void> connected = new SafeFuture<>();
+  private final SafeFuture<Void> written = new SafeFuture<>();
+  private final SafeFuture<Bytes> read = new SafeFuture<>();
+
+  private State state;
+  private int seqNr = RANDOM.nextInt(SEQ_MASK + 1);
+  private int ackNr;
+  private long lastReceivedAtMicros;
+  private int replyDelayMicros;
+
+  // Sender
+  private final Map<Integer, OutgoingPacket> unacked = new HashMap<>();
+  private int oldestUnackedSeqNr = seqNr;
+  private long inFlightBytes;
+  private long peerWindowBytes = RECEIVE_WINDOW_BYTES;
+  private Bytes sendBuffer;
+  private int sendOffset;
+  private boolean finSent;
+  private int lossSeqNr = seqNr;
+  private long rttMicros = -1;
+  private long rttVarMicros;
+  private long rtoMillis = INITIAL_RTO_MILLIS;
+  private Timeout retransmitTimeout;
+  private Timeout idleTimeout;
+
+  // Receiver
+  private final Map<Integer, Bytes> outOfOrder = new HashMap<>();
+  private long outOfOrderBytes;
+  private final List<Bytes> receivedChunks = new ArrayList<>();
+  private long receivedBytes;
+  private int eofSeqNr = -1;
+
+  private UtpConnection(
+      State state,
+      int receiveId,
+      int sendId,
+      Consumer<UtpPacket> packetSender,
+      Timer timer,
+      LongSupplier clockMicros,
+      Runnable onClosed,
+      Counter retransmissionCounter,
+      long maxContentBytes) {
+    this.state = state;
+    this.receiveId = receiveId & SEQ_MASK;
+    this.sendId = sendId & SEQ_MASK;
+    this.packetSender = packetSender;
+    this.timer = timer;
+    this.clockMicros = clockMicros;
+    this.onClosed = onClosed;
+    this.retransmissionCounter = retransmissionCounter;
+    this.maxContentBytes = maxContentBytes;
+    this.lastReceivedAtMicros = clockMicros.getAsLong();
+  }
+
+  /**
+   * A connection to open, with {@link #connect()}, for the connection id the peer gave in a CONTENT
+   * or an ACCEPT message. It receives on that id and sends on the next one.
+   */
+  static UtpConnection initiate(
+      int connectionId,
+      Consumer<UtpPacket> packetSender,
+      Timer timer,
+      LongSupplier clockMicros,
+      Runnable onClosed,
+      Counter retransmissionCounter,
+      long maxContentBytes) {
+    return new UtpConnection(
+        State.SYN_SENT,
+        connectionId,
+        connectionId + 1,
+        packetSender,
+        timer,
+        clockMicros,
+        onClosed,
+        retransmissionCounter,
+        maxContentBytes);
+  }
+
+  /**
+   * A connection waiting for the peer to send a SYN for the connection id given to it. It sends on
+   * that id and receives on the next one.
+   */
+  static UtpConnection accept(
+      int connectionId,
+      Consumer<UtpPacket> packetSender,
+      Timer timer,
+      LongSupplier clockMicros,
+      Runnable onClosed,
+      Counter retransmissionCounter,
+      long maxContentBytes) {
+    UtpConnection connection =
+        new UtpConnection(
+            State.AWAITING_SYN,
+            connectionId + 1,
+            connectionId,
+            packetSender,
+            timer,
+            clockMicros,
+            onClosed,
+            retransmissionCounter,
+            maxContentBytes);
+    connection.armIdleTimer();
+    return connection;
+  }
+
+  SafeFuture<Void> getConnected() {
+    return connected;
+  }
+
+  SafeFuture<Bytes> getRead() {
+    return read;
+  }
+
+  synchronized SafeFuture<Void> write(Bytes content) {
+    if (sendBuffer != null) {
+      return SafeFuture.failedFuture(new IllegalStateException("uTP content already written"));
+    }
+    sendBuffer = content;
+    flush();
+    return written;
+  }
+
+  synchronized void onPacket(UtpPacket packet) {
+    final long now = clockMicros.getAsLong();
+    lastReceivedAtMicros = now;
+    replyDelayMicros = (int) now - packet.getTimestampMicros();
+
+    if (state == State.CLOSED) {
+      // The ACK of the FIN was lost, acknowledge it again.
+      if (packet.getType() == UtpPacketType.FIN || packet.getType() == UtpPacketType.DATA) {
+        sendState();
+      }
+      return;
+    }
+    switch (packet.getType()) {
+      case RESET -> fail(new UtpException("uTP connection reset by peer"));
+      case SYN -> onSyn(packet);
+      case STATE, DATA, FIN -> {
+        if (state == State.AWAITING_SYN) {
+          return;
+        }
+        if (state == State.SYN_SENT) {
+          // The first packet of the peer, whichever it is, carries its initial sequence number.
+          ackNr = (packet.getSeqNr() - 1) & SEQ_MASK;
+          state = State.CONNECTED;
+          armIdleTimer();
+          connected.complete(null);
+        }
+        peerWindowBytes = packet.getWindowSize();
+        onAck(packet, now);
+        if (state == State.CLOSED) {
+          return;
+        }
+        if (packet.getType() != UtpPacketType.STATE) {
+          onSequencedPacket(packet);
+        }
+        flush();
+      }
+    }
+  }
+
+  private void onSyn(UtpPacket syn) {
+    if (state == State.AWAITING_SYN) {
+      ackNr = syn.getSeqNr();
+      peerWindowBytes = syn.getWindowSize();
+      state = State.CONNECTED;
+      connected.complete(null);
+      sendState();
+      flush();
+    } else if (state == State.CONNECTED) {
+      // Our answer to the SYN was lost.
+      sendState();
+    }
+  }
+
+  synchronized void connect() {
+    OutgoingPacket syn = new OutgoingPacket(UtpPacketType.SYN, seqNr, Bytes.EMPTY);
+    seqNr = (seqNr + 1) & SEQ_MASK;
+    unacked.put(syn.seqNr, syn);
+    transmit(syn);
+    armIdleTimer();
+  }
+
+  private void onAck(UtpPacket packet, long now) {
+    final int packetAckNr = packet.getAckNr();
+    if (!isInFlight(packetAckNr) && !unacked.isEmpty()) {
+      return;
+    }
+    long ackedBytes = 0;
+    long rttSample = -1;
+    while (!unacked.isEmpty() && seqLessOrEqual(oldestUnackedSeqNr, packetAckNr)) {
+      OutgoingPacket acked = unacked.remove(oldestUnackedSeqNr);
+      if (acked != null) {
+        ackedBytes += acked.payload.size();
+        rttSample = acked.transmissions == 1 ? now - acked.sentAtMicros : rttSample;
+      }
+      oldestUnackedSeqNr = (oldestUnackedSeqNr + 1) & SEQ_MASK;
+    }
+    if (unacked.isEmpty()) {
+      oldestUnackedSeqNr = seqNr;
+    }
+
+    final Bytes selectiveAck = packet.getSelectiveAck();
+    int selectivelyAcked = 0;
+    // From the highest sequence number down, so the packets before FAST_RESEND_THRESHOLD
+    // selectively acknowledged ones are known to be lost.
+    for (int bit = selectiveAck.size() * 8 - 1; bit >= 0; bit--) {
+      final int bitSeqNr = (packetAckNr + 2 + bit) & SEQ_MASK;
+      final OutgoingPacket outgoing = unacked.get(bitSeqNr);
+      if ((selectiveAck.get(bit / 8) & (1 << (bit % 8))) != 0) {
+        selectivelyAcked++;
+        if (outgoing != null) {
+          unacked.remove(bitSeqNr);
+          ackedBytes += outgoing.payload.size();
+          rttSample = outgoing.transmissions == 1 ? now - outgoing.sentAtMicros : rttSample;
+        }
+      } else if (outgoing != null
+          && selectivelyAcked >= FAST_RESEND_THRESHOLD
+          && !outgoing.fastResent) {
+        outgoing.fastResent = true;
+        onLoss(outgoing);
+      }
+    }
+    // The packet right after the ACK number is not in the bitmask, it is lost if anything after it
+    // arrived.
+    final OutgoingPacket next = unacked.get((packetAckNr + 1) & SEQ_MASK);
+    if (next != null && selectivelyAcked >= FAST_RESEND_THRESHOLD && !next.fastResent) {
+      next.fastResent = true;
+      onLoss(next);
+    }
+
+    if (ackedBytes > 0 || rttSample >= 0) {
+      inFlightBytes -= ackedBytes;
+      if (rttSample >= 0) {
+        updateRtt(rttSample);
+      }
+      final long delay = packet.getTimestampDifferenceMicros() & 0xFFFFFFFFL;
+      if (delay != 0) {
+        congestionControl.onAck(ackedBytes, delay, now);
+      }
+      rearmRetransmitTimer();
+    }
+
+    if (finSent && unacked.isEmpty()) {
+      written.complete(null);
+      close();
+    }
+  }
+
+  private void onLoss(OutgoingPacket lost) {
+    // One window reduction per round trip, however many of its packets were lost.
+    if (seqLessOrEqual(lossSeqNr, lost.seqNr)) {
+      congestionControl.onLoss();
+      lossSeqNr = seqNr;
+    }
+    retransmissionCounter.inc();
+    transmit(lost);
+  }
+
+  private void onSequencedPacket(UtpPacket packet) {
+    if (packet.getType() == UtpPacketType.FIN) {
+      eofSeqNr = packet.getSeqNr();
+    }
+    final int distance = (packet.getSeqNr() - ackNr - 1) & SEQ_MASK;
+    if (distance == 0) {
+      deliver(packet.getPayload());
+      ackNr = packet.getSeqNr();
+      Bytes buffered;
+      while ((buffered = outOfOrder.remove((ackNr + 1) & SEQ_MASK)) != null) {
+        outOfOrderBytes -= buffered.size();
+        deliver(buffered);
+        ackNr = (ackNr + 1) & SEQ_MASK;
+      }
+      if (receivedBytes > maxContentBytes) {
+        abort(new UtpException("uTP content larger than " + maxContentBytes + " bytes"));
+        return;
+      }
+      if (eofSeqNr >= 0 && ackNr != eofSeqNr && ((ackNr + 1) & SEQ_MASK) == eofSeqNr) {
+        ackNr = eofSeqNr;
+      }
+    } else if (distance < 0x8000
+        && outOfOrderBytes + packet.getPayload().size() <= RECEIVE_WINDOW_BYTES
+        && outOfOrder.putIfAbsent(packet.getSeqNr(), packet.getPayload()) == null) {
+      outOfOrderBytes += packet.getPayload().size();
+    }
+    sendState();
+    if (eofSeqNr >= 0 && ackNr == eofSeqNr) {
+      read.complete(assembleReceivedContent());
+      close();
+    }
+  }
+
+  private void deliver(Bytes payload) {
+    if (!payload.isEmpty()) {
+      receivedChunks.add(payload);
+      receivedBytes += payload.size();
+    }
+  }
+
+  private Bytes assembleReceivedContent() {
+    final MutableBytes content = MutableBytes.create(Math.toIntExact(receivedBytes));
+    int offset = 0;
+    for (Bytes chunk : receivedChunks) {
+      chunk.copyTo(content, offset);
+      offset += chunk.size();
+    }
+    receivedChunks.clear();
+    return content;
+  }
+
+  private void flush() {
+    if (state != State.CONNECTED || sendBuffer == null) {
+      return;
+    }
+    while (sendOffset < sendBuffer.size()) {
+      final int length = Math.min(MAX_PAYLOAD_BYTES, sendBuffer.size() - sendOffset);
+      final long window = Math.min(congestionControl.getWindowBytes(), peerWindowBytes);
+      if (!unacked.isEmpty() && inFlightBytes + length > window) {
+        return;
+      }
+      send(UtpPacketType.DATA, sendBuffer.slice(sendOffset, length));
+      sendOffset += length;
+    }
+    if (!finSent) {
+      finSent = true;
+      send(UtpPacketType.FIN, Bytes.EMPTY);
+    }
+  }
+
+  private void send(UtpPacketType type, Bytes payload) {
+    final OutgoingPacket packet = new OutgoingPacket(type, seqNr, payload);
+    seqNr = (seqNr + 1) & SEQ_MASK;
+    if (unacked.isEmpty()) {
+      oldestUnackedSeqNr = packet.seqNr;
+    }
+    unacked.put(packet.seqNr, packet);
+    inFlightBytes += payload.size();
+    transmit(packet);
+  }
+
+  private void transmit(OutgoingPacket packet) {
+    packet.sentAtMicros = clockMicros.getAsLong();
+    packet.transmissions++;
+    packetSender.accept(createPacket(packet.type, packet.seqNr, Bytes.EMPTY, packet.payload));
+    if (retransmitTimeout == null) {
+      rearmRetransmitTimer();
+    }
+  }
+
+  private void sendState() {
+    packetSender.accept(createPacket(UtpPacketType.STATE, seqNr, selectiveAck(), Bytes.EMPTY));
+  }
+
+  private UtpPacket createPacket(
+      UtpPacketType type, int packetSeqNr, Bytes selectiveAck, Bytes payload) {
+    return new UtpPacket(
+        type,
+        type == UtpPacketType.SYN ? receiveId : sendId,
+        (int) clockMicros.getAsLong(),
+        replyDelayMicros,
+        RECEIVE_WINDOW_BYTES - outOfOrderBytes,
+        packetSeqNr,
+        ackNr,
+        selectiveAck,
+        payload);
+  }
+
+  private Bytes selectiveAck() {
+    if (outOfOrder.isEmpty()) {
+      return Bytes.EMPTY;
+    }
+    // Only the packets closest to the ACK number fit, the others are reported as it moves on.
+    final int maxBits = MAX_SELECTIVE_ACK_BYTES * 8;
+    int highestBit = 0;
+    for (int seq : outOfOrder.keySet()) {
+      final int bit = (seq - ackNr - 2) & SEQ_MASK;
+      if (bit < maxBits) {
+        highestBit = Math.max(highestBit, bit);
+      }
+    }
+    final MutableBytes bitmask = MutableBytes.create((highestBit / 32 + 1) * 4);
+    for (int seq : outOfOrder.keySet()) {
+      final int bit = (seq - ackNr - 2) & SEQ_MASK;
+      if (bit < maxBits) {
+        bitmask.set(bit / 8, (byte) (bitmask.get(bit / 8) | (1 << (bit % 8))));
+      }
+    }
+    return bitmask;
+  }
+
+  private void updateRtt(long sampleMicros) {
+    if (rttMicros < 0) {
+      rttMicros = sampleMicros;
+      rttVarMicros = sampleMicros / 2;
+    } else {
+      rttVarMicros += (Math.abs(rttMicros - sampleMicros) - rttVarMicros) / 4;
+      rttMicros += (sampleMicros - rttMicros) / 8;
+    }
+    rtoMillis =
+        Math.clamp((rttMicros + 4 * rttVarMicros) / 1000, MIN_RTO_MILLIS, MAX_RTO_MILLIS);
+  }
+
+  private void rearmRetransmitTimer() {
+    if (retransmitTimeout != null) {
+      retransmitTimeout.cancel();
+      retransmitTimeout = null;
+    }
+    if (!unacked.isEmpty() && state != State.CLOSED) {
+      retransmitTimeout =
+          timer.newTimeout(__ -> onRetransmitTimeout(), rtoMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private synchronized void onRetransmitTimeout() {
+    retransmitTimeout = null;
+    if (state == State.CLOSED || unacked.isEmpty()) {
+      return;
+    }
+    final OutgoingPacket oldest = oldestUnacked();
+    if (oldest.transmissions >= MAX_TRANSMISSIONS) {
+      fail(new TimeoutException("uTP packet not acknowledged after retransmissions"));
+      return;
+    }
+    LOG.trace("uTP retransmission timeout, resending {} {}", oldest.type, oldest.seqNr);
+    congestionControl.onTimeout();
+    rtoMillis = Math.min(rtoMillis * 2, MAX_RTO_MILLIS);
+    retransmissionCounter.inc();
+    transmit(oldest);
+  }
+
+  private OutgoingPacket oldestUnacked() {
+    int seq = oldestUnackedSeqNr;
+    OutgoingPacket packet;
+    while ((packet = unacked.get(seq)) == null) {
+      seq = (seq + 1) & SEQ_MASK;
+    }
+    return packet;
+  }
+
+  private void armIdleTimer() {
+    if (idleTimeout != null) {
+      idleTimeout.cancel();
+    }
+    idleTimeout =
+        timer.newTimeout(__ -> onIdleTimeout(), IDLE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void onIdleTimeout() {
+    if (state == State.CLOSED) {
+      return;
+    }
+    final long idleMicros = clockMicros.getAsLong() - lastReceivedAtMicros;
+    if (idleMicros >= IDLE_TIMEOUT.toNanos() / 1000) {
+      fail(new TimeoutException("uTP connection idle for " + IDLE_TIMEOUT));
+    } else {
+      armIdleTimer();
+    }
+  }
+
+  /** Aborts the connection, telling the peer unless it never connected. */
+  synchronized void reset() {
+    abort(new UtpException("uTP connection reset"));
+  }
+
+  private void abort(Throwable error) {
+    if (state == State.CONNECTED || state == State.SYN_SENT) {
+      packetSender.accept(createPacket(UtpPacketType.RESET, seqNr, Bytes.EMPTY, Bytes.EMPTY));
+    }
+    fail(error);
+  }
+
+  private void fail(Throwable error) {
+    if (state == State.CLOSED) {
+      return;
+    }
+    state = State.CLOSED;
+    cancelTimers();
+    connected.completeExceptionally(error);
+    written.completeExceptionally(error);
+    read.completeExceptionally(error);
+    onClosed.run();
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    cancelTimers();
+    timer.newTimeout(__ -> onClosed.run(), LINGER.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private void cancelTimers() {
+    if (retransmitTimeout != null) {
+      retransmitTimeout.cancel();
+      retransmitTimeout = null;
+    }
+    if (idleTimeout != null) {
+      idleTimeout.cancel();
+      idleTimeout = null;
+    }
+  }
+
+  private boolean isInFlight(int ack) {
+    // Between the oldest packet in flight, minus one for duplicate ACKs, and the last one sent.
+    return seqLessOrEqual((oldestUnackedSeqNr - 1) & SEQ_MASK, ack)
+        && seqLessOrEqual(ack, (seqNr - 1) & SEQ_MASK);
+  }
+
+  private static boolean seqLessOrEqual(int a, int b) {
+    return ((b - a) & SEQ_MASK) < 0x8000;
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+  synchronized long getWindowBytes() {
+    return congestionControl.getWindowBytes();
+  }
+}
@@ -0,0 +1,8 @@
+package samba.services.utp;
+
+public class UtpException extends RuntimeException {
+
+  public UtpException(final String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,164 @@
+package samba.services.utp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.buffer.ByteBuf;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * A uTP packet: the 20 bytes BEP 29 header, an optional selective ACK extension and the payload.
+ * The payload is kept as a slice of the buffer it was read from, or of the content being sent, so
+ * building a packet does not copy it.
+ */
+public class UtpPacket {
+
+  public static final int VERSION = 1;
+  public static final int HEADER_BYTES = 20;
+
+  private static final int NO_EXTENSION = 0;
+  private static final int SELECTIVE_ACK_EXTENSION = 1;
+
+  private final UtpPacketType type;
+  private final int connectionId;
+  private final int timestampMicros;
+  private final int timestampDifferenceMicros;
+  private final long windowSize;
+  private final int seqNr;
+  private final int ackNr;
+  private final Bytes selectiveAck;
+  private final Bytes payload;
+
+  public UtpPacket(
+      UtpPacketType type,
+      int connectionId,
+      int timestampMicros,
+      int timestampDifferenceMicros,
+      long windowSize,
+      int seqNr,
+      int ackNr,
+      Bytes selectiveAck,
+      Bytes payload) {
+    checkArgument(
+        selectiveAck.size() % 4 == 0, "uTP selective ACK bitmask must be a multiple of 4 bytes");
+    this.type = type;
+    this.connectionId = connectionId & 0xFFFF;
+    this.timestampMicros = timestampMicros;
+    this.timestampDifferenceMicros = timestampDifferenceMicros;
+    this.windowSize = windowSize & 0xFFFFFFFFL;
+    this.seqNr = seqNr & 0xFFFF;
+    this.ackNr = ackNr & 0xFFFF;
+    this.selectiveAck = selectiveAck;
+    this.payload = payload;
+  }
+
+  public static UtpPacket decode(Bytes bytes) {
+    checkArgument(bytes.size() >= HEADER_BYTES, "uTP packet shorter than its header");
+    int typeAndVersion = bytes.get(0) & 0xFF;
+    checkArgument((typeAndVersion & 0x0F) == VERSION, "Unsupported uTP version");
+    UtpPacketType type = UtpPacketType.fromInt(typeAndVersion >>> 4);
+    checkArgument(type != null, "Unknown uTP packet type");
+
+    Bytes selectiveAck = Bytes.EMPTY;
+    int extension = bytes.get(1) & 0xFF;
+    int offset = HEADER_BYTES;
+    while (extension != NO_EXTENSION) {
+      checkArgument(bytes.size() >= offset + 2, "Truncated uTP extension");
+      int nextExtension = bytes.get(offset) & 0xFF;
+      int length = bytes.get(offset + 1) & 0xFF;
+      checkArgument(bytes.size() >= offset + 2 + length, "Truncated uTP extension");
+      if (extension == SELECTIVE_ACK_EXTENSION) {
+        selectiveAck = bytes.slice(offset + 2, length);
+      }
+      extension = nextExtension;
+      offset += 2 + length;
+    }
+
+    return new UtpPacket(
+        type,
+        bytes.getInt(2) >>> 16,
+        bytes.getInt(4),
+        bytes.getInt(8),
+        bytes.getInt(12),
+        bytes.getInt(16) >>> 16,
+        bytes.getInt(16) & 0xFFFF,
+        selectiveAck,
+        bytes.slice(offset));
+  }
+
+  public int getEncodedSize() {
+    int extensionBytes = selectiveAck.isEmpty() ? 0 : 2 + selectiveAck.size();
+    return HEADER_BYTES + extensionBytes + payload.size();
+  }
+
+  public void writeTo(ByteBuf buffer) {
+    buffer.writeByte(type.getValue() << 4 | VERSION);
+    buffer.writeByte(selectiveAck.isEmpty() ? NO_EXTENSION : SELECTIVE_ACK_EXTENSION);
+    buffer.writeShort(connectionId);
+    buffer.writeInt(timestampMicros);
+    buffer.writeInt(timestampDifferenceMicros);
+    buffer.writeInt((int) windowSize);
+    buffer.writeShort(seqNr);
+    buffer.writeShort(ackNr);
+    if (!selectiveAck.isEmpty()) {
+      buffer.writeByte(NO_EXTENSION);
+      buffer.writeByte(selectiveAck.size());
+      append(selectiveAck, buffer);
+    }
+    append(payload, buffer);
+  }
+
+  private static void append(Bytes bytes, ByteBuf buffer) {
+    buffer.ensureWritable(bytes.size());
+    bytes.appendTo(buffer.nioBuffer(buffer.writerIndex(), bytes.size()));
+    buffer.writerIndex(buffer.writerIndex() + bytes.size());
+  }
+
+  public UtpPacketType getType() {
+    return type;
+  }
+
+  public int getConnectionId() {
+    return connectionId;
+  }
+
+  public int getTimestampMicros() {
+    return timestampMicros;
+  }
+
+  public int getTimestampDifferenceMicros() {
+    return timestampDifferenceMicros;
+  }
+
+  public long getWindowSize() {
+    return windowSize;
+  }
+
+  public int getSeqNr() {
+    return seqNr;
+  }
+
+  public int getAckNr() {
+    return ackNr;
+  }
+
+  /**
+   * Bitmask of the packets received after the one following {@link #getAckNr()}: bit {@code i},
+   * least significant bit of each byte first, stands for sequence number {@code ackNr + 2 + i}.
+   *
+   * @return the selective ACK bitmask, empty if the packet has none
+   */
+  public Bytes getSelectiveAck() {
+    return selectiveAck;
+  }
+
+  public Bytes getPayload() {
+    return payload;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s(connectionId=%d, seqNr=%d, ackNr=%d, payload=%d bytes)",
+        type, connectionId, seqNr, ackNr, payload.size());
+  }
+}
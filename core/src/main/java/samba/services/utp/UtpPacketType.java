@@ -0,0 +1,34 @@
+package samba.services.utp;
+
+/** uTP packet types, as defined by BEP 29. */
+public enum UtpPacketType {
+  /** Carries a chunk of the stream. */
+  DATA(0),
+  /** Ends the stream; its sequence number is the last one of the connection. */
+  FIN(1),
+  /** Acknowledges packets without carrying data. */
+  STATE(2),
+  /** Aborts the connection. */
+  RESET(3),
+  /** Opens a connection. */
+  SYN(4);
+
+  private final int value;
+
+  UtpPacketType(int value) {
+    this.value = value;
+  }
+
+  public int getValue() {
+    return value;
+  }
+
+  public static UtpPacketType fromInt(int value) {
+    for (UtpPacketType type : UtpPacketType.values()) {
+      if (type.value == value) {
+        return type;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,242 @@
+package samba.services.utp;
+
+import samba.config.HistoryNetworkConfig;
+import samba.metrics.SambaMetricCategory;
+import samba.services.discovery.Discv5Client;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.TalkHandler;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+import tech.pegasys.teku.service.serviceutils.Service;
+
+/**
+ * uTP over discv5: each packet is the payload of a TALKREQ of the "utp" protocol, answered with an
+ * empty TALKRESP. The connections of all peers share the discv5 socket and are told apart by the
+ * node id of the peer and the connection id the packets are received on. Their retransmission and
+ * idle timers share one timer wheel, and outgoing packets are encoded into pooled buffers released
+ * once discv5 is done with them.
+ */
+public class UtpService extends Service implements UTP, TalkHandler {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  /** "utp" in ASCII. */
+  public static final Bytes UTP_PROTOCOL = Bytes.fromHexString("0x757470");
+  static final int MAX_CONNECTIONS = 1024;
+
+  private record ConnectionKey(Bytes nodeId, int connectionId) {}
+
+  private final Discv5Client discv5Client;
+  private final HashedWheelTimer timer =
+      new HashedWheelTimer(new DefaultThreadFactory("utp-timer", true), 10, TimeUnit.MILLISECONDS);
+  private final Random random = new Random();
+  // By the connection id the packets are received on, and by the one exchanged in the Portal
+  // messages.
+  private final Map<ConnectionKey, UtpConnection> connectionsByReceiveId =
+      new ConcurrentHashMap<>();
+  private final Map<ConnectionKey, UtpConnection> connections = new ConcurrentHashMap<>();
+  private final LabelledMetric<Counter> packetCounter;
+  private final LabelledMetric<Counter> transferCounter;
+  private final Counter retransmissionCounter;
+  private final long maxContentSizeBytes;
+
+  public UtpService(final Discv5Client discv5Client, final MetricsSystem metricsSystem) {
+    this(discv5Client, metricsSystem, HistoryNetworkConfig.DEFAULT_MAX_CONTENT_SIZE_BYTES);
+  }
+
+  /**
+   * @param maxContentSizeBytes the size past which a received stream is reset
+   */
+  public UtpService(
+      final Discv5Client discv5Client,
+      final MetricsSystem metricsSystem,
+      final long maxContentSizeBytes) {
+    this.discv5Client = discv5Client;
+    this.maxContentSizeBytes = maxContentSizeBytes;
+    this.packetCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "utp_packets_total",
+            "Total number of uTP packets sent and received",
+            "direction",
+            "type");
+    this.transferCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.NETWORK,
+            "utp_transfers_total",
+            "Total number of uTP transfers",
+            "direction",
+            "result");
+    this.retransmissionCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.NETWORK,
+            "utp_retransmissions_total",
+            "Total number of uTP packets sent again");
+    metricsSystem.createIntegerGauge(
+        SambaMetricCategory.NETWORK,
+        "utp_connections_current",
+        "Current number of open uTP connections",
+        connections::size);
+  }
+
+  @Override
+  protected SafeFuture<?> doStart() {
+    return SafeFuture.COMPLETE;
+  }
+
+  @Override
+  protected SafeFuture<?> doStop() {
+    connections.values().forEach(UtpConnection::reset);
+    timer.stop();
+    return SafeFuture.COMPLETE;
+  }
+
+  @Override
+  public Optional<Integer> listen(NodeRecord peer) {
+    if (connections.size() >= MAX_CONNECTIONS) {
+      return Optional.empty();
+    }
+    final Bytes nodeId = peer.getNodeId();
+    while (true) {
+      final int connectionId = random.nextInt(0x10000);
+      final ConnectionKey key = new ConnectionKey(nodeId, connectionId);
+      final ConnectionKey receiveKey = new ConnectionKey(nodeId, (connectionId + 1) & 0xFFFF);
+      if (connections.containsKey(key) || connectionsByReceiveId.containsKey(receiveKey)) {
+        continue;
+      }
+      final UtpConnection connection =
+          UtpConnection.accept(
+              connectionId,
+              packet -> sendPacket(peer, packet),
+              timer,
+              UtpService::nowMicros,
+              () -> remove(key, receiveKey),
+              retransmissionCounter,
+              maxContentSizeBytes);
+      if (connectionsByReceiveId.putIfAbsent(receiveKey, connection) == null) {
+        connections.put(key, connection);
+        return Optional.of(connectionId);
+      }
+    }
+  }
+
+  @Override
+  public SafeFuture<?> connect(NodeRecord peer, int connectionId) {
+    if (connections.size() >= MAX_CONNECTIONS) {
+      return SafeFuture.failedFuture(new UtpException("Too many uTP connections"));
+    }
+    final Bytes nodeId = peer.getNodeId();
+    final ConnectionKey key = new ConnectionKey(nodeId, connectionId);
+    final UtpConnection connection =
+        UtpConnection.initiate(
+            connectionId,
+            packet -> sendPacket(peer, packet),
+            timer,
+            UtpService::nowMicros,
+            () -> remove(key, key),
+            retransmissionCounter,
+            maxContentSizeBytes);
+    if (connections.containsKey(key)
+        || connectionsByReceiveId.putIfAbsent(key, connection) != null) {
+      return SafeFuture.failedFuture(
+          new UtpException("uTP connection id " + connectionId + " already in use"));
+    }
+    connections.put(key, connection);
+    connection.connect();
+    return connection.getConnected();
+  }
+
+  @Override
+  public SafeFuture<?> sendContent(NodeRecord peer, int connectionId, Bytes content) {
+    return getConnection(peer, connectionId)
+        .map(connection -> countTransfer("outbound", connection.write(content)))
+        .orElseGet(() -> unknownConnection(connectionId));
+  }
+
+  @Override
+  public SafeFuture<Bytes> getContent(NodeRecord peer, int connectionId) {
+    return getConnection(peer, connectionId)
+        .map(connection -> countTransfer("inbound", connection.getRead()))
+        .orElseGet(() -> unknownConnection(connectionId));
+  }
+
+  @Override
+  public CompletableFuture<Bytes> talk(NodeRecord srcNode, Bytes protocol, Bytes request) {
+    final UtpPacket packet;
+    try {
+      packet = UtpPacket.decode(request);
+    } catch (IllegalArgumentException e) {
+      LOG.trace("Invalid uTP packet from {}", srcNode.asEnr(), e);
+      return CompletableFuture.completedFuture(Bytes.EMPTY);
+    }
+    packetCounter.labels("inbound", packet.getType().name()).inc();
+    // The SYN carries the id the connection sends on, the other packets the one it receives on.
+    final int receiveId =
+        packet.getType() == UtpPacketType.SYN
+            ? (packet.getConnectionId() + 1) & 0xFFFF
+            : packet.getConnectionId();
+    final UtpConnection connection =
+        connectionsByReceiveId.get(new ConnectionKey(srcNode.getNodeId(), receiveId));
+    if (connection != null) {
+      connection.onPacket(packet);
+    } else {
+      LOG.trace("uTP packet {} from {} for no connection", packet, srcNode.asEnr());
+    }
+    return CompletableFuture.completedFuture(Bytes.EMPTY);
+  }
+
+  private void sendPacket(NodeRecord peer, UtpPacket packet) {
+    packetCounter.labels("outbound", packet.getType().name()).inc();
+    final ByteBuf buffer = PooledByteBufAllocator.DEFAULT.buffer(packet.getEncodedSize());
+    try {
+      packet.writeTo(buffer);
+      discv5Client
+          .sendDisv5Message(peer, UTP_PROTOCOL, Bytes.wrapByteBuf(buffer))
+          .whenComplete((__, error) -> buffer.release());
+    } catch (RuntimeException e) {
+      buffer.release();
+      // A lost packet, sent again on the retransmission timeout.
+      LOG.trace("Could not send uTP packet {}", packet, e);
+    }
+  }
+
+  private Optional<UtpConnection> getConnection(NodeRecord peer, int connectionId) {
+    return Optional.ofNullable(connections.get(new ConnectionKey(peer.getNodeId(), connectionId)));
+  }
+
+  private <T> SafeFuture<T> countTransfer(String direction, SafeFuture<T> transfer) {
+    return transfer.whenComplete(
+        (__, error) ->
+            transferCounter.labels(direction, error == null ? "completed" : "failed").inc());
+  }
+
+  private void remove(ConnectionKey key, ConnectionKey receiveKey) {
+    connections.remove(key);
+    connectionsByReceiveId.remove(receiveKey);
+  }
+
+  private static <T> SafeFuture<T> unknownConnection(int connectionId) {
+    return SafeFuture.failedFuture(new UtpException("No uTP connection with id " + connectionId));
+  }
+
+  private static long nowMicros() {
+    return System.nanoTime() / 1000;
+  }
+}
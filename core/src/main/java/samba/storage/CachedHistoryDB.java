@@ -0,0 +1,252 @@
+package samba.storage;
+
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
+import samba.domain.messages.PortalWireMessage;
+import samba.metrics.SambaMetricCategory;
+import samba.storage.rocksdb.ValueView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.ethereum.core.BlockBody;
+import org.hyperledger.besu.ethereum.core.BlockHeader;
+import org.hyperledger.besu.ethereum.core.BlockWithReceipts;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * Serves the most requested content from memory. The cache is bounded by the size of the cached
+ * values and uses Caffeine's W-TinyLFU policy, so a burst of one-off reads can not evict the few
+ * recent headers most peers ask for. Content writes and pruning invalidate the keys they wrote or
+ * evicted.
+ *
+ * <p>Cached values are immutable {@link Bytes}, and callers reading arrays get their own copy. A
+ * value read from the delegate is only cached if its key was not written while it was read, so a
+ * read racing with a write can not bring back the value the write replaced. Keys are versioned in
+ * stripes, so a write only holds back the caching of the few keys sharing its stripe.
+ */
+public class CachedHistoryDB implements HistoryDB {
+
+  // Rough per-entry overhead of the key, the node and the array header.
+  private static final int ENTRY_OVERHEAD_BYTES = 96;
+  private static final int VERSION_STRIPES = 1024;
+
+  private final HistoryDB delegate;
+  private final Cache<CacheKey, Bytes> cache;
+  // Bumped by each write or eviction of a key of the stripe.
+  private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+  public CachedHistoryDB(
+      final HistoryDB delegate, final long cacheSizeBytes, final MetricsSystem metricsSystem) {
+    this.delegate = delegate;
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumWeight(cacheSizeBytes)
+            .weigher(
+                (CacheKey key, Bytes value) ->
+                    key.key().size() + value.size() + ENTRY_OVERHEAD_BYTES)
+            .recordStats()
+            .build();
+    metricsSystem.createGauge(
+        SambaMetricCategory.STORAGE,
+        "content_cache_hit_ratio",
+        "Ratio of content reads served from the content cache",
+        () -> cache.stats().hitRate());
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.STORAGE,
+        "content_cache_size_bytes",
+        "Estimated amount of memory held by the content cache",
+        this::getCacheSizeBytes);
+  }
+
+  @Override
+  public boolean saveContent(Bytes key, Bytes value) {
+    final boolean saved = delegate.saveContent(key, value);
+    if (saved) {
+      invalidate(new CacheKey(ContentType.fromContentKey(key), key.slice(1)));
+    }
+    return saved;
+  }
+
+  @Override
+  public SafeFuture<Void> saveValidatedContent(List<ContentEntry> entries) {
+    // Invalidated once written, so a read in between can not cache the previous value.
+    return delegate
+        .saveValidatedContent(entries)
+        .alwaysRun(
+            () ->
+                entries.forEach(
+                    entry ->
+                        invalidate(
+                            new CacheKey(entry.getContentType(), entry.contentKey().slice(1)))));
+  }
+
+  @Override
+  public Optional<byte[]> get(ContentType contentType, Bytes contentKey) {
+    final CacheKey cacheKey = new CacheKey(contentType, contentKey);
+    final Bytes cached = cache.getIfPresent(cacheKey);
+    if (cached != null) {
+      return Optional.of(cached.toArray());
+    }
+    final long versionBeforeRead = version(cacheKey);
+    final Optional<byte[]> content = delegate.get(contentType, contentKey);
+    content.ifPresent(
+        value -> cacheIfNotWritten(cacheKey, Bytes.wrap(value.clone()), versionBeforeRead));
+    return content;
+  }
+
+  @Override
+  public Optional<ValueView> getContent(ContentType contentType, Bytes contentKey) {
+    final CacheKey cacheKey = new CacheKey(contentType, contentKey);
+    final Bytes cached = cache.getIfPresent(cacheKey);
+    if (cached != null) {
+      return Optional.of(ValueView.of(cached));
+    }
+    final long versionBeforeRead = version(cacheKey);
+    final Optional<ValueView> content = delegate.getContent(contentType, contentKey);
+    // Content fitting in a TALKRESP is read onto the heap and cached as is. Larger content is
+    // streamed from a pooled buffer the caller gives back, so it is not cached.
+    content
+        .filter(value -> value.size() <= PortalWireMessage.MAX_CUSTOM_PAYLOAD_BYTES)
+        .ifPresent(value -> cacheIfNotWritten(cacheKey, value.bytes(), versionBeforeRead));
+    return content;
+  }
+
+  @Override
+  public OptionalInt getContentSize(ContentType contentType, Bytes contentKey) {
+    final Bytes cached = cache.getIfPresent(new CacheKey(contentType, contentKey));
+    if (cached != null) {
+      return OptionalInt.of(cached.size());
+    }
+    return delegate.getContentSize(contentType, contentKey);
+  }
+
+  @Override
+  public List<Optional<byte[]>> multiGet(List<Pair<ContentType, Bytes>> keys) {
+    final List<Optional<byte[]>> values = new ArrayList<>(keys.size());
+    final List<Integer> missedIndexes = new ArrayList<>();
+    final List<Pair<ContentType, Bytes>> missedKeys = new ArrayList<>();
+    final List<Long> versionsBeforeRead = new ArrayList<>();
+    for (Pair<ContentType, Bytes> key : keys) {
+      final CacheKey cacheKey = new CacheKey(key.getKey(), key.getValue());
+      final Bytes cached = cache.getIfPresent(cacheKey);
+      if (cached == null) {
+        missedIndexes.add(values.size());
+        missedKeys.add(key);
+        versionsBeforeRead.add(version(cacheKey));
+      }
+      values.add(Optional.ofNullable(cached).map(Bytes::toArray));
+    }
+    if (missedKeys.isEmpty()) {
+      return values;
+    }
+    final List<Optional<byte[]>> read = delegate.multiGet(missedKeys);
+    for (int i = 0; i < read.size(); i++) {
+      final Pair<ContentType, Bytes> key = missedKeys.get(i);
+      final long versionBeforeRead = versionsBeforeRead.get(i);
+      read.get(i)
+          .ifPresent(
+              value ->
+                  cacheIfNotWritten(
+                      new CacheKey(key.getKey(), key.getValue()),
+                      Bytes.wrap(value.clone()),
+                      versionBeforeRead));
+      values.set(missedIndexes.get(i), read.get(i));
+    }
+    return values;
+  }
+
+  @Override
+  public Optional<BlockHeader> getBlockHeaderByBlockHash(Bytes blockHash) {
+    return delegate.getBlockHeaderByBlockHash(blockHash);
+  }
+
+  @Override
+  public Optional<Bytes> getBlockHashByBlockNumber(Bytes blockNumber) {
+    return delegate.getBlockHashByBlockNumber(blockNumber);
+  }
+
+  @Override
+  public Optional<BlockBody> getBlockBodyByBlockHash(Bytes blockHash) {
+    return delegate.getBlockBodyByBlockHash(blockHash);
+  }
+
+  @Override
+  public Optional<BlockWithReceipts> getBlockReceiptByBlockHash(Bytes blockHash) {
+    return delegate.getBlockReceiptByBlockHash(blockHash);
+  }
+
+  @Override
+  public long getStorageUsage() {
+    return delegate.getStorageUsage();
+  }
+
+  @Override
+  public Optional<UInt256> pruneFarthestContent(
+      long targetUsageBytes, Consumer<Bytes> evictionListener) {
+    return delegate.pruneFarthestContent(
+        targetUsageBytes,
+        contentKey -> {
+          invalidate(new CacheKey(ContentType.fromContentKey(contentKey), contentKey.slice(1)));
+          evictionListener.accept(contentKey);
+        });
+  }
+
+  @Override
+  public Optional<UInt256> getFarthestContentDistance() {
+    return delegate.getFarthestContentDistance();
+  }
+
+  @Override
+  public Stream<Bytes> streamContentKeysOutsideRadius(UInt256 radius) {
+    return delegate.streamContentKeysOutsideRadius(radius);
+  }
+
+  @Override
+  public Stream<Pair<Bytes, Bytes>> streamBlockHashesByBlockNumber(
+      long fromBlockNumber, long toBlockNumber) {
+    return delegate.streamBlockHashesByBlockNumber(fromBlockNumber, toBlockNumber);
+  }
+
+  private void invalidate(final CacheKey cacheKey) {
+    versions.incrementAndGet(stripe(cacheKey));
+    cache.invalidate(cacheKey);
+  }
+
+  private long version(final CacheKey cacheKey) {
+    return versions.get(stripe(cacheKey));
+  }
+
+  private static int stripe(final CacheKey cacheKey) {
+    return Math.floorMod(cacheKey.hashCode(), VERSION_STRIPES);
+  }
+
+  /**
+   * Caches a value read from the delegate, unless its key was written since the read started. The
+   * check runs under the lock of the key, which the invalidation of a racing write waits for.
+   */
+  private void cacheIfNotWritten(
+      final CacheKey cacheKey, final Bytes value, final long versionBeforeRead) {
+    cache
+        .asMap()
+        .compute(
+            cacheKey, (__, cached) -> version(cacheKey) == versionBeforeRead ? value : cached);
+  }
+
+  long getCacheSizeBytes() {
+    return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+  }
+
+  private record CacheKey(ContentType contentType, Bytes key) {}
+}
@@ -0,0 +1,76 @@
+package samba.storage;
+
+import samba.domain.content.ContentDistance;
+import samba.domain.content.ContentType;
+import samba.storage.rocksdb.KeyValueSegment;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+
+/**
+ * Entry of the {@link KeyValueSegment#CONTENT_DISTANCE_INDEX} segment. Entries are keyed by the
+ * big-endian distance between the content id and the local node id, so RocksDB keeps them sorted
+ * from the closest to the farthest content. The value holds the stored size followed by the content
+ * key, which is enough to locate and evict the content without reading it.
+ */
+record ContentDistanceIndex(UInt256 distance, Bytes contentKey, int size) {
+
+  private static final int SIZE_BYTES = Integer.BYTES;
+
+  static ContentDistanceIndex create(Bytes contentKey, Bytes localNodeId, int size) {
+    return new ContentDistanceIndex(
+        ContentDistance.distanceFromContentKey(contentKey, localNodeId), contentKey, size);
+  }
+
+  static ContentDistanceIndex decode(byte[] key, byte[] value) {
+    Bytes wrappedValue = Bytes.wrap(value);
+    return new ContentDistanceIndex(
+        UInt256.fromBytes(Bytes.wrap(key)),
+        wrappedValue.slice(SIZE_BYTES),
+        wrappedValue.slice(0, SIZE_BYTES).toInt());
+  }
+
+  static byte[] toIndexKey(UInt256 distance) {
+    return distance.toArray();
+  }
+
+  static KeyValueSegment toSegment(Bytes contentKey) {
+    return switch (ContentType.fromContentKey(contentKey)) {
+      case BLOCK_HEADER -> KeyValueSegment.BLOCK_HEADER;
+      case BLOCK_BODY -> KeyValueSegment.BLOCK_BODY;
+      case RECEIPT -> KeyValueSegment.RECEIPT;
+      default ->
+          throw new IllegalArgumentException(
+              String.format("Content key %s is not indexed", contentKey));
+    };
+  }
+
+  static Bytes toContentKey(KeyValueSegment segment, Bytes key) {
+    ContentType contentType =
+        switch (segment) {
+          case BLOCK_HEADER -> ContentType.BLOCK_HEADER;
+          case BLOCK_BODY -> ContentType.BLOCK_BODY;
+          case RECEIPT -> ContentType.RECEIPT;
+          default ->
+              throw new IllegalArgumentException(
+                  String.format("Segment %s does not hold content", segment.getName()));
+        };
+    return Bytes.concatenate(Bytes.of(contentType.getByteValue()), key);
+  }
+
+  byte[] indexKey() {
+    return toIndexKey(distance);
+  }
+
+  byte[] indexValue() {
+    return Bytes.concatenate(Bytes.ofUnsignedInt(size), contentKey).toArray();
+  }
+
+  KeyValueSegment segment() {
+    return toSegment(contentKey);
+  }
+
+  byte[] storageKey() {
+    return contentKey.slice(1).toArray();
+  }
+}
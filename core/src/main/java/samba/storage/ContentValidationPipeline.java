@@ -0,0 +1,226 @@
+package samba.storage;
+
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
+import samba.domain.content.ContentUtil;
+import samba.domain.content.ContentValidator;
+import samba.metrics.SambaMetricCategory;
+import samba.storage.rocksdb.StorageException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.ethereum.core.BlockHeader;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * Validates batches of content on a pool of worker threads and hands the valid items to the
+ * storage, batch by batch, in submission order. The work queue is bounded: once it is full the
+ * submitting thread validates the item itself, which slows producers down to the pace of the
+ * validators.
+ */
+public class ContentValidationPipeline implements AutoCloseable {
+
+  private static final Logger LOG = LogManager.getLogger();
+  public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+  private final HistoryDB historyDB;
+  private final ExecutorService validationExecutor;
+  private final ExecutorService storageExecutor;
+  private final Counter validCounter;
+  private final Counter invalidCounter;
+  private final Counter failedCounter;
+  private final Set<SafeFuture<List<Boolean>>> pendingBatches = ConcurrentHashMap.newKeySet();
+  private SafeFuture<Void> lastHandedOverBatch = SafeFuture.COMPLETE;
+  private volatile boolean closed;
+
+  public ContentValidationPipeline(final HistoryDB historyDB, final MetricsSystem metricsSystem) {
+    this(
+        historyDB,
+        Runtime.getRuntime().availableProcessors(),
+        DEFAULT_QUEUE_CAPACITY,
+        metricsSystem);
+  }
+
+  public ContentValidationPipeline(
+      final HistoryDB historyDB,
+      final int parallelism,
+      final int queueCapacity,
+      final MetricsSystem metricsSystem) {
+    this.historyDB = historyDB;
+    this.validationExecutor =
+        new ThreadPoolExecutor(
+            parallelism,
+            parallelism,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new ThreadFactoryBuilder()
+                .setNameFormat("content-validation-%d")
+                .setDaemon(true)
+                .build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    this.storageExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("content-storage-%d").setDaemon(true).build());
+    final LabelledMetric<Counter> contentCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.STORAGE,
+            "validated_content_total",
+            "Total number of content items that went through the validation pipeline",
+            "result");
+    this.validCounter = contentCounter.labels("valid");
+    this.invalidCounter = contentCounter.labels("invalid");
+    this.failedCounter = contentCounter.labels("failed");
+  }
+
+  /**
+   * Validates the batch in parallel, then stores its valid items once all the batches submitted
+   * before it have been handed to the storage.
+   *
+   * @param batch the content to validate and store
+   * @return for each item of the batch, whether it was valid and stored, failing if the pipeline
+   *     is closed before the batch is stored
+   */
+  public SafeFuture<List<Boolean>> submit(final List<ContentEntry> batch) {
+    if (closed) {
+      return SafeFuture.failedFuture(closedException());
+    }
+    final ContentValidator validator = new ContentValidator(createBlockHeaderLookup(batch));
+    final List<SafeFuture<Boolean>> validations =
+        batch.stream()
+            .map(
+                entry ->
+                    SafeFuture.of(
+                        CompletableFuture.supplyAsync(
+                            () -> validator.isValid(entry), validationExecutor)))
+            .toList();
+    final SafeFuture<List<Boolean>> stored;
+    synchronized (this) {
+      // Batches are handed to the storage in order, without waiting for earlier ones to be
+      // committed, so they share the group commits of the storage.
+      final SafeFuture<SafeFuture<List<Boolean>>> handedOver =
+          SafeFuture.collectAll(validations.stream())
+              .thenCombine(lastHandedOverBatch, (valid, __) -> valid)
+              .thenCompose(
+                  valid ->
+                      SafeFuture.of(
+                          CompletableFuture.supplyAsync(
+                              () -> store(batch, valid), storageExecutor)));
+      lastHandedOverBatch = handedOver.<Void>thenApply(__ -> null).exceptionally(__ -> null);
+      stored = handedOver.thenCompose(batchStored -> batchStored);
+    }
+    pendingBatches.add(stored);
+    stored.whenComplete((__, error) -> pendingBatches.remove(stored));
+    return stored;
+  }
+
+  private SafeFuture<List<Boolean>> store(
+      final List<ContentEntry> batch, final List<Boolean> valid) {
+    final List<ContentEntry> validEntries = new ArrayList<>();
+    for (int i = 0; i < batch.size(); i++) {
+      if (valid.get(i)) {
+        validEntries.add(batch.get(i));
+      }
+    }
+    invalidCounter.inc(batch.size() - validEntries.size());
+    return historyDB
+        .saveValidatedContent(validEntries)
+        .thenApply(
+            __ -> {
+              validCounter.inc(validEntries.size());
+              return valid;
+            })
+        .exceptionallyCompose(
+            error -> {
+              LOG.debug(
+                  "Batch of {} items could not be stored, storing one by one", batch.size(), error);
+              // Back on the storage thread, so the storage is not written from its commit thread.
+              return SafeFuture.of(
+                      CompletableFuture.supplyAsync(
+                          () -> storeOneByOne(batch, valid), storageExecutor))
+                  .thenCompose(saved -> saved);
+            });
+  }
+
+  /** Isolates the items the storage rejects so they do not fail the whole batch. */
+  private SafeFuture<List<Boolean>> storeOneByOne(
+      final List<ContentEntry> batch, final List<Boolean> valid) {
+    final List<SafeFuture<Boolean>> saved = new ArrayList<>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      if (!valid.get(i)) {
+        saved.add(SafeFuture.completedFuture(false));
+        continue;
+      }
+      final ContentEntry entry = batch.get(i);
+      saved.add(
+          historyDB
+              .saveValidatedContent(List.of(entry))
+              .thenApply(
+                  __ -> {
+                    validCounter.inc();
+                    return true;
+                  })
+              .exceptionally(
+                  error -> {
+                    LOG.info("Content could not be saved. ContentKey: {}", entry.contentKey());
+                    failedCounter.inc();
+                    return false;
+                  }));
+    }
+    return SafeFuture.collectAll(saved.stream());
+  }
+
+  private Function<Bytes, Optional<BlockHeader>> createBlockHeaderLookup(
+      final List<ContentEntry> batch) {
+    // Bodies are validated against headers of the same batch before those are stored.
+    final Map<Bytes, Bytes> batchHeaders = new HashMap<>();
+    batch.forEach(
+        entry -> {
+          switch (entry.getContentType()) {
+            case BLOCK_HEADER -> batchHeaders.put(entry.contentKey().slice(1), entry.value());
+            case BLOCK_HEADER_BY_NUMBER ->
+                ContentUtil.createBlockHashFromSSZBytes(entry.value().toArrayUnsafe())
+                    .ifPresent(blockHash -> batchHeaders.put(blockHash, entry.value()));
+            default -> {}
+          }
+        });
+    return blockHash ->
+        Optional.ofNullable(batchHeaders.get(blockHash))
+            .flatMap(header -> ContentUtil.createBlockHeaderfromSSZBytes(header.toArrayUnsafe()))
+            .or(() -> historyDB.getBlockHeaderByBlockHash(blockHash));
+  }
+
+  /** Stops the workers and fails the batches that were not stored yet. */
+  @Override
+  public void close() {
+    closed = true;
+    validationExecutor.shutdownNow();
+    storageExecutor.shutdownNow();
+    final StorageException error = closedException();
+    pendingBatches.forEach(pendingBatch -> pendingBatch.completeExceptionally(error));
+  }
+
+  private static StorageException closedException() {
+    return new StorageException("The content validation pipeline is closed");
+  }
+}
@@ -1,18 +1,36 @@
 package samba.storage;
 
+import samba.domain.content.ContentEntry;
 import samba.domain.content.ContentType;
+import samba.storage.rocksdb.ValueView;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
 import org.hyperledger.besu.ethereum.core.BlockBody;
 import org.hyperledger.besu.ethereum.core.BlockHeader;
 import org.hyperledger.besu.ethereum.core.BlockWithReceipts;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
 
 public interface HistoryDB {
 
   boolean saveContent(Bytes key, Bytes value);
 
+  /**
+   * Stores content that has already been validated, in a single transaction. The content may be
+   * readable before it is committed, but it is only durable once the returned future completes.
+   *
+   * @param entries the content to store, in the order it must be written
+   * @return a future completing once the content is committed
+   */
+  SafeFuture<Void> saveValidatedContent(List<ContentEntry> entries);
+
   Optional<BlockHeader> getBlockHeaderByBlockHash(Bytes blockHash);
 
   Optional<Bytes> getBlockHashByBlockNumber(Bytes blockNumber);
@@ -23,4 +41,105 @@ public interface HistoryDB {
       Bytes blockHash); // TODO or return List<TransactionReceipt>
 
   Optional<byte[]> get(ContentType contentType, Bytes contentKey);
+
+  /**
+   * Reads content to be sent to a peer. Unlike {@link #get}, large content may be held in a pooled
+   * off-heap buffer so it can be streamed over uTP without being copied into a new array. The view
+   * must be closed once the content is sent, which gives the buffer back.
+   *
+   * @param contentType the type of the content
+   * @param contentKey the content key, without its type
+   * @return a read-only view of the content, or empty if it is not stored
+   */
+  default Optional<ValueView> getContent(ContentType contentType, Bytes contentKey) {
+    return get(contentType, contentKey).map(value -> ValueView.of(Bytes.wrap(value)));
+  }
+
+  /**
+   * Size of stored content, read from the distance index so the content itself is not read.
+   *
+   * @param contentType the type of the content
+   * @param contentKey the content key, without its type
+   * @return the size of the content in bytes, or empty if it is not stored
+   */
+  OptionalInt getContentSize(ContentType contentType, Bytes contentKey);
+
+  /**
+   * Reads several content items at once, which the database serves in a single batched read.
+   *
+   * @param keys the content types and keys, without their type, to read
+   * @return the content, in the order of the keys, empty where it is not stored
+   */
+  default List<Optional<byte[]>> multiGet(List<Pair<ContentType, Bytes>> keys) {
+    return keys.stream().map(key -> get(key.getKey(), key.getValue())).toList();
+  }
+
+  /**
+   * Reads several content items of the same type at once.
+   *
+   * @param contentType the type of the content
+   * @param contentKeys the content keys, without their type, to read
+   * @return the content, in the order of the keys, empty where it is not stored
+   */
+  default List<Optional<byte[]>> multiGet(ContentType contentType, List<Bytes> contentKeys) {
+    return multiGet(contentKeys.stream().map(key -> Pair.of(contentType, key)).toList());
+  }
+
+  /**
+   * Amount of content currently stored, in bytes.
+   *
+   * @return the sum of the stored content sizes across all segments
+   */
+  long getStorageUsage();
+
+  /**
+   * Evicts the content farthest from the local node until the storage usage is at or below the
+   * given target.
+   *
+   * @param targetUsageBytes the storage usage to reach
+   * @return the distance of the farthest content still stored, to be used as the new radius, empty
+   *     if no content is left stored
+   */
+  default Optional<UInt256> pruneFarthestContent(long targetUsageBytes) {
+    return pruneFarthestContent(targetUsageBytes, __ -> {});
+  }
+
+  /**
+   * Evicts the content farthest from the local node until the storage usage is at or below the
+   * given target.
+   *
+   * @param targetUsageBytes the storage usage to reach
+   * @param evictionListener called with the content key of each evicted item once its removal is
+   *     committed
+   * @return the distance of the farthest content still stored, to be used as the new radius, empty
+   *     if no content is left stored
+   */
+  Optional<UInt256> pruneFarthestContent(long targetUsageBytes, Consumer<Bytes> evictionListener);
+
+  /**
+   * Distance between the local node and the farthest content stored.
+   *
+   * @return the distance, empty if no content is stored
+   */
+  Optional<UInt256> getFarthestContentDistance();
+
+  /**
+   * Streams the keys of the stored content whose distance to the local node is greater than the
+   * given radius, closest first. The stream must be closed to release the underlying iterator.
+   *
+   * @param radius the radius the content must fall outside of
+   * @return the content keys outside of the radius
+   */
+  Stream<Bytes> streamContentKeysOutsideRadius(UInt256 radius);
+
+  /**
+   * Streams the block number index between two block numbers, reading only the keys of that range.
+   * The stream must be closed to release the underlying iterator.
+   *
+   * @param fromBlockNumber the first block number to return
+   * @param toBlockNumber the last block number to return
+   * @return pairs of ssz encoded block number and block hash, in block order
+   */
+  Stream<Pair<Bytes, Bytes>> streamBlockHashesByBlockNumber(
+      long fromBlockNumber, long toBlockNumber);
 }
@@ -2,95 +2,196 @@ package samba.storage;
 
 import static com.google.common.base.Preconditions.*;
 
+import samba.domain.content.ContentEntry;
 import samba.domain.content.ContentType;
+import samba.domain.content.ContentValidator;
 import samba.domain.content.ContentUtil;
+import samba.metrics.SambaMetricCategory;
 import samba.storage.rocksdb.*;
 
-import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import com.google.common.collect.Iterators;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
 import org.hyperledger.besu.ethereum.core.BlockBody;
 import org.hyperledger.besu.ethereum.core.BlockHeader;
 import org.hyperledger.besu.ethereum.core.BlockWithReceipts;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
 
+/**
+ * Stores the history content in RocksDB, one segment per content type.
+ *
+ * <p>Content is written behind: {@link #saveValidatedContent} makes it readable right away from an
+ * in-memory overlay and returns a future completing once the group commit writer has stored it.
+ * The overlay is bounded in bytes, and a producer writing while it is full waits for earlier writes
+ * to be committed.
+ */
 public class HistoryRocksDB implements HistoryDB {
 
   protected static final Logger LOG = LogManager.getLogger();
+  private static final List<KeyValueSegment> CONTENT_SEGMENTS =
+      List.of(KeyValueSegment.BLOCK_HEADER, KeyValueSegment.BLOCK_BODY, KeyValueSegment.RECEIPT);
+  private static final int PRUNE_BATCH_SIZE = 1000;
+
   private final RocksDBInstance rocksDBInstance;
+  private final GroupCommitWriter groupCommitWriter;
+  private final Bytes localNodeId;
+  private final AtomicLong storageUsage = new AtomicLong();
+  private final long writeBehindBufferBytes;
+  // Content written behind and not committed yet, by segment and storage key.
+  private final Map<SegmentKey, Bytes> pendingWrites = new ConcurrentHashMap<>();
+  private final AtomicLong pendingBytes = new AtomicLong();
+  private final Object writeBehindLock = new Object();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final OperationTimer writeBehindLatency;
+  private final Counter blockedWrites;
+  private final ContentValidator contentValidator =
+      new ContentValidator(this::getBlockHeaderByBlockHash);
 
   public HistoryRocksDB(
-      Path path, MetricsSystem metricsSystem, RocksDBMetricsFactory rocksDBMetricsFactory)
+      RocksDBConfiguration configuration,
+      MetricsSystem metricsSystem,
+      RocksDBMetricsFactory rocksDBMetricsFactory,
+      Bytes localNodeId,
+      long writeBehindBufferBytes)
       throws StorageException {
     this.rocksDBInstance =
         new RocksDBInstance(
-            RocksDBConfiguration.createDefault(path),
+            configuration,
             Arrays.asList(KeyValueSegment.values()),
-            List.of(),
+            List.of(KeyValueSegment.LEGACY_CONTENT),
             metricsSystem,
             rocksDBMetricsFactory);
+    this.localNodeId = localNodeId;
+    this.writeBehindBufferBytes = writeBehindBufferBytes;
+    this.groupCommitWriter =
+        new GroupCommitWriter(
+            rocksDBInstance,
+            configuration.walSyncPolicy(),
+            configuration.walSyncInterval(),
+            configuration.commitWindow());
+    dropLegacyContent();
+    initStorageUsage();
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.STORAGE,
+        "content_storage_usage_bytes",
+        "Amount of history content currently stored, in bytes",
+        this::getStorageUsage);
+    metricsSystem.createIntegerGauge(
+        SambaMetricCategory.STORAGE,
+        "content_write_behind_queue_depth",
+        "Number of content writes waiting to be committed",
+        pendingCount::get);
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.STORAGE,
+        "content_write_behind_queue_bytes",
+        "Amount of content waiting to be committed, in bytes",
+        pendingBytes::get);
+    this.writeBehindLatency =
+        metricsSystem.createTimer(
+            SambaMetricCategory.STORAGE,
+            "content_write_behind_flush_latency_seconds",
+            "Time from content being written behind to it being committed");
+    this.blockedWrites =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "content_write_behind_blocked_total",
+            "Number of times a content write waited for room in the write-behind buffer");
+  }
+
+  /**
+   * Drops the content stored while all content types shared a column family, since the content
+   * types of a block overwrote each other there. The distance index is rebuilt from what is left.
+   */
+  private void dropLegacyContent() {
+    if (!rocksDBInstance.hasSegment(KeyValueSegment.LEGACY_CONTENT)) {
+      return;
+    }
+    LOG.warn("Dropping the history content stored before each content type had its own segment");
+    rocksDBInstance.dropSegment(KeyValueSegment.LEGACY_CONTENT);
+    rocksDBInstance.clear(KeyValueSegment.CONTENT_DISTANCE_INDEX);
+  }
+
+  private void initStorageUsage() {
+    try (Stream<Pair<byte[], byte[]>> entries =
+        rocksDBInstance.stream(KeyValueSegment.CONTENT_DISTANCE_INDEX)) {
+      storageUsage.set(
+          entries
+              .mapToLong(
+                  entry -> ContentDistanceIndex.decode(entry.getKey(), entry.getValue()).size())
+              .sum());
+    }
+    if (storageUsage.get() == 0) {
+      rebuildDistanceIndex();
+    }
+    LOG.info("History storage usage on startup: {} bytes", getStorageUsage());
+  }
+
+  /** Indexes content stored before the distance index existed. */
+  private void rebuildDistanceIndex() {
+    CONTENT_SEGMENTS.forEach(
+        segment -> {
+          try (Stream<Pair<byte[], byte[]>> entries = rocksDBInstance.stream(segment)) {
+            Iterators.partition(entries.iterator(), PRUNE_BATCH_SIZE)
+                .forEachRemaining(
+                    contents ->
+                        groupCommitWriter
+                            .submit(batch -> index(batch, segment, contents))
+                            .thenAccept(storageUsage::addAndGet)
+                            .join());
+          }
+        });
+  }
+
+  /**
+   * Adds the distance index entries missing for the content, read by the writer so they are not
+   * counted again if the content was stored in between.
+   *
+   * @return the change in storage usage once the batch is committed
+   */
+  private long index(
+      KeyValueStorageBatch batch, KeyValueSegment segment, List<Pair<byte[], byte[]>> contents) {
+    long indexedSize = 0;
+    for (Pair<byte[], byte[]> content : contents) {
+      ContentDistanceIndex index =
+          ContentDistanceIndex.create(
+              ContentDistanceIndex.toContentKey(segment, Bytes.wrap(content.getKey())),
+              localNodeId,
+              content.getValue().length);
+      if (batch.get(KeyValueSegment.CONTENT_DISTANCE_INDEX, index.indexKey()).isEmpty()) {
+        batch.put(KeyValueSegment.CONTENT_DISTANCE_INDEX, index.indexKey(), index.indexValue());
+        indexedSize += index.size();
+      }
+    }
+    return indexedSize;
   }
 
-  // TODO reduce the verbosity of this method once is ready.
   @Override
   public boolean saveContent(Bytes contentKey, Bytes value) {
-    ContentType contentType = ContentType.fromContentKey(contentKey);
-    LOG.info("Store {} with Key: {} and Value {}", contentType, contentKey, value);
+    ContentEntry entry = new ContentEntry(contentKey, value);
+    LOG.info("Store {} with Key: {} and Value {}", entry.getContentType(), contentKey, value);
     try {
-      switch (contentType) {
-        case ContentType.BLOCK_HEADER -> {
-          Bytes blockHash = contentKey.slice(1, contentKey.size()); // blockHash is in ssz.
-          // block_header_with_proof = BlockHeaderWithProof(header: rlp.encode(header), proof:
-          // proof)
-          if (!ContentUtil.isBlockHeaderValid(blockHash, value)) {
-            LOG.info("BlockHeader for blockHash: {} is invalid", blockHash);
-            break;
-          }
-          save(KeyValueSegment.BLOCK_HEADER, blockHash, value); // TODO async
-        }
-        case ContentType.BLOCK_BODY -> {
-          Bytes blockHash = contentKey.slice(1, contentKey.size()); // blockHash is in ssz.
-          this.getBlockHeaderByBlockHash(blockHash)
-              .ifPresentOrElse(
-                  blockHeader -> {
-                    if (!ContentUtil.isBlockBodyValid(blockHeader, value)) {
-                      save(KeyValueSegment.BLOCK_BODY, blockHash, value);
-                    } else {
-                      LOG.info("BlockBody for blockHash: {} is invalid", blockHash);
-                    }
-                  },
-                  () -> {
-                    // TODO trigger a lookup: Query X nearest  until either content is found or no
-                    // peers are left to query.
-                    LOG.info("Block Header for {} not found locally", blockHash);
-                  });
-        }
-        case ContentType.RECEIPT -> {
-          Bytes blockHashInSSZ = contentKey.slice(1, contentKey.size());
-          // TODO should we do any validation?
-          save(KeyValueSegment.RECEIPT, blockHashInSSZ, value);
-        }
-        case ContentType.BLOCK_HEADER_BY_NUMBER -> {
-          Bytes blockNumberInSSZ = contentKey.slice(1, contentKey.size());
-          if (!ContentUtil.isBlockHeaderValid(blockNumberInSSZ, value)) {
-            LOG.info("BlockHeader for blockNumber: {} is invalid", blockNumberInSSZ);
-            break;
-          }
-          // TODO once ssz is solve change this.
-          var blockHash = Bytes.EMPTY;
-          var blockNumber = Bytes.EMPTY;
-          save(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, blockNumber, blockHash);
-          save(KeyValueSegment.BLOCK_HEADER, blockHash, value);
-        }
-        default ->
-            throw new IllegalArgumentException(
-                String.format("CONTENT: Invalid payload type %s", contentType));
+      if (!contentValidator.isValid(entry)) {
+        return false;
       }
+      saveValidatedContent(List.of(entry)).join();
       return true;
     } catch (Exception e) {
       LOG.info("Content could not be saved. ContentKey: {} , ContentValue{}", contentKey, value);
@@ -98,59 +199,416 @@ public class HistoryRocksDB implements HistoryDB {
     }
   }
 
+  @Override
+  public SafeFuture<Void> saveValidatedContent(List<ContentEntry> entries) {
+    try {
+      if (writeBehindBufferBytes == 0) {
+        return writeValidatedContent(entries);
+      }
+      return writeBehind(entries);
+    } catch (RuntimeException e) {
+      return SafeFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Makes the entries readable from the overlay right away, then queues them for the next group
+   * commit. Once the overlay is full, the calling thread waits for earlier writes to be committed.
+   */
+  private SafeFuture<Void> writeBehind(List<ContentEntry> entries) {
+    List<ContentWrite> writes = toContentWrites(entries);
+    long size = writes.stream().mapToLong(write -> write.value().size()).sum();
+    try {
+      reserveWriteBehind(size);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return SafeFuture.failedFuture(new StorageException(e));
+    }
+    pendingCount.addAndGet(writes.size());
+    writes.forEach(write -> pendingWrites.put(write.segmentKey(), write.value()));
+    OperationTimer.TimingContext flushTimer = writeBehindLatency.startTimer();
+    return writeContent(writes)
+        .whenComplete(
+            (__, error) -> {
+              flushTimer.stopTimer();
+              // Unless overwritten by a later write, still pending.
+              writes.forEach(write -> pendingWrites.remove(write.segmentKey(), write.value()));
+              pendingCount.addAndGet(-writes.size());
+              releaseWriteBehind(size);
+              if (error != null) {
+                LOG.warn(
+                    "Content could not be saved. ContentKeys: {}",
+                    entries.stream().map(ContentEntry::contentKey).toList(),
+                    error);
+              }
+            });
+  }
+
+  private void reserveWriteBehind(long size) throws InterruptedException {
+    synchronized (writeBehindLock) {
+      // Writes larger than the whole overlay only wait for it to be empty.
+      while (pendingBytes.get() > 0 && pendingBytes.get() + size > writeBehindBufferBytes) {
+        blockedWrites.inc();
+        writeBehindLock.wait();
+      }
+      pendingBytes.addAndGet(size);
+    }
+  }
+
+  private void releaseWriteBehind(long size) {
+    synchronized (writeBehindLock) {
+      pendingBytes.addAndGet(-size);
+      writeBehindLock.notifyAll();
+    }
+  }
+
+  /**
+   * Queues the entries for the next group commit, which stores them together with the writes of
+   * the other threads. The entries are stored atomically, and the storage usage is updated once
+   * they are committed.
+   *
+   * @param entries the validated entries to store
+   * @return a future completing once the entries are committed
+   */
+  private SafeFuture<Void> writeValidatedContent(List<ContentEntry> entries) {
+    return writeContent(toContentWrites(entries));
+  }
+
+  private SafeFuture<Void> writeContent(List<ContentWrite> writes) {
+    return groupCommitWriter
+        .submit(
+            batch ->
+                writes.stream()
+                    .mapToLong(write -> put(batch, write.segment(), write.key(), write.value()))
+                    .sum())
+        .thenAccept(storageUsage::addAndGet);
+  }
+
+  private static List<ContentWrite> toContentWrites(List<ContentEntry> entries) {
+    return entries.stream().flatMap(entry -> toContentWrites(entry).stream()).toList();
+  }
+
+  private static List<ContentWrite> toContentWrites(ContentEntry entry) {
+    Bytes key = entry.contentKey().slice(1); // blockHash or blockNumber, in ssz.
+    return switch (entry.getContentType()) {
+      case BLOCK_HEADER ->
+          List.of(new ContentWrite(KeyValueSegment.BLOCK_HEADER, key, entry.value()));
+      case BLOCK_BODY -> List.of(new ContentWrite(KeyValueSegment.BLOCK_BODY, key, entry.value()));
+      case RECEIPT -> List.of(new ContentWrite(KeyValueSegment.RECEIPT, key, entry.value()));
+      case BLOCK_HEADER_BY_NUMBER -> {
+        Bytes blockHash =
+            ContentUtil.createBlockHashFromSSZBytes(entry.value().toArrayUnsafe())
+                .orElseThrow(
+                    () ->
+                        new IllegalArgumentException(
+                            String.format("Invalid block header for %s", entry.contentKey())));
+        yield List.of(
+            new ContentWrite(
+                KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, toBlockNumberKey(key), blockHash),
+            new ContentWrite(KeyValueSegment.BLOCK_HEADER, blockHash, entry.value()));
+      }
+    };
+  }
+
   @Override
   public Optional<BlockHeader> getBlockHeaderByBlockHash(Bytes blockHash) {
-    Optional<byte[]> sszBlockHeader =
-        this.rocksDBInstance.get(KeyValueSegment.BLOCK_HEADER, blockHash.toArray());
+    Optional<byte[]> sszBlockHeader = read(KeyValueSegment.BLOCK_HEADER, blockHash);
     return sszBlockHeader.flatMap(ContentUtil::createBlockHeaderfromSSZBytes);
   }
 
   @Override
   public Optional<Bytes> getBlockHashByBlockNumber(Bytes blockNumber) {
     Optional<byte[]> blockHash =
-        this.rocksDBInstance.get(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, blockNumber.toArray());
-    return blockHash.flatMap(ContentUtil::createBlockHashFromSSZBytes);
+        read(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, toBlockNumberKey(blockNumber));
+    return blockHash.map(Bytes::wrap);
   }
 
   @Override
   public Optional<BlockBody> getBlockBodyByBlockHash(Bytes blockHash) {
-    Optional<byte[]> sszBlockBody =
-        this.rocksDBInstance.get(KeyValueSegment.BLOCK_BODY, blockHash.toArray());
+    Optional<byte[]> sszBlockBody = read(KeyValueSegment.BLOCK_BODY, blockHash);
     return sszBlockBody.flatMap(ContentUtil::createBlockBodyFromSSZBytes);
   }
 
   @Override
   public Optional<BlockWithReceipts> getBlockReceiptByBlockHash(Bytes blockHash) {
-    Optional<byte[]> sszBlockHeader =
-        this.rocksDBInstance.get(KeyValueSegment.RECEIPT, blockHash.toArray());
+    Optional<byte[]> sszBlockHeader = read(KeyValueSegment.RECEIPT, blockHash);
     return sszBlockHeader.flatMap(ContentUtil::createBlockWithReceiptsfromSSZBytes);
   }
 
   @Override
   public Optional<byte[]> get(ContentType contentType, Bytes contentKey) {
-    return this.rocksDBInstance.get(getSegmentFromContentType(contentType), contentKey.toArray());
+    return toSegmentKey(contentType, contentKey)
+        .flatMap(segmentKey -> read(segmentKey.segment(), segmentKey.key()));
+  }
+
+  @Override
+  public Optional<ValueView> getContent(ContentType contentType, Bytes contentKey) {
+    return toSegmentKey(contentType, contentKey).flatMap(this::readContent);
+  }
+
+  private Optional<ValueView> readContent(SegmentKey segmentKey) {
+    Bytes pending = pendingWrites.get(segmentKey);
+    if (pending != null) {
+      return Optional.of(ValueView.of(pending));
+    }
+    return rocksDBInstance.getDirect(segmentKey.segment(), segmentKey.key().toArrayUnsafe());
   }
 
-  private void save(Segment segment, Bytes key, Bytes content) {
+  @Override
+  public OptionalInt getContentSize(ContentType contentType, Bytes contentKey) {
+    Optional<SegmentKey> segmentKey = toSegmentKey(contentType, contentKey);
+    if (segmentKey.isEmpty()) {
+      return OptionalInt.empty();
+    }
+    Bytes pending = pendingWrites.get(segmentKey.get());
+    if (pending != null) {
+      return OptionalInt.of(pending.size());
+    }
+    ContentDistanceIndex index =
+        ContentDistanceIndex.create(
+            ContentDistanceIndex.toContentKey(
+                (KeyValueSegment) segmentKey.get().segment(), segmentKey.get().key()),
+            localNodeId,
+            0);
+    return rocksDBInstance
+        .get(KeyValueSegment.CONTENT_DISTANCE_INDEX, index.indexKey())
+        .map(value -> OptionalInt.of(ContentDistanceIndex.decode(index.indexKey(), value).size()))
+        .orElse(OptionalInt.empty());
+  }
+
+  @Override
+  public List<Optional<byte[]>> multiGet(List<Pair<ContentType, Bytes>> keys) {
+    List<Optional<byte[]>> values = new ArrayList<>(keys.size());
+    List<Integer> storedIndexes = new ArrayList<>();
+    List<Pair<Segment, byte[]>> storedKeys = new ArrayList<>();
+    for (Pair<ContentType, Bytes> key : keys) {
+      Optional<SegmentKey> segmentKey = toSegmentKey(key.getKey(), key.getValue());
+      Bytes pending = segmentKey.map(pendingWrites::get).orElse(null);
+      if (segmentKey.isPresent() && pending == null) {
+        storedIndexes.add(values.size());
+        storedKeys.add(Pair.of(segmentKey.get().segment(), segmentKey.get().key().toArray()));
+      }
+      values.add(Optional.ofNullable(pending).map(Bytes::toArray));
+    }
+    List<Optional<byte[]>> stored = rocksDBInstance.multiGet(storedKeys);
+    for (int i = 0; i < stored.size(); i++) {
+      values.set(storedIndexes.get(i), stored.get(i));
+    }
+    return values;
+  }
+
+  /**
+   * Finds where the content of a key is stored. Headers requested by number are stored by block
+   * hash, so the block number index is read first, and they are missing without an index entry.
+   */
+  private Optional<SegmentKey> toSegmentKey(ContentType contentType, Bytes contentKey) {
+    return switch (contentType) {
+      case BLOCK_HEADER -> Optional.of(new SegmentKey(KeyValueSegment.BLOCK_HEADER, contentKey));
+      case BLOCK_BODY -> Optional.of(new SegmentKey(KeyValueSegment.BLOCK_BODY, contentKey));
+      case RECEIPT -> Optional.of(new SegmentKey(KeyValueSegment.RECEIPT, contentKey));
+      case BLOCK_HEADER_BY_NUMBER ->
+          getBlockHashByBlockNumber(contentKey)
+              .map(blockHash -> new SegmentKey(KeyValueSegment.BLOCK_HEADER, blockHash));
+    };
+  }
+
+  /** Reads the content written behind if it is not committed yet, the database otherwise. */
+  private Optional<byte[]> read(Segment segment, Bytes key) {
+    Bytes pending = pendingWrites.get(new SegmentKey(segment, key));
+    if (pending != null) {
+      return Optional.of(pending.toArray());
+    }
+    return this.rocksDBInstance.get(segment, key.toArray());
+  }
+
+  /** Includes the content written behind, so pruning makes room for it before it lands. */
+  @Override
+  public long getStorageUsage() {
+    return storageUsage.get() + pendingBytes.get();
+  }
+
+  @Override
+  public synchronized Optional<UInt256> pruneFarthestContent(
+      long targetUsageBytes, Consumer<Bytes> evictionListener) {
+    int evicted = 0;
+    // Only committed content can be evicted; what is written behind is left for the next round.
+    long usage = storageUsage.get();
+    List<byte[]> indexKeys = new ArrayList<>(PRUNE_BATCH_SIZE);
+    try (Stream<Pair<byte[], byte[]>> entries =
+        rocksDBInstance.streamReverse(KeyValueSegment.CONTENT_DISTANCE_INDEX)) {
+      for (Pair<byte[], byte[]> entry : (Iterable<Pair<byte[], byte[]>>) entries::iterator) {
+        ContentDistanceIndex index = ContentDistanceIndex.decode(entry.getKey(), entry.getValue());
+        if (usage <= targetUsageBytes) {
+          evicted += evict(indexKeys, evictionListener);
+          LOG.info("Evicted {} items, new radius {}", evicted, index.distance());
+          return Optional.of(index.distance());
+        }
+        indexKeys.add(entry.getKey());
+        usage -= index.size();
+        if (indexKeys.size() == PRUNE_BATCH_SIZE) {
+          evicted += evict(indexKeys, evictionListener);
+          indexKeys.clear();
+        }
+      }
+    }
+    evicted += evict(indexKeys, evictionListener);
+    LOG.info("Evicted all {} stored items", evicted);
+    return Optional.empty();
+  }
+
+  /**
+   * Removes the indexed content on the writer thread, so it does not race with content being
+   * stored again, and waits for the removal to be committed.
+   *
+   * @return the number of items evicted
+   */
+  private int evict(List<byte[]> indexKeys, Consumer<Bytes> evictionListener) {
+    if (indexKeys.isEmpty()) {
+      return 0;
+    }
+    List<byte[]> evictedIndexKeys = List.copyOf(indexKeys);
+    Pair<Long, List<Bytes>> evicted =
+        groupCommitWriter
+            .submit(
+                batch -> {
+                  List<Bytes> evictedContentKeys = new ArrayList<>();
+                  long freedBytes =
+                      evictedIndexKeys.stream()
+                          .mapToLong(indexKey -> remove(batch, indexKey, evictedContentKeys))
+                          .sum();
+                  return Pair.of(freedBytes, evictedContentKeys);
+                })
+            .join();
+    storageUsage.addAndGet(-evicted.getKey());
+    evicted.getValue().forEach(evictionListener);
+    return evicted.getValue().size();
+  }
+
+  /**
+   * Removes the content an index entry points to, reading the entry through the batch since the
+   * content may have been stored again or evicted since the index was read. A header goes along
+   * with its block number index entry, so the header is not served by number afterwards.
+   *
+   * @param evictedContentKeys collects the content keys no longer served once the batch is
+   *     committed
+   * @return the number of bytes freed once the batch is committed
+   */
+  private long remove(KeyValueStorageBatch batch, byte[] indexKey, List<Bytes> evictedContentKeys) {
+    Optional<byte[]> indexValue = batch.get(KeyValueSegment.CONTENT_DISTANCE_INDEX, indexKey);
+    if (indexValue.isEmpty()) {
+      return 0;
+    }
+    ContentDistanceIndex index = ContentDistanceIndex.decode(indexKey, indexValue.get());
+    if (index.segment() == KeyValueSegment.BLOCK_HEADER) {
+      batch
+          .get(KeyValueSegment.BLOCK_HEADER, index.storageKey())
+          .flatMap(ContentUtil::createBlockHeaderfromSSZBytes)
+          .ifPresent(header -> removeBlockNumber(batch, header, evictedContentKeys));
+    }
+    batch.remove(index.segment(), index.storageKey());
+    batch.remove(KeyValueSegment.CONTENT_DISTANCE_INDEX, indexKey);
+    evictedContentKeys.add(index.contentKey());
+    return index.size();
+  }
+
+  private static void removeBlockNumber(
+      KeyValueStorageBatch batch, BlockHeader header, List<Bytes> evictedContentKeys) {
+    Bytes blockNumberKey = Bytes.ofUnsignedLong(header.getNumber());
+    Optional<byte[]> blockHash =
+        batch.get(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, blockNumberKey.toArrayUnsafe());
+    // Left alone if the number now points to another header.
+    if (blockHash.isPresent() && header.getHash().equals(Bytes.wrap(blockHash.get()))) {
+      batch.remove(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, blockNumberKey.toArrayUnsafe());
+      evictedContentKeys.add(
+          Bytes.concatenate(
+              Bytes.of(ContentType.BLOCK_HEADER_BY_NUMBER.getByteValue()),
+              toBlockNumberKey(blockNumberKey)));
+    }
+  }
+
+  @Override
+  public Optional<UInt256> getFarthestContentDistance() {
+    try (Stream<Pair<byte[], byte[]>> entries =
+        rocksDBInstance.streamReverse(KeyValueSegment.CONTENT_DISTANCE_INDEX)) {
+      return entries.findFirst().map(entry -> UInt256.fromBytes(Bytes.wrap(entry.getKey())));
+    }
+  }
+
+  @Override
+  public Stream<Bytes> streamContentKeysOutsideRadius(UInt256 radius) {
+    if (radius.equals(UInt256.MAX_VALUE)) {
+      return Stream.empty();
+    }
+    return rocksDBInstance
+        .streamFrom(
+            KeyValueSegment.CONTENT_DISTANCE_INDEX,
+            ContentDistanceIndex.toIndexKey(radius.add(UInt256.ONE)))
+        .map(entry -> ContentDistanceIndex.decode(entry.getKey(), entry.getValue()).contentKey());
+  }
+
+  @Override
+  public Stream<Pair<Bytes, Bytes>> streamBlockHashesByBlockNumber(
+      long fromBlockNumber, long toBlockNumber) {
+    checkArgument(fromBlockNumber <= toBlockNumber, "Invalid block number range");
+    return rocksDBInstance
+        .streamRange(
+            KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER,
+            Bytes.ofUnsignedLong(fromBlockNumber).toArrayUnsafe(),
+            // Keys compare unsigned, so the bound still follows Long.MAX_VALUE once it overflows.
+            Bytes.ofUnsignedLong(toBlockNumber + 1).toArrayUnsafe())
+        .map(HistoryRocksDB::toBlockHashByBlockNumber);
+  }
+
+  private static Pair<Bytes, Bytes> toBlockHashByBlockNumber(Pair<byte[], byte[]> entry) {
+    return Pair.of(toBlockNumberKey(Bytes.wrap(entry.getKey())), Bytes.wrap(entry.getValue()));
+  }
+
+  /**
+   * The block number index is keyed by big endian block numbers so it iterates in block order,
+   * while ssz encodes them little endian. Reversing the bytes converts either way.
+   */
+  private static Bytes toBlockNumberKey(Bytes blockNumber) {
+    return blockNumber.reverse();
+  }
+
+  /**
+   * Adds the content to the batch, along with its distance index entry when the segment holds
+   * content, so the index never points to missing content.
+   *
+   * @return the change in storage usage once the batch is committed
+   */
+  private long put(KeyValueStorageBatch batch, KeyValueSegment segment, Bytes key, Bytes content) {
     checkArgument(
         !content.isEmpty(),
         "Content should have more than 1 byte when persisting {}",
         segment.getName());
-    KeyValueStorageTransaction tx = rocksDBInstance.startTransaction();
-    tx.put(segment, key.toArray(), content.toArray());
-    tx.commit();
+    // RocksDB copies the value, so the content buffer is not copied beforehand.
+    batch.put(segment, key.toArray(), content.toArrayUnsafe());
+    if (!CONTENT_SEGMENTS.contains(segment)) {
+      return 0;
+    }
+    ContentDistanceIndex index =
+        ContentDistanceIndex.create(
+            ContentDistanceIndex.toContentKey(segment, key), localNodeId, content.size());
+    // Read through the batch, so content stored twice in a batch is only counted once.
+    long previousSize =
+        batch.get(KeyValueSegment.CONTENT_DISTANCE_INDEX, index.indexKey())
+            .map(value -> ContentDistanceIndex.decode(index.indexKey(), value).size())
+            .orElse(0);
+    batch.put(KeyValueSegment.CONTENT_DISTANCE_INDEX, index.indexKey(), index.indexValue());
+    return content.size() - previousSize;
   }
 
-  private Segment getSegmentFromContentType(ContentType contentType) {
-    return switch (contentType) {
-      case ContentType.BLOCK_HEADER -> KeyValueSegment.BLOCK_HEADER;
-      case ContentType.BLOCK_BODY -> KeyValueSegment.BLOCK_BODY;
-      case ContentType.RECEIPT -> KeyValueSegment.RECEIPT;
-      case ContentType.BLOCK_HEADER_BY_NUMBER -> KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER;
-    };
+  private record SegmentKey(Segment segment, Bytes key) {}
+
+  private record ContentWrite(KeyValueSegment segment, Bytes key, Bytes value) {
+    SegmentKey segmentKey() {
+      return new SegmentKey(segment, key);
+    }
   }
 
   public void close() {
+    this.groupCommitWriter.close();
     this.rocksDBInstance.close();
   }
 }
@@ -0,0 +1,111 @@
+package samba.storage.era1;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+
+/**
+ * The header accumulator of a pre-merge epoch, whose root era1 archives carry in their accumulator
+ * record. Headers are proven against it with the branch of their header record:
+ *
+ * <pre>
+ * EpochRecord = List[HeaderRecord, EPOCH_SIZE]
+ * HeaderRecord = Container(block_hash: Bytes32, total_difficulty: uint256)
+ * BlockProofHistoricalHashesAccumulator = Vector[Bytes32, 15]
+ * </pre>
+ *
+ * The proof of a block hash starts with the total difficulty next to it in its record, followed by
+ * the 13 siblings up the record tree and the length mixed in at the root.
+ */
+final class EpochAccumulator {
+
+  static final int EPOCH_SIZE = 8192;
+  static final long MERGE_BLOCK_NUMBER = 15_537_394L;
+  static final int PROOF_LENGTH = 15;
+  private static final int DEPTH = 13;
+  private static final Bytes32[] ZERO_HASHES = new Bytes32[DEPTH + 1];
+
+  static {
+    ZERO_HASHES[0] = Bytes32.ZERO;
+    for (int depth = 0; depth < DEPTH; depth++) {
+      ZERO_HASHES[depth + 1] = hash(ZERO_HASHES[depth], ZERO_HASHES[depth]);
+    }
+  }
+
+  private final List<Bytes32> totalDifficulties;
+  // The nodes of each level of the record tree, from the header records up to the root.
+  private final Bytes32[][] levels = new Bytes32[DEPTH + 1][];
+
+  /**
+   * @param blockHashes the hashes of the blocks of the epoch, in block number order
+   * @param totalDifficulties the total difficulties of the blocks, as ssz uint256
+   */
+  EpochAccumulator(final List<Bytes32> blockHashes, final List<Bytes32> totalDifficulties) {
+    checkArgument(
+        blockHashes.size() == totalDifficulties.size() && blockHashes.size() <= EPOCH_SIZE,
+        "Invalid epoch of %s blocks",
+        blockHashes.size());
+    this.totalDifficulties = totalDifficulties;
+    levels[0] = new Bytes32[blockHashes.size()];
+    for (int i = 0; i < blockHashes.size(); i++) {
+      levels[0][i] = hash(blockHashes.get(i), totalDifficulties.get(i));
+    }
+    for (int depth = 0; depth < DEPTH; depth++) {
+      final Bytes32[] nodes = levels[depth];
+      levels[depth + 1] = new Bytes32[(nodes.length + 1) / 2];
+      for (int i = 0; i < levels[depth + 1].length; i++) {
+        levels[depth + 1][i] = hash(nodes[2 * i], node(depth, 2 * i + 1));
+      }
+    }
+  }
+
+  /**
+   * Whether the blocks make up a whole epoch, the last pre-merge epoch ending at the merge.
+   *
+   * @param startingBlockNumber the number of the first block
+   * @param blockCount the number of consecutive blocks
+   */
+  static boolean isCompleteEpoch(final long startingBlockNumber, final int blockCount) {
+    return startingBlockNumber % EPOCH_SIZE == 0
+        && (blockCount == EPOCH_SIZE
+            || (blockCount < EPOCH_SIZE
+                && startingBlockNumber + blockCount == MERGE_BLOCK_NUMBER));
+  }
+
+  Bytes32 root() {
+    return hash(node(DEPTH, 0), lengthChunk());
+  }
+
+  /**
+   * @param index the index of the block in the epoch
+   * @return the branch proving the block hash against {@link #root()}
+   */
+  List<Bytes32> proof(final int index) {
+    checkArgument(index >= 0 && index < levels[0].length, "Block %s not in the epoch", index);
+    final List<Bytes32> proof = new ArrayList<>(PROOF_LENGTH);
+    proof.add(totalDifficulties.get(index));
+    for (int depth = 0; depth < DEPTH; depth++) {
+      proof.add(node(depth, (index >> depth) ^ 1));
+    }
+    proof.add(lengthChunk());
+    return proof;
+  }
+
+  private Bytes32 node(final int depth, final int index) {
+    return index < levels[depth].length ? levels[depth][index] : ZERO_HASHES[depth];
+  }
+
+  private Bytes32 lengthChunk() {
+    return Bytes32.rightPad(Bytes.ofUnsignedLong(levels[0].length, ByteOrder.LITTLE_ENDIAN));
+  }
+
+  private static Bytes32 hash(final Bytes32 left, final Bytes32 right) {
+    return Hash.sha2_256(Bytes.concatenate(left, right));
+  }
+}
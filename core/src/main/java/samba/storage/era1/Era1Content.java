@@ -0,0 +1,101 @@
+package samba.storage.era1;
+
+import samba.schema.content.BlockBodyPreShanghaiContainer;
+import samba.schema.content.BlockHeaderWithProofContainer;
+import samba.schema.content.ReceiptsList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.ethereum.rlp.BytesValueRLPOutput;
+import org.hyperledger.besu.ethereum.rlp.RLP;
+import org.hyperledger.besu.ethereum.rlp.RLPInput;
+import org.hyperledger.besu.ethereum.rlp.RLPOutput;
+
+/**
+ * Converts the RLP content of era1 archives to the SSZ containers the history network serves, and
+ * back. Transactions and receipts are kept in their eth wire protocol encoding: an RLP list for
+ * legacy ones, the type followed by the payload for typed ones.
+ */
+final class Era1Content {
+
+  private static final int RLP_LIST_PREFIX = 0xc0;
+
+  private Era1Content() {}
+
+  static Bytes toBlockHeaderWithProof(final Bytes header, final List<Bytes32> proof) {
+    return new BlockHeaderWithProofContainer(header, Bytes.concatenate(proof.toArray(Bytes[]::new)))
+        .sszSerialize();
+  }
+
+  /** Converts a pre-Shanghai body, era1 archives only holding pre-merge blocks. */
+  static Bytes toBlockBody(final Bytes body) {
+    final RLPInput input = RLP.input(body);
+    input.enterList();
+    final List<Bytes> transactions = readEncodedItems(input);
+    final Bytes uncles = input.readAsRlp().raw();
+    input.leaveList();
+    return new BlockBodyPreShanghaiContainer(transactions, uncles).sszSerialize();
+  }
+
+  static Bytes toReceipts(final Bytes receipts) {
+    return ReceiptsList.encode(readEncodedItems(RLP.input(receipts)));
+  }
+
+  static Bytes toRlpHeader(final Bytes blockHeaderWithProof) {
+    return BlockHeaderWithProofContainer.decode(blockHeaderWithProof).getHeader();
+  }
+
+  /**
+   * The total difficulty of a pre-merge header, the first element of its accumulator proof.
+   *
+   * @return the total difficulty as ssz uint256, empty if the proof is not an accumulator proof
+   */
+  static Optional<Bytes32> toTotalDifficulty(final Bytes blockHeaderWithProof) {
+    final Bytes proof = BlockHeaderWithProofContainer.decode(blockHeaderWithProof).getProof();
+    return proof.size() == EpochAccumulator.PROOF_LENGTH * Bytes32.SIZE
+        ? Optional.of(Bytes32.wrap(proof.slice(0, Bytes32.SIZE)))
+        : Optional.empty();
+  }
+
+  static Bytes toRlpBlockBody(final Bytes blockBody) {
+    final BlockBodyPreShanghaiContainer container = BlockBodyPreShanghaiContainer.decode(blockBody);
+    final BytesValueRLPOutput output = new BytesValueRLPOutput();
+    output.startList();
+    writeEncodedItems(output, container.getTransactions());
+    output.writeRaw(container.getUncles());
+    output.endList();
+    return output.encoded();
+  }
+
+  static Bytes toRlpReceipts(final Bytes receipts) {
+    final BytesValueRLPOutput output = new BytesValueRLPOutput();
+    writeEncodedItems(output, ReceiptsList.decode(receipts));
+    return output.encoded();
+  }
+
+  private static List<Bytes> readEncodedItems(final RLPInput input) {
+    final List<Bytes> items = new ArrayList<>();
+    input.enterList();
+    while (!input.isEndOfCurrentList()) {
+      items.add(input.nextIsList() ? input.readAsRlp().raw() : input.readBytes());
+    }
+    input.leaveList();
+    return items;
+  }
+
+  private static void writeEncodedItems(final RLPOutput output, final List<Bytes> items) {
+    output.startList();
+    for (Bytes item : items) {
+      if (!item.isEmpty() && (item.get(0) & 0xff) >= RLP_LIST_PREFIX) {
+        output.writeRaw(item);
+      } else {
+        output.writeBytes(item);
+      }
+    }
+    output.endList();
+  }
+}
@@ -0,0 +1,207 @@
+package samba.storage.era1;
+
+import samba.domain.content.ContentType;
+import samba.metrics.SambaMetricCategory;
+import samba.storage.HistoryDB;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+
+/**
+ * Writes the stored history to era1 archives, walking the block number index and reading the
+ * header, body and receipts of each block in batches. Archives hold up to {@link #BLOCKS_PER_FILE}
+ * consecutive blocks: an epoch boundary or a block missing any of its content closes the current
+ * file, so each archive is a complete run of blocks. The stored containers are converted back to
+ * RLP, and the total difficulty of each block is taken from the accumulator proof of its header, so
+ * blocks without one are treated as missing content.
+ *
+ * <p>Writes are throttled to the configured rate so an export does not compete with the content
+ * served to peers for disk bandwidth. Callers should hand it the database rather than a cache in
+ * front of it, so a full scan does not evict the content peers ask for.
+ */
+public class Era1Exporter {
+
+  private static final Logger LOG = LogManager.getLogger();
+  public static final int BLOCKS_PER_FILE = 8192;
+  private static final int READ_BATCH_SIZE = 256;
+
+  private final HistoryDB historyDB;
+  private final RateLimiter rateLimiter;
+  private final Counter exportedBlocksCounter;
+  private final Counter exportedBytesCounter;
+  private final Counter incompleteBlocksCounter;
+
+  public Era1Exporter(
+      final HistoryDB historyDB,
+      final long rateLimitBytesPerSecond,
+      final MetricsSystem metricsSystem) {
+    this.historyDB = historyDB;
+    this.rateLimiter = RateLimiter.create(rateLimitBytesPerSecond);
+    this.exportedBlocksCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_exported_blocks_total",
+            "Total number of blocks exported to era1 archives");
+    this.exportedBytesCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_exported_bytes_total",
+            "Total number of bytes written to era1 archives");
+    this.incompleteBlocksCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_export_incomplete_blocks_total",
+            "Total number of indexed blocks skipped by the export because of missing content");
+  }
+
+  /**
+   * Exports every block of the block number index whose header, body and receipts are stored.
+   *
+   * @param directory the directory the era1 files are written to
+   * @return the number of exported blocks
+   * @throws IOException if an archive can not be written
+   */
+  public long export(final Path directory) throws IOException {
+    return export(directory, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Exports the blocks of a range of the block number index whose header, body and receipts are
+   * stored, reading only the index keys of that range.
+   *
+   * @param directory the directory the era1 files are written to
+   * @param fromBlockNumber the first block number to export
+   * @param toBlockNumber the last block number to export
+   * @return the number of exported blocks
+   * @throws IOException if an archive can not be written
+   */
+  public long export(final Path directory, final long fromBlockNumber, final long toBlockNumber)
+      throws IOException {
+    Files.createDirectories(directory);
+    final long start = System.nanoTime();
+    long exportedBlocks = 0;
+    long incompleteBlocks = 0;
+    Era1Writer writer = null;
+    long nextBlockNumber = -1;
+    try (Stream<Pair<Bytes, Bytes>> index =
+        historyDB.streamBlockHashesByBlockNumber(fromBlockNumber, toBlockNumber)) {
+      final Iterator<Pair<Bytes, Bytes>> blocks = index.iterator();
+      while (blocks.hasNext()) {
+        for (ExportedBlock block : readBatch(blocks)) {
+          if (block.content().isEmpty()) {
+            incompleteBlocks++;
+            incompleteBlocksCounter.inc();
+            writer = closeWriter(writer);
+            continue;
+          }
+          if (writer != null
+              && (block.number() != nextBlockNumber || block.number() % BLOCKS_PER_FILE == 0)) {
+            writer = closeWriter(writer);
+          }
+          if (writer == null) {
+            writer = new Era1Writer(directory.resolve(fileName(block.number())), block.number());
+          }
+          final BlockContent content = block.content().get();
+          final long written =
+              writer.writeBlock(
+                  content.header(), content.body(), content.receipts(), content.totalDifficulty());
+          rateLimiter.acquire((int) Math.min(written, Integer.MAX_VALUE));
+          exportedBlocksCounter.inc();
+          exportedBytesCounter.inc(written);
+          exportedBlocks++;
+          nextBlockNumber = block.number() + 1;
+        }
+      }
+    } finally {
+      closeWriter(writer);
+    }
+    LOG.info(
+        "Exported {} blocks to {} in {}s, {} indexed blocks had missing content",
+        exportedBlocks,
+        directory,
+        String.format("%.1f", (System.nanoTime() - start) / 1e9),
+        incompleteBlocks);
+    return exportedBlocks;
+  }
+
+  private List<ExportedBlock> readBatch(final Iterator<Pair<Bytes, Bytes>> blocks) {
+    final List<Pair<Bytes, Bytes>> entries = new ArrayList<>(READ_BATCH_SIZE);
+    final List<Pair<ContentType, Bytes>> contentKeys = new ArrayList<>(3 * READ_BATCH_SIZE);
+    while (blocks.hasNext() && entries.size() < READ_BATCH_SIZE) {
+      final Pair<Bytes, Bytes> entry = blocks.next();
+      entries.add(entry);
+      contentKeys.add(Pair.of(ContentType.BLOCK_HEADER, entry.getValue()));
+      contentKeys.add(Pair.of(ContentType.BLOCK_BODY, entry.getValue()));
+      contentKeys.add(Pair.of(ContentType.RECEIPT, entry.getValue()));
+    }
+    // The header, body and receipts of the whole batch are read in a single call.
+    final List<Optional<byte[]>> content = historyDB.multiGet(contentKeys);
+    final List<ExportedBlock> batch = new ArrayList<>(entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      final Optional<byte[]> header = content.get(3 * i);
+      final Optional<byte[]> body = content.get(3 * i + 1);
+      final Optional<byte[]> receipts = content.get(3 * i + 2);
+      final long blockNumber = entries.get(i).getKey().toLong(ByteOrder.LITTLE_ENDIAN);
+      batch.add(
+          new ExportedBlock(
+              blockNumber,
+              header.isPresent() && body.isPresent() && receipts.isPresent()
+                  ? toBlockContent(
+                      blockNumber,
+                      Bytes.wrap(header.get()),
+                      Bytes.wrap(body.get()),
+                      Bytes.wrap(receipts.get()))
+                  : Optional.empty()));
+    }
+    return batch;
+  }
+
+  private static Optional<BlockContent> toBlockContent(
+      final long blockNumber, final Bytes header, final Bytes body, final Bytes receipts) {
+    try {
+      return Era1Content.toTotalDifficulty(header)
+          .map(
+              totalDifficulty ->
+                  new BlockContent(
+                      Era1Content.toRlpHeader(header),
+                      Era1Content.toRlpBlockBody(body),
+                      Era1Content.toRlpReceipts(receipts),
+                      totalDifficulty));
+    } catch (RuntimeException e) {
+      LOG.debug("Content of block {} can not be exported", blockNumber, e);
+      return Optional.empty();
+    }
+  }
+
+  private static Era1Writer closeWriter(final Era1Writer writer) throws IOException {
+    if (writer != null) {
+      writer.close();
+    }
+    return null;
+  }
+
+  private static String fileName(final long startingBlockNumber) {
+    return String.format(
+        "history-%05d-%08d.era1", startingBlockNumber / BLOCKS_PER_FILE, startingBlockNumber);
+  }
+
+  private record ExportedBlock(long number, Optional<BlockContent> content) {}
+
+  private record BlockContent(Bytes header, Bytes body, Bytes receipts, Bytes32 totalDifficulty) {}
+}
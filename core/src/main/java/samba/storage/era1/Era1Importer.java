@@ -0,0 +1,293 @@
+package samba.storage.era1;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
+import samba.metrics.SambaMetricCategory;
+import samba.storage.ContentValidationPipeline;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.ethereum.core.BlockHeader;
+import org.hyperledger.besu.ethereum.mainnet.MainnetBlockHeaderFunctions;
+import org.hyperledger.besu.ethereum.rlp.RLP;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+
+/**
+ * Seeds the history database from local era1 archives. The headers of an archive are decoded and
+ * hashed in parallel to rebuild its epoch accumulator, which must match the accumulator record of
+ * the archive. Batches of blocks are then converted to the history network containers, headers
+ * along with their proof against the accumulator, and handed to the validation pipeline while the
+ * next batch is decoded. Each header is stored by block number, so the block number index is
+ * populated as well.
+ *
+ * <p>Only archives holding a complete pre-merge epoch can be proven; other archives, such as the
+ * partial ones written by {@link Era1Exporter}, are skipped.
+ */
+public class Era1Importer implements AutoCloseable {
+
+  private static final Logger LOG = LogManager.getLogger();
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+  private static final int MAX_PENDING_BATCHES = 4;
+  private static final String ERA1_FILE_EXTENSION = ".era1";
+  private static final int CONTENT_PER_BLOCK = 3;
+  private static final MainnetBlockHeaderFunctions BLOCK_HEADER_FUNCTIONS =
+      new MainnetBlockHeaderFunctions();
+
+  private final ContentValidationPipeline contentValidationPipeline;
+  private final int batchSize;
+  private final ForkJoinPool decodePool;
+  private final Counter importedBlocksCounter;
+  private final Counter importedBytesCounter;
+  private final Counter importedFilesCounter;
+  private final Counter skippedFilesCounter;
+  private final Counter invalidContentCounter;
+
+  public Era1Importer(
+      final ContentValidationPipeline contentValidationPipeline,
+      final MetricsSystem metricsSystem) {
+    this(
+        contentValidationPipeline,
+        DEFAULT_BATCH_SIZE,
+        Runtime.getRuntime().availableProcessors(),
+        metricsSystem);
+  }
+
+  public Era1Importer(
+      final ContentValidationPipeline contentValidationPipeline,
+      final int batchSize,
+      final int parallelism,
+      final MetricsSystem metricsSystem) {
+    this.contentValidationPipeline = contentValidationPipeline;
+    this.batchSize = batchSize;
+    this.decodePool = new ForkJoinPool(parallelism);
+    this.importedBlocksCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_imported_blocks_total",
+            "Total number of blocks imported from era1 archives");
+    this.importedBytesCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_imported_bytes_total",
+            "Total number of content bytes imported from era1 archives");
+    this.importedFilesCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_imported_files_total",
+            "Total number of era1 archives imported");
+    this.skippedFilesCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_skipped_files_total",
+            "Total number of era1 archives skipped since their headers can not be proven");
+    this.invalidContentCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_invalid_content_total",
+            "Total number of content items of era1 archives rejected by the validation");
+  }
+
+  /**
+   * Imports every era1 file of the directory, in file name order.
+   *
+   * @param directory the directory holding the era1 files
+   * @return the number of imported blocks
+   * @throws IOException if the directory or one of the files can not be read
+   */
+  public long importDirectory(final Path directory) throws IOException {
+    final List<Path> files;
+    try (Stream<Path> paths = Files.list(directory)) {
+      files =
+          paths
+              .filter(path -> path.getFileName().toString().endsWith(ERA1_FILE_EXTENSION))
+              .sorted()
+              .toList();
+    }
+    LOG.info("Importing {} era1 files from {}", files.size(), directory);
+    long importedBlocks = 0;
+    for (Path file : files) {
+      importedBlocks += importFile(file);
+    }
+    return importedBlocks;
+  }
+
+  /**
+   * Imports the headers, bodies and receipts of an era1 file holding a complete pre-merge epoch.
+   *
+   * @param file the era1 file
+   * @return the number of imported blocks, 0 if the archive is skipped
+   * @throws IOException if the file can not be read or decoded
+   */
+  public long importFile(final Path file) throws IOException {
+    final long start = System.nanoTime();
+    final Era1Reader.Archive archive = Era1Reader.readArchive(file);
+    final List<Era1Reader.BlockTuple> tuples = archive.blockTuples();
+    final Deque<Future<List<ContentEntry>>> decodedBatches = new ArrayDeque<>();
+    long importedBlocks = 0;
+    long importedBytes = 0;
+    try {
+      final List<Header> headers = decodePool.submit(() -> decodeHeaders(tuples)).get();
+      final Optional<EpochAccumulator> accumulator = createAccumulator(file, archive, headers);
+      if (accumulator.isEmpty()) {
+        skippedFilesCounter.inc();
+        return 0;
+      }
+      int nextBatch = 0;
+      while (nextBatch < tuples.size() || !decodedBatches.isEmpty()) {
+        while (nextBatch < tuples.size() && decodedBatches.size() < MAX_PENDING_BATCHES) {
+          final int from = nextBatch;
+          final int to = Math.min(from + batchSize, tuples.size());
+          decodedBatches.add(
+              decodePool.submit(() -> decode(tuples, headers, accumulator.get(), from, to)));
+          nextBatch = to;
+        }
+        final List<ContentEntry> entries = decodedBatches.poll().get();
+        final List<Boolean> stored = contentValidationPipeline.submit(entries).join();
+        int blocks = 0;
+        long bytes = 0;
+        for (int i = 0; i < entries.size(); i += CONTENT_PER_BLOCK) {
+          boolean complete = true;
+          for (int j = i; j < i + CONTENT_PER_BLOCK; j++) {
+            if (stored.get(j)) {
+              bytes += entries.get(j).value().size();
+            } else {
+              complete = false;
+              invalidContentCounter.inc();
+              LOG.warn("Invalid content in {}. ContentKey: {}", file, entries.get(j).contentKey());
+            }
+          }
+          blocks += complete ? 1 : 0;
+        }
+        importedBlocks += blocks;
+        importedBytes += bytes;
+        importedBlocksCounter.inc(blocks);
+        importedBytesCounter.inc(bytes);
+      }
+    } catch (ExecutionException e) {
+      throw new IOException(String.format("Could not decode era1 file %s", file), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(String.format("Import of era1 file %s interrupted", file), e);
+    } finally {
+      decodedBatches.forEach(batch -> batch.cancel(true));
+    }
+    importedFilesCounter.inc();
+    final double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-3);
+    LOG.info(
+        "Imported {} blocks from {} in {}s ({} blocks/s, {} MB/s)",
+        importedBlocks,
+        file.getFileName(),
+        String.format("%.1f", seconds),
+        String.format("%.0f", importedBlocks / seconds),
+        String.format("%.1f", importedBytes / seconds / (1024 * 1024)));
+    return importedBlocks;
+  }
+
+  private static List<Header> decodeHeaders(final List<Era1Reader.BlockTuple> tuples) {
+    return tuples.parallelStream()
+        .map(
+            tuple -> {
+              final Bytes rlp = SnappyFrames.decompress(tuple.compressedHeader());
+              return new Header(
+                  rlp,
+                  BlockHeader.readFrom(RLP.input(rlp), BLOCK_HEADER_FUNCTIONS),
+                  tuple.decodeTotalDifficulty());
+            })
+        .toList();
+  }
+
+  /**
+   * Rebuilds the epoch accumulator of the archive, if its blocks are a complete epoch whose
+   * accumulator matches the one recorded in the archive.
+   */
+  private static Optional<EpochAccumulator> createAccumulator(
+      final Path file, final Era1Reader.Archive archive, final List<Header> headers) {
+    if (headers.isEmpty()) {
+      LOG.warn("Skipping era1 file {} without blocks", file);
+      return Optional.empty();
+    }
+    final long startingBlockNumber = headers.getFirst().blockHeader().getNumber();
+    for (int i = 0; i < headers.size(); i++) {
+      if (headers.get(i).blockHeader().getNumber() != startingBlockNumber + i) {
+        LOG.warn("Skipping era1 file {} whose blocks are not consecutive", file);
+        return Optional.empty();
+      }
+    }
+    if (!EpochAccumulator.isCompleteEpoch(startingBlockNumber, headers.size())) {
+      LOG.warn("Skipping era1 file {} not holding a complete pre-merge epoch", file);
+      return Optional.empty();
+    }
+    final EpochAccumulator accumulator =
+        new EpochAccumulator(
+            headers.stream().<Bytes32>map(header -> header.blockHeader().getHash()).toList(),
+            headers.stream().map(Header::totalDifficulty).toList());
+    if (!archive.accumulatorRoot().map(accumulator.root()::equals).orElse(false)) {
+      LOG.warn("Skipping era1 file {} whose accumulator does not match its blocks", file);
+      return Optional.empty();
+    }
+    return Optional.of(accumulator);
+  }
+
+  private static List<ContentEntry> decode(
+      final List<Era1Reader.BlockTuple> tuples,
+      final List<Header> headers,
+      final EpochAccumulator accumulator,
+      final int from,
+      final int to) {
+    return IntStream.range(from, to)
+        .parallel()
+        .mapToObj(
+            i -> {
+              final Era1Reader.BlockTuple tuple = tuples.get(i);
+              final Header header = headers.get(i);
+              final Bytes blockHash = header.blockHeader().getHash();
+              return Stream.of(
+                  toContentEntry(
+                      ContentType.BLOCK_HEADER_BY_NUMBER,
+                      Bytes.ofUnsignedLong(header.blockHeader().getNumber(), LITTLE_ENDIAN),
+                      Era1Content.toBlockHeaderWithProof(header.rlp(), accumulator.proof(i))),
+                  toContentEntry(
+                      ContentType.BLOCK_BODY,
+                      blockHash,
+                      Era1Content.toBlockBody(SnappyFrames.decompress(tuple.compressedBody()))),
+                  toContentEntry(
+                      ContentType.RECEIPT,
+                      blockHash,
+                      Era1Content.toReceipts(
+                          SnappyFrames.decompress(tuple.compressedReceipts()))));
+            })
+        .flatMap(Function.identity())
+        .toList();
+  }
+
+  private static ContentEntry toContentEntry(
+      final ContentType contentType, final Bytes key, final Bytes value) {
+    return new ContentEntry(Bytes.concatenate(Bytes.of(contentType.getByteValue()), key), value);
+  }
+
+  private record Header(Bytes rlp, BlockHeader blockHeader, Bytes32 totalDifficulty) {}
+
+  @Override
+  public void close() {
+    decodePool.shutdownNow();
+  }
+}
@@ -0,0 +1,141 @@
+package samba.storage.era1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.datatypes.Hash;
+
+/**
+ * Reader of era1 archives. An era1 file is an e2store sequence of records, each made of a 2 bytes
+ * type, a 4 bytes little-endian length, 2 reserved bytes and the payload:
+ *
+ * <pre>
+ * era1 := Version | block-tuple* | other-entries* | Accumulator | BlockIndex
+ * block-tuple := CompressedHeader | CompressedBody | CompressedReceipts | TotalDifficulty
+ * </pre>
+ *
+ * The file is memory-mapped and only the record boundaries are read up front, so the block tuples
+ * can be decompressed and hashed in parallel afterwards. The accumulator record holds the root of
+ * the {@link EpochAccumulator} of the blocks.
+ */
+public final class Era1Reader {
+
+  static final int VERSION = 0x3265;
+  static final int COMPRESSED_HEADER = 0x03;
+  static final int COMPRESSED_BODY = 0x04;
+  static final int COMPRESSED_RECEIPTS = 0x05;
+  static final int TOTAL_DIFFICULTY = 0x06;
+  static final int ACCUMULATOR = 0x07;
+  private static final int RECORD_HEADER_BYTES = 8;
+
+  private Era1Reader() {}
+
+  /**
+   * Memory-maps the file and splits it into block tuples without decompressing them.
+   *
+   * @param file the era1 file
+   * @return the block tuples, in block number order
+   * @throws IOException if the file can not be read
+   */
+  public static List<BlockTuple> readBlockTuples(final Path file) throws IOException {
+    return readArchive(file).blockTuples();
+  }
+
+  /**
+   * Memory-maps the file and splits it into block tuples without decompressing them, along with
+   * the accumulator root of the archive when it has one.
+   *
+   * @param file the era1 file
+   * @return the archive
+   * @throws IOException if the file can not be read
+   */
+  public static Archive readArchive(final Path file) throws IOException {
+    final MappedByteBuffer mapped;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    mapped.order(ByteOrder.LITTLE_ENDIAN);
+    final List<BlockTuple> tuples = new ArrayList<>();
+    ByteBuffer header = null;
+    ByteBuffer body = null;
+    ByteBuffer receipts = null;
+    Optional<Bytes32> accumulatorRoot = Optional.empty();
+    while (mapped.remaining() >= RECORD_HEADER_BYTES) {
+      final int type = mapped.getShort() & 0xffff;
+      final int length = mapped.getInt();
+      mapped.getShort(); // reserved
+      if (length < 0 || length > mapped.remaining()) {
+        throw new IOException(String.format("Truncated e2store record in %s", file));
+      }
+      final ByteBuffer payload = mapped.slice().limit(length);
+      mapped.position(mapped.position() + length);
+      switch (type) {
+        case COMPRESSED_HEADER -> header = payload;
+        case COMPRESSED_BODY -> body = payload;
+        case COMPRESSED_RECEIPTS -> receipts = payload;
+        case TOTAL_DIFFICULTY -> {
+          if (header == null || body == null || receipts == null || length != Bytes32.SIZE) {
+            throw new IOException(String.format("Incomplete block tuple in %s", file));
+          }
+          tuples.add(new BlockTuple(header, body, receipts, payload));
+          header = null;
+          body = null;
+          receipts = null;
+        }
+        case ACCUMULATOR -> {
+          if (length != Bytes32.SIZE) {
+            throw new IOException(String.format("Invalid accumulator record in %s", file));
+          }
+          accumulatorRoot = Optional.of(Bytes32.wrap(Bytes.wrapByteBuffer(payload).toArray()));
+        }
+        default -> {
+          // Version and block index are not needed to import the content.
+        }
+      }
+    }
+    return new Archive(tuples, accumulatorRoot);
+  }
+
+  /** The block tuples of an archive and the root of their accumulator, if the archive has one. */
+  public record Archive(List<BlockTuple> blockTuples, Optional<Bytes32> accumulatorRoot) {}
+
+  /** The compressed records of one block, as found in the archive. */
+  public record BlockTuple(
+      ByteBuffer compressedHeader,
+      ByteBuffer compressedBody,
+      ByteBuffer compressedReceipts,
+      ByteBuffer totalDifficulty) {
+
+    public Block decode() {
+      final Bytes header = SnappyFrames.decompress(compressedHeader);
+      return new Block(
+          Hash.hash(header),
+          header,
+          SnappyFrames.decompress(compressedBody),
+          SnappyFrames.decompress(compressedReceipts),
+          decodeTotalDifficulty());
+    }
+
+    /** The total difficulty of the block, as ssz uint256. */
+    public Bytes32 decodeTotalDifficulty() {
+      return Bytes32.wrap(Bytes.wrapByteBuffer(totalDifficulty).toArray());
+    }
+  }
+
+  /**
+   * The RLP encoded header, body and receipts of one block, and its total difficulty as ssz
+   * uint256.
+   */
+  public record Block(
+      Bytes32 blockHash, Bytes header, Bytes body, Bytes receipts, Bytes32 totalDifficulty) {}
+}
@@ -0,0 +1,100 @@
+package samba.storage.era1;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.datatypes.Hash;
+
+/**
+ * Sequential writer of era1 archives. Records are appended through a large buffer, and the
+ * accumulator and block index are written when the writer is closed.
+ *
+ * <p>Only an archive holding a complete pre-merge epoch gets an accumulator record, since the root
+ * of a partial epoch does not match the header accumulator. {@link Era1Importer} skips archives
+ * without one.
+ */
+public class Era1Writer implements AutoCloseable {
+
+  static final int BLOCK_INDEX = 0x3266;
+  private static final int BUFFER_BYTES = 1024 * 1024;
+  private static final int RECORD_HEADER_BYTES = 8;
+
+  private final OutputStream out;
+  private final long startingBlockNumber;
+  private final List<Long> blockOffsets = new ArrayList<>();
+  private final List<Bytes32> blockHashes = new ArrayList<>();
+  private final List<Bytes32> totalDifficulties = new ArrayList<>();
+  private long position;
+
+  public Era1Writer(final Path file, final long startingBlockNumber) throws IOException {
+    this.out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES);
+    this.startingBlockNumber = startingBlockNumber;
+    writeRecord(Era1Reader.VERSION, Bytes.EMPTY);
+  }
+
+  /**
+   * Appends the next block of the archive.
+   *
+   * @param header the RLP encoded header
+   * @param body the RLP encoded body
+   * @param receipts the RLP encoded receipts
+   * @param totalDifficulty the total difficulty of the block, as ssz uint256
+   * @return the number of bytes written
+   */
+  public long writeBlock(
+      final Bytes header, final Bytes body, final Bytes receipts, final Bytes32 totalDifficulty)
+      throws IOException {
+    final long start = position;
+    blockOffsets.add(position);
+    writeRecord(Era1Reader.COMPRESSED_HEADER, SnappyFrames.compress(header));
+    writeRecord(Era1Reader.COMPRESSED_BODY, SnappyFrames.compress(body));
+    writeRecord(Era1Reader.COMPRESSED_RECEIPTS, SnappyFrames.compress(receipts));
+    writeRecord(Era1Reader.TOTAL_DIFFICULTY, totalDifficulty);
+    blockHashes.add(Hash.hash(header));
+    totalDifficulties.add(totalDifficulty);
+    return position - start;
+  }
+
+  public int getBlockCount() {
+    return blockOffsets.size();
+  }
+
+  private void writeRecord(final int type, final Bytes payload) throws IOException {
+    final ByteBuffer header =
+        ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    header.putShort((short) type).putInt(payload.size()).putShort((short) 0);
+    out.write(header.array());
+    out.write(payload.toArrayUnsafe());
+    position += RECORD_HEADER_BYTES + payload.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (EpochAccumulator.isCompleteEpoch(startingBlockNumber, blockOffsets.size())) {
+        writeRecord(
+            Era1Reader.ACCUMULATOR,
+            new EpochAccumulator(blockHashes, totalDifficulties).root());
+      }
+      // block-index := starting-number | index | index | ... | count, offsets relative to it.
+      final ByteBuffer index =
+          ByteBuffer.allocate(Long.BYTES * (blockOffsets.size() + 2))
+              .order(ByteOrder.LITTLE_ENDIAN);
+      index.putLong(startingBlockNumber);
+      blockOffsets.forEach(offset -> index.putLong(offset - position));
+      index.putLong(blockOffsets.size());
+      writeRecord(BLOCK_INDEX, Bytes.wrap(index.array()));
+    } finally {
+      out.close();
+    }
+  }
+}
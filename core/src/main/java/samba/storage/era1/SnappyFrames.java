@@ -0,0 +1,90 @@
+package samba.storage.era1;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32C;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.Snappy;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Encoder and decoder of the snappy framing format used by the compressed e2store records. Chunk
+ * checksums are written but not verified: archives are read from local disk and their block hashes
+ * are checked on import.
+ */
+final class SnappyFrames {
+
+  private static final int COMPRESSED_DATA = 0x00;
+  private static final int UNCOMPRESSED_DATA = 0x01;
+  private static final int STREAM_IDENTIFIER = 0xff;
+  private static final int CHECKSUM_BYTES = 4;
+  private static final int MAX_CHUNK_DATA_BYTES = 65536;
+  private static final Bytes STREAM_IDENTIFIER_CHUNK =
+      Bytes.fromHexString("0xff060000734e61507059"); // "sNaPpY"
+
+  private SnappyFrames() {}
+
+  static Bytes decompress(final ByteBuffer framed) {
+    final ByteBuffer in = framed.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    final ByteBuf out = Unpooled.buffer(in.remaining() * 2);
+    final Snappy snappy = new Snappy();
+    while (in.remaining() >= 4) {
+      final int chunkType = in.get() & 0xff;
+      final int length = (in.get() & 0xff) | (in.get() & 0xff) << 8 | (in.get() & 0xff) << 16;
+      final ByteBuffer chunk = in.slice().limit(length);
+      in.position(in.position() + length);
+      switch (chunkType) {
+        case COMPRESSED_DATA -> {
+          snappy.decode(Unpooled.wrappedBuffer(chunk.position(CHECKSUM_BYTES)), out);
+          snappy.reset();
+        }
+        case UNCOMPRESSED_DATA -> out.writeBytes(chunk.position(CHECKSUM_BYTES));
+        case STREAM_IDENTIFIER -> {}
+        default -> {
+          // Reserved unskippable chunks are 0x02-0x7f, the rest is padding or skippable.
+          if (chunkType < 0x80) {
+            throw new IllegalArgumentException(
+                String.format("Unsupported snappy chunk type 0x%02x", chunkType));
+          }
+        }
+      }
+    }
+    final byte[] decompressed = new byte[out.readableBytes()];
+    out.readBytes(decompressed);
+    return Bytes.wrap(decompressed);
+  }
+
+  static Bytes compress(final Bytes data) {
+    final ByteBuf out = Unpooled.buffer(data.size() + STREAM_IDENTIFIER_CHUNK.size());
+    out.writeBytes(STREAM_IDENTIFIER_CHUNK.toArrayUnsafe());
+    final Snappy snappy = new Snappy();
+    for (int offset = 0; offset < data.size(); offset += MAX_CHUNK_DATA_BYTES) {
+      final Bytes chunk = data.slice(offset, Math.min(MAX_CHUNK_DATA_BYTES, data.size() - offset));
+      final ByteBuf compressed = Unpooled.buffer(chunk.size());
+      snappy.encode(Unpooled.wrappedBuffer(chunk.toArrayUnsafe()), compressed, chunk.size());
+      snappy.reset();
+      final boolean storeCompressed = compressed.readableBytes() < chunk.size();
+      final int length = storeCompressed ? compressed.readableBytes() : chunk.size();
+      out.writeByte(storeCompressed ? COMPRESSED_DATA : UNCOMPRESSED_DATA);
+      out.writeMediumLE(CHECKSUM_BYTES + length);
+      out.writeIntLE(maskedChecksum(chunk));
+      if (storeCompressed) {
+        out.writeBytes(compressed);
+      } else {
+        out.writeBytes(chunk.toArrayUnsafe());
+      }
+    }
+    final byte[] framed = new byte[out.readableBytes()];
+    out.readBytes(framed);
+    return Bytes.wrap(framed);
+  }
+
+  private static int maskedChecksum(final Bytes data) {
+    final CRC32C crc = new CRC32C();
+    crc.update(data.toArrayUnsafe());
+    final int checksum = (int) crc.getValue();
+    return ((checksum >>> 15) | (checksum << 17)) + 0xa282ead8;
+  }
+}
@@ -0,0 +1,49 @@
+package samba.storage.rocksdb;
+
+import org.rocksdb.CompressionType;
+import org.rocksdb.DataBlockIndexType;
+
+/** Tuning of the column family of a segment, after the way its data is read. */
+public enum ColumnFamilyProfile {
+  /** Point lookups and scans alike. */
+  GENERAL(32768, DataBlockIndexType.kDataBlockBinarySearch, CompressionType.LZ4_COMPRESSION),
+  /**
+   * Small values read by key far more often than they are written. Blocks are small and indexed by
+   * a hash of their keys, so a lookup reads little and does not binary search the block, and more
+   * of them fit in the block cache.
+   */
+  POINT_LOOKUP(16384, DataBlockIndexType.kDataBlockBinaryAndHash, CompressionType.LZ4_COMPRESSION),
+  /**
+   * Large values written once and rarely read. They are expected in blob files (see {@link
+   * Segment#containsStaticData()}), so the block cache only holds their keys and blob references,
+   * and the bottommost level, where most of them end up, trades CPU for a better compression.
+   */
+  COLD_BLOB(32768, DataBlockIndexType.kDataBlockBinarySearch, CompressionType.ZSTD_COMPRESSION),
+  /** Small values iterated in key order, the keys being ordered the way they are scanned. */
+  ORDERED_INDEX(32768, DataBlockIndexType.kDataBlockBinarySearch, CompressionType.LZ4_COMPRESSION);
+
+  private final long blockSize;
+  private final DataBlockIndexType dataBlockIndexType;
+  private final CompressionType bottommostCompressionType;
+
+  ColumnFamilyProfile(
+      final long blockSize,
+      final DataBlockIndexType dataBlockIndexType,
+      final CompressionType bottommostCompressionType) {
+    this.blockSize = blockSize;
+    this.dataBlockIndexType = dataBlockIndexType;
+    this.bottommostCompressionType = bottommostCompressionType;
+  }
+
+  public long getBlockSize() {
+    return blockSize;
+  }
+
+  public DataBlockIndexType getDataBlockIndexType() {
+    return dataBlockIndexType;
+  }
+
+  public CompressionType getBottommostCompressionType() {
+    return bottommostCompressionType;
+  }
+}
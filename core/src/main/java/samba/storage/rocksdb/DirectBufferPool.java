@@ -0,0 +1,74 @@
+package samba.storage.rocksdb;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direct buffers for values too large for the read buffer of a thread, in power of two size
+ * classes, so reading large content does not allocate direct memory each time. Released buffers
+ * are kept up to a total capacity; buffers past it, and values larger than the largest class, are
+ * left to the garbage collector.
+ */
+class DirectBufferPool {
+
+  // From 128 KiB to 64 MiB.
+  static final int MIN_SIZE_CLASS_SHIFT = 17;
+  static final int MAX_SIZE_CLASS_SHIFT = 26;
+
+  private final List<Queue<ByteBuffer>> freeBuffers = new ArrayList<>();
+  private final long maxRetainedBytes;
+  private final AtomicLong retainedBytes = new AtomicLong();
+
+  DirectBufferPool(final long maxRetainedBytes) {
+    this.maxRetainedBytes = maxRetainedBytes;
+    for (int shift = MIN_SIZE_CLASS_SHIFT; shift <= MAX_SIZE_CLASS_SHIFT; shift++) {
+      freeBuffers.add(new ConcurrentLinkedQueue<>());
+    }
+  }
+
+  /**
+   * Borrows a buffer that can hold a value of the given size.
+   *
+   * @param size the size of the value to read
+   * @return a cleared direct buffer of the size class of the value, or of its size when no class
+   *     is large enough
+   */
+  ByteBuffer acquire(final int size) {
+    final int shift = sizeClassShift(size);
+    if (shift > MAX_SIZE_CLASS_SHIFT) {
+      return ByteBuffer.allocateDirect(size);
+    }
+    final ByteBuffer buffer = freeBuffers.get(shift - MIN_SIZE_CLASS_SHIFT).poll();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(1 << shift);
+    }
+    retainedBytes.addAndGet(-buffer.capacity());
+    return buffer.clear();
+  }
+
+  /**
+   * Gives back a buffer borrowed with {@link #acquire}, which must not be used afterwards.
+   *
+   * @param buffer the borrowed buffer
+   */
+  void release(final ByteBuffer buffer) {
+    final int capacity = buffer.capacity();
+    final int shift = sizeClassShift(capacity);
+    if (shift > MAX_SIZE_CLASS_SHIFT || capacity != 1 << shift) {
+      return;
+    }
+    if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+      retainedBytes.addAndGet(-capacity);
+      return;
+    }
+    freeBuffers.get(shift - MIN_SIZE_CLASS_SHIFT).offer(buffer);
+  }
+
+  private static int sizeClassShift(final int size) {
+    return Math.max(MIN_SIZE_CLASS_SHIFT, Integer.SIZE - Integer.numberOfLeadingZeros(size - 1));
+  }
+}
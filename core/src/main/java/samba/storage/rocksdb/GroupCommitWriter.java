@@ -0,0 +1,281 @@
+package samba.storage.rocksdb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatchWithIndex;
+import org.rocksdb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * Commits the writes submitted by any number of threads from a single thread, gathering the writes
+ * queued during a commit window into one write batch, so they share a single write, and a single
+ * sync of the write-ahead log when the policy asks for it.
+ *
+ * <p>Writes are staged in the batch in submission order and read through it, so a write sees the
+ * writes staged before it in the same batch as if they were committed already. A write throwing
+ * leaves the batch as it found it and only fails its own future; a failed commit fails the futures
+ * of every write of the batch.
+ *
+ * <p>The queue of pending writes is bounded: once it is full, submitting blocks until the writer
+ * catches up. Under the periodic sync policy the writer also syncs the write-ahead log, so the sync
+ * never delays the threads submitting writes.
+ */
+public class GroupCommitWriter implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GroupCommitWriter.class);
+  private static final String NO_SPACE_LEFT_ON_DEVICE = "No space left on device";
+  public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+  public static final int MAX_BATCH_WRITES = 1024;
+
+  private final RocksDBInstance storage;
+  private final WriteOptions writeOptions;
+  private final ReadOptions readOptions = new ReadOptions();
+  private final long commitWindowNanos;
+  private final long walSyncIntervalNanos;
+  private long nextWalSyncNanos;
+  private boolean walSyncPending;
+  private final BlockingQueue<PendingWrite<?>> queue;
+  private final Thread writerThread;
+  private volatile boolean running = true;
+
+  public GroupCommitWriter(
+      final RocksDBInstance storage,
+      final WalSyncPolicy walSyncPolicy,
+      final Duration walSyncInterval,
+      final Duration commitWindow) {
+    this(storage, walSyncPolicy, walSyncInterval, commitWindow, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Starts the writer thread.
+   *
+   * @param storage the storage the batches are written to
+   * @param walSyncPolicy when the write-ahead log is synced
+   * @param walSyncInterval how often the write-ahead log is synced under the periodic policy
+   * @param commitWindow how long the first write of a batch waits for more, zero to only gather
+   *     the writes queued while the previous batch was committed
+   * @param queueCapacity the number of writes that can be pending before submitting blocks
+   */
+  public GroupCommitWriter(
+      final RocksDBInstance storage,
+      final WalSyncPolicy walSyncPolicy,
+      final Duration walSyncInterval,
+      final Duration commitWindow,
+      final int queueCapacity) {
+    checkArgument(!commitWindow.isNegative(), "Commit window must not be negative");
+    checkArgument(
+        walSyncPolicy != WalSyncPolicy.PERIODIC || walSyncInterval.isPositive(),
+        "WAL sync interval must be positive");
+    this.storage = storage;
+    this.writeOptions = walSyncPolicy.createWriteOptions();
+    this.walSyncIntervalNanos =
+        walSyncPolicy == WalSyncPolicy.PERIODIC ? walSyncInterval.toNanos() : 0;
+    this.nextWalSyncNanos = System.nanoTime() + walSyncIntervalNanos;
+    this.commitWindowNanos = commitWindow.toNanos();
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.writerThread =
+        new ThreadFactoryBuilder()
+            .setNameFormat("group-commit-writer-%d")
+            .setDaemon(true)
+            .build()
+            .newThread(this::run);
+    writerThread.start();
+  }
+
+  /**
+   * Queues a write for the next batch.
+   *
+   * @param write stages the writes in the batch, and returns the result the future completes with
+   * @return a future completing once the batch holding the write is committed
+   */
+  public <T> SafeFuture<T> submit(final Function<KeyValueStorageBatch, T> write) {
+    final PendingWrite<T> pendingWrite = new PendingWrite<>(write);
+    if (!running) {
+      return SafeFuture.failedFuture(new StorageException("The group commit writer is closed"));
+    }
+    try {
+      queue.put(pendingWrite);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return SafeFuture.failedFuture(new StorageException(e));
+    }
+    return pendingWrite.result;
+  }
+
+  private void run() {
+    final List<PendingWrite<?>> batch = new ArrayList<>(MAX_BATCH_WRITES);
+    try {
+      while (running || !queue.isEmpty()) {
+        final PendingWrite<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          batch.add(first);
+          gather(batch);
+          commit(batch);
+          batch.clear();
+        }
+        if (walSyncPending && System.nanoTime() - nextWalSyncNanos >= 0) {
+          syncWal();
+        }
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (walSyncPending) {
+      syncWal();
+    }
+    final StorageException closed = new StorageException("The group commit writer is closed");
+    batch.forEach(pendingWrite -> pendingWrite.fail(closed));
+    queue.forEach(pendingWrite -> pendingWrite.fail(closed));
+  }
+
+  private void gather(final List<PendingWrite<?>> batch) throws InterruptedException {
+    final long deadline = System.nanoTime() + commitWindowNanos;
+    while (batch.size() < MAX_BATCH_WRITES) {
+      final long remaining = deadline - System.nanoTime();
+      final PendingWrite<?> next =
+          remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  private void commit(final List<PendingWrite<?>> batch) {
+    try (final WriteBatchWithIndex writeBatch = new WriteBatchWithIndex(true)) {
+      final KeyValueStorageBatch stagingBatch = new StagingBatch(writeBatch);
+      final List<PendingWrite<?>> staged = new ArrayList<>(batch.size());
+      for (final PendingWrite<?> pendingWrite : batch) {
+        writeBatch.setSavePoint();
+        try {
+          pendingWrite.stage(stagingBatch);
+          staged.add(pendingWrite);
+        } catch (final RuntimeException e) {
+          writeBatch.rollbackToSavePoint();
+          pendingWrite.fail(e);
+        }
+      }
+      if (staged.isEmpty()) {
+        return;
+      }
+      try (final OperationTimer.TimingContext ignored =
+          storage.metrics.commitLatency().startTimer()) {
+        storage.getDB().write(writeOptions, writeBatch);
+      }
+      walSyncPending = walSyncIntervalNanos > 0;
+      storage.metrics.groupCommitCount().inc();
+      storage.metrics.groupCommitWriteCount().inc(staged.size());
+      staged.forEach(PendingWrite::complete);
+    } catch (final RocksDBException e) {
+      if (e.getMessage().contains(NO_SPACE_LEFT_ON_DEVICE)) {
+        LOG.error(e.getMessage());
+        System.exit(0);
+      }
+      final StorageException error = new StorageException(e);
+      batch.forEach(pendingWrite -> pendingWrite.fail(error));
+    } catch (final RuntimeException e) {
+      batch.forEach(pendingWrite -> pendingWrite.fail(e));
+    }
+  }
+
+  private void syncWal() {
+    walSyncPending = false;
+    nextWalSyncNanos = System.nanoTime() + walSyncIntervalNanos;
+    try {
+      storage.getDB().flushWal(true);
+    } catch (final RocksDBException e) {
+      LOG.warn("Failed to sync the write-ahead log", e);
+    }
+  }
+
+  /** Stops accepting writes and waits for the queued ones to be committed. */
+  @Override
+  public void close() {
+    running = false;
+    try {
+      writerThread.join();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // Writes queued while the writer was stopping.
+    final StorageException closed = new StorageException("The group commit writer is closed");
+    queue.forEach(pendingWrite -> pendingWrite.fail(closed));
+    queue.clear();
+    writeOptions.close();
+    readOptions.close();
+  }
+
+  private class StagingBatch implements KeyValueStorageBatch {
+    private final WriteBatchWithIndex writeBatch;
+
+    private StagingBatch(final WriteBatchWithIndex writeBatch) {
+      this.writeBatch = writeBatch;
+    }
+
+    @Override
+    public Optional<byte[]> get(final Segment segment, final byte[] key) {
+      try {
+        return Optional.ofNullable(
+            writeBatch.getFromBatchAndDB(
+                storage.getDB(), storage.safeColumnHandle(segment), readOptions, key));
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    public void put(final Segment segment, final byte[] key, final byte[] value) {
+      try {
+        writeBatch.put(storage.safeColumnHandle(segment), key, value);
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    public void remove(final Segment segment, final byte[] key) {
+      try {
+        writeBatch.delete(storage.safeColumnHandle(segment), key);
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+  }
+
+  private static class PendingWrite<T> {
+    private final Function<KeyValueStorageBatch, T> write;
+    private final SafeFuture<T> result = new SafeFuture<>();
+    private T value;
+
+    private PendingWrite(final Function<KeyValueStorageBatch, T> write) {
+      this.write = write;
+    }
+
+    private void stage(final KeyValueStorageBatch batch) {
+      value = write.apply(batch);
+    }
+
+    private void complete() {
+      result.complete(value);
+    }
+
+    private void fail(final Throwable error) {
+      result.completeExceptionally(error);
+    }
+  }
+}
@@ -4,29 +4,39 @@ import java.nio.charset.StandardCharsets;
 
 public enum KeyValueSegment implements Segment {
   DEFAULT("default".getBytes(StandardCharsets.UTF_8)),
-  BLOCK_HEADER(new byte[] {14}),
-  BLOCK_BODY(new byte[] {14}),
-  RECEIPT(new byte[] {14}),
-  BLOCK_HASH_BY_BLOCK_NUMBER(new byte[] {14});
+  /**
+   * The column family all the content types used to share, so their keys collided. Only opened to
+   * be dropped.
+   */
+  LEGACY_CONTENT(new byte[] {14}),
+  CONTENT_DISTANCE_INDEX(new byte[] {15}),
+  BLOCK_HEADER(new byte[] {16}, false, true, false, ColumnFamilyProfile.POINT_LOOKUP),
+  BLOCK_BODY(new byte[] {17}, true, false, true, ColumnFamilyProfile.COLD_BLOB),
+  RECEIPT(new byte[] {18}, true, false, true, ColumnFamilyProfile.COLD_BLOB),
+  BLOCK_HASH_BY_BLOCK_NUMBER(
+      new byte[] {19}, false, false, false, ColumnFamilyProfile.ORDERED_INDEX);
 
   private final byte[] id;
   private final boolean containsStaticData;
   private final boolean eligibleToHighSpecFlag;
   private final boolean staticDataGarbageCollectionEnabled;
+  private final ColumnFamilyProfile columnFamilyProfile;
 
   KeyValueSegment(final byte[] id) {
-    this(id, false, false, false);
+    this(id, false, false, false, ColumnFamilyProfile.GENERAL);
   }
 
   KeyValueSegment(
       final byte[] id,
       final boolean containsStaticData,
       final boolean eligibleToHighSpecFlag,
-      final boolean staticDataGarbageCollectionEnabled) {
+      final boolean staticDataGarbageCollectionEnabled,
+      final ColumnFamilyProfile columnFamilyProfile) {
     this.id = id;
     this.containsStaticData = containsStaticData;
     this.eligibleToHighSpecFlag = eligibleToHighSpecFlag;
     this.staticDataGarbageCollectionEnabled = staticDataGarbageCollectionEnabled;
+    this.columnFamilyProfile = columnFamilyProfile;
   }
 
   @Override
@@ -53,4 +63,9 @@ public enum KeyValueSegment implements Segment {
   public boolean isStaticDataGarbageCollectionEnabled() {
     return staticDataGarbageCollectionEnabled;
   }
+
+  @Override
+  public ColumnFamilyProfile getColumnFamilyProfile() {
+    return columnFamilyProfile;
+  }
 }
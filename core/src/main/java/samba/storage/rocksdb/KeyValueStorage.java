@@ -1,7 +1,10 @@
 package samba.storage.rocksdb;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -13,6 +16,47 @@ public interface KeyValueStorage extends Closeable {
 
   Optional<byte[]> get(Segment segment, byte[] key) throws StorageException;
 
+  /**
+   * Reads a value into a caller provided buffer rather than a new array. Both buffers must be
+   * direct. The value is written from the position of {@code value}, whose limit is moved to the
+   * end of the value, and truncated if it does not fit.
+   *
+   * @param segment the segment the key belongs to
+   * @param key the key, read from its position to its limit
+   * @param value the buffer the value is written to
+   * @return the size of the value, greater than the remaining space of {@code value} when it was
+   *     truncated, empty if the key is missing
+   */
+  OptionalInt get(Segment segment, ByteBuffer key, ByteBuffer value) throws StorageException;
+
+  /**
+   * Reads a value through a reused direct buffer. Values larger than that buffer are read into a
+   * pooled direct buffer, so they can be streamed to the network without being copied to the heap,
+   * while smaller values are copied to the heap and leave no direct memory behind.
+   *
+   * @param segment the segment the key belongs to
+   * @param key the key to read
+   * @return a view of the value, to be closed once used, empty if the key is missing
+   */
+  Optional<ValueView> getDirect(Segment segment, byte[] key) throws StorageException;
+
+  /**
+   * Reads the values of several keys of a segment in a single call to the database.
+   *
+   * @param segment the segment the keys belong to
+   * @param keys the keys to read
+   * @return the values, in the order of the keys, empty where a key is missing
+   */
+  List<Optional<byte[]>> multiGet(Segment segment, List<byte[]> keys) throws StorageException;
+
+  /**
+   * Reads the values of keys spread over several segments in a single call to the database.
+   *
+   * @param keys the segments and keys to read
+   * @return the values, in the order of the keys, empty where a key is missing
+   */
+  List<Optional<byte[]>> multiGet(List<Pair<Segment, byte[]>> keys) throws StorageException;
+
   default boolean containsKey(final Segment segment, final byte[] key) throws StorageException {
     return get(segment, key).isPresent();
   }
@@ -27,6 +71,48 @@ public interface KeyValueStorage extends Closeable {
 
   Stream<byte[]> streamKeys(final Segment segment);
 
+  /**
+   * Streams the entries of a segment in ascending key order, starting at the first key equal to or
+   * greater than {@code startKey}. The stream must be closed to release the underlying iterator.
+   *
+   * @param segment the segment to iterate
+   * @param startKey the inclusive lower bound of the iteration
+   * @return the entries from {@code startKey} to the end of the segment
+   */
+  Stream<Pair<byte[], byte[]>> streamFrom(final Segment segment, final byte[] startKey);
+
+  /**
+   * Streams the entries of a segment in descending key order, starting at the last key. The stream
+   * must be closed to release the underlying iterator.
+   *
+   * @param segment the segment to iterate
+   * @return the entries of the segment from the greatest key to the smallest
+   */
+  Stream<Pair<byte[], byte[]>> streamReverse(final Segment segment);
+
+  /**
+   * Streams the entries of a segment whose keys fall in a range, in ascending key order. The
+   * bounds are handed to RocksDB, so the iteration stops at the upper bound rather than reading
+   * past it. The stream must be closed to release the underlying iterator.
+   *
+   * @param segment the segment to iterate
+   * @param fromKey the inclusive lower bound of the iteration
+   * @param toKey the exclusive upper bound of the iteration
+   * @return the entries from {@code fromKey} up to {@code toKey}
+   */
+  Stream<Pair<byte[], byte[]>> streamRange(
+      final Segment segment, final byte[] fromKey, final byte[] toKey);
+
+  /**
+   * Streams the entries of a segment whose keys start with a prefix, in ascending key order. The
+   * stream must be closed to release the underlying iterator.
+   *
+   * @param segment the segment to iterate
+   * @param prefix the prefix of the keys to return
+   * @return the entries whose key starts with {@code prefix}
+   */
+  Stream<Pair<byte[], byte[]>> streamPrefix(final Segment segment, final byte[] prefix);
+
   boolean isClosed();
 
   Set<byte[]> getAllKeysThat(Segment segment, Predicate<byte[]> returnCondition);
@@ -0,0 +1,13 @@
+package samba.storage.rocksdb;
+
+import java.util.Optional;
+
+/** Writes staged for a commit, which the reads of the batch see before they are committed. */
+public interface KeyValueStorageBatch {
+
+  Optional<byte[]> get(Segment segment, byte[] key);
+
+  void put(Segment segment, byte[] key, byte[] value);
+
+  void remove(Segment segment, byte[] key);
+}
@@ -15,15 +15,67 @@
 package samba.storage.rocksdb;
 
 import java.nio.file.Path;
+import java.time.Duration;
 
+/**
+ * Configuration of a RocksDB instance. The block cache is shared by all the column families and
+ * the memtables are charged to it, so its capacity bounds the memory used by the database. With
+ * high spec on, the cache of the high spec segments is carved out of that capacity.
+ *
+ * @param cacheCapacity the capacity of the block caches, memtables included
+ * @param writeBufferCapacity the memory the memtables of all the column families can use
+ * @param cacheIndexAndFilterBlocks whether index and filter blocks are kept in the block cache,
+ *     and so counted against its capacity, rather than held by the table readers
+ * @param walSyncPolicy when the commits of the group commit writer are synced to disk
+ * @param walSyncInterval how often the write-ahead log is synced under the periodic policy
+ * @param commitWindow how long the group commit writer gathers writes into a batch
+ */
 public record RocksDBConfiguration(
     Path databaseDir,
     int maxOpenFiles,
     String label,
     int backgroundThreadCount,
     long cacheCapacity,
+    long writeBufferCapacity,
+    boolean cacheIndexAndFilterBlocks,
+    WalSyncPolicy walSyncPolicy,
+    Duration walSyncInterval,
+    Duration commitWindow,
     boolean isHighSpec) {
+
+  public static final long DEFAULT_MEMORY_BUDGET_BYTES = 512L * 1024 * 1024;
+  public static final Duration DEFAULT_WAL_SYNC_INTERVAL = Duration.ofSeconds(1);
+  // Share of the memory budget the memtables can use before they are flushed.
+  private static final int WRITE_BUFFER_BUDGET_DIVISOR = 4;
+
   public static RocksDBConfiguration createDefault(Path databaseDir) {
-    return new RocksDBConfiguration(databaseDir, 1024, "rocksDB", 4, 134217728, false);
+    return create(
+        databaseDir,
+        DEFAULT_MEMORY_BUDGET_BYTES,
+        true,
+        WalSyncPolicy.NO_SYNC,
+        DEFAULT_WAL_SYNC_INTERVAL,
+        Duration.ZERO);
+  }
+
+  public static RocksDBConfiguration create(
+      Path databaseDir,
+      long memoryBudgetBytes,
+      boolean cacheIndexAndFilterBlocks,
+      WalSyncPolicy walSyncPolicy,
+      Duration walSyncInterval,
+      Duration commitWindow) {
+    return new RocksDBConfiguration(
+        databaseDir,
+        1024,
+        "rocksDB",
+        4,
+        memoryBudgetBytes,
+        memoryBudgetBytes / WRITE_BUFFER_BUDGET_DIVISOR,
+        cacheIndexAndFilterBlocks,
+        walSyncPolicy,
+        walSyncInterval,
+        commitWindow,
+        false);
   }
 }
@@ -5,12 +5,17 @@ import java.util.List;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
-import org.rocksdb.TransactionDB;
+import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 
+/**
+ * A RocksDB instance without transaction support: transactions are write batches without key
+ * locks. Writes that must not interleave, such as the read-modify-write of an index, are all
+ * submitted to a single {@link GroupCommitWriter}, which applies them one after the other.
+ */
 public class RocksDBInstance extends RocksDBStorage {
 
-  private final TransactionDB transactionDB;
+  private final RocksDB db;
 
   public RocksDBInstance(
       RocksDBConfiguration configuration,
@@ -20,15 +25,15 @@ public class RocksDBInstance extends RocksDBStorage {
       RocksDBMetricsFactory rocksDBMetricsFactory) {
     super(configuration, defaultSegments, ignorableSegments, metricsSystem, rocksDBMetricsFactory);
     try {
-      this.transactionDB =
-          TransactionDB.open(
+      this.db =
+          RocksDB.open(
               rocksDBOptions,
-              rocksDBTxOptions,
               configuration.databaseDir().toString(),
               columnDescriptors,
               columnHandles);
       initMetrics();
       initColumnHandles();
+      initMemoryMetrics();
 
     } catch (final RocksDBException e) {
       throw parseRocksDBException(e, defaultSegments, ignorableSegments);
@@ -36,7 +41,7 @@ public class RocksDBInstance extends RocksDBStorage {
   }
 
   RocksDB getDB() {
-    return transactionDB;
+    return db;
   }
 
   @Override
@@ -46,7 +51,8 @@ public class RocksDBInstance extends RocksDBStorage {
     writeOptions.setIgnoreMissingColumnFamilies(true);
     return new RocksDBTransaction(
         this::safeColumnHandle,
-        transactionDB.beginTransaction(writeOptions),
+        db,
+        new WriteBatch(),
         writeOptions,
         metrics,
         this.closed::get);
@@ -35,10 +35,12 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
   private static final Logger LOG = LoggerFactory.getLogger(RocksDBIterator.class);
 
   private final RocksIterator rocksIterator;
+  private final boolean reverse;
   private final AtomicBoolean closed = new AtomicBoolean(false);
 
-  private RocksDBIterator(final RocksIterator rocksIterator) {
+  private RocksDBIterator(final RocksIterator rocksIterator, final boolean reverse) {
     this.rocksIterator = rocksIterator;
+    this.reverse = reverse;
   }
 
   /**
@@ -48,7 +50,17 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
    * @return the rocks db iterator
    */
   public static RocksDBIterator create(final RocksIterator rocksIterator) {
-    return new RocksDBIterator(rocksIterator);
+    return new RocksDBIterator(rocksIterator, false);
+  }
+
+  /**
+   * Create RocksDb iterator walking the keys in descending order.
+   *
+   * @param rocksIterator the rocks iterator, already positioned on the first key to return
+   * @return the rocks db iterator
+   */
+  public static RocksDBIterator createReverse(final RocksIterator rocksIterator) {
+    return new RocksDBIterator(rocksIterator, true);
   }
 
   @Override
@@ -72,7 +84,7 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
     }
     final byte[] key = rocksIterator.key();
     final byte[] value = rocksIterator.value();
-    rocksIterator.next();
+    advance();
     return Pair.of(key, value);
   }
 
@@ -94,7 +106,7 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
       throw new NoSuchElementException();
     }
     final byte[] key = rocksIterator.key();
-    rocksIterator.next();
+    advance();
     return key;
   }
 
@@ -106,13 +118,7 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
   public Stream<Pair<byte[], byte[]>> toStream() {
     assertOpen();
     final Spliterator<Pair<byte[], byte[]>> spliterator =
-        Spliterators.spliteratorUnknownSize(
-            this,
-            Spliterator.IMMUTABLE
-                | Spliterator.DISTINCT
-                | Spliterator.NONNULL
-                | Spliterator.ORDERED
-                | Spliterator.SORTED);
+        Spliterators.spliteratorUnknownSize(this, characteristics());
 
     return StreamSupport.stream(spliterator, false).onClose(this::close);
   }
@@ -137,15 +143,26 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
                 return RocksDBIterator.this.nextKey();
               }
             },
-            Spliterator.IMMUTABLE
-                | Spliterator.DISTINCT
-                | Spliterator.NONNULL
-                | Spliterator.ORDERED
-                | Spliterator.SORTED);
+            characteristics());
 
     return StreamSupport.stream(spliterator, false).onClose(this::close);
   }
 
+  private void advance() {
+    if (reverse) {
+      rocksIterator.prev();
+    } else {
+      rocksIterator.next();
+    }
+  }
+
+  private int characteristics() {
+    final int characteristics =
+        Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED;
+    // Keys are only sorted in their natural order when iterating forward
+    return reverse ? characteristics : characteristics | Spliterator.SORTED;
+  }
+
   private void assertOpen() {
     checkState(
         !closed.get(),
@@ -20,7 +20,10 @@ import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
 /** The Rocks db metrics. */
 public record RocksDBMetrics(
     OperationTimer readLatency,
+    OperationTimer multiGetLatency,
     OperationTimer removeLatency,
     OperationTimer writeLatency,
     OperationTimer commitLatency,
-    Counter rollbackCount) {}
+    Counter rollbackCount,
+    Counter groupCommitCount,
+    Counter groupCommitWriteCount) {}
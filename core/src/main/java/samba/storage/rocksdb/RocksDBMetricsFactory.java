@@ -14,12 +14,19 @@
  */
 package samba.storage.rocksdb;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
 import org.hyperledger.besu.metrics.BesuMetricCategory;
 import org.hyperledger.besu.metrics.prometheus.PrometheusMetricsSystem;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledGauge;
 import org.hyperledger.besu.plugin.services.metrics.MetricCategory;
 import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.rocksdb.Cache;
+import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.Statistics;
@@ -79,6 +86,14 @@ public class RocksDBMetricsFactory {
                 "Latency for read from RocksDB.",
                 "database")
             .labels(rocksDbConfiguration.label());
+    final OperationTimer multiGetLatency =
+        metricsSystem
+            .createLabelledTimer(
+                rocksDbMetricCategory,
+                "multi_get_latency_seconds",
+                "Latency for batched reads from RocksDB.",
+                "database")
+            .labels(rocksDbConfiguration.label());
     final OperationTimer removeLatency =
         metricsSystem
             .createLabelledTimer(
@@ -144,7 +159,95 @@ public class RocksDBMetricsFactory {
                 "database")
             .labels(rocksDbConfiguration.label());
 
+    final Counter groupCommitCount =
+        metricsSystem
+            .createLabelledCounter(
+                rocksDbMetricCategory,
+                "group_commit_count",
+                "Number of write batches committed by the RocksDB group commit writer.",
+                "database")
+            .labels(rocksDbConfiguration.label());
+    final Counter groupCommitWriteCount =
+        metricsSystem
+            .createLabelledCounter(
+                rocksDbMetricCategory,
+                "group_commit_write_count",
+                "Number of writes gathered into the batches of the RocksDB group commit writer.",
+                "database")
+            .labels(rocksDbConfiguration.label());
+
     return new RocksDBMetrics(
-        readLatency, removeLatency, writeLatency, commitLatency, rollbackCount);
+        readLatency,
+        multiGetLatency,
+        removeLatency,
+        writeLatency,
+        commitLatency,
+        rollbackCount,
+        groupCommitCount,
+        groupCommitWriteCount);
+  }
+
+  /**
+   * Create the memory metrics of a RocksDb instance: the usage of the shared block cache, and the
+   * memtables and table readers of each column family.
+   *
+   * @param metricsSystem the metrics system
+   * @param db the db
+   * @param blockCache the block cache shared by the column families
+   * @param segments the segments of the db
+   * @param columnHandle the column handle of a segment, empty once it has been dropped
+   */
+  public void createMemoryMetrics(
+      final MetricsSystem metricsSystem,
+      final RocksDB db,
+      final Cache blockCache,
+      final List<Segment> segments,
+      final Function<Segment, Optional<ColumnFamilyHandle>> columnHandle) {
+    metricsSystem.createLongGauge(
+        rocksDbMetricCategory,
+        "rocks_db_block_cache_usage_bytes",
+        "Memory used by the shared RocksDB block cache, memtable reservations included",
+        blockCache::getUsage);
+    metricsSystem.createLongGauge(
+        rocksDbMetricCategory,
+        "rocks_db_block_cache_pinned_usage_bytes",
+        "Memory of the shared RocksDB block cache pinned by readers and memtables",
+        blockCache::getPinnedUsage);
+
+    final LabelledGauge segmentMemory =
+        metricsSystem.createLabelledGauge(
+            rocksDbMetricCategory,
+            "rocks_db_segment_memory_bytes",
+            "Estimated memory used by each RocksDB column family, by type",
+            "segment",
+            "type");
+    segments.forEach(
+        segment -> {
+          segmentMemory.labels(
+              () ->
+                  getLongProperty(
+                      db, columnHandle.apply(segment), "rocksdb.cur-size-all-mem-tables"),
+              segment.getName(),
+              "memtables");
+          segmentMemory.labels(
+              () ->
+                  getLongProperty(
+                      db, columnHandle.apply(segment), "rocksdb.estimate-table-readers-mem"),
+              segment.getName(),
+              "table_readers");
+        });
+  }
+
+  private static long getLongProperty(
+      final RocksDB db, final Optional<ColumnFamilyHandle> columnHandle, final String property) {
+    if (columnHandle.isEmpty()) {
+      return 0L;
+    }
+    try {
+      return db.getLongProperty(columnHandle.get(), property);
+    } catch (final RocksDBException e) {
+      LOG.debug("Failed to get RocksDB metric", e);
+      return 0L;
+    }
   }
 }
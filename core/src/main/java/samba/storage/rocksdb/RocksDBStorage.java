@@ -16,8 +16,10 @@ package samba.storage.rocksdb;
 
 import static java.util.stream.Collectors.toUnmodifiableSet;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -37,7 +39,15 @@ public abstract class RocksDBStorage implements KeyValueStorage {
 
   private static final Logger LOG = LoggerFactory.getLogger(RocksDBStorage.class);
   private static final int ROCKSDB_FORMAT_VERSION = 5;
-  private static final long ROCKSDB_BLOCK_SIZE = 32768;
+  // Share of the block cache reserved to index and filter blocks when they are cached.
+  private static final double HIGH_PRIORITY_POOL_RATIO = 0.1;
+  // Share of the block cache capacity the high spec segments can take for their own cache.
+  private static final int HIGH_SPEC_CACHE_BUDGET_DIVISOR = 2;
+  // Values up to this size are read once, into a buffer reused by the reading thread.
+  private static final int DIRECT_READ_BUFFER_SIZE = 65_536;
+  private static final int DIRECT_KEY_BUFFER_SIZE = 64;
+  // Larger values are read into pooled buffers, which are kept up to this capacity once released.
+  private static final long DIRECT_BUFFER_POOL_BYTES = 64L * 1024 * 1024;
 
   protected static final long ROCKSDB_BLOCKCACHE_SIZE_WHEN_USING_HIGH_SPEC_OPT = 1_073_741_824L;
   protected static final long ROCKSDB_MEMTABLE_SIZE_WHEN_USING_HIGH_SPEC_OPT = 536_870_912L;
@@ -68,12 +78,23 @@ public abstract class RocksDBStorage implements KeyValueStorage {
   private final WriteOptions tryDeleteOptions =
       new WriteOptions().setNoSlowdown(true).setIgnoreMissingColumnFamilies(true);
   private final ReadOptions readOptions = new ReadOptions().setVerifyChecksums(false);
+  private final ThreadLocal<ByteBuffer> directKeyBuffer =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DIRECT_KEY_BUFFER_SIZE));
+  private final ThreadLocal<ByteBuffer> directReadBuffer =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DIRECT_READ_BUFFER_SIZE));
+  private final DirectBufferPool directBufferPool = new DirectBufferPool(DIRECT_BUFFER_POOL_BYTES);
   private final MetricsSystem metricsSystem;
   private final RocksDBMetricsFactory rocksDBMetricsFactory;
   private final RocksDBConfiguration configuration;
 
+  // Shared by all the column families, with the memtables charged to it.
+  protected final Cache blockCache;
+  // Shared by the high spec segments, and carved out of the block cache capacity.
+  protected final Optional<Cache> highSpecBlockCache;
+  private final long blockCacheCapacity;
+  private final long highSpecCacheCapacity;
+  protected final WriteBufferManager writeBufferManager;
   protected DBOptions rocksDBOptions;
-  protected TransactionDBOptions rocksDBTxOptions;
   protected final Statistics stats = new Statistics();
   protected RocksDBMetrics metrics;
   protected Map<Segment, RocksDBSegmentIdentifier> columnHandlesBySegmentIdentifier;
@@ -92,6 +113,20 @@ public abstract class RocksDBStorage implements KeyValueStorage {
     this.configuration = configuration;
     this.metricsSystem = metricsSystem;
     this.rocksDBMetricsFactory = rocksDBMetricsFactory;
+    this.highSpecCacheCapacity =
+        configuration.isHighSpec()
+            ? Math.min(
+                ROCKSDB_BLOCKCACHE_SIZE_WHEN_USING_HIGH_SPEC_OPT,
+                configuration.cacheCapacity() / HIGH_SPEC_CACHE_BUDGET_DIVISOR)
+            : 0;
+    this.blockCacheCapacity = configuration.cacheCapacity() - highSpecCacheCapacity;
+    this.blockCache = new LRUCache(blockCacheCapacity, -1, false, HIGH_PRIORITY_POOL_RATIO);
+    this.highSpecBlockCache =
+        configuration.isHighSpec()
+            ? Optional.of(new LRUCache(highSpecCacheCapacity))
+            : Optional.empty();
+    this.writeBufferManager =
+        new WriteBufferManager(configuration.writeBufferCapacity(), blockCache);
 
     try {
       trimmedSegments = new ArrayList<>(defaultSegments);
@@ -111,7 +146,6 @@ public abstract class RocksDBStorage implements KeyValueStorage {
 
       setGlobalOptions(configuration, stats);
 
-      rocksDBTxOptions = new TransactionDBOptions();
       columnHandles = new ArrayList<>(columnDescriptors.size());
 
     } catch (RocksDBException e) {
@@ -134,10 +168,12 @@ public abstract class RocksDBStorage implements KeyValueStorage {
 
     BlockBasedTableConfig basedTableConfig = createBlockBasedTableConfig(segment, configuration);
 
+    final ColumnFamilyProfile profile = segment.getColumnFamilyProfile();
     final var options =
         new ColumnFamilyOptions()
             .setTtl(0)
             .setCompressionType(CompressionType.LZ4_COMPRESSION)
+            .setBottommostCompressionType(profile.getBottommostCompressionType())
             .setTableFormatConfig(basedTableConfig);
 
     if (segment.containsStaticData()) {
@@ -145,7 +181,7 @@ public abstract class RocksDBStorage implements KeyValueStorage {
           .setEnableBlobFiles(true)
           .setEnableBlobGarbageCollection(segment.isStaticDataGarbageCollectionEnabled())
           .setMinBlobSize(100)
-          .setBlobCompressionType(CompressionType.LZ4_COMPRESSION);
+          .setBlobCompressionType(profile.getBottommostCompressionType());
     }
 
     return new ColumnFamilyDescriptor(segment.getId(), options);
@@ -161,18 +197,20 @@ public abstract class RocksDBStorage implements KeyValueStorage {
    */
   private BlockBasedTableConfig createBlockBasedTableConfig(
       final Segment segment, final RocksDBConfiguration config) {
-    final LRUCache cache =
-        new LRUCache(
-            config.isHighSpec() && segment.isEligibleToHighSpecFlag()
-                ? ROCKSDB_BLOCKCACHE_SIZE_WHEN_USING_HIGH_SPEC_OPT
-                : config.cacheCapacity());
+    final ColumnFamilyProfile profile = segment.getColumnFamilyProfile();
+    final Cache cache =
+        segment.isEligibleToHighSpecFlag() ? highSpecBlockCache.orElse(blockCache) : blockCache;
     return new BlockBasedTableConfig()
         .setFormatVersion(ROCKSDB_FORMAT_VERSION)
         .setBlockCache(cache)
         .setFilterPolicy(new BloomFilter(10, false))
         .setPartitionFilters(true)
-        .setCacheIndexAndFilterBlocks(false)
-        .setBlockSize(ROCKSDB_BLOCK_SIZE);
+        .setCacheIndexAndFilterBlocks(config.cacheIndexAndFilterBlocks())
+        .setCacheIndexAndFilterBlocksWithHighPriority(true)
+        .setPinTopLevelIndexAndFilter(true)
+        .setPinL0FilterAndIndexBlocksInCache(config.cacheIndexAndFilterBlocks())
+        .setDataBlockIndexType(profile.getDataBlockIndexType())
+        .setBlockSize(profile.getBlockSize());
   }
 
   /***
@@ -187,6 +225,7 @@ public abstract class RocksDBStorage implements KeyValueStorage {
         .setCreateIfMissing(true)
         .setMaxOpenFiles(configuration.maxOpenFiles())
         .setStatistics(stats)
+        .setWriteBufferManager(writeBufferManager)
         .setCreateMissingColumnFamilies(true)
         .setLogFileTimeToRoll(TIME_TO_ROLL_LOG_FILE_IN_SECONDS)
         .setKeepLogFileNum(NUMBER_OF_LOG_FILES_TO_KEEP_ON_DISK)
@@ -246,6 +285,17 @@ public abstract class RocksDBStorage implements KeyValueStorage {
     metrics = rocksDBMetricsFactory.create(metricsSystem, configuration, getDB(), stats);
   }
 
+  void initMemoryMetrics() {
+    rocksDBMetricsFactory.createMemoryMetrics(
+        metricsSystem,
+        getDB(),
+        blockCache,
+        trimmedSegments,
+        segment ->
+            Optional.ofNullable(columnHandlesBySegmentIdentifier.get(segment))
+                .map(RocksDBSegmentIdentifier::get));
+  }
+
   void initColumnHandles() throws RocksDBException {
     // will not include the DEFAULT columnHandle, we do not use it:
     columnHandlesBySegmentIdentifier =
@@ -271,7 +321,10 @@ public abstract class RocksDBStorage implements KeyValueStorage {
                                           "Column handle not found for segment "
                                               + segment.getName()));
                       return new RocksDBSegmentIdentifier(getDB(), columnHandle);
-                    }));
+                    },
+                    (first, second) -> first,
+                    // Segments can be dropped while the metrics read their column handle.
+                    ConcurrentHashMap::new));
   }
 
   /**
@@ -298,6 +351,83 @@ public abstract class RocksDBStorage implements KeyValueStorage {
     }
   }
 
+  @Override
+  public OptionalInt get(final Segment segment, final ByteBuffer key, final ByteBuffer value)
+      throws StorageException {
+    throwIfClosed();
+    try (final OperationTimer.TimingContext ignored = metrics.readLatency().startTimer()) {
+      final int size = getDB().get(safeColumnHandle(segment), readOptions, key, value);
+      return size == RocksDB.NOT_FOUND ? OptionalInt.empty() : OptionalInt.of(size);
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public Optional<ValueView> getDirect(final Segment segment, final byte[] key)
+      throws StorageException {
+    ByteBuffer keyBuffer = directKeyBuffer.get();
+    if (keyBuffer.capacity() < key.length) {
+      keyBuffer = ByteBuffer.allocateDirect(key.length);
+      directKeyBuffer.set(keyBuffer);
+    }
+    final ByteBuffer readBuffer = directReadBuffer.get();
+    keyBuffer.clear().put(key).flip();
+    readBuffer.clear();
+    OptionalInt size = get(segment, keyBuffer, readBuffer);
+    if (size.isEmpty()) {
+      return Optional.empty();
+    }
+    if (size.getAsInt() <= readBuffer.capacity()) {
+      // Small values are encoded into heap messages anyway, so only the read buffer is direct.
+      final byte[] value = new byte[size.getAsInt()];
+      readBuffer.get(value);
+      return Optional.of(ValueView.of(Bytes.wrap(value)));
+    }
+    // RocksDB only reports the size of a value that does not fit, so it is read again, into a
+    // pooled buffer of its size class, which also absorbs a value that grew in between.
+    while (true) {
+      final ByteBuffer target = directBufferPool.acquire(size.getAsInt());
+      keyBuffer.clear().put(key).flip();
+      size = get(segment, keyBuffer, target);
+      if (size.isPresent() && size.getAsInt() <= target.capacity()) {
+        return Optional.of(
+            ValueView.pooled(
+                Bytes.wrapByteBuffer(target.asReadOnlyBuffer()),
+                () -> directBufferPool.release(target)));
+      }
+      directBufferPool.release(target);
+      if (size.isEmpty()) {
+        return Optional.empty();
+      }
+    }
+  }
+
+  @Override
+  public List<Optional<byte[]>> multiGet(final Segment segment, final List<byte[]> keys)
+      throws StorageException {
+    return multiGet(keys.stream().map(key -> Pair.of(segment, key)).toList());
+  }
+
+  @Override
+  public List<Optional<byte[]>> multiGet(final List<Pair<Segment, byte[]>> keys)
+      throws StorageException {
+    throwIfClosed();
+    if (keys.isEmpty()) {
+      return List.of();
+    }
+    final List<ColumnFamilyHandle> handles =
+        keys.stream().map(key -> safeColumnHandle(key.getKey())).toList();
+    final List<byte[]> rawKeys = keys.stream().map(Pair::getValue).toList();
+    try (final OperationTimer.TimingContext ignored = metrics.multiGetLatency().startTimer()) {
+      return getDB().multiGetAsList(readOptions, handles, rawKeys).stream()
+          .map(Optional::ofNullable)
+          .toList();
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public Stream<Pair<byte[], byte[]>> stream(final Segment segment) {
     final RocksIterator rocksIterator = getDB().newIterator(safeColumnHandle(segment));
@@ -312,6 +442,68 @@ public abstract class RocksDBStorage implements KeyValueStorage {
     return RocksDBIterator.create(rocksIterator).toStreamKeys();
   }
 
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamFrom(final Segment segment, final byte[] startKey) {
+    final RocksIterator rocksIterator = getDB().newIterator(safeColumnHandle(segment));
+    rocksIterator.seek(startKey);
+    return RocksDBIterator.create(rocksIterator).toStream();
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamRange(
+      final Segment segment, final byte[] fromKey, final byte[] toKey) {
+    return streamBounded(segment, fromKey, Optional.of(toKey));
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamPrefix(final Segment segment, final byte[] prefix) {
+    return streamBounded(segment, prefix, prefixUpperBound(prefix));
+  }
+
+  private Stream<Pair<byte[], byte[]>> streamBounded(
+      final Segment segment, final byte[] lowerBound, final Optional<byte[]> upperBound) {
+    throwIfClosed();
+    // The bounds must outlive the iterator, so they are released with the stream.
+    final Slice lower = new Slice(lowerBound);
+    final Optional<Slice> upper = upperBound.map(Slice::new);
+    final ReadOptions boundedReadOptions =
+        new ReadOptions().setVerifyChecksums(false).setIterateLowerBound(lower);
+    upper.ifPresent(boundedReadOptions::setIterateUpperBound);
+    final RocksIterator rocksIterator =
+        getDB().newIterator(safeColumnHandle(segment), boundedReadOptions);
+    rocksIterator.seek(lowerBound);
+    return RocksDBIterator.create(rocksIterator)
+        .toStream()
+        .onClose(
+            () -> {
+              boundedReadOptions.close();
+              lower.close();
+              upper.ifPresent(Slice::close);
+            });
+  }
+
+  /**
+   * The smallest key greater than every key starting with the prefix, none when the prefix only
+   * holds 0xff bytes.
+   */
+  private static Optional<byte[]> prefixUpperBound(final byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xff) {
+        final byte[] upperBound = Arrays.copyOf(prefix, i + 1);
+        upperBound[i]++;
+        return Optional.of(upperBound);
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamReverse(final Segment segment) {
+    final RocksIterator rocksIterator = getDB().newIterator(safeColumnHandle(segment));
+    rocksIterator.seekToLast();
+    return RocksDBIterator.createReverse(rocksIterator).toStream();
+  }
+
   @Override
   public boolean tryDelete(final Segment segment, final byte[] key) {
     try {
@@ -326,6 +518,36 @@ public abstract class RocksDBStorage implements KeyValueStorage {
     }
   }
 
+  /**
+   * Whether the column family of the segment is open, ignorable segments not being opened when
+   * they do not exist.
+   *
+   * @param segment the segment
+   * @return true if the segment can be read and written
+   */
+  public boolean hasSegment(final Segment segment) {
+    return columnHandlesBySegmentIdentifier.containsKey(segment);
+  }
+
+  /**
+   * Drops the column family of the segment and its content. Unlike {@link #clear}, the column
+   * family is not created again, so the segment is not opened anymore.
+   *
+   * @param segment the segment to drop
+   */
+  public void dropSegment(final Segment segment) {
+    final RocksDBSegmentIdentifier identifier = columnHandlesBySegmentIdentifier.remove(segment);
+    if (identifier == null) {
+      return;
+    }
+    try {
+      getDB().dropColumnFamily(identifier.get());
+      identifier.get().close();
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public void clear(final Segment segment) {
     Optional.ofNullable(columnHandlesBySegmentIdentifier.get(segment))
@@ -335,16 +557,36 @@ public abstract class RocksDBStorage implements KeyValueStorage {
   @Override
   public void close() {
     if (closed.compareAndSet(false, true)) {
-      rocksDBTxOptions.close();
       rocksDBOptions.close();
       tryDeleteOptions.close();
       columnHandlesBySegmentIdentifier.values().stream()
           .map(RocksDBSegmentIdentifier::get)
           .forEach(ColumnFamilyHandle::close);
       getDB().close();
+      writeBufferManager.close();
+      blockCache.close();
+      highSpecBlockCache.ifPresent(Cache::close);
     }
   }
 
+  /**
+   * Get the capacity of the block cache shared by the column families, the memtables included.
+   *
+   * @return the capacity in bytes
+   */
+  public long getBlockCacheCapacity() {
+    return blockCacheCapacity;
+  }
+
+  /**
+   * Get the capacity of the cache shared by the high spec segments, zero when high spec is off.
+   *
+   * @return the capacity in bytes
+   */
+  public long getHighSpecCacheCapacity() {
+    return highSpecCacheCapacity;
+  }
+
   @Override
   public boolean isClosed() {
     return closed.get();
@@ -366,9 +608,8 @@ public abstract class RocksDBStorage implements KeyValueStorage {
   @Override
   public Set<byte[]> getAllKeysThat(
       final Segment segment, final Predicate<byte[]> returnCondition) {
-    return stream(segment)
-        .filter(pair -> returnCondition.test(pair.getKey()))
-        .map(Pair::getKey)
-        .collect(toUnmodifiableSet());
+    try (final Stream<byte[]> keys = streamKeys(segment)) {
+      return keys.filter(returnCondition).collect(toUnmodifiableSet());
+    }
   }
 }
@@ -7,18 +7,25 @@ import java.util.function.Supplier;
 
 import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
 import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
-import org.rocksdb.Transaction;
+import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A transaction staging its writes in a {@link WriteBatch}, applied atomically on commit. Its
+ * writes are not visible before then, but unlike a pessimistic transaction it takes no lock on the
+ * keys it writes: the last transaction committed wins.
+ */
 public class RocksDBTransaction implements KeyValueStorageTransaction {
   private static final Logger logger = LoggerFactory.getLogger(RocksDBTransaction.class);
   private static final String NO_SPACE_LEFT_ON_DEVICE = "No space left on device";
 
   private final RocksDBMetrics metrics;
-  private final Transaction innerTx;
+  private final RocksDB db;
+  private final WriteBatch batch;
   private final WriteOptions options;
   private final Function<Segment, ColumnFamilyHandle> columnFamilyMapper;
   private final Supplier<Boolean> isClosed;
@@ -28,18 +35,21 @@ public class RocksDBTransaction implements KeyValueStorageTransaction {
    * Instantiates a new RocksDb transaction.
    *
    * @param columnFamilyMapper mapper from segment identifier to column family handle
-   * @param innerTx the inner tx
+   * @param db the db the batch is written to
+   * @param batch the batch staging the writes
    * @param options the options
    * @param metrics the metrics
    */
   public RocksDBTransaction(
       final Function<Segment, ColumnFamilyHandle> columnFamilyMapper,
-      final Transaction innerTx,
+      final RocksDB db,
+      final WriteBatch batch,
       final WriteOptions options,
       final RocksDBMetrics metrics,
       final Supplier<Boolean> isClosed) {
     this.columnFamilyMapper = columnFamilyMapper;
-    this.innerTx = innerTx;
+    this.db = db;
+    this.batch = batch;
     this.options = options;
     this.metrics = metrics;
     this.isClosed = isClosed;
@@ -51,7 +61,7 @@ public class RocksDBTransaction implements KeyValueStorageTransaction {
     checkState(!isClosed.get(), "Cannot invoke put() on a closed storage.");
 
     try (final OperationTimer.TimingContext ignored = metrics.writeLatency().startTimer()) {
-      innerTx.put(columnFamilyMapper.apply(segmentId), key, value);
+      batch.put(columnFamilyMapper.apply(segmentId), key, value);
     } catch (final RocksDBException e) {
       if (e.getMessage().contains(NO_SPACE_LEFT_ON_DEVICE)) {
         logger.error(e.getMessage());
@@ -67,7 +77,7 @@ public class RocksDBTransaction implements KeyValueStorageTransaction {
     checkState(!isClosed.get(), "Cannot invoke remove() on a closed storage.");
 
     try (final OperationTimer.TimingContext ignored = metrics.removeLatency().startTimer()) {
-      innerTx.delete(columnFamilyMapper.apply(segmentId), key);
+      batch.delete(columnFamilyMapper.apply(segmentId), key);
     } catch (final RocksDBException e) {
       if (e.getMessage().contains(NO_SPACE_LEFT_ON_DEVICE)) {
         logger.error(e.getMessage());
@@ -83,7 +93,7 @@ public class RocksDBTransaction implements KeyValueStorageTransaction {
     checkState(!isClosed.get(), "Cannot invoke commit() on a closed storage.");
     active = false;
     try (final OperationTimer.TimingContext ignored = metrics.commitLatency().startTimer()) {
-      innerTx.commit();
+      db.write(options, batch);
     } catch (final RocksDBException e) {
       if (e.getMessage().contains(NO_SPACE_LEFT_ON_DEVICE)) {
         logger.error(e.getMessage());
@@ -101,21 +111,15 @@ public class RocksDBTransaction implements KeyValueStorageTransaction {
     checkState(!isClosed.get(), "Cannot invoke rollback() on a closed storage.");
     active = false;
     try {
-      innerTx.rollback();
+      batch.clear();
       metrics.rollbackCount().inc();
-    } catch (final RocksDBException e) {
-      if (e.getMessage().contains(NO_SPACE_LEFT_ON_DEVICE)) {
-        logger.error(e.getMessage());
-        System.exit(0);
-      }
-      throw new StorageException(e);
     } finally {
       close();
     }
   }
 
   private void close() {
-    innerTx.close();
+    batch.close();
     options.close();
   }
 }
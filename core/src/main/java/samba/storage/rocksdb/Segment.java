@@ -32,4 +32,13 @@ public interface Segment {
   default boolean isStaticDataGarbageCollectionEnabled() {
     return false;
   }
+
+  /**
+   * Tuning of the column family of this segment.
+   *
+   * @return the profile matching the way the segment is read
+   */
+  default ColumnFamilyProfile getColumnFamilyProfile() {
+    return ColumnFamilyProfile.GENERAL;
+  }
 }
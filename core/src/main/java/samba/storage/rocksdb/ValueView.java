@@ -0,0 +1,46 @@
+package samba.storage.rocksdb;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * A read-only view of a stored value. Large values are read into a pooled direct buffer, which
+ * closing the view gives back to the pool, so the view must not be used once closed. Closing a view
+ * of a value held on the heap does nothing.
+ */
+public final class ValueView implements AutoCloseable {
+
+  private final Bytes value;
+  private final Runnable release;
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  private ValueView(final Bytes value, final Runnable release) {
+    this.value = value;
+    this.release = release;
+  }
+
+  /** Views a value no one else writes to, with nothing to release. */
+  public static ValueView of(final Bytes value) {
+    return new ValueView(value, () -> {});
+  }
+
+  static ValueView pooled(final Bytes value, final Runnable release) {
+    return new ValueView(value, release);
+  }
+
+  public Bytes bytes() {
+    return value;
+  }
+
+  public int size() {
+    return value.size();
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      release.run();
+    }
+  }
+}
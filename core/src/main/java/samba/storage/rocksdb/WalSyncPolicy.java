@@ -0,0 +1,26 @@
+package samba.storage.rocksdb;
+
+import org.rocksdb.WriteOptions;
+
+/** When the writes committed to the write-ahead log are synced to disk. */
+public enum WalSyncPolicy {
+  /**
+   * Every commit is synced before it completes, so no completed write is lost, at the cost of an
+   * fsync per commit.
+   */
+  SYNC,
+  /**
+   * Commits are written to the log but left to the OS to sync. They survive a crash of the process
+   * but the last ones can be lost if the machine goes down.
+   */
+  NO_SYNC,
+  /**
+   * Commits are written to the log, which is synced at a fixed interval, bounding what a crash of
+   * the machine can lose to the commits of the last interval.
+   */
+  PERIODIC;
+
+  WriteOptions createWriteOptions() {
+    return new WriteOptions().setSync(this == SYNC).setIgnoreMissingColumnFamilies(true);
+  }
+}
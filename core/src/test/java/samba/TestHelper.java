@@ -1,9 +1,16 @@
 package samba;
 
+import samba.schema.content.BlockHeaderWithProofContainer;
+
 import java.util.Random;
 
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
 import org.ethereum.beacon.discovery.schema.*;
 import org.ethereum.beacon.discovery.util.Functions;
+import org.hyperledger.besu.datatypes.Address;
+import org.hyperledger.besu.datatypes.Hash;
+import org.hyperledger.besu.ethereum.rlp.BytesValueRLPOutput;
 
 public class TestHelper {
 
@@ -12,4 +19,37 @@ public class TestHelper {
         .secretKey(Functions.randomKeyPair(new Random(new Random().nextInt())).secretKey())
         .build();
   }
+
+  /** An RLP encoded pre-London header of a block without transactions nor ommers. */
+  public static Bytes createRlpBlockHeader(final long blockNumber) {
+    final BytesValueRLPOutput out = new BytesValueRLPOutput();
+    out.startList();
+    out.writeBytes(Hash.ZERO); // parent hash
+    out.writeBytes(Hash.EMPTY_LIST_HASH); // ommers hash
+    out.writeBytes(Address.ZERO); // coinbase
+    out.writeBytes(Hash.EMPTY_TRIE_HASH); // state root
+    out.writeBytes(Hash.EMPTY_TRIE_HASH); // transactions root
+    out.writeBytes(Hash.EMPTY_TRIE_HASH); // receipts root
+    out.writeBytes(Bytes.wrap(new byte[256])); // logs bloom
+    out.writeUInt256Scalar(UInt256.ONE); // difficulty
+    out.writeLongScalar(blockNumber);
+    out.writeLongScalar(5000); // gas limit
+    out.writeLongScalar(0); // gas used
+    out.writeLongScalar(1_438_269_988L + blockNumber); // timestamp
+    out.writeBytes(Bytes.EMPTY); // extra data
+    out.writeBytes(Hash.ZERO); // mix hash
+    out.writeLong(blockNumber); // nonce
+    out.endList();
+    return out.encoded();
+  }
+
+  /** The SSZ BlockHeaderWithProof of {@link #createRlpBlockHeader}, with an empty proof. */
+  public static Bytes createBlockHeaderWithProof(final long blockNumber) {
+    return new BlockHeaderWithProofContainer(createRlpBlockHeader(blockNumber), Bytes.EMPTY)
+        .sszSerialize();
+  }
+
+  public static Hash createBlockHash(final long blockNumber) {
+    return Hash.hash(createRlpBlockHeader(blockNumber));
+  }
 }
@@ -0,0 +1,105 @@
+package samba.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import samba.TestHelper;
+import samba.config.HistoryNetworkConfig;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class NodeIntakeQueueTest {
+
+  private final Set<Bytes> knownNodes = new HashSet<>();
+  private final List<SafeFuture<Boolean>> verifications = new ArrayList<>();
+  private final List<NodeRecord> verifiedNodes = new ArrayList<>();
+  private NodeIntakeQueue nodeIntakeQueue;
+
+  @BeforeEach
+  public void setUp() {
+    nodeIntakeQueue =
+        new NodeIntakeQueue(
+            HistoryNetworkConfig.builder()
+                .maxConcurrentNodeVerifications(2)
+                .nodeIntakeQueueSize(3)
+                .build(),
+            knownNodes::contains,
+            node -> {
+              verifiedNodes.add(node);
+              final SafeFuture<Boolean> verification = new SafeFuture<>();
+              verifications.add(verification);
+              return verification;
+            },
+            new NoOpMetricsSystem());
+  }
+
+  @Test
+  public void boundsTheNumberOfConcurrentVerifications() {
+    for (int i = 0; i < 4; i++) {
+      assertThat(nodeIntakeQueue.add(TestHelper.createNodeRecord())).isPresent();
+    }
+
+    assertThat(nodeIntakeQueue.getInFlightVerifications()).isEqualTo(2);
+    assertThat(nodeIntakeQueue.getQueueDepth()).isEqualTo(2);
+
+    verifications.get(0).complete(true);
+
+    assertThat(verifiedNodes).hasSize(3);
+    assertThat(nodeIntakeQueue.getQueueDepth()).isEqualTo(1);
+  }
+
+  @Test
+  public void reportsTheVerificationOutcomeOfAQueuedNode() {
+    final SafeFuture<Boolean> verified =
+        nodeIntakeQueue.add(TestHelper.createNodeRecord()).orElseThrow();
+
+    assertThat(verified).isNotDone();
+
+    verifications.get(0).complete(true);
+
+    assertThat(verified).isCompletedWithValue(true);
+  }
+
+  @Test
+  public void dropsKnownAndPendingNodes() {
+    final NodeRecord knownNode = TestHelper.createNodeRecord();
+    knownNodes.add(knownNode.getNodeId());
+    final NodeRecord pendingNode = TestHelper.createNodeRecord();
+
+    assertThat(nodeIntakeQueue.add(knownNode)).isEmpty();
+    assertThat(nodeIntakeQueue.add(pendingNode)).isPresent();
+    assertThat(nodeIntakeQueue.add(pendingNode)).isEmpty();
+    assertThat(verifiedNodes).containsExactly(pendingNode);
+  }
+
+  @Test
+  public void dropsRecentlyFailedNodes() {
+    final NodeRecord node = TestHelper.createNodeRecord();
+    final SafeFuture<Boolean> verified = nodeIntakeQueue.add(node).orElseThrow();
+
+    verifications.get(0).completeExceptionally(new RuntimeException("timeout"));
+
+    assertThat(verified).isCompletedWithValue(false);
+    assertThat(nodeIntakeQueue.add(node)).isEmpty();
+    assertThat(verifiedNodes).hasSize(1);
+  }
+
+  @Test
+  public void dropsCandidatesOnceTheQueueIsFull() {
+    for (int i = 0; i < 5; i++) {
+      nodeIntakeQueue.add(TestHelper.createNodeRecord());
+    }
+
+    assertThat(nodeIntakeQueue.add(TestHelper.createNodeRecord())).isEmpty();
+    assertThat(nodeIntakeQueue.getQueueDepth()).isEqualTo(3);
+  }
+}
@@ -0,0 +1,100 @@
+package samba.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import samba.config.HistoryNetworkConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class OutboundRequestSchedulerTest {
+
+  private static final Bytes PEER_1 = Bytes.fromHexString("0x01");
+  private static final Bytes PEER_2 = Bytes.fromHexString("0x02");
+
+  private final OutboundRequestScheduler scheduler =
+      new OutboundRequestScheduler(
+          HistoryNetworkConfig.builder()
+              .maxInFlightRequestsPerPeer(1)
+              .maxInFlightRequests(2)
+              .build(),
+          new NoOpMetricsSystem());
+  private final List<String> sent = new ArrayList<>();
+  private final List<SafeFuture<String>> responses = new ArrayList<>();
+
+  @Test
+  public void queuesRequestsOverThePeerLimit() {
+    SafeFuture<String> first = submit(PEER_1, RequestPriority.NORMAL, "first");
+    SafeFuture<String> second = submit(PEER_1, RequestPriority.NORMAL, "second");
+
+    assertThat(sent).containsExactly("first");
+    assertEquals(1, scheduler.getPendingRequests());
+
+    responses.get(0).complete("first");
+
+    assertThat(first).isCompletedWithValue("first");
+    assertThat(sent).containsExactly("first", "second");
+    assertThat(second).isNotDone();
+  }
+
+  @Test
+  public void sendsQueuedRequestsByPriority() {
+    submit(PEER_1, RequestPriority.NORMAL, "first");
+    submit(PEER_1, RequestPriority.LOW, "low");
+    submit(PEER_1, RequestPriority.HIGH, "high");
+
+    responses.get(0).complete("first");
+    responses.get(1).complete("high");
+
+    assertThat(sent).containsExactly("first", "high", "low");
+  }
+
+  @Test
+  public void queuesRequestsOverTheGlobalLimit() {
+    submit(PEER_1, RequestPriority.NORMAL, "peer1");
+    submit(PEER_2, RequestPriority.NORMAL, "peer2");
+    submit(Bytes.fromHexString("0x03"), RequestPriority.NORMAL, "peer3");
+
+    assertThat(sent).containsExactly("peer1", "peer2");
+    assertEquals(2, scheduler.getInFlightRequests());
+
+    responses.get(1).completeExceptionally(new RuntimeException("failed"));
+
+    assertThat(sent).containsExactly("peer1", "peer2", "peer3");
+  }
+
+  @Test
+  public void givesAFreeGlobalSlotToTheHighestPriorityRequest() {
+    submit(PEER_1, RequestPriority.NORMAL, "peer1");
+    submit(PEER_2, RequestPriority.NORMAL, "peer2");
+    submit(Bytes.fromHexString("0x03"), RequestPriority.LOW, "low");
+    submit(Bytes.fromHexString("0x04"), RequestPriority.HIGH, "high");
+
+    responses.get(0).complete("peer1");
+
+    assertThat(sent).containsExactly("peer1", "peer2", "high");
+
+    responses.get(1).complete("peer2");
+
+    assertThat(sent).containsExactly("peer1", "peer2", "high", "low");
+  }
+
+  private SafeFuture<String> submit(
+      final Bytes nodeId, final RequestPriority priority, final String request) {
+    return scheduler.submit(
+        nodeId,
+        priority,
+        () -> {
+          sent.add(request);
+          SafeFuture<String> response = new SafeFuture<>();
+          responses.add(response);
+          return response;
+        });
+  }
+}
@@ -0,0 +1,204 @@
+package samba.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.TestHelper;
+import samba.config.HistoryNetworkConfig;
+import samba.domain.messages.MessageType;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class RequestHedgerTest {
+
+  private static final String CONTENT = "content";
+  private static final String ENRS = "enrs";
+
+  private final RequestTimeouts requestTimeouts =
+      new RequestTimeouts(
+          HistoryNetworkConfig.builder().initialRequestTimeout(Duration.ofSeconds(10)).build(),
+          new NoOpMetricsSystem());
+  private final NodeRecord firstPeer = TestHelper.createNodeRecord();
+  private final NodeRecord secondPeer = TestHelper.createNodeRecord();
+  private final NodeRecord thirdPeer = TestHelper.createNodeRecord();
+  private final Map<NodeRecord, SafeFuture<Optional<String>>> requests =
+      new ConcurrentHashMap<>();
+
+  @Test
+  public void hedgesASlowPeerAndCancelsItOnceTheHedgeAnswers() throws Exception {
+    LongStream.rangeClosed(1, 20)
+        .forEach(__ -> requestTimeouts.recordRtt(firstPeer.getNodeId(), 10));
+    final CountDownLatch hedgeSent = new CountDownLatch(1);
+    final RequestHedger requestHedger = createRequestHedger(1);
+
+    final SafeFuture<Optional<String>> result =
+        requestHedger.send(
+            List.of(firstPeer, secondPeer),
+            MessageType.FIND_CONTENT,
+            peer -> {
+              if (peer.equals(secondPeer)) {
+                hedgeSent.countDown();
+              }
+              return request(peer);
+            },
+            CONTENT::equals);
+
+    assertThat(hedgeSent.await(5, TimeUnit.SECONDS)).isTrue();
+    requests.get(secondPeer).complete(Optional.of(CONTENT));
+
+    assertThat(result.get(5, TimeUnit.SECONDS)).contains(CONTENT);
+    assertThat(requests.get(firstPeer)).isCancelled();
+  }
+
+  @Test
+  public void doesNotHedgeAPeerThatAnswersInTime() {
+    final RequestHedger requestHedger = createRequestHedger(1);
+
+    final SafeFuture<Optional<String>> result =
+        requestHedger.send(
+            List.of(firstPeer, secondPeer),
+            MessageType.FIND_CONTENT,
+            peer -> SafeFuture.completedFuture(Optional.of(CONTENT)),
+            CONTENT::equals);
+
+    assertThat(result).isCompletedWithValue(Optional.of(CONTENT));
+  }
+
+  @Test
+  public void asksTheNextPeerRightAwayWhenTheAnswerIsNotTheExpectedOne() {
+    final RequestHedger requestHedger = createRequestHedger(1);
+
+    final SafeFuture<Optional<String>> result =
+        requestHedger.send(
+            List.of(firstPeer, secondPeer),
+            MessageType.FIND_CONTENT,
+            this::request,
+            CONTENT::equals);
+    requests.get(firstPeer).complete(Optional.of(ENRS));
+    requests.get(secondPeer).complete(Optional.of(CONTENT));
+
+    assertThat(result).isCompletedWithValue(Optional.of(CONTENT));
+  }
+
+  @Test
+  public void keepsNoMoreRequestsInFlightThanTheMaximumNumberOfHedgesAllows() {
+    final RequestHedger requestHedger = createRequestHedger(1);
+
+    final SafeFuture<Optional<String>> result =
+        requestHedger.send(
+            List.of(firstPeer, secondPeer, thirdPeer),
+            MessageType.FIND_CONTENT,
+            this::request,
+            CONTENT::equals);
+    requests.get(firstPeer).complete(Optional.of(ENRS));
+    requests.get(secondPeer).complete(Optional.empty());
+    requests.get(thirdPeer).complete(Optional.empty());
+
+    assertThat(result).isCompletedWithValue(Optional.of(ENRS));
+  }
+
+  @Test
+  public void sendsASingleRequestAtATimeWhenHedgingIsDisabled() {
+    final RequestHedger requestHedger = createRequestHedger(0);
+
+    requestHedger.send(
+        List.of(firstPeer, secondPeer), MessageType.FIND_CONTENT, this::request, CONTENT::equals);
+
+    assertThat(requests).containsOnlyKeys(firstPeer);
+  }
+
+  @Test
+  public void fallsBackToTheNextPeerWhenTheFirstAnswersEmpty() {
+    final RequestHedger requestHedger = createRequestHedger(0);
+
+    final SafeFuture<Optional<String>> result =
+        requestHedger.send(
+            List.of(firstPeer, secondPeer),
+            MessageType.FIND_CONTENT,
+            this::request,
+            CONTENT::equals);
+    requests.get(firstPeer).complete(Optional.empty());
+    requests.get(secondPeer).complete(Optional.of(CONTENT));
+
+    assertThat(result).isCompletedWithValue(Optional.of(CONTENT));
+  }
+
+  @Test
+  public void countsAHedgeWinOnlyForAnAnswerSentAsAHedge() throws Exception {
+    LongStream.rangeClosed(1, 20)
+        .forEach(__ -> requestTimeouts.recordRtt(firstPeer.getNodeId(), 10));
+    final Counter hedgeWins = mock(Counter.class);
+    final RequestHedger requestHedger =
+        new RequestHedger(requestTimeouts, 1, metricsSystemCountingHedgeWins(hedgeWins));
+
+    final SafeFuture<Optional<String>> fallback =
+        requestHedger.send(
+            List.of(secondPeer, thirdPeer),
+            MessageType.FIND_CONTENT,
+            this::request,
+            CONTENT::equals);
+    requests.get(secondPeer).complete(Optional.empty());
+    requests.get(thirdPeer).complete(Optional.of(CONTENT));
+
+    assertThat(fallback).isCompletedWithValue(Optional.of(CONTENT));
+    verify(hedgeWins, never()).inc();
+
+    final SafeFuture<Optional<String>> hedged =
+        requestHedger.send(
+            List.of(firstPeer, secondPeer),
+            MessageType.FIND_CONTENT,
+            peer -> peer.equals(firstPeer) ? new SafeFuture<>() : completedContent(),
+            CONTENT::equals);
+
+    assertThat(hedged.get(5, TimeUnit.SECONDS)).contains(CONTENT);
+    verify(hedgeWins).inc();
+  }
+
+  private static SafeFuture<Optional<String>> completedContent() {
+    return SafeFuture.completedFuture(Optional.of(CONTENT));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static MetricsSystem metricsSystemCountingHedgeWins(final Counter hedgeWins) {
+    final LabelledMetric<Counter> otherCounters = mock(LabelledMetric.class);
+    when(otherCounters.labels(anyString())).thenReturn(mock(Counter.class));
+    final LabelledMetric<Counter> hedgeWinCounter = mock(LabelledMetric.class);
+    when(hedgeWinCounter.labels(anyString())).thenReturn(hedgeWins);
+    final MetricsSystem metricsSystem = mock(MetricsSystem.class);
+    when(metricsSystem.createLabelledCounter(any(), anyString(), anyString(), anyString()))
+        .thenReturn(otherCounters);
+    when(metricsSystem.createLabelledCounter(
+            any(), eq("request_hedge_wins_total"), anyString(), anyString()))
+        .thenReturn(hedgeWinCounter);
+    return metricsSystem;
+  }
+
+  private RequestHedger createRequestHedger(final int maxHedges) {
+    return new RequestHedger(requestTimeouts, maxHedges, new NoOpMetricsSystem());
+  }
+
+  private SafeFuture<Optional<String>> request(final NodeRecord peer) {
+    return requests.computeIfAbsent(peer, __ -> new SafeFuture<>());
+  }
+}
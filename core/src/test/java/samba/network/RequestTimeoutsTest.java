@@ -0,0 +1,72 @@
+package samba.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import samba.config.HistoryNetworkConfig;
+import samba.domain.messages.MessageType;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.LongStream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class RequestTimeoutsTest {
+
+  private static final Bytes NODE_ID = Bytes.fromHexString("0x01");
+
+  private final RequestTimeouts requestTimeouts =
+      new RequestTimeouts(
+          HistoryNetworkConfig.builder()
+              .initialRequestTimeout(Duration.ofMillis(200))
+              .minRequestTimeout(Duration.ofMillis(100))
+              .maxRequestTimeout(Duration.ofSeconds(1))
+              .build(),
+          new NoOpMetricsSystem());
+
+  @Test
+  public void usesTheInitialTimeoutForUnknownPeers() {
+    assertEquals(200, requestTimeouts.getTimeoutMillis(NODE_ID));
+  }
+
+  @Test
+  public void derivesTheTimeoutFromTheObservedRoundTripTimes() {
+    LongStream.rangeClosed(1, 20).forEach(rtt -> requestTimeouts.recordRtt(NODE_ID, rtt * 10));
+
+    assertEquals(380, requestTimeouts.getTimeoutMillis(NODE_ID));
+  }
+
+  @Test
+  public void boundsTheTimeout() {
+    requestTimeouts.recordRtt(NODE_ID, 1);
+    assertEquals(100, requestTimeouts.getTimeoutMillis(NODE_ID));
+
+    requestTimeouts.recordRtt(NODE_ID, 10_000);
+    assertEquals(1000, requestTimeouts.getTimeoutMillis(NODE_ID));
+  }
+
+  @Test
+  public void failsRequestsThatExceedTheDeadline() {
+    SafeFuture<Bytes> result =
+        requestTimeouts.apply(NODE_ID, MessageType.PING, new SafeFuture<>());
+
+    assertThat(result)
+        .failsWithin(1, TimeUnit.SECONDS)
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(TimeoutException.class);
+  }
+
+  @Test
+  public void completesWithTheResponse() throws Exception {
+    SafeFuture<Bytes> result =
+        requestTimeouts.apply(NODE_ID, MessageType.PING, SafeFuture.completedFuture(NODE_ID));
+
+    assertEquals(NODE_ID, result.get());
+  }
+}
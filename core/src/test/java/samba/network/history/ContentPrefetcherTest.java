@@ -0,0 +1,97 @@
+package samba.network.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import samba.config.HistoryNetworkConfig;
+import samba.domain.content.ContentType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class ContentPrefetcherTest {
+
+  private final Set<Bytes> availableContentKeys = new HashSet<>();
+  private final List<Bytes> prefetchedContentKeys = new ArrayList<>();
+  private final List<SafeFuture<Long>> prefetches = new ArrayList<>();
+
+  @Test
+  public void prefetchesTheBodyAndTheReceiptsOfTheBlock() {
+    final ContentPrefetcher contentPrefetcher = createContentPrefetcher(4, 1024 * 1024);
+    final Bytes32 blockHash = Bytes32.random();
+
+    contentPrefetcher.onBlockHeaderRetrieved(blockHash);
+
+    assertThat(prefetchedContentKeys)
+        .containsExactly(
+            contentKey(ContentType.BLOCK_BODY, blockHash),
+            contentKey(ContentType.RECEIPT, blockHash));
+  }
+
+  @Test
+  public void skipsContentThatIsAlreadyAvailable() {
+    final ContentPrefetcher contentPrefetcher = createContentPrefetcher(4, 1024 * 1024);
+    final Bytes32 blockHash = Bytes32.random();
+    availableContentKeys.add(contentKey(ContentType.BLOCK_BODY, blockHash));
+
+    contentPrefetcher.onBlockHeaderRetrieved(blockHash);
+
+    assertThat(prefetchedContentKeys).containsExactly(contentKey(ContentType.RECEIPT, blockHash));
+  }
+
+  @Test
+  public void boundsTheNumberOfConcurrentPrefetches() {
+    final ContentPrefetcher contentPrefetcher = createContentPrefetcher(1, 1024 * 1024);
+
+    contentPrefetcher.onBlockHeaderRetrieved(Bytes32.random());
+
+    assertThat(prefetchedContentKeys).hasSize(1);
+    assertThat(contentPrefetcher.getQueueDepth()).isEqualTo(1);
+
+    prefetches.get(0).complete(0L);
+
+    assertThat(prefetchedContentKeys).hasSize(2);
+    assertThat(contentPrefetcher.getQueueDepth()).isZero();
+  }
+
+  @Test
+  public void delaysTheNextPrefetchOnceTheBandwidthBudgetIsSpent() {
+    final ContentPrefetcher contentPrefetcher = createContentPrefetcher(1, 1);
+
+    contentPrefetcher.onBlockHeaderRetrieved(Bytes32.random());
+    prefetches.get(0).complete(1024L);
+
+    assertThat(prefetchedContentKeys).hasSize(1);
+    assertThat(contentPrefetcher.getQueueDepth()).isEqualTo(1);
+    assertThat(contentPrefetcher.getInFlightPrefetches()).isZero();
+  }
+
+  private ContentPrefetcher createContentPrefetcher(
+      final int maxConcurrentPrefetches, final long bytesPerSecond) {
+    return new ContentPrefetcher(
+        HistoryNetworkConfig.builder()
+            .contentPrefetchEnabled(true)
+            .maxConcurrentPrefetches(maxConcurrentPrefetches)
+            .prefetchBytesPerSecond(bytesPerSecond)
+            .build(),
+        availableContentKeys::contains,
+        contentKey -> {
+          prefetchedContentKeys.add(contentKey);
+          final SafeFuture<Long> prefetch = new SafeFuture<>();
+          prefetches.add(prefetch);
+          return prefetch;
+        },
+        new NoOpMetricsSystem());
+  }
+
+  private static Bytes contentKey(final ContentType contentType, final Bytes blockHash) {
+    return Bytes.concatenate(Bytes.of(contentType.getByteValue()), blockHash);
+  }
+}
@@ -1,31 +1,54 @@
 package samba.network.history;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static samba.TestHelper.createNodeRecord;
 
+import samba.TestHelper;
+import samba.config.HistoryNetworkConfig;
+import samba.config.StorageConfig;
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
 import samba.domain.messages.PortalWireMessage;
 import samba.domain.messages.requests.FindContent;
 import samba.domain.messages.response.Content;
 import samba.services.discovery.Discv5Client;
+import samba.services.utp.UTP;
+import samba.services.utp.UtpException;
+import samba.storage.ContentValidationPipeline;
 import samba.storage.HistoryDB;
+import samba.storage.HistoryRocksDB;
+import samba.storage.rocksdb.RocksDBConfiguration;
+import samba.storage.rocksdb.RocksDBMetricsFactory;
+import samba.storage.rocksdb.ValueView;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
 
 public class FindContentMessageTests {
 
   private static final Bytes contentKey = Bytes.fromHexString("0x706f7274616c");
 
+  @TempDir public Path folder;
   private HistoryDB historyDB;
 
   @BeforeEach
@@ -42,13 +65,29 @@ public class FindContentMessageTests {
     NodeRecord homeNodeRecord = createNodeRecord();
     when(discv5Client.getHomeNodeRecord()).thenReturn(homeNodeRecord);
 
-    HistoryNetwork historyNetwork = new HistoryNetwork(discv5Client, historyDB);
+    UTP utp = mock(UTP.class);
     NodeRecord nodeRecord = createNodeRecord();
+    Bytes transferredContent = Bytes.random(PortalWireMessage.MAX_CUSTOM_PAYLOAD_BYTES + 1);
+    doReturn(SafeFuture.COMPLETE).when(utp).connect(nodeRecord, 1234);
+    when(utp.getContent(nodeRecord, 1234))
+        .thenReturn(SafeFuture.completedFuture(transferredContent));
+    ContentValidationPipeline pipeline = mock(ContentValidationPipeline.class);
+    when(pipeline.submit(any())).thenReturn(SafeFuture.completedFuture(List.of(true)));
+    HistoryNetwork historyNetwork =
+        new HistoryNetwork(
+            discv5Client,
+            historyDB,
+            pipeline,
+            StorageConfig.createDefault(),
+            HistoryNetworkConfig.createDefault(),
+            new NoOpMetricsSystem(),
+            utp);
 
     Optional<Content> content =
         historyNetwork.findContent(nodeRecord, createFindContentMessage(contentKey)).get();
 
     assertEquals(1234, content.get().getConnectionId());
+    verify(pipeline).submit(List.of(new ContentEntry(contentKey, transferredContent)));
   }
 
   @Test
@@ -87,6 +126,54 @@ public class FindContentMessageTests {
     // assertEquals(Optional.empty(), content); //TODO FIX THIS
   }
 
+  @Test
+  public void findContentIsNotResentAfterADeadEnd() throws ExecutionException, InterruptedException {
+    Discv5Client discv5Client = mock(Discv5Client.class);
+    when(discv5Client.sendDisv5Message(any(NodeRecord.class), any(Bytes.class), any(Bytes.class)))
+        .thenReturn(createContentEnrBytesResponse(List.of()));
+    NodeRecord homeNodeRecord = createNodeRecord();
+    when(discv5Client.getHomeNodeRecord()).thenReturn(homeNodeRecord);
+
+    HistoryNetwork historyNetwork = new HistoryNetwork(discv5Client, historyDB);
+    NodeRecord nodeRecord = createNodeRecord();
+
+    NodeRecord otherNodeRecord = createNodeRecord();
+
+    historyNetwork
+        .findContent(List.of(nodeRecord, otherNodeRecord), createFindContentMessage(contentKey))
+        .get();
+    Optional<Content> content =
+        historyNetwork
+            .findContent(List.of(nodeRecord, otherNodeRecord), createFindContentMessage(contentKey))
+            .get();
+
+    assertEquals(Optional.empty(), content);
+    verify(discv5Client, times(2))
+        .sendDisv5Message(any(NodeRecord.class), any(Bytes.class), any(Bytes.class));
+  }
+
+  @Test
+  public void findContentAsksTheOtherNodesAfterADeadEnd()
+      throws ExecutionException, InterruptedException {
+    Discv5Client discv5Client = mock(Discv5Client.class);
+    NodeRecord nodeRecord = createNodeRecord();
+    NodeRecord otherNodeRecord = createNodeRecord();
+    when(discv5Client.sendDisv5Message(eq(nodeRecord), any(Bytes.class), any(Bytes.class)))
+        .thenReturn(createContentEnrBytesResponse(List.of()));
+    when(discv5Client.sendDisv5Message(eq(otherNodeRecord), any(Bytes.class), any(Bytes.class)))
+        .thenReturn(createContentContentBytesResponse(Bytes.fromHexString("0x1234567890")));
+    when(discv5Client.getHomeNodeRecord()).thenReturn(createNodeRecord());
+    HistoryNetwork historyNetwork = new HistoryNetwork(discv5Client, historyDB);
+
+    historyNetwork.findContent(nodeRecord, createFindContentMessage(contentKey)).get();
+    Optional<Content> content =
+        historyNetwork
+            .findContent(List.of(nodeRecord, otherNodeRecord), createFindContentMessage(contentKey))
+            .get();
+
+    assertEquals(Bytes.fromHexString("0x1234567890"), content.get().getContent());
+  }
+
   @Test
   public void sendOkFindContentMessageAndRecieveEmptyContentConnectionIdTest()
       throws ExecutionException, InterruptedException {
@@ -217,6 +304,72 @@ public class FindContentMessageTests {
     assertEquals(Optional.empty(), content);
   }
 
+  @Test
+  public void handleFindContentFailsWhenALargeContentCanNotBeStreamed() {
+    Discv5Client discv5Client = mock(Discv5Client.class);
+    when(discv5Client.getHomeNodeRecord()).thenReturn(createNodeRecord());
+    Bytes blockBodyKey = Bytes.concatenate(Bytes.of(0x01), Bytes32.random());
+    when(historyDB.getContent(ContentType.BLOCK_BODY, blockBodyKey.slice(1)))
+        .thenReturn(
+            Optional.of(
+                ValueView.of(Bytes.random(PortalWireMessage.MAX_CUSTOM_PAYLOAD_BYTES + 1))));
+    UTP utp = mock(UTP.class);
+    when(utp.listen(any())).thenReturn(Optional.empty());
+    HistoryNetwork historyNetwork =
+        new HistoryNetwork(
+            discv5Client,
+            historyDB,
+            mock(ContentValidationPipeline.class),
+            StorageConfig.createDefault(),
+            HistoryNetworkConfig.createDefault(),
+            new NoOpMetricsSystem(),
+            utp);
+
+    assertThrows(
+        UtpException.class,
+        () -> historyNetwork.handleFindContent(createNodeRecord(), new FindContent(blockBodyKey)));
+  }
+
+  @Test
+  public void handleFindContentServesTheHeaderOfABlockRequestedByNumber() {
+    Bytes blockNumberKey = Bytes.ofUnsignedLong(1).reverse();
+    Bytes blockHeader = TestHelper.createBlockHeaderWithProof(1);
+    HistoryRocksDB historyRocksDB =
+        new HistoryRocksDB(
+            RocksDBConfiguration.createDefault(folder),
+            new NoOpMetricsSystem(),
+            RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS,
+            Bytes32.random(),
+            0);
+    try {
+      historyRocksDB
+          .saveValidatedContent(
+              List.of(
+                  new ContentEntry(Bytes.concatenate(Bytes.of(0x03), blockNumberKey), blockHeader)))
+          .join();
+      Discv5Client discv5Client = mock(Discv5Client.class);
+      when(discv5Client.getHomeNodeRecord()).thenReturn(createNodeRecord());
+      HistoryNetwork historyNetwork =
+          new HistoryNetwork(
+              discv5Client,
+              historyRocksDB,
+              mock(ContentValidationPipeline.class),
+              StorageConfig.createDefault(),
+              HistoryNetworkConfig.createDefault(),
+              new NoOpMetricsSystem(),
+              mock(UTP.class));
+
+      PortalWireMessage response =
+          historyNetwork.handleFindContent(
+              createNodeRecord(),
+              new FindContent(Bytes.concatenate(Bytes.of(0x03), blockNumberKey)));
+
+      assertEquals(blockHeader, ((Content) response).getContent());
+    } finally {
+      historyRocksDB.close();
+    }
+  }
+
   private static CompletableFuture<Bytes> createContentConnectionIdBytesResponse(int connectionId) {
     return CompletableFuture.completedFuture(new Content(connectionId).getSszBytes());
   }
@@ -0,0 +1,111 @@
+package samba.network.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.config.StorageConfig;
+import samba.storage.HistoryDB;
+
+import java.util.Optional;
+
+import org.apache.tuweni.units.bigints.UInt256;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class NodeRadiusManagerTest {
+
+  private HistoryDB historyDB;
+  private NodeRadiusManager nodeRadiusManager;
+  private final StorageConfig storageConfig =
+      StorageConfig.builder()
+          .storageCapacityBytes(1000)
+          .highWaterMark(0.9)
+          .lowWaterMark(0.5)
+          .build();
+
+  @BeforeEach
+  public void setUp() {
+    this.historyDB = mock(HistoryDB.class);
+    this.nodeRadiusManager = new NodeRadiusManager(historyDB, storageConfig);
+  }
+
+  @Test
+  public void radiusCoversTheWholeKeySpaceByDefault() {
+    assertEquals(UInt256.MAX_VALUE, nodeRadiusManager.getRadius());
+  }
+
+  @Test
+  public void startsWithTheFarthestStoredDistanceOnceTheLowWaterMarkIsReached() {
+    when(historyDB.getStorageUsage()).thenReturn(500L);
+    when(historyDB.getFarthestContentDistance()).thenReturn(Optional.of(UInt256.valueOf(1234)));
+
+    assertEquals(
+        UInt256.valueOf(1234), new NodeRadiusManager(historyDB, storageConfig).getRadius());
+  }
+
+  @Test
+  public void startsWithTheDistanceTheStoredContentWouldFillUpToTheLowWaterMark() {
+    when(historyDB.getStorageUsage()).thenReturn(250L);
+    when(historyDB.getFarthestContentDistance()).thenReturn(Optional.of(UInt256.valueOf(1234)));
+
+    assertEquals(
+        UInt256.valueOf(2468), new NodeRadiusManager(historyDB, storageConfig).getRadius());
+  }
+
+  @Test
+  public void startsWithTheWholeKeySpaceWhenLittleIsStoredFarAway() {
+    when(historyDB.getStorageUsage()).thenReturn(10L);
+    when(historyDB.getFarthestContentDistance())
+        .thenReturn(Optional.of(UInt256.MAX_VALUE.divide(2)));
+
+    assertEquals(UInt256.MAX_VALUE, new NodeRadiusManager(historyDB, storageConfig).getRadius());
+  }
+
+  @Test
+  public void doesNotPruneBelowTheHighWaterMark() {
+    when(historyDB.getStorageUsage()).thenReturn(900L);
+
+    nodeRadiusManager.onContentStored();
+
+    verify(historyDB, never()).pruneFarthestContent(anyLong());
+    assertEquals(UInt256.MAX_VALUE, nodeRadiusManager.getRadius());
+  }
+
+  @Test
+  public void prunesToTheLowWaterMarkAndShrinksTheRadius() {
+    when(historyDB.getStorageUsage()).thenReturn(901L);
+    when(historyDB.pruneFarthestContent(500L)).thenReturn(Optional.of(UInt256.valueOf(1234)));
+
+    nodeRadiusManager.onContentStored();
+
+    verify(historyDB).pruneFarthestContent(500L);
+    assertEquals(UInt256.valueOf(1234), nodeRadiusManager.getRadius());
+  }
+
+  @Test
+  public void radiusNeverGrowsBack() {
+    when(historyDB.getStorageUsage()).thenReturn(901L);
+    when(historyDB.pruneFarthestContent(500L))
+        .thenReturn(Optional.of(UInt256.valueOf(10)))
+        .thenReturn(Optional.of(UInt256.valueOf(20)));
+
+    nodeRadiusManager.onContentStored();
+    nodeRadiusManager.onContentStored();
+
+    assertEquals(UInt256.valueOf(10), nodeRadiusManager.getRadius());
+  }
+
+  @Test
+  public void keepsTheRadiusWhenNoContentIsLeftStored() {
+    when(historyDB.getStorageUsage()).thenReturn(901L);
+    when(historyDB.pruneFarthestContent(500L)).thenReturn(Optional.empty());
+
+    nodeRadiusManager.onContentStored();
+
+    assertEquals(UInt256.MAX_VALUE, nodeRadiusManager.getRadius());
+  }
+}
@@ -1,6 +1,196 @@
 package samba.network.history;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static samba.TestHelper.createNodeRecord;
+
+import samba.TestHelper;
+import samba.config.HistoryNetworkConfig;
+import samba.config.StorageConfig;
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
+import samba.domain.messages.requests.Offer;
+import samba.domain.messages.response.Accept;
+import samba.services.discovery.Discv5Client;
+import samba.services.utp.ContentItems;
+import samba.services.utp.UTP;
+import samba.storage.ContentValidationPipeline;
+import samba.storage.HistoryDB;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
 public class OfferMessageTests {
 
-  public void sendOkOfferMessageAndRecieveOkAcceptTest() {}
+  private static final Bytes CONTENT_KEY = Bytes.concatenate(Bytes.of(0x02), Bytes32.random());
+  private static final Bytes ACCEPTED = Bytes.of(0x01);
+  private static final Bytes DECLINED = Bytes.of(0x00);
+
+  private final NodeRecord peer = createNodeRecord();
+  private Discv5Client discv5Client;
+  private HistoryDB historyDB;
+  private UTP utp;
+  private ContentValidationPipeline pipeline;
+  private HistoryNetwork historyNetwork;
+
+  @BeforeEach
+  public void setUp() {
+    discv5Client = mock(Discv5Client.class);
+    when(discv5Client.getHomeNodeRecord()).thenReturn(createNodeRecord());
+    historyDB = mock(HistoryDB.class);
+    when(historyDB.multiGet(anyList())).thenReturn(List.of(Optional.empty()));
+    utp = mock(UTP.class);
+    when(utp.listen(any())).thenReturn(Optional.of(1234));
+    pipeline = mock(ContentValidationPipeline.class);
+    when(pipeline.submit(anyList())).thenReturn(SafeFuture.completedFuture(List.of(true)));
+    historyNetwork =
+        new HistoryNetwork(
+            discv5Client,
+            historyDB,
+            pipeline,
+            StorageConfig.createDefault(),
+            HistoryNetworkConfig.createDefault(),
+            new NoOpMetricsSystem(),
+            utp);
+  }
+
+  @Test
+  public void declinesAKeyAlreadyAcceptedFromAnotherOffer() {
+    SafeFuture<Bytes> transfer = new SafeFuture<>();
+    when(utp.getContent(any(), anyInt())).thenReturn(transfer);
+
+    assertThat(handleOffer().getContentKeys()).isEqualTo(ACCEPTED);
+    assertThat(handleOffer().getContentKeys()).isEqualTo(DECLINED);
+
+    transfer.complete(ContentItems.encode(List.of(Bytes.of(1, 2, 3))));
+
+    assertThat(handleOffer().getContentKeys()).isEqualTo(DECLINED);
+  }
+
+  @Test
+  public void acceptsAKeyAgainAfterAFailedTransfer() {
+    when(utp.getContent(any(), anyInt()))
+        .thenReturn(SafeFuture.failedFuture(new IllegalStateException("reset")));
+
+    assertThat(handleOffer().getContentKeys()).isEqualTo(ACCEPTED);
+    assertThat(handleOffer().getContentKeys()).isEqualTo(ACCEPTED);
+  }
+
+  @Test
+  public void acceptsAKeyAgainOnceItsContentIsRejected() {
+    when(utp.getContent(any(), anyInt()))
+        .thenReturn(SafeFuture.completedFuture(ContentItems.encode(List.of(Bytes.of(1, 2, 3)))));
+    when(pipeline.submit(anyList())).thenReturn(SafeFuture.completedFuture(List.of(false)));
+
+    assertThat(handleOffer().getContentKeys()).isEqualTo(ACCEPTED);
+    assertThat(handleOffer().getContentKeys()).isEqualTo(ACCEPTED);
+  }
+
+  @Test
+  public void acceptsAKeyAgainWhenNoUtpConnectionWasLeft() {
+    when(utp.listen(any())).thenReturn(Optional.empty()).thenReturn(Optional.of(1234));
+    when(utp.getContent(any(), anyInt())).thenReturn(new SafeFuture<>());
+
+    assertThat(handleOffer().getContentKeys()).isEqualTo(DECLINED);
+    assertThat(handleOffer().getContentKeys()).isEqualTo(ACCEPTED);
+  }
+
+  @Test
+  public void declinesContentOutsideTheRadius() {
+    when(historyDB.getStorageUsage()).thenReturn(Long.MAX_VALUE);
+    when(historyDB.getFarthestContentDistance()).thenReturn(Optional.of(UInt256.ZERO));
+    historyNetwork =
+        new HistoryNetwork(
+            discv5Client,
+            historyDB,
+            pipeline,
+            StorageConfig.createDefault(),
+            HistoryNetworkConfig.createDefault(),
+            new NoOpMetricsSystem(),
+            utp);
+
+    assertThat(handleOffer().getContentKeys()).isEqualTo(DECLINED);
+    verify(utp, never()).listen(any());
+  }
+
+  @Test
+  public void storesTheOfferedItemsTheOtherSideStillHad() {
+    final Bytes otherKey = Bytes.concatenate(Bytes.of(0x02), Bytes32.random());
+    when(historyDB.multiGet(anyList())).thenReturn(List.of(Optional.empty(), Optional.empty()));
+    final Bytes content = Bytes.of(1, 2, 3);
+    when(utp.getContent(any(), anyInt()))
+        .thenReturn(
+            SafeFuture.completedFuture(ContentItems.encode(List.of(Bytes.EMPTY, content))));
+
+    historyNetwork.handleOffer(peer, new Offer(List.of(CONTENT_KEY, otherKey)));
+
+    verify(pipeline).submit(List.of(new ContentEntry(otherKey, content)));
+  }
+
+  @Test
+  public void sendsAnEmptyItemForAnAcceptedContentNoLongerStored() {
+    final Bytes otherKey = Bytes.concatenate(Bytes.of(0x02), Bytes32.random());
+    final Bytes content = Bytes.of(1, 2, 3);
+    when(historyDB.get(ContentType.RECEIPT, CONTENT_KEY.slice(1))).thenReturn(Optional.empty());
+    when(historyDB.get(ContentType.RECEIPT, otherKey.slice(1)))
+        .thenReturn(Optional.of(content.toArrayUnsafe()));
+    when(discv5Client.sendDisv5Message(any(), any(), any()))
+        .thenReturn(
+            CompletableFuture.completedFuture(new Accept(1234, Bytes.of(0x03)).getSszBytes()));
+    doReturn(SafeFuture.COMPLETE).when(utp).connect(peer, 1234);
+    doReturn(SafeFuture.COMPLETE).when(utp).sendContent(eq(peer), eq(1234), any());
+
+    historyNetwork.offer(peer, new Offer(List.of(CONTENT_KEY, otherKey))).join();
+
+    verify(utp).sendContent(peer, 1234, ContentItems.encode(List.of(Bytes.EMPTY, content)));
+  }
+
+  @Test
+  public void prefetchesTheBodyAndReceiptsOfAHeaderStoredByNumber() {
+    final Bytes headerByNumberKey =
+        Bytes.concatenate(Bytes.of(0x03), Bytes.ofUnsignedLong(10).reverse());
+    when(utp.getContent(any(), anyInt()))
+        .thenReturn(
+            SafeFuture.completedFuture(
+                ContentItems.encode(List.of(TestHelper.createBlockHeaderWithProof(10)))));
+    historyNetwork =
+        new HistoryNetwork(
+            discv5Client,
+            historyDB,
+            pipeline,
+            StorageConfig.createDefault(),
+            HistoryNetworkConfig.builder().contentPrefetchEnabled(true).build(),
+            new NoOpMetricsSystem(),
+            utp);
+
+    historyNetwork.handleOffer(peer, new Offer(List.of(headerByNumberKey)));
+
+    verify(historyDB, timeout(5000))
+        .getContentSize(ContentType.BLOCK_BODY, TestHelper.createBlockHash(10));
+    verify(historyDB, timeout(5000))
+        .getContentSize(ContentType.RECEIPT, TestHelper.createBlockHash(10));
+  }
+
+  private Accept handleOffer() {
+    return (Accept) historyNetwork.handleOffer(peer, new Offer(List.of(CONTENT_KEY)));
+  }
 }
@@ -0,0 +1,96 @@
+package samba.network.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import samba.config.HistoryNetworkConfig;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+
+public class RecentContentKeyFilterTest {
+
+  private static final Duration TTL = Duration.ofSeconds(10);
+
+  private final AtomicLong nanoTime = new AtomicLong();
+
+  @Test
+  public void recognisesAKeySeenRecently() {
+    final RecentContentKeyFilter filter = createFilter(1024 * 1024, 0.01);
+    final Bytes contentKey = Bytes32.random();
+
+    assertThat(filter.add(contentKey)).isTrue();
+    assertThat(filter.add(contentKey)).isFalse();
+    assertThat(filter.mightContain(contentKey)).isTrue();
+  }
+
+  @Test
+  public void forgetsAKeyAfterTwoTimesToLive() {
+    final RecentContentKeyFilter filter = createFilter(1024 * 1024, 0.01);
+    final Bytes contentKey = Bytes32.random();
+    filter.add(contentKey);
+
+    nanoTime.addAndGet(TTL.toNanos());
+    assertThat(filter.mightContain(contentKey)).isTrue();
+
+    nanoTime.addAndGet(TTL.toNanos());
+    assertThat(filter.mightContain(contentKey)).isFalse();
+  }
+
+  @Test
+  public void forgetsEverythingAfterBeingIdle() {
+    final RecentContentKeyFilter filter = createFilter(1024 * 1024, 0.01);
+    final Bytes contentKey = Bytes32.random();
+    filter.add(contentKey);
+
+    nanoTime.addAndGet(TTL.multipliedBy(5).toNanos());
+
+    assertThat(filter.add(contentKey)).isTrue();
+  }
+
+  @Test
+  public void keepsTheKeysOfAFullFilterForAnotherGeneration() {
+    final RecentContentKeyFilter filter = createFilter(64, 0.01);
+    final Bytes first = Bytes32.random();
+    filter.add(first);
+    for (long i = 1; i < filter.getCapacity(); i++) {
+      filter.add(Bytes32.random());
+    }
+
+    assertThat(filter.mightContain(first)).isTrue();
+  }
+
+  @Test
+  public void staysWithinTheFalsePositiveRate() {
+    final RecentContentKeyFilter filter = createFilter(64 * 1024, 0.01);
+    for (long i = 0; i < filter.getCapacity() - 1; i++) {
+      filter.add(Bytes32.random());
+    }
+
+    int falsePositives = 0;
+    final int lookups = 10_000;
+    for (int i = 0; i < lookups; i++) {
+      if (filter.mightContain(Bytes32.random())) {
+        falsePositives++;
+      }
+    }
+    // Leaves room for the variance of the sample.
+    assertThat(falsePositives).isLessThan(lookups * 2 / 100);
+  }
+
+  private RecentContentKeyFilter createFilter(
+      final long sizeBytes, final double falsePositiveRate) {
+    return new RecentContentKeyFilter(
+        HistoryNetworkConfig.builder()
+            .recentContentFilterSizeBytes(sizeBytes)
+            .recentContentFilterFalsePositiveRate(falsePositiveRate)
+            .recentContentFilterTtl(TTL)
+            .build(),
+        new NoOpMetricsSystem(),
+        nanoTime::get);
+  }
+}
@@ -0,0 +1,135 @@
+package samba.rocksdb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import samba.storage.rocksdb.GroupCommitWriter;
+import samba.storage.rocksdb.RocksDBConfiguration;
+import samba.storage.rocksdb.RocksDBInstance;
+import samba.storage.rocksdb.RocksDBMetricsFactory;
+import samba.storage.rocksdb.WalSyncPolicy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class GroupCommitWriterTest {
+
+  private static final byte[] KEY = Bytes.of(1).toArrayUnsafe();
+  private static final byte[] VALUE = Bytes.of(10).toArrayUnsafe();
+
+  @TempDir public Path folder;
+  private RocksDBInstance store;
+  private GroupCommitWriter writer;
+
+  @BeforeEach
+  public void setUp() {
+    store =
+        new RocksDBInstance(
+            RocksDBConfiguration.createDefault(folder),
+            List.of(TestSegment.DEFAULT, TestSegment.FOO, TestSegment.BAR),
+            List.of(),
+            new NoOpMetricsSystem(),
+            RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+    writer =
+        new GroupCommitWriter(
+            store, WalSyncPolicy.PERIODIC, Duration.ofMillis(50), Duration.ofMillis(200));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    writer.close();
+    store.close();
+  }
+
+  @Test
+  public void commitsConcurrentWrites() throws Exception {
+    final List<SafeFuture<Void>> writes = Collections.synchronizedList(new ArrayList<>());
+    final List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final byte[] key = Bytes.of(i).toArrayUnsafe();
+      final Thread thread =
+          new Thread(
+              () ->
+                  writes.add(
+                      writer.submit(
+                          batch -> {
+                            batch.put(TestSegment.FOO, key, VALUE);
+                            return null;
+                          })));
+      threads.add(thread);
+    }
+    threads.forEach(Thread::start);
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    SafeFuture.allOf(writes.toArray(SafeFuture[]::new)).get(5, TimeUnit.SECONDS);
+    for (int i = 0; i < 8; i++) {
+      assertThat(store.get(TestSegment.FOO, Bytes.of(i).toArrayUnsafe())).contains(VALUE);
+    }
+  }
+
+  @Test
+  public void writesSeeTheEarlierWritesOfTheirBatch() throws Exception {
+    final SafeFuture<Void> first =
+        writer.submit(
+            batch -> {
+              batch.put(TestSegment.FOO, KEY, VALUE);
+              return null;
+            });
+    final SafeFuture<Optional<byte[]>> second =
+        writer.submit(batch -> batch.get(TestSegment.FOO, KEY));
+
+    first.get(5, TimeUnit.SECONDS);
+    assertThat(second.get(5, TimeUnit.SECONDS)).contains(VALUE);
+  }
+
+  @Test
+  public void failedWritesAreLeftOutOfTheirBatch() throws Exception {
+    final SafeFuture<Void> failed =
+        writer.submit(
+            batch -> {
+              batch.put(TestSegment.FOO, KEY, VALUE);
+              throw new IllegalStateException("Invalid write");
+            });
+    final SafeFuture<Void> committed =
+        writer.submit(
+            batch -> {
+              batch.put(TestSegment.BAR, KEY, VALUE);
+              return null;
+            });
+
+    committed.get(5, TimeUnit.SECONDS);
+    assertThat(failed).isCompletedExceptionally();
+    assertThat(store.get(TestSegment.FOO, KEY)).isEmpty();
+    assertThat(store.get(TestSegment.BAR, KEY)).contains(VALUE);
+  }
+
+  @Test
+  public void commitsQueuedWritesOnClose() {
+    final SafeFuture<Void> write =
+        writer.submit(
+            batch -> {
+              batch.put(TestSegment.FOO, KEY, VALUE);
+              return null;
+            });
+
+    writer.close();
+
+    assertThat(write).isCompleted();
+    assertThat(store.get(TestSegment.FOO, KEY)).contains(VALUE);
+    assertThat(writer.submit(batch -> null)).isCompletedExceptionally();
+  }
+}
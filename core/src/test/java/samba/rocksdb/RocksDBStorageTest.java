@@ -9,6 +9,7 @@ import static org.mockito.Mockito.*;
 import samba.storage.rocksdb.*;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -76,6 +77,70 @@ public class RocksDBStorageTest {
     }
   }
 
+  @Test
+  public void multiGet() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      tx.put(TestSegment.FOO, bytesOf(1), bytesOf(10));
+      tx.put(TestSegment.FOO, bytesOf(3), bytesOf(30));
+      tx.put(TestSegment.BAR, bytesOf(1), bytesOf(11));
+      tx.commit();
+
+      assertThat(store.multiGet(TestSegment.FOO, List.of(bytesOf(1), bytesOf(2), bytesOf(3))))
+          .map(value -> value.map(Bytes::wrap))
+          .containsExactly(Optional.of(Bytes.of(10)), Optional.empty(), Optional.of(Bytes.of(30)));
+      assertThat(
+              store.multiGet(
+                  List.of(
+                      Pair.of(TestSegment.BAR, bytesOf(1)), Pair.of(TestSegment.FOO, bytesOf(1)))))
+          .map(value -> value.map(Bytes::wrap))
+          .containsExactly(Optional.of(Bytes.of(11)), Optional.of(Bytes.of(10)));
+      assertThat(store.multiGet(TestSegment.FOO, List.of())).isEmpty();
+    }
+  }
+
+  @Test
+  public void getDirect() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final Bytes small = Bytes.random(100);
+      final Bytes large = Bytes.random(200_000);
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      tx.put(TestSegment.FOO, bytesOf(1), small.toArrayUnsafe());
+      tx.put(TestSegment.FOO, bytesOf(2), large.toArrayUnsafe());
+      tx.commit();
+
+      try (final ValueView value = store.getDirect(TestSegment.FOO, bytesOf(1)).orElseThrow()) {
+        assertThat(value.bytes()).isEqualTo(small);
+      }
+      try (final ValueView value = store.getDirect(TestSegment.FOO, bytesOf(2)).orElseThrow()) {
+        assertThat(value.bytes()).isEqualTo(large);
+      }
+      assertThat(store.getDirect(TestSegment.FOO, bytesOf(3))).isEmpty();
+    }
+  }
+
+  @Test
+  public void getDirectReusesTheBufferOfAClosedLargeValue() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final Bytes first = Bytes.random(200_000);
+      final Bytes second = Bytes.random(150_000);
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      tx.put(TestSegment.FOO, bytesOf(1), first.toArrayUnsafe());
+      tx.put(TestSegment.FOO, bytesOf(2), second.toArrayUnsafe());
+      tx.commit();
+
+      final ValueView firstValue = store.getDirect(TestSegment.FOO, bytesOf(1)).orElseThrow();
+      assertThat(firstValue.bytes()).isEqualTo(first);
+      firstValue.close();
+      final ValueView secondValue = store.getDirect(TestSegment.FOO, bytesOf(2)).orElseThrow();
+
+      assertThat(secondValue.bytes()).isEqualTo(second);
+      // Both values fall in the same size class, so the second is read into the first's buffer.
+      assertThat(firstValue.bytes().slice(0, second.size())).isEqualTo(second);
+      secondValue.close();
+    }
+  }
+
   @Test
   public void streamKeys() throws Exception {
     try (final KeyValueStorage store = createStore()) {
@@ -92,6 +157,78 @@ public class RocksDBStorageTest {
     }
   }
 
+  @Test
+  public void streamFrom() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      Stream.of("0F", "10", "11", "12")
+          .map(this::bytesFromHexString)
+          .forEach(key -> tx.put(TestSegment.FOO, key, bytesFromHexString("0ABC")));
+      tx.commit();
+      try (final Stream<Pair<byte[], byte[]>> entries =
+          store.streamFrom(TestSegment.FOO, bytesFromHexString("10"))) {
+        assertThat(entries.map(Pair::getKey).collect(toUnmodifiableList()))
+            .containsExactly(bytesOf(0x10), bytesOf(0x11), bytesOf(0x12));
+      }
+    }
+  }
+
+  @Test
+  public void streamRange() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      Stream.of("0F", "10", "11", "12")
+          .map(this::bytesFromHexString)
+          .forEach(key -> tx.put(TestSegment.FOO, key, bytesFromHexString("0ABC")));
+      tx.commit();
+      try (final Stream<Pair<byte[], byte[]>> entries =
+          store.streamRange(TestSegment.FOO, bytesFromHexString("10"), bytesFromHexString("12"))) {
+        assertThat(entries.map(Pair::getKey).collect(toUnmodifiableList()))
+            .containsExactly(bytesOf(0x10), bytesOf(0x11));
+      }
+    }
+  }
+
+  @Test
+  public void streamPrefix() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      Stream.of("0FFF", "10", "1000", "10FF", "11", "FF", "FF01")
+          .map(this::bytesFromHexString)
+          .forEach(key -> tx.put(TestSegment.FOO, key, bytesFromHexString("0ABC")));
+      tx.commit();
+      try (final Stream<Pair<byte[], byte[]>> entries =
+          store.streamPrefix(TestSegment.FOO, bytesFromHexString("10"))) {
+        assertThat(entries.map(Pair::getKey).map(Bytes::wrap).collect(toUnmodifiableList()))
+            .containsExactly(
+                Bytes.fromHexString("10"),
+                Bytes.fromHexString("1000"),
+                Bytes.fromHexString("10FF"));
+      }
+      try (final Stream<Pair<byte[], byte[]>> entries =
+          store.streamPrefix(TestSegment.FOO, bytesFromHexString("FF"))) {
+        assertThat(entries.map(Pair::getKey).map(Bytes::wrap).collect(toUnmodifiableList()))
+            .containsExactly(Bytes.fromHexString("FF"), Bytes.fromHexString("FF01"));
+      }
+    }
+  }
+
+  @Test
+  public void streamReverse() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      Stream.of("0F", "10", "11", "12")
+          .map(this::bytesFromHexString)
+          .forEach(key -> tx.put(TestSegment.FOO, key, bytesFromHexString("0ABC")));
+      tx.put(TestSegment.BAR, bytesOf(0x13), bytesOf(1));
+      tx.commit();
+      try (final Stream<Pair<byte[], byte[]>> entries = store.streamReverse(TestSegment.FOO)) {
+        assertThat(entries.map(Pair::getKey).collect(toUnmodifiableList()))
+            .containsExactly(bytesOf(0x12), bytesOf(0x11), bytesOf(0x10), bytesOf(0x0F));
+      }
+    }
+  }
+
   @Test
   public void getAllKeysThat() throws Exception {
     try (final KeyValueStorage store = createStore()) {
@@ -271,6 +408,25 @@ public class RocksDBStorageTest {
     }
   }
 
+  @Test
+  public void droppedSegmentsAreNotOpenedAgain() throws Exception {
+    final Path databaseDir = getTempSubFolder(folder);
+    try (final RocksDBInstance store = createStore(databaseDir, List.of())) {
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      tx.put(TestSegment.BAR, bytesOf(1), bytesOf(1));
+      tx.commit();
+      assertThat(store.hasSegment(TestSegment.BAR)).isTrue();
+
+      store.dropSegment(TestSegment.BAR);
+
+      assertThat(store.hasSegment(TestSegment.BAR)).isFalse();
+    }
+    try (final RocksDBInstance store = createStore(databaseDir, List.of(TestSegment.BAR))) {
+      assertThat(store.hasSegment(TestSegment.FOO)).isTrue();
+      assertThat(store.hasSegment(TestSegment.BAR)).isFalse();
+    }
+  }
+
   @Test
   public void transactionCommitEmpty() throws Exception {
     try (final KeyValueStorage store = createStore()) {
@@ -546,6 +702,49 @@ public class RocksDBStorageTest {
     store.close();
   }
 
+  @Test
+  public void keepsTheCachesAndWriteBuffersWithinTheMemoryBudget() throws Exception {
+    final long memoryBudget = 64L * 1024 * 1024;
+    final RocksDBConfiguration defaultConfiguration =
+        RocksDBConfiguration.create(
+            getTempSubFolder(folder),
+            memoryBudget,
+            true,
+            WalSyncPolicy.NO_SYNC,
+            RocksDBConfiguration.DEFAULT_WAL_SYNC_INTERVAL,
+            Duration.ZERO);
+    final RocksDBConfiguration highSpecConfiguration =
+        new RocksDBConfiguration(
+            getTempSubFolder(folder),
+            defaultConfiguration.maxOpenFiles(),
+            defaultConfiguration.label(),
+            defaultConfiguration.backgroundThreadCount(),
+            defaultConfiguration.cacheCapacity(),
+            defaultConfiguration.writeBufferCapacity(),
+            defaultConfiguration.cacheIndexAndFilterBlocks(),
+            defaultConfiguration.walSyncPolicy(),
+            defaultConfiguration.walSyncInterval(),
+            defaultConfiguration.commitWindow(),
+            true);
+
+    for (final RocksDBConfiguration configuration :
+        List.of(defaultConfiguration, highSpecConfiguration)) {
+      try (final RocksDBInstance store =
+          new RocksDBInstance(
+              configuration,
+              Arrays.asList(TestSegment.DEFAULT, TestSegment.FOO, TestSegment.BAR),
+              List.of(),
+              new NoOpMetricsSystem(),
+              RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS)) {
+        // The write buffers are charged to the block cache, so they count within its capacity.
+        assertThat(configuration.writeBufferCapacity())
+            .isLessThanOrEqualTo(store.getBlockCacheCapacity());
+        assertThat(store.getBlockCacheCapacity() + store.getHighSpecCacheCapacity())
+            .isLessThanOrEqualTo(memoryBudget);
+      }
+    }
+  }
+
   @Test
   public void dbShouldIgnoreExperimentalSegmentsIfNotExisted(@TempDir final Path testPath)
       throws Exception {
@@ -704,6 +903,16 @@ public class RocksDBStorageTest {
    * assertThat(labelledCountersHelpArgs.getValue()).isEqualTo("Number of RocksDB transactions
    * rolled back."); } }
    */
+  private RocksDBInstance createStore(
+      final Path databaseDir, final List<Segment> ignorableSegments) {
+    return new RocksDBInstance(
+        RocksDBConfiguration.createDefault(databaseDir),
+        Arrays.asList(TestSegment.DEFAULT, TestSegment.FOO, TestSegment.BAR),
+        ignorableSegments,
+        new NoOpMetricsSystem(),
+        RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+  }
+
   private KeyValueStorage createStore() throws Exception {
     return new RocksDBInstance(
         RocksDBConfiguration.createDefault(getTempSubFolder(folder)),
@@ -0,0 +1,80 @@
+package samba.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.teku.infrastructure.time.SystemTimeProvider.SYSTEM_TIME_PROVIDER;
+
+import samba.config.SambaConfiguration;
+import samba.util.PortalDefaultExceptionHandler;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Vertx;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.infrastructure.async.AsyncRunnerFactory;
+import tech.pegasys.teku.infrastructure.async.MetricTrackingExecutorFactory;
+import tech.pegasys.teku.infrastructure.async.OccurrenceCounter;
+import tech.pegasys.teku.infrastructure.events.EventChannels;
+
+public class PortalNodeMainServiceTest {
+
+  @TempDir Path dataDirectory;
+
+  private final Vertx vertx = Vertx.vertx();
+  private PortalNodeMainService mainService;
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    if (mainService != null) {
+      mainService.stop().get(30, TimeUnit.SECONDS);
+    }
+    vertx.close();
+  }
+
+  @Test
+  public void opensTheDatabaseBeforeStartingTheServicesUsingIt() throws Exception {
+    final int udpPort = freeUdpPort();
+    final int restApiPort = freeTcpPort();
+    final SambaConfiguration sambaConfiguration =
+        SambaConfiguration.builder()
+            .discovery(discovery -> discovery.listenUdpPort(udpPort).bootnodes(List.of()))
+            .restApi(restApi -> restApi.restApiPort(restApiPort))
+            .jsonRpc(jsonRpc -> jsonRpc.setEnabled(false))
+            .storage(storage -> storage.dataDirectory(dataDirectory))
+            .build();
+    final NoOpMetricsSystem metricsSystem = new NoOpMetricsSystem();
+    final OccurrenceCounter rejectedExecutionCounter = new OccurrenceCounter(120);
+    final MainServiceConfig mainServiceConfig =
+        new MainServiceConfig(
+            AsyncRunnerFactory.createDefault(
+                new MetricTrackingExecutorFactory(metricsSystem, rejectedExecutionCounter)),
+            SYSTEM_TIME_PROVIDER,
+            new EventChannels(new PortalDefaultExceptionHandler(), metricsSystem),
+            metricsSystem,
+            rejectedExecutionCounter::getTotalCount);
+    mainService = new PortalNodeMainService(mainServiceConfig, sambaConfiguration, vertx);
+
+    mainService.start().get(30, TimeUnit.SECONDS);
+
+    assertThat(mainService.getHistoryDB()).isNotNull();
+  }
+
+  private static int freeUdpPort() throws IOException {
+    try (DatagramSocket socket = new DatagramSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static int freeTcpPort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package samba.services.backfill;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.TestHelper;
+import samba.config.BackfillConfig;
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
+import samba.network.RequestPriority;
+import samba.network.history.HistoryNetwork;
+import samba.storage.ContentValidationPipeline;
+import samba.storage.HistoryDB;
+
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.stream.Stream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class BackfillServiceTest {
+
+  @TempDir Path tempDir;
+
+  private HistoryDB historyDB;
+  private HistoryNetwork historyNetwork;
+  private ContentValidationPipeline contentValidationPipeline;
+  private BackfillService backfillService;
+
+  @BeforeEach
+  public void setUp() {
+    historyDB = mock(HistoryDB.class);
+    historyNetwork = mock(HistoryNetwork.class);
+    contentValidationPipeline = mock(ContentValidationPipeline.class);
+    when(historyDB.streamBlockHashesByBlockNumber(anyLong(), anyLong()))
+        .thenAnswer(invocation -> Stream.empty());
+    when(historyDB.getContentSize(any(), any())).thenReturn(OptionalInt.empty());
+    when(historyNetwork.retrieveContent(any(), eq(RequestPriority.NORMAL)))
+        .thenAnswer(invocation -> SafeFuture.completedFuture(Optional.of(content(invocation))));
+    when(contentValidationPipeline.submit(anyList()))
+        .thenAnswer(
+            invocation ->
+                SafeFuture.completedFuture(
+                    Collections.nCopies(invocation.<List<?>>getArgument(0).size(), true)));
+    backfillService =
+        new BackfillService(
+            new NoOpMetricsSystem(),
+            BackfillConfig.builder()
+                .enabled(true)
+                .startBlockNumber(10)
+                .endBlockNumber(11)
+                .windowSize(2)
+                .cursorFile(tempDir.resolve("backfill-cursor"))
+                .build(),
+            historyDB,
+            historyNetwork,
+            contentValidationPipeline);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    backfillService.stop();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void storesTheHeadersBodiesAndReceiptsOfAWindowInOneBatch() throws Exception {
+    backfillService.start().join();
+
+    final ArgumentCaptor<List<ContentEntry>> batch = ArgumentCaptor.forClass(List.class);
+    verify(contentValidationPipeline, timeout(5000)).submit(batch.capture());
+    assertThat(batch.getValue())
+        .extracting(ContentEntry::getContentType)
+        .containsExactlyInAnyOrder(
+            ContentType.BLOCK_HEADER_BY_NUMBER,
+            ContentType.BLOCK_BODY,
+            ContentType.RECEIPT,
+            ContentType.BLOCK_HEADER_BY_NUMBER,
+            ContentType.BLOCK_BODY,
+            ContentType.RECEIPT);
+    assertBackfillCompletes();
+    assertThat(backfillService.getRetrievedItems()).isEqualTo(6);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void resumesFromThePersistedCursor() throws Exception {
+    Files.writeString(tempDir.resolve("backfill-cursor"), "11");
+
+    backfillService.start().join();
+
+    final ArgumentCaptor<List<ContentEntry>> batch = ArgumentCaptor.forClass(List.class);
+    verify(contentValidationPipeline, timeout(5000)).submit(batch.capture());
+    assertThat(batch.getValue()).hasSize(3);
+    assertThat(batch.getValue().getFirst().contentKey())
+        .isEqualTo(Bytes.fromHexString("0x030b00000000000000"));
+    assertBackfillCompletes();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void looksUpTheBodiesAndReceiptsByTheHashOfTheRlpHeader() throws Exception {
+    backfillService.start().join();
+
+    final ArgumentCaptor<List<ContentEntry>> batch = ArgumentCaptor.forClass(List.class);
+    verify(contentValidationPipeline, timeout(5000)).submit(batch.capture());
+    assertThat(batch.getValue())
+        .extracting(ContentEntry::contentKey)
+        .contains(
+            Bytes.concatenate(Bytes.of(0x01), TestHelper.createBlockHash(10)),
+            Bytes.concatenate(Bytes.of(0x02), TestHelper.createBlockHash(11)));
+  }
+
+  @Test
+  public void keepsTheBlocksWhoseContentIsMissingBehindTheCursor() throws Exception {
+    when(historyNetwork.retrieveContent(any(), eq(RequestPriority.NORMAL)))
+        .thenAnswer(
+            invocation ->
+                SafeFuture.completedFuture(
+                    isHeaderKey(invocation) ? Optional.of(content(invocation)) : Optional.empty()));
+
+    backfillService.start().join();
+
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (backfillService.getMissingItems() < 4 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(backfillService.getMissingItems()).isEqualTo(4);
+    verify(contentValidationPipeline, timeout(5000)).submit(anyList());
+    assertThat(backfillService.getNextBlockNumber()).isEqualTo(10);
+    assertThat(backfillService.isComplete()).isFalse();
+  }
+
+  @Test
+  public void keepsTheBlocksWhoseContentIsRejectedBehindTheCursor() throws Exception {
+    final Bytes rejectedReceiptKey =
+        Bytes.concatenate(Bytes.of(0x02), TestHelper.createBlockHash(11));
+    when(contentValidationPipeline.submit(anyList()))
+        .thenAnswer(
+            invocation ->
+                SafeFuture.completedFuture(
+                    invocation.<List<ContentEntry>>getArgument(0).stream()
+                        .map(entry -> !entry.contentKey().equals(rejectedReceiptKey))
+                        .toList()));
+
+    backfillService.start().join();
+
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (backfillService.getNextBlockNumber() != 11 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(backfillService.getNextBlockNumber()).isEqualTo(11);
+    assertThat(backfillService.getInvalidItems()).isEqualTo(1);
+    assertThat(backfillService.isComplete()).isFalse();
+  }
+
+  @Test
+  public void doesNotLookUpTheContentAlreadyStored() throws Exception {
+    when(historyDB.getContentSize(eq(ContentType.BLOCK_BODY), any()))
+        .thenReturn(OptionalInt.of(100));
+
+    backfillService.start().join();
+
+    assertBackfillCompletes();
+    verify(historyNetwork, never())
+        .retrieveContent(
+            eq(Bytes.concatenate(Bytes.of(0x01), TestHelper.createBlockHash(10))), any());
+    verify(historyDB, never()).get(any(), any());
+  }
+
+  @Test
+  public void keepsTheBlocksWhoseHeaderIsMissingBehindTheCursor() throws Exception {
+    when(historyNetwork.retrieveContent(any(), eq(RequestPriority.NORMAL)))
+        .thenAnswer(
+            invocation ->
+                SafeFuture.completedFuture(
+                    invocation.getArgument(0).equals(Bytes.fromHexString("0x030b00000000000000"))
+                        ? Optional.empty()
+                        : Optional.of(content(invocation))));
+
+    backfillService.start().join();
+
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (backfillService.getNextBlockNumber() != 11 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(backfillService.getNextBlockNumber()).isEqualTo(11);
+    assertThat(Files.readString(tempDir.resolve("backfill-cursor"))).isEqualTo("11");
+    assertThat(backfillService.isComplete()).isFalse();
+  }
+
+  private static boolean isHeaderKey(final InvocationOnMock invocation) {
+    return ContentType.fromContentKey(invocation.getArgument(0))
+        == ContentType.BLOCK_HEADER_BY_NUMBER;
+  }
+
+  /** A valid header for header keys, the content key for bodies and receipts. */
+  private static Bytes content(final InvocationOnMock invocation) {
+    final Bytes contentKey = invocation.getArgument(0);
+    if (!isHeaderKey(invocation)) {
+      return contentKey;
+    }
+    return TestHelper.createBlockHeaderWithProof(
+        contentKey.slice(1).toLong(ByteOrder.LITTLE_ENDIAN));
+  }
+
+  private void assertBackfillCompletes() throws Exception {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (!backfillService.isComplete() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(backfillService.isComplete()).isTrue();
+    assertThat(Files.readString(tempDir.resolve("backfill-cursor"))).isEqualTo("12");
+  }
+}
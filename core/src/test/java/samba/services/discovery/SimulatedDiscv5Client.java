@@ -0,0 +1,93 @@
+package samba.services.discovery;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import io.libp2p.core.multiformats.Multiaddr;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.ethereum.beacon.discovery.TalkHandler;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+/**
+ * A node of a {@link SimulatedNetwork}. Every other node of the network is live, and a FINDNODE is
+ * answered with the nodes of the network at the requested distances from the peer.
+ */
+public class SimulatedDiscv5Client implements Discv5Client {
+
+  private final SimulatedNetwork network;
+  private final NodeRecord homeNodeRecord;
+  private final TalkHandler talkHandler;
+
+  SimulatedDiscv5Client(
+      final SimulatedNetwork network,
+      final NodeRecord homeNodeRecord,
+      final TalkHandler talkHandler) {
+    this.network = network;
+    this.homeNodeRecord = homeNodeRecord;
+    this.talkHandler = talkHandler;
+  }
+
+  TalkHandler getTalkHandler() {
+    return talkHandler;
+  }
+
+  @Override
+  public CompletableFuture<Bytes> sendDisv5Message(
+      NodeRecord nodeRecord, Bytes protocol, Bytes request) {
+    return network.talk(homeNodeRecord, nodeRecord, protocol, request);
+  }
+
+  @Override
+  public SafeFuture<Collection<NodeRecord>> streamLiveNodes() {
+    return SafeFuture.completedFuture(
+        network.getNodeRecords().stream()
+            .filter(node -> !node.getNodeId().equals(homeNodeRecord.getNodeId()))
+            .toList());
+  }
+
+  @Override
+  public Optional<Bytes> getNodeId() {
+    return Optional.of(homeNodeRecord.getNodeId());
+  }
+
+  @Override
+  public NodeRecord getHomeNodeRecord() {
+    return homeNodeRecord;
+  }
+
+  @Override
+  public Optional<String> getEnr() {
+    return Optional.of(homeNodeRecord.asEnr());
+  }
+
+  @Override
+  public UInt64 getEnrSeq() {
+    return homeNodeRecord.getSeq();
+  }
+
+  @Override
+  public CompletableFuture<Collection<NodeRecord>> sendDiscv5FindNodes(
+      NodeRecord nodeRecord, List<Integer> distances) {
+    return network.findNodes(homeNodeRecord, nodeRecord, distances);
+  }
+
+  @Override
+  public void updateCustomENRField(final String fieldName, final Bytes value) {
+    throw new UnsupportedOperationException("The simulated node records can not be updated");
+  }
+
+  @Override
+  public NodeRecord updateNodeRecordSocket(Multiaddr multiaddr) {
+    throw new UnsupportedOperationException("The simulated node records can not be updated");
+  }
+
+  @Override
+  public Optional<String> lookupEnr(final UInt256 nodeId) {
+    return network.getNodeRecord(nodeId.toBytes()).map(NodeRecord::asEnr);
+  }
+}
@@ -0,0 +1,256 @@
+package samba.services.discovery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.TalkHandler;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordBuilder;
+import org.ethereum.beacon.discovery.util.Functions;
+
+/**
+ * An in-process fabric standing in for UDP between discv5 nodes, to run several nodes in one JVM
+ * under repeatable network conditions. Each direction of each link has its own latency, jitter,
+ * loss rate and bandwidth, so a link can fail one way only. Packets are delivered in order of
+ * arrival by a single thread. The losses and jitter of each direction of a link are drawn from its
+ * own random, seeded from the network seed and the link, so a run with the same seed drops and
+ * delays the same packets of a link whatever the traffic on the other links. Packets sent
+ * concurrently on the same link draw in the order they are sent, which only sequential senders
+ * make repeatable.
+ *
+ * <p>A TALKREQ crosses the link to the peer, is handed to its talk handler, and the TALKRESP
+ * crosses back. If either is lost the request times out, as it would with discv5.
+ */
+public class SimulatedNetwork implements AutoCloseable {
+
+  static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(1);
+  // Rough size of a FINDNODE request, to charge it to the bandwidth of the link.
+  private static final int FIND_NODES_REQUEST_BYTES = 64;
+
+  /**
+   * The conditions of one direction of a link.
+   *
+   * @param latency the one way delay of every packet
+   * @param jitter the upper bound of a random delay added to the latency
+   * @param lossRate the probability a packet is dropped, 1 cutting the link
+   * @param bandwidthBytesPerSecond the rate packets are sent at, 0 for unlimited
+   */
+  public record LinkConditions(
+      Duration latency, Duration jitter, double lossRate, long bandwidthBytesPerSecond) {
+
+    public static final LinkConditions PERFECT =
+        new LinkConditions(Duration.ZERO, Duration.ZERO, 0, 0);
+    public static final LinkConditions CUT = new LinkConditions(Duration.ZERO, Duration.ZERO, 1, 0);
+
+    public LinkConditions {
+      checkArgument(!latency.isNegative() && !jitter.isNegative(), "Delays must not be negative");
+      checkArgument(lossRate >= 0 && lossRate <= 1, "Loss rate must be between 0 and 1");
+      checkArgument(bandwidthBytesPerSecond >= 0, "Bandwidth must not be negative");
+    }
+
+    public LinkConditions withLatency(Duration latency, Duration jitter) {
+      return new LinkConditions(latency, jitter, lossRate, bandwidthBytesPerSecond);
+    }
+
+    public LinkConditions withLossRate(double lossRate) {
+      return new LinkConditions(latency, jitter, lossRate, bandwidthBytesPerSecond);
+    }
+
+    public LinkConditions withBandwidth(long bandwidthBytesPerSecond) {
+      return new LinkConditions(latency, jitter, lossRate, bandwidthBytesPerSecond);
+    }
+  }
+
+  private record Link(Bytes from, Bytes to) {}
+
+  private final long seed;
+  private final Random random;
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("simulated-network"));
+  private final Map<Bytes, SimulatedDiscv5Client> nodes = new ConcurrentHashMap<>();
+  private final Map<Link, LinkConditions> conditions = new ConcurrentHashMap<>();
+  private final Map<Link, Random> linkRandoms = new ConcurrentHashMap<>();
+  // When each link is done sending the packets queued on it, for the bandwidth limit.
+  private final Map<Link, Long> linkBusyUntilNanos = new ConcurrentHashMap<>();
+  private final AtomicLong deliveredPackets = new AtomicLong();
+  private final AtomicLong droppedPackets = new AtomicLong();
+  private volatile LinkConditions defaultConditions = LinkConditions.PERFECT;
+  private volatile Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+
+  public SimulatedNetwork(final long seed) {
+    this.seed = seed;
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Adds a node with a key pair drawn from the seeded random.
+   *
+   * @param talkHandler the handler of the TALKREQ messages the node receives
+   * @return the client the node sends its messages with
+   */
+  public synchronized SimulatedDiscv5Client addNode(final TalkHandler talkHandler) {
+    final NodeRecord nodeRecord =
+        new NodeRecordBuilder().secretKey(Functions.randomKeyPair(random).secretKey()).build();
+    final SimulatedDiscv5Client client = new SimulatedDiscv5Client(this, nodeRecord, talkHandler);
+    nodes.put(nodeRecord.getNodeId(), client);
+    return client;
+  }
+
+  public void removeNode(final NodeRecord nodeRecord) {
+    nodes.remove(nodeRecord.getNodeId());
+  }
+
+  public void setDefaultConditions(final LinkConditions defaultConditions) {
+    this.defaultConditions = defaultConditions;
+  }
+
+  /** Sets the conditions of the packets sent from one node to the other, but not back. */
+  public void setConditions(final NodeRecord from, final NodeRecord to, final LinkConditions link) {
+    conditions.put(new Link(from.getNodeId(), to.getNodeId()), link);
+  }
+
+  public void setConditionsBetween(
+      final NodeRecord first, final NodeRecord second, final LinkConditions link) {
+    setConditions(first, second, link);
+    setConditions(second, first, link);
+  }
+
+  public void setRequestTimeout(final Duration requestTimeout) {
+    this.requestTimeout = requestTimeout;
+  }
+
+  public long getDeliveredPackets() {
+    return deliveredPackets.get();
+  }
+
+  public long getDroppedPackets() {
+    return droppedPackets.get();
+  }
+
+  Collection<NodeRecord> getNodeRecords() {
+    return nodes.values().stream().map(SimulatedDiscv5Client::getHomeNodeRecord).toList();
+  }
+
+  Optional<NodeRecord> getNodeRecord(final Bytes nodeId) {
+    return Optional.ofNullable(nodes.get(nodeId)).map(SimulatedDiscv5Client::getHomeNodeRecord);
+  }
+
+  CompletableFuture<Bytes> talk(
+      final NodeRecord from, final NodeRecord to, final Bytes protocol, final Bytes request) {
+    // Copied as the sender may reuse its buffer once the request has been sent.
+    final Bytes packet = Bytes.wrap(request.toArray());
+    return request(
+        from,
+        to,
+        packet.size(),
+        peer ->
+            peer.getTalkHandler()
+                .talk(from, protocol, packet)
+                .thenApply(response -> Bytes.wrap(response.toArray())),
+        Bytes::size);
+  }
+
+  CompletableFuture<Collection<NodeRecord>> findNodes(
+      final NodeRecord from, final NodeRecord to, final List<Integer> distances) {
+    return request(
+        from,
+        to,
+        FIND_NODES_REQUEST_BYTES,
+        peer ->
+            CompletableFuture.<Collection<NodeRecord>>completedFuture(
+                getNodeRecords().stream()
+                    .filter(
+                        node ->
+                            distances.contains(
+                                Functions.logDistance(to.getNodeId(), node.getNodeId())))
+                    .toList()),
+        nodeRecords -> nodeRecords.stream().mapToInt(node -> node.asEnr().length()).sum());
+  }
+
+  private <T> CompletableFuture<T> request(
+      final NodeRecord from,
+      final NodeRecord to,
+      final int requestSize,
+      final Function<SimulatedDiscv5Client, CompletableFuture<T>> handler,
+      final ToIntFunction<T> responseSize) {
+    final CompletableFuture<T> response = new CompletableFuture<>();
+    final Link link = new Link(from.getNodeId(), to.getNodeId());
+    transmit(
+        link,
+        requestSize,
+        () -> {
+          final SimulatedDiscv5Client peer = nodes.get(to.getNodeId());
+          if (peer == null) {
+            return;
+          }
+          handler
+              .apply(peer)
+              .thenAccept(
+                  result ->
+                      transmit(
+                          new Link(link.to(), link.from()),
+                          responseSize.applyAsInt(result),
+                          () -> response.complete(result)));
+        });
+    final ScheduledFuture<?> timeout =
+        scheduler.schedule(
+            () -> response.completeExceptionally(new TimeoutException("Request timed out")),
+            requestTimeout.toNanos(),
+            TimeUnit.NANOSECONDS);
+    response.whenComplete((result, error) -> timeout.cancel(false));
+    return response;
+  }
+
+  private synchronized void transmit(final Link link, final int size, final Runnable delivery) {
+    final LinkConditions linkConditions = conditions.getOrDefault(link, defaultConditions);
+    final Random random =
+        linkRandoms.computeIfAbsent(
+            link, __ -> new Random(Objects.hash(seed, link.from(), link.to())));
+    if (linkConditions.lossRate() > 0 && random.nextDouble() < linkConditions.lossRate()) {
+      droppedPackets.incrementAndGet();
+      return;
+    }
+    final long now = System.nanoTime();
+    long sentAt = now;
+    if (linkConditions.bandwidthBytesPerSecond() > 0) {
+      final long start = Math.max(now, linkBusyUntilNanos.getOrDefault(link, now));
+      sentAt = start + size * 1_000_000_000L / linkConditions.bandwidthBytesPerSecond();
+      linkBusyUntilNanos.put(link, sentAt);
+    }
+    long delay = sentAt - now + linkConditions.latency().toNanos();
+    if (!linkConditions.jitter().isZero()) {
+      delay += (long) (random.nextDouble() * linkConditions.jitter().toNanos());
+    }
+    scheduler.schedule(
+        () -> {
+          deliveredPackets.incrementAndGet();
+          delivery.run();
+        },
+        delay,
+        TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+}
@@ -0,0 +1,194 @@
+package samba.services.discovery;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.config.HistoryNetworkConfig;
+import samba.config.StorageConfig;
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
+import samba.domain.messages.IncomingRequestHandler;
+import samba.domain.messages.MessageType;
+import samba.domain.messages.handler.FindContentHandler;
+import samba.domain.messages.handler.PingHandler;
+import samba.domain.messages.requests.FindContent;
+import samba.network.history.HistoryNetwork;
+import samba.services.discovery.SimulatedNetwork.LinkConditions;
+import samba.services.utp.UtpService;
+import samba.storage.ContentValidationPipeline;
+import samba.storage.HistoryDB;
+import samba.storage.rocksdb.ValueView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.TalkHandler;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class SimulatedNetworkTest {
+
+  private static final Bytes PROTOCOL = Bytes.fromHexString("0x1234");
+  private static final Duration LATENCY = Duration.ofMillis(50);
+
+  private final List<SimulatedNetwork> networks = new ArrayList<>();
+  private final List<UtpService> utpServices = new ArrayList<>();
+
+  @AfterEach
+  public void tearDown() {
+    utpServices.forEach(UtpService::stop);
+    networks.forEach(SimulatedNetwork::close);
+  }
+
+  @Test
+  public void delaysRequestsByTheLatencyOfTheLinks() throws Exception {
+    final SimulatedNetwork network = createNetwork(1);
+    network.setDefaultConditions(LinkConditions.PERFECT.withLatency(LATENCY, Duration.ZERO));
+    final SimulatedDiscv5Client client = network.addNode(echo(new AtomicInteger()));
+    final SimulatedDiscv5Client peer = network.addNode(echo(new AtomicInteger()));
+
+    final long start = System.nanoTime();
+    final Bytes response =
+        client
+            .sendDisv5Message(peer.getHomeNodeRecord(), PROTOCOL, Bytes.of(1, 2, 3))
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(response).isEqualTo(Bytes.of(1, 2, 3));
+    assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(2 * LATENCY.toNanos());
+  }
+
+  @Test
+  public void cutsLinksOneWay() throws Exception {
+    final SimulatedNetwork network = createNetwork(1);
+    network.setRequestTimeout(Duration.ofMillis(100));
+    final AtomicInteger clientRequests = new AtomicInteger();
+    final AtomicInteger peerRequests = new AtomicInteger();
+    final SimulatedDiscv5Client client = network.addNode(echo(clientRequests));
+    final SimulatedDiscv5Client peer = network.addNode(echo(peerRequests));
+    network.setConditions(
+        client.getHomeNodeRecord(), peer.getHomeNodeRecord(), LinkConditions.CUT);
+
+    final CompletableFuture<Bytes> toPeer =
+        client.sendDisv5Message(peer.getHomeNodeRecord(), PROTOCOL, Bytes.of(1));
+    final CompletableFuture<Bytes> toClient =
+        peer.sendDisv5Message(client.getHomeNodeRecord(), PROTOCOL, Bytes.of(1));
+
+    assertThat(toPeer).failsWithin(5, TimeUnit.SECONDS);
+    // The request arrives but the response is lost on the way back.
+    assertThat(toClient).failsWithin(5, TimeUnit.SECONDS);
+    assertThat(peerRequests).hasValue(0);
+    assertThat(clientRequests).hasValue(1);
+  }
+
+  @Test
+  public void dropsTheSamePacketsForTheSameSeed() {
+    assertThat(sendThroughLossyNetwork(42, false)).isEqualTo(sendThroughLossyNetwork(42, false));
+  }
+
+  @Test
+  public void dropsTheSamePacketsOfALinkWhateverTheTrafficOnOtherLinks() {
+    assertThat(sendThroughLossyNetwork(42, true)).isEqualTo(sendThroughLossyNetwork(42, false));
+  }
+
+  @Test
+  public void streamsLargeContentBetweenHistoryNetworks() throws Exception {
+    final SimulatedNetwork network = createNetwork(1);
+    network.setDefaultConditions(
+        LinkConditions.PERFECT
+            .withLatency(Duration.ofMillis(20), Duration.ofMillis(5))
+            .withBandwidth(1024 * 1024));
+    final Bytes blockHash = Bytes.random(32);
+    final Bytes contentKey =
+        Bytes.concatenate(Bytes.of(ContentType.RECEIPT.getByteValue()), blockHash);
+    final Bytes content = Bytes.random(300 * 1024);
+    final HistoryDB serverDB = mock(HistoryDB.class);
+    when(serverDB.getContent(ContentType.RECEIPT, blockHash))
+        .thenReturn(Optional.of(ValueView.of(content)));
+    final ContentValidationPipeline clientPipeline = mock(ContentValidationPipeline.class);
+    when(clientPipeline.submit(any())).thenReturn(SafeFuture.completedFuture(List.of(true)));
+
+    final IncomingRequestHandler clientHandler = new IncomingRequestHandler();
+    final IncomingRequestHandler serverHandler = new IncomingRequestHandler();
+    final SimulatedDiscv5Client client = network.addNode(clientHandler);
+    final SimulatedDiscv5Client server = network.addNode(serverHandler);
+    createHistoryNetwork(server, serverHandler, serverDB, mock(ContentValidationPipeline.class));
+
+    createHistoryNetwork(client, clientHandler, mock(HistoryDB.class), clientPipeline)
+        .findContent(server.getHomeNodeRecord(), new FindContent(contentKey));
+
+    verify(clientPipeline, timeout(30_000)).submit(List.of(new ContentEntry(contentKey, content)));
+  }
+
+  private List<Boolean> sendThroughLossyNetwork(long seed, boolean withTrafficOnAnotherLink) {
+    final SimulatedNetwork network = createNetwork(seed);
+    network.setDefaultConditions(LinkConditions.PERFECT.withLossRate(0.3));
+    network.setRequestTimeout(Duration.ofMillis(50));
+    final SimulatedDiscv5Client client = network.addNode(echo(new AtomicInteger()));
+    final SimulatedDiscv5Client peer = network.addNode(echo(new AtomicInteger()));
+    final SimulatedDiscv5Client other = network.addNode(echo(new AtomicInteger()));
+    final List<Boolean> delivered = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      if (withTrafficOnAnotherLink) {
+        other
+            .sendDisv5Message(peer.getHomeNodeRecord(), PROTOCOL, Bytes.of(i))
+            .handle((response, error) -> error == null)
+            .join();
+      }
+      delivered.add(
+          client
+              .sendDisv5Message(peer.getHomeNodeRecord(), PROTOCOL, Bytes.of(i))
+              .handle((response, error) -> error == null)
+              .join());
+    }
+    return delivered;
+  }
+
+  private HistoryNetwork createHistoryNetwork(
+      SimulatedDiscv5Client client,
+      IncomingRequestHandler requestHandler,
+      HistoryDB historyDB,
+      ContentValidationPipeline contentValidationPipeline) {
+    final UtpService utpService = new UtpService(client, new NoOpMetricsSystem());
+    utpServices.add(utpService);
+    final HistoryNetwork historyNetwork =
+        new HistoryNetwork(
+            client,
+            historyDB,
+            contentValidationPipeline,
+            StorageConfig.createDefault(),
+            HistoryNetworkConfig.createDefault(),
+            new NoOpMetricsSystem(),
+            utpService);
+    requestHandler
+        .addHandler(MessageType.PING, new PingHandler())
+        .addHandler(MessageType.FIND_CONTENT, new FindContentHandler())
+        .addProtocolHandler(UtpService.UTP_PROTOCOL, utpService)
+        .build(historyNetwork);
+    return historyNetwork;
+  }
+
+  private SimulatedNetwork createNetwork(long seed) {
+    final SimulatedNetwork network = new SimulatedNetwork(seed);
+    networks.add(network);
+    return network;
+  }
+
+  private static TalkHandler echo(AtomicInteger requests) {
+    return (srcNode, protocol, request) -> {
+      requests.incrementAndGet();
+      return CompletableFuture.completedFuture(request);
+    };
+  }
+}
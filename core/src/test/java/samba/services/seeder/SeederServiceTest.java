@@ -0,0 +1,134 @@
+package samba.services.seeder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.TestHelper;
+import samba.config.SeederConfig;
+import samba.domain.content.ContentDistance;
+import samba.domain.content.ContentType;
+import samba.domain.messages.requests.Offer;
+import samba.network.RequestPriority;
+import samba.network.history.HistoryNetwork;
+import samba.storage.HistoryDB;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class SeederServiceTest {
+
+  private static final Bytes LOCAL_NODE_ID = Bytes.random(32);
+
+  @TempDir Path tempDir;
+
+  private HistoryDB historyDB;
+  private HistoryNetwork historyNetwork;
+  private SeederService seederService;
+  private final NodeRecord peer = TestHelper.createNodeRecord();
+  private final List<Bytes> contentKeys =
+      IntStream.range(0, 70)
+          .mapToObj(
+              i ->
+                  Bytes.concatenate(
+                      Bytes.of(ContentType.BLOCK_HEADER.getByteValue()), Bytes.random(32)))
+          .toList();
+
+  @BeforeEach
+  public void setUp() {
+    historyDB = mock(HistoryDB.class);
+    historyNetwork = mock(HistoryNetwork.class);
+    when(historyDB.streamContentKeysOutsideRadius(UInt256.ZERO))
+        .thenReturn(contentKeys.stream(), Stream.empty());
+    when(historyDB.getContentSize(eq(ContentType.BLOCK_HEADER), any()))
+        .thenReturn(OptionalInt.of(3));
+    when(historyNetwork.getClosestInterestedNodes(anyList(), anyInt()))
+        .thenAnswer(
+            invocation ->
+                invocation.<List<Bytes>>getArgument(0).stream()
+                    .collect(Collectors.toMap(Function.identity(), __ -> List.of(peer))));
+    when(historyNetwork.offer(any(), any(), eq(RequestPriority.LOW)))
+        .thenReturn(SafeFuture.completedFuture(Optional.empty()));
+    seederService =
+        new SeederService(
+            new NoOpMetricsSystem(),
+            SeederConfig.builder().cursorFile(tempDir.resolve("seeder-cursor")).build(),
+            historyDB,
+            historyNetwork,
+            LOCAL_NODE_ID);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    seederService.stop();
+  }
+
+  @Test
+  public void batchesOffersUpToTheMaximumNumberOfKeys() {
+    seederService.start().join();
+
+    final ArgumentCaptor<Offer> offers = ArgumentCaptor.forClass(Offer.class);
+    verify(historyNetwork, timeout(5000).times(2))
+        .offer(eq(peer), offers.capture(), eq(RequestPriority.LOW));
+    assertThat(offers.getAllValues().get(0).getContentKeys()).hasSize(64);
+    assertThat(offers.getAllValues().get(1).getContentKeys()).hasSize(6);
+    verify(historyNetwork).getClosestInterestedNodes(eq(contentKeys), anyInt());
+  }
+
+  @Test
+  public void persistsTheDistanceOfTheLastOfferedContent() throws Exception {
+    final UInt256 lastDistance =
+        ContentDistance.distanceFromContentKey(contentKeys.getLast(), LOCAL_NODE_ID);
+    when(historyDB.streamContentKeysOutsideRadius(lastDistance)).thenReturn(Stream.empty());
+
+    seederService.start().join();
+
+    verify(historyDB, timeout(5000)).streamContentKeysOutsideRadius(lastDistance);
+    assertThat(UInt256.fromHexString(Files.readString(tempDir.resolve("seeder-cursor"))))
+        .isEqualTo(lastDistance);
+  }
+
+  @Test
+  public void offersContentTooLargeToRateLimitPerPeerWithoutReadingIt() {
+    final Bytes contentKey = contentKeys.getFirst();
+    final List<NodeRecord> interestedPeers =
+        List.of(peer, TestHelper.createNodeRecord(), TestHelper.createNodeRecord());
+    when(historyDB.streamContentKeysOutsideRadius(UInt256.ZERO))
+        .thenReturn(Stream.of(contentKey), Stream.empty());
+    when(historyDB.getContentSize(eq(ContentType.BLOCK_HEADER), any()))
+        .thenReturn(OptionalInt.of(1 << 30));
+    when(historyNetwork.getClosestInterestedNodes(anyList(), anyInt()))
+        .thenReturn(Map.of(contentKey, interestedPeers));
+
+    seederService.start().join();
+
+    verify(historyNetwork, timeout(5000)).offer(eq(peer), any(), eq(RequestPriority.LOW));
+    verify(historyDB, never()).get(any(), any());
+  }
+}
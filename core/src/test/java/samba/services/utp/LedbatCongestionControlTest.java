@@ -0,0 +1,47 @@
+package samba.services.utp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class LedbatCongestionControlTest {
+
+  private static final int PACKET_BYTES = 1000;
+
+  private final LedbatCongestionControl congestionControl =
+      new LedbatCongestionControl(PACKET_BYTES);
+
+  @Test
+  public void growsByTheBytesAcknowledgedUntilTheFirstLoss() {
+    congestionControl.onAck(2 * PACKET_BYTES, 20_000, 0);
+
+    assertThat(congestionControl.getWindowBytes()).isEqualTo(4 * PACKET_BYTES);
+
+    congestionControl.onLoss();
+    congestionControl.onAck(8 * PACKET_BYTES, 20_000, 1_000);
+
+    // A quarter of the maximum increase, as the ACK covers four windows.
+    assertThat(congestionControl.getWindowBytes()).isEqualTo(2 * PACKET_BYTES + 750);
+  }
+
+  @Test
+  public void shrinksWhenTheQueueingDelayExceedsTheTarget() {
+    congestionControl.onAck(PACKET_BYTES, 20_000, 0);
+    congestionControl.onLoss();
+    final long window = congestionControl.getWindowBytes();
+
+    congestionControl.onAck(
+        PACKET_BYTES, 20_000 + 3 * LedbatCongestionControl.TARGET_DELAY_MICROS, 1);
+
+    assertThat(congestionControl.getBaseDelayMicros()).isEqualTo(20_000);
+    assertThat(congestionControl.getWindowBytes()).isLessThan(window);
+  }
+
+  @Test
+  public void neverGoesBelowOnePacket() {
+    congestionControl.onTimeout();
+    congestionControl.onLoss();
+
+    assertThat(congestionControl.getWindowBytes()).isEqualTo(PACKET_BYTES);
+  }
+}
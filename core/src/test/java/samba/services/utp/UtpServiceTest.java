@@ -0,0 +1,154 @@
+package samba.services.utp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static samba.TestHelper.createNodeRecord;
+
+import samba.config.HistoryNetworkConfig;
+import samba.services.discovery.Discv5Client;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class UtpServiceTest {
+
+  private final ExecutorService network = Executors.newSingleThreadExecutor();
+  private final NodeRecord nodeA = createNodeRecord();
+  private final NodeRecord nodeB = createNodeRecord();
+  private final AtomicInteger sentDataPackets = new AtomicInteger();
+  private int dropEveryNthDataPacket = 0;
+  private UtpService utpA;
+  private UtpService utpB;
+
+  @AfterEach
+  public void tearDown() {
+    utpA.stop();
+    utpB.stop();
+    network.shutdownNow();
+  }
+
+  @Test
+  public void streamsContentFromTheListeningNode() throws Exception {
+    connectNodes();
+    final Bytes content = Bytes.random(300 * 1024);
+
+    final int connectionId = utpA.listen(nodeB).orElseThrow();
+    utpA.sendContent(nodeB, connectionId, content);
+    final Bytes received =
+        utpB.connect(nodeA, connectionId)
+            .thenCompose(__ -> utpB.getContent(nodeA, connectionId))
+            .get(30, TimeUnit.SECONDS);
+
+    assertThat(received).isEqualTo(content);
+  }
+
+  @Test
+  public void streamsContentToTheListeningNode() throws Exception {
+    connectNodes();
+    final Bytes content = Bytes.random(100 * 1024);
+
+    final int connectionId = utpA.listen(nodeB).orElseThrow();
+    final CompletableFuture<Bytes> received = utpA.getContent(nodeB, connectionId);
+    utpB.connect(nodeA, connectionId)
+        .thenCompose(__ -> utpB.sendContent(nodeA, connectionId, content))
+        .get(30, TimeUnit.SECONDS);
+
+    assertThat(received.get(30, TimeUnit.SECONDS)).isEqualTo(content);
+  }
+
+  @Test
+  public void resetsAStreamLargerThanTheMaximumContentSize() {
+    connectNodes(10 * 1024);
+
+    final int connectionId = utpA.listen(nodeB).orElseThrow();
+    final CompletableFuture<Bytes> received = utpA.getContent(nodeB, connectionId);
+    utpB.connect(nodeA, connectionId)
+        .thenCompose(__ -> utpB.sendContent(nodeA, connectionId, Bytes.random(100 * 1024)));
+
+    assertThatThrownBy(() -> received.get(30, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(UtpException.class);
+  }
+
+  @Test
+  public void resendsLostPackets() throws Exception {
+    dropEveryNthDataPacket = 20;
+    connectNodes();
+    final Bytes content = Bytes.random(200 * 1024);
+
+    final int connectionId = utpA.listen(nodeB).orElseThrow();
+    utpA.sendContent(nodeB, connectionId, content);
+    final Bytes received =
+        utpB.connect(nodeA, connectionId)
+            .thenCompose(__ -> utpB.getContent(nodeA, connectionId))
+            .get(30, TimeUnit.SECONDS);
+
+    assertThat(received).isEqualTo(content);
+  }
+
+  @Test
+  public void multiplexesConnectionsOfTheSamePeer() throws Exception {
+    connectNodes();
+    final List<Bytes> contents = List.of(Bytes.random(50 * 1024), Bytes.random(70 * 1024));
+
+    final int first = utpA.listen(nodeB).orElseThrow();
+    final int second = utpA.listen(nodeB).orElseThrow();
+    utpA.sendContent(nodeB, first, contents.get(0));
+    utpA.sendContent(nodeB, second, contents.get(1));
+    final CompletableFuture<Bytes> firstReceived =
+        utpB.connect(nodeA, first).thenCompose(__ -> utpB.getContent(nodeA, first));
+    final CompletableFuture<Bytes> secondReceived =
+        utpB.connect(nodeA, second).thenCompose(__ -> utpB.getContent(nodeA, second));
+
+    assertThat(firstReceived.get(30, TimeUnit.SECONDS)).isEqualTo(contents.get(0));
+    assertThat(secondReceived.get(30, TimeUnit.SECONDS)).isEqualTo(contents.get(1));
+  }
+
+  @Test
+  public void encodesTheOfferedContentItems() {
+    final List<Bytes> items = List.of(Bytes.random(3), Bytes.EMPTY, Bytes.random(300));
+
+    assertThat(ContentItems.decode(ContentItems.encode(items))).isEqualTo(items);
+  }
+
+  private void connectNodes() {
+    connectNodes(HistoryNetworkConfig.DEFAULT_MAX_CONTENT_SIZE_BYTES);
+  }
+
+  private void connectNodes(final long maxContentSizeBytes) {
+    final Discv5Client clientA = mock(Discv5Client.class);
+    final Discv5Client clientB = mock(Discv5Client.class);
+    utpA = new UtpService(clientA, new NoOpMetricsSystem(), maxContentSizeBytes);
+    utpB = new UtpService(clientB, new NoOpMetricsSystem(), maxContentSizeBytes);
+    when(clientA.sendDisv5Message(any(), any(), any()))
+        .thenAnswer(invocation -> deliver(utpB, nodeA, invocation.getArgument(2)));
+    when(clientB.sendDisv5Message(any(), any(), any()))
+        .thenAnswer(invocation -> deliver(utpA, nodeB, invocation.getArgument(2)));
+  }
+
+  private CompletableFuture<Bytes> deliver(UtpService to, NodeRecord from, Bytes request) {
+    // Copied as discv5 does when it decrypts, the sender releases its buffer once sent.
+    final Bytes packet = Bytes.wrap(request.toArray());
+    if (dropEveryNthDataPacket > 0
+        && UtpPacket.decode(packet).getType() == UtpPacketType.DATA
+        && sentDataPackets.incrementAndGet() % dropEveryNthDataPacket == 0) {
+      return CompletableFuture.completedFuture(Bytes.EMPTY);
+    }
+    network.execute(() -> to.talk(from, UtpService.UTP_PROTOCOL, packet));
+    return CompletableFuture.completedFuture(Bytes.EMPTY);
+  }
+}
@@ -0,0 +1,167 @@
+package samba.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.domain.content.ContentType;
+import samba.domain.messages.PortalWireMessage;
+import samba.storage.rocksdb.ValueView;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CachedHistoryDBTest {
+
+  private static final Bytes BLOCK_HASH = Bytes.fromHexString("0x1234");
+  private static final Bytes CONTENT_KEY = Bytes.fromHexString("0x001234");
+  private static final byte[] CONTENT = new byte[] {1, 2, 3};
+
+  private HistoryDB delegate;
+  private CachedHistoryDB cachedHistoryDB;
+
+  @BeforeEach
+  public void setUp() {
+    this.delegate = mock(HistoryDB.class);
+    this.cachedHistoryDB = new CachedHistoryDB(delegate, 1024 * 1024, new NoOpMetricsSystem());
+    when(delegate.get(ContentType.BLOCK_HEADER, BLOCK_HASH)).thenReturn(Optional.of(CONTENT));
+  }
+
+  @Test
+  public void servesRepeatedReadsFromMemory() {
+    assertThat(cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH)).contains(CONTENT);
+    assertThat(cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH)).contains(CONTENT);
+
+    verify(delegate, times(1)).get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+  }
+
+  @Test
+  public void doesNotCacheMissingContent() {
+    assertThat(cachedHistoryDB.get(ContentType.RECEIPT, BLOCK_HASH)).isEmpty();
+    assertThat(cachedHistoryDB.get(ContentType.RECEIPT, BLOCK_HASH)).isEmpty();
+
+    verify(delegate, times(2)).get(ContentType.RECEIPT, BLOCK_HASH);
+  }
+
+  @Test
+  public void batchedReadsOnlyReadTheMissesFromTheDelegate() {
+    final Bytes otherHash = Bytes.fromHexString("0x5678");
+    when(delegate.multiGet(List.of(Pair.of(ContentType.RECEIPT, otherHash))))
+        .thenReturn(List.of(Optional.of(CONTENT)));
+    cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+
+    assertThat(
+            cachedHistoryDB.multiGet(
+                List.of(
+                    Pair.of(ContentType.BLOCK_HEADER, BLOCK_HASH),
+                    Pair.of(ContentType.RECEIPT, otherHash))))
+        .hasSize(2)
+        .allSatisfy(value -> assertThat(value).contains(CONTENT));
+    assertThat(cachedHistoryDB.get(ContentType.RECEIPT, otherHash)).contains(CONTENT);
+
+    verify(delegate, never()).get(ContentType.RECEIPT, otherHash);
+  }
+
+  @Test
+  public void contentWritesInvalidateTheCachedValue() {
+    when(delegate.saveContent(CONTENT_KEY, Bytes.of(4))).thenReturn(true);
+    cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+
+    cachedHistoryDB.saveContent(CONTENT_KEY, Bytes.of(4));
+    cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+
+    verify(delegate, times(2)).get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+  }
+
+  @Test
+  public void handsOutCopiesOfTheCachedContent() {
+    cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH).orElseThrow()[0] = 9;
+
+    assertThat(cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH)).contains(CONTENT);
+    assertThat(
+            cachedHistoryDB.getContent(ContentType.BLOCK_HEADER, BLOCK_HASH).map(ValueView::bytes))
+        .contains(Bytes.wrap(CONTENT));
+  }
+
+  @Test
+  public void doesNotCacheContentTooLargeForATalkResponse() {
+    final Bytes receiptsHash = Bytes.fromHexString("0x5678");
+    final Bytes largeContent = Bytes.random(PortalWireMessage.MAX_CUSTOM_PAYLOAD_BYTES + 1);
+    when(delegate.getContent(ContentType.RECEIPT, receiptsHash))
+        .thenAnswer(invocation -> Optional.of(ValueView.of(largeContent)));
+
+    cachedHistoryDB.getContent(ContentType.RECEIPT, receiptsHash);
+    cachedHistoryDB.getContent(ContentType.RECEIPT, receiptsHash);
+
+    verify(delegate, times(2)).getContent(ContentType.RECEIPT, receiptsHash);
+    assertThat(cachedHistoryDB.getCacheSizeBytes()).isZero();
+  }
+
+  @Test
+  public void doesNotCacheAValueReadBeforeAConcurrentWrite() {
+    when(delegate.saveContent(CONTENT_KEY, Bytes.of(4))).thenReturn(true);
+    when(delegate.get(ContentType.BLOCK_HEADER, BLOCK_HASH))
+        .thenAnswer(
+            invocation -> {
+              // The write lands while the previous value is being read.
+              cachedHistoryDB.saveContent(CONTENT_KEY, Bytes.of(4));
+              return Optional.of(CONTENT);
+            })
+        .thenReturn(Optional.of(new byte[] {4}));
+
+    cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+
+    assertThat(cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH)).contains(new byte[] {4});
+  }
+
+  @Test
+  public void cachesAValueReadWhileAnotherKeyIsWritten() {
+    final Bytes otherContentKey = Bytes.fromHexString("0x005678");
+    when(delegate.saveContent(otherContentKey, Bytes.of(4))).thenReturn(true);
+    when(delegate.get(ContentType.BLOCK_HEADER, BLOCK_HASH))
+        .thenAnswer(
+            invocation -> {
+              cachedHistoryDB.saveContent(otherContentKey, Bytes.of(4));
+              return Optional.of(CONTENT);
+            });
+
+    cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+    cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+
+    verify(delegate).get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+  }
+
+  @Test
+  public void pruningInvalidatesTheEvictedContentOnly() {
+    final Bytes otherHash = Bytes.fromHexString("0x5678");
+    when(delegate.get(ContentType.RECEIPT, otherHash)).thenReturn(Optional.of(CONTENT));
+    when(delegate.pruneFarthestContent(anyLong(), any()))
+        .thenAnswer(
+            invocation -> {
+              invocation.<Consumer<Bytes>>getArgument(1).accept(CONTENT_KEY);
+              return Optional.of(UInt256.ONE);
+            });
+    cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+    cachedHistoryDB.get(ContentType.RECEIPT, otherHash);
+
+    assertThat(cachedHistoryDB.pruneFarthestContent(0)).contains(UInt256.ONE);
+    cachedHistoryDB.get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+    cachedHistoryDB.get(ContentType.RECEIPT, otherHash);
+
+    verify(delegate, times(2)).get(ContentType.BLOCK_HEADER, BLOCK_HASH);
+    verify(delegate).get(ContentType.RECEIPT, otherHash);
+  }
+}
@@ -0,0 +1,171 @@
+package samba.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import samba.TestHelper;
+import samba.domain.content.ContentEntry;
+import samba.schema.content.BlockBodyPreShanghaiContainer;
+import samba.schema.content.ReceiptsList;
+
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.ethereum.rlp.BytesValueRLPOutput;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class ContentValidationPipelineTest {
+
+  private static final ContentEntry HEADER_1 = header(1);
+  private static final ContentEntry HEADER_2 = header(2);
+  // The receipts of the block of HEADER_2, which has none.
+  private static final ContentEntry RECEIPT =
+      new ContentEntry(
+          Bytes.concatenate(Bytes.of(0x02), TestHelper.createBlockHash(2)),
+          ReceiptsList.encode(List.of()));
+  // No header can be found for this body.
+  private static final ContentEntry BODY = entry("0x0109", "0x04");
+  private static final Bytes EMPTY_BODY =
+      new BlockBodyPreShanghaiContainer(List.of(), Bytes.fromHexString("0xc0")).sszSerialize();
+
+  private HistoryDB historyDB;
+  private ContentValidationPipeline pipeline;
+
+  @BeforeEach
+  public void setUp() {
+    this.historyDB = mock(HistoryDB.class);
+    when(historyDB.saveValidatedContent(any())).thenReturn(SafeFuture.COMPLETE);
+    this.pipeline = new ContentValidationPipeline(historyDB, 4, 16, new NoOpMetricsSystem());
+  }
+
+  @AfterEach
+  public void tearDown() {
+    pipeline.close();
+  }
+
+  @Test
+  public void storesValidContentInSubmissionOrder() {
+    var first = pipeline.submit(List.of(HEADER_1, BODY));
+    var second = pipeline.submit(List.of(HEADER_2, RECEIPT));
+
+    assertThat(first.join()).containsExactly(true, false);
+    assertThat(second.join()).containsExactly(true, true);
+    InOrder inOrder = inOrder(historyDB);
+    inOrder.verify(historyDB).saveValidatedContent(List.of(HEADER_1));
+    inOrder.verify(historyDB).saveValidatedContent(List.of(HEADER_2, RECEIPT));
+  }
+
+  @Test
+  public void handsTheNextBatchToTheStorageBeforeTheLastIsCommitted() {
+    final SafeFuture<Void> firstCommit = new SafeFuture<>();
+    when(historyDB.saveValidatedContent(List.of(HEADER_1))).thenReturn(firstCommit);
+
+    final SafeFuture<List<Boolean>> first = pipeline.submit(List.of(HEADER_1));
+    final SafeFuture<List<Boolean>> second = pipeline.submit(List.of(HEADER_2));
+
+    assertThat(second.join()).containsExactly(true);
+    assertThat(first).isNotDone();
+    firstCommit.complete(null);
+    assertThat(first.join()).containsExactly(true);
+  }
+
+  @Test
+  public void isolatesTheItemsTheStorageRejects() {
+    when(historyDB.saveValidatedContent(argThat(entries -> entries.contains(HEADER_2))))
+        .thenReturn(SafeFuture.failedFuture(new IllegalArgumentException("rejected")));
+
+    assertThat(pipeline.submit(List.of(HEADER_1, HEADER_2, RECEIPT)).join())
+        .containsExactly(true, false, true);
+    InOrder inOrder = inOrder(historyDB);
+    inOrder.verify(historyDB).saveValidatedContent(any());
+    inOrder.verify(historyDB).saveValidatedContent(List.of(HEADER_1));
+    inOrder.verify(historyDB).saveValidatedContent(List.of(HEADER_2));
+    inOrder.verify(historyDB).saveValidatedContent(List.of(RECEIPT));
+  }
+
+  @Test
+  public void validatesBodiesAgainstTheHeadersOfTheSameBatch() {
+    final ContentEntry body =
+        new ContentEntry(
+            Bytes.concatenate(Bytes.of(0x01), TestHelper.createBlockHash(1)), EMPTY_BODY);
+    final ContentEntry otherBody =
+        new ContentEntry(
+            Bytes.concatenate(Bytes.of(0x01), TestHelper.createBlockHash(1)),
+            new BlockBodyPreShanghaiContainer(List.of(), Bytes.fromHexString("0xc180"))
+                .sszSerialize());
+
+    assertThat(pipeline.submit(List.of(HEADER_1, body, otherBody)).join())
+        .containsExactly(true, true, false);
+  }
+
+  @Test
+  public void validatesReceiptsAgainstTheReceiptsRootOfTheirHeader() {
+    final Bytes blockHash = TestHelper.createBlockHash(1);
+    final BytesValueRLPOutput receipt = new BytesValueRLPOutput();
+    receipt.startList();
+    receipt.writeLongScalar(1); // status
+    receipt.writeLongScalar(21_000); // cumulative gas used
+    receipt.writeBytes(Bytes.wrap(new byte[256])); // logs bloom
+    receipt.startList(); // logs
+    receipt.endList();
+    receipt.endList();
+    final ContentEntry receipts =
+        new ContentEntry(
+            Bytes.concatenate(Bytes.of(0x02), blockHash), ReceiptsList.encode(List.of()));
+    final ContentEntry otherReceipts =
+        new ContentEntry(
+            Bytes.concatenate(Bytes.of(0x02), blockHash),
+            ReceiptsList.encode(List.of(receipt.encoded())));
+    final ContentEntry receiptsWithoutHeader =
+        new ContentEntry(
+            Bytes.concatenate(Bytes.of(0x02), TestHelper.createBlockHash(3)),
+            ReceiptsList.encode(List.of()));
+
+    assertThat(
+            pipeline
+                .submit(List.of(HEADER_1, receipts, otherReceipts, receiptsWithoutHeader))
+                .join())
+        .containsExactly(true, true, false, false);
+  }
+
+  @Test
+  public void rejectsHeadersThatDoNotMatchTheirKey() {
+    final ContentEntry header =
+        new ContentEntry(
+            Bytes.concatenate(Bytes.of(0x00), TestHelper.createBlockHash(2)),
+            TestHelper.createBlockHeaderWithProof(1));
+
+    assertThat(pipeline.submit(List.of(header, entry("0x0001", "0x01"))).join())
+        .containsExactly(false, false);
+  }
+
+  @Test
+  public void failsThePendingBatchesOnClose() {
+    when(historyDB.saveValidatedContent(any())).thenReturn(new SafeFuture<>());
+    final SafeFuture<List<Boolean>> pending = pipeline.submit(List.of(HEADER_1));
+
+    pipeline.close();
+
+    assertThat(pending).isCompletedExceptionally();
+    assertThat(pipeline.submit(List.of(HEADER_2))).isCompletedExceptionally();
+  }
+
+  private static ContentEntry header(final long blockNumber) {
+    return new ContentEntry(
+        Bytes.concatenate(Bytes.of(0x00), TestHelper.createBlockHash(blockNumber)),
+        TestHelper.createBlockHeaderWithProof(blockNumber));
+  }
+
+  private static ContentEntry entry(final String contentKey, final String value) {
+    return new ContentEntry(Bytes.fromHexString(contentKey), Bytes.fromHexString(value));
+  }
+}
@@ -0,0 +1,312 @@
+package samba.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import samba.TestHelper;
+import samba.domain.content.ContentDistance;
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
+import samba.storage.rocksdb.KeyValueSegment;
+import samba.storage.rocksdb.RocksDBConfiguration;
+import samba.storage.rocksdb.RocksDBInstance;
+import samba.storage.rocksdb.RocksDBMetricsFactory;
+import samba.storage.rocksdb.ValueView;
+import samba.storage.rocksdb.WalSyncPolicy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class HistoryRocksDBTest {
+
+  private static final Bytes LOCAL_NODE_ID = Bytes.random(32);
+  private static final Bytes BLOCK_HASH = TestHelper.createBlockHash(1);
+  private static final ContentEntry HEADER =
+      new ContentEntry(
+          Bytes.concatenate(Bytes.of(0x00), BLOCK_HASH), TestHelper.createBlockHeaderWithProof(1));
+  private static final ContentEntry BODY =
+      new ContentEntry(Bytes.concatenate(Bytes.of(0x01), BLOCK_HASH), Bytes.random(100));
+  private static final ContentEntry RECEIPT =
+      new ContentEntry(Bytes.concatenate(Bytes.of(0x02), BLOCK_HASH), Bytes.random(200));
+  // Long enough for a write to stay uncommitted while the test looks at it.
+  private static final Duration COMMIT_WINDOW = Duration.ofSeconds(2);
+
+  @TempDir public Path folder;
+  private HistoryRocksDB historyDB;
+
+  @AfterEach
+  public void tearDown() {
+    if (historyDB != null) {
+      historyDB.close();
+    }
+  }
+
+  @Test
+  public void countsEachContentTypeOfABlock() {
+    historyDB = open(0);
+
+    historyDB.saveValidatedContent(List.of(HEADER, BODY, RECEIPT)).join();
+    historyDB.saveValidatedContent(List.of(BODY)).join();
+
+    assertThat(historyDB.getStorageUsage()).isEqualTo(sizeOf(HEADER, BODY, RECEIPT));
+  }
+
+  @Test
+  public void countsContentSavedConcurrentlyOnce() {
+    historyDB = open(1024 * 1024);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      CompletableFuture.allOf(
+              IntStream.range(0, 64)
+                  .mapToObj(
+                      i ->
+                          CompletableFuture.supplyAsync(
+                                  () -> historyDB.saveValidatedContent(List.of(HEADER, RECEIPT)),
+                                  executor)
+                              .thenCompose(SafeFuture::toCompletableFuture))
+                  .toArray(CompletableFuture[]::new))
+          .join();
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(historyDB.getStorageUsage()).isEqualTo(sizeOf(HEADER, RECEIPT));
+  }
+
+  @Test
+  public void keepsTheStorageUsageAcrossRestarts() {
+    historyDB = open(0);
+    historyDB.saveValidatedContent(List.of(HEADER, BODY, RECEIPT)).join();
+    historyDB.close();
+
+    historyDB = open(0);
+
+    assertThat(historyDB.getStorageUsage()).isEqualTo(sizeOf(HEADER, BODY, RECEIPT));
+    assertThat(historyDB.getContent(HEADER.getContentType(), BLOCK_HASH).map(ValueView::bytes))
+        .contains(HEADER.value());
+  }
+
+  @Test
+  public void rebuildsTheDistanceIndexFromTheContentSegmentsOnly() {
+    final ContentEntry headerByNumber =
+        new ContentEntry(
+            Bytes.concatenate(Bytes.of(0x03), Bytes.ofUnsignedLong(2).reverse()),
+            TestHelper.createBlockHeaderWithProof(2));
+    historyDB = open(0);
+    historyDB.saveValidatedContent(List.of(headerByNumber, BODY)).join();
+    historyDB.close();
+    try (RocksDBInstance rocksDBInstance =
+        new RocksDBInstance(
+            RocksDBConfiguration.createDefault(folder),
+            Arrays.asList(KeyValueSegment.values()),
+            List.of(KeyValueSegment.LEGACY_CONTENT),
+            new NoOpMetricsSystem(),
+            RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS)) {
+      rocksDBInstance.clear(KeyValueSegment.CONTENT_DISTANCE_INDEX);
+    }
+
+    historyDB = open(0);
+
+    // The block number index entry is not content of its own.
+    assertThat(historyDB.getStorageUsage()).isEqualTo(sizeOf(headerByNumber, BODY));
+    assertThat(historyDB.getBlockHashByBlockNumber(Bytes.ofUnsignedLong(2).reverse()))
+        .contains(TestHelper.createBlockHash(2));
+  }
+
+  @Test
+  public void readsTheHeaderOfABlockRequestedByNumber() {
+    final Bytes blockNumber = Bytes.ofUnsignedLong(2).reverse();
+    final Bytes missingBlockNumber = Bytes.ofUnsignedLong(3).reverse();
+    final Bytes blockHeader = TestHelper.createBlockHeaderWithProof(2);
+    historyDB = open(0);
+    historyDB
+        .saveValidatedContent(
+            List.of(new ContentEntry(Bytes.concatenate(Bytes.of(0x03), blockNumber), blockHeader)))
+        .join();
+
+    assertThat(
+            historyDB.getContent(ContentType.BLOCK_HEADER_BY_NUMBER, blockNumber)
+                .map(ValueView::bytes))
+        .contains(blockHeader);
+    assertThat(historyDB.get(ContentType.BLOCK_HEADER_BY_NUMBER, blockNumber))
+        .hasValueSatisfying(value -> assertThat(Bytes.wrap(value)).isEqualTo(blockHeader));
+    assertThat(
+            historyDB.multiGet(
+                List.of(
+                    Pair.of(ContentType.BLOCK_HEADER_BY_NUMBER, blockNumber),
+                    Pair.of(ContentType.BLOCK_HEADER_BY_NUMBER, missingBlockNumber))))
+        .satisfiesExactly(
+            value -> assertThat(value.map(Bytes::wrap)).contains(blockHeader),
+            value -> assertThat(value).isEmpty());
+  }
+
+  @Test
+  public void readsTheSizeOfStoredContentFromTheDistanceIndex() {
+    final Bytes blockNumber = Bytes.ofUnsignedLong(2).reverse();
+    final Bytes blockHeader = TestHelper.createBlockHeaderWithProof(2);
+    historyDB = open(0);
+    historyDB
+        .saveValidatedContent(
+            List.of(
+                new ContentEntry(Bytes.concatenate(Bytes.of(0x03), blockNumber), blockHeader),
+                BODY))
+        .join();
+
+    assertThat(historyDB.getContentSize(ContentType.BLOCK_BODY, BLOCK_HASH))
+        .hasValue(BODY.value().size());
+    assertThat(historyDB.getContentSize(ContentType.BLOCK_HEADER_BY_NUMBER, blockNumber))
+        .hasValue(blockHeader.size());
+    assertThat(historyDB.getContentSize(ContentType.RECEIPT, BLOCK_HASH)).isEmpty();
+  }
+
+  @Test
+  public void readsContentWrittenBehindBeforeItIsCommitted() {
+    historyDB = open(1024 * 1024, COMMIT_WINDOW);
+
+    final SafeFuture<Void> saved = historyDB.saveValidatedContent(List.of(BODY));
+
+    assertThat(saved).isNotDone();
+    assertThat(historyDB.getContent(BODY.getContentType(), BLOCK_HASH).map(ValueView::bytes))
+        .contains(BODY.value());
+    assertThat(historyDB.getContentSize(BODY.getContentType(), BLOCK_HASH))
+        .hasValue(BODY.value().size());
+    saved.join();
+    assertThat(historyDB.getContent(BODY.getContentType(), BLOCK_HASH).map(ValueView::bytes))
+        .contains(BODY.value());
+  }
+
+  @Test
+  public void waitsForRoomInTheWriteBehindBufferOnceItIsFull() throws Exception {
+    historyDB = open(BODY.value().size(), COMMIT_WINDOW);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final SafeFuture<Void> first = historyDB.saveValidatedContent(List.of(BODY));
+      final Future<SafeFuture<Void>> second =
+          executor.submit(() -> historyDB.saveValidatedContent(List.of(RECEIPT)));
+
+      Thread.sleep(200);
+      assertThat(first).isNotDone();
+      assertThat(second).isNotDone();
+      first.join();
+      second.get(10, TimeUnit.SECONDS).join();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(historyDB.getStorageUsage()).isEqualTo(sizeOf(BODY, RECEIPT));
+  }
+
+  @Test
+  public void evictsTheFarthestContentFirst() {
+    final List<ContentEntry> bodies =
+        IntStream.range(0, 10)
+            .mapToObj(
+                i ->
+                    new ContentEntry(
+                        Bytes.concatenate(Bytes.of(0x01), Bytes.random(32)), Bytes.random(100)))
+            .sorted(Comparator.comparing(entry -> distanceOf(entry.contentKey())))
+            .toList();
+    historyDB = open(0);
+    historyDB.saveValidatedContent(bodies).join();
+    final List<Bytes> evicted = new ArrayList<>();
+
+    final UInt256 radius =
+        historyDB.pruneFarthestContent(sizeOf(bodies.get(0)) * 3, evicted::add).orElseThrow();
+
+    assertThat(radius).isEqualTo(distanceOf(bodies.get(2).contentKey()));
+    assertThat(historyDB.getFarthestContentDistance()).contains(radius);
+    assertThat(historyDB.getStorageUsage()).isEqualTo(sizeOf(bodies.get(0)) * 3);
+    assertThat(evicted)
+        .containsExactlyElementsOf(
+            bodies.reversed().subList(0, 7).stream().map(ContentEntry::contentKey).toList());
+    for (int i = 0; i < bodies.size(); i++) {
+      final Bytes blockHash = bodies.get(i).contentKey().slice(1);
+      assertThat(historyDB.get(ContentType.BLOCK_BODY, blockHash).isPresent())
+          .as("body %d is stored", i)
+          .isEqualTo(i < 3);
+    }
+  }
+
+  @Test
+  public void evictsTheBlockNumberIndexEntryOfAnEvictedHeader() {
+    final Bytes blockNumber = Bytes.ofUnsignedLong(2).reverse();
+    final Bytes headerByNumberKey = Bytes.concatenate(Bytes.of(0x03), blockNumber);
+    historyDB = open(0);
+    historyDB
+        .saveValidatedContent(
+            List.of(
+                new ContentEntry(headerByNumberKey, TestHelper.createBlockHeaderWithProof(2))))
+        .join();
+    final List<Bytes> evicted = new ArrayList<>();
+
+    assertThat(historyDB.pruneFarthestContent(0, evicted::add)).isEmpty();
+
+    assertThat(historyDB.getBlockHashByBlockNumber(blockNumber)).isEmpty();
+    assertThat(historyDB.getContent(ContentType.BLOCK_HEADER_BY_NUMBER, blockNumber)).isEmpty();
+    assertThat(evicted)
+        .containsExactlyInAnyOrder(
+            headerByNumberKey,
+            Bytes.concatenate(Bytes.of(0x00), TestHelper.createBlockHash(2)));
+  }
+
+  @Test
+  public void leavesContentWrittenBehindToTheNextPruning() {
+    historyDB = open(1024 * 1024, COMMIT_WINDOW);
+    final SafeFuture<Void> saved = historyDB.saveValidatedContent(List.of(BODY));
+
+    assertThat(historyDB.pruneFarthestContent(0)).isEmpty();
+
+    saved.join();
+    assertThat(historyDB.getContent(BODY.getContentType(), BLOCK_HASH).map(ValueView::bytes))
+        .contains(BODY.value());
+  }
+
+  private HistoryRocksDB open(final long writeBehindBufferBytes) {
+    return open(writeBehindBufferBytes, Duration.ZERO);
+  }
+
+  private HistoryRocksDB open(final long writeBehindBufferBytes, final Duration commitWindow) {
+    return new HistoryRocksDB(
+        RocksDBConfiguration.create(
+            folder,
+            RocksDBConfiguration.DEFAULT_MEMORY_BUDGET_BYTES,
+            true,
+            WalSyncPolicy.NO_SYNC,
+            RocksDBConfiguration.DEFAULT_WAL_SYNC_INTERVAL,
+            commitWindow),
+        new NoOpMetricsSystem(),
+        RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS,
+        LOCAL_NODE_ID,
+        writeBehindBufferBytes);
+  }
+
+  private static UInt256 distanceOf(final Bytes contentKey) {
+    return ContentDistance.distanceFromContentKey(contentKey, LOCAL_NODE_ID);
+  }
+
+  private static long sizeOf(final ContentEntry... entries) {
+    long size = 0;
+    for (ContentEntry entry : entries) {
+      size += entry.value().size();
+    }
+    return size;
+  }
+}
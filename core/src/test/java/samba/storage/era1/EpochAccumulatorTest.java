@@ -0,0 +1,71 @@
+package samba.storage.era1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+import org.junit.jupiter.api.Test;
+
+public class EpochAccumulatorTest {
+
+  @Test
+  public void proofsLeadToTheRootOfACompleteEpoch() {
+    final List<Bytes32> blockHashes = blockHashes(EpochAccumulator.EPOCH_SIZE);
+    final EpochAccumulator accumulator =
+        new EpochAccumulator(blockHashes, totalDifficulties(blockHashes.size()));
+
+    for (int index : List.of(0, 1, 4097, EpochAccumulator.EPOCH_SIZE - 1)) {
+      final List<Bytes32> proof = accumulator.proof(index);
+      assertThat(proof).hasSize(EpochAccumulator.PROOF_LENGTH);
+      assertThat(rootOf(blockHashes.get(index), index, proof)).isEqualTo(accumulator.root());
+    }
+  }
+
+  @Test
+  public void proofsLeadToTheRootOfThePartialMergeEpoch() {
+    final List<Bytes32> blockHashes = blockHashes(5);
+    final EpochAccumulator accumulator =
+        new EpochAccumulator(blockHashes, totalDifficulties(blockHashes.size()));
+
+    final List<Bytes32> proof = accumulator.proof(4);
+
+    assertThat(rootOf(blockHashes.get(4), 4, proof)).isEqualTo(accumulator.root());
+    assertThat(proof.getLast().slice(0, 8).toLong(ByteOrder.LITTLE_ENDIAN)).isEqualTo(5);
+  }
+
+  @Test
+  public void onlyWholeEpochsAreComplete() {
+    assertThat(EpochAccumulator.isCompleteEpoch(8192, 8192)).isTrue();
+    assertThat(EpochAccumulator.isCompleteEpoch(8192, 100)).isFalse();
+    assertThat(EpochAccumulator.isCompleteEpoch(100, 8192)).isFalse();
+    assertThat(EpochAccumulator.isCompleteEpoch(15_532_032L, 5362)).isTrue();
+  }
+
+  private static Bytes32 rootOf(final Bytes32 blockHash, final int index, List<Bytes32> proof) {
+    Bytes32 node = hash(blockHash, proof.getFirst());
+    for (int depth = 0; depth < 13; depth++) {
+      final Bytes32 sibling = proof.get(depth + 1);
+      node = ((index >> depth) & 1) == 0 ? hash(node, sibling) : hash(sibling, node);
+    }
+    return hash(node, proof.getLast());
+  }
+
+  private static Bytes32 hash(final Bytes32 left, final Bytes32 right) {
+    return Hash.sha2_256(Bytes.concatenate(left, right));
+  }
+
+  private static List<Bytes32> blockHashes(final int count) {
+    return IntStream.range(0, count).mapToObj(i -> Bytes32.random()).toList();
+  }
+
+  private static List<Bytes32> totalDifficulties(final int count) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> Bytes32.rightPad(Bytes.ofUnsignedLong(i + 1, ByteOrder.LITTLE_ENDIAN)))
+        .toList();
+  }
+}
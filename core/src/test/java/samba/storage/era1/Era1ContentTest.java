@@ -0,0 +1,64 @@
+package samba.storage.era1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import samba.TestHelper;
+
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.ethereum.rlp.BytesValueRLPOutput;
+import org.hyperledger.besu.ethereum.rlp.RLPOutput;
+import org.junit.jupiter.api.Test;
+
+public class Era1ContentTest {
+
+  // A legacy item is an RLP list, a typed one the type followed by its payload.
+  private static final Bytes LEGACY_ITEM = Bytes.fromHexString("0xc3010203");
+  private static final Bytes TYPED_ITEM = Bytes.fromHexString("0x02c3040506");
+
+  @Test
+  public void convertsBodiesToTheirContainerAndBack() {
+    final BytesValueRLPOutput output = new BytesValueRLPOutput();
+    output.startList();
+    output.writeList(List.of(LEGACY_ITEM, TYPED_ITEM), Era1ContentTest::writeItem);
+    output.writeRaw(Bytes.fromHexString("0xc0"));
+    output.endList();
+    final Bytes body = output.encoded();
+
+    assertThat(Era1Content.toRlpBlockBody(Era1Content.toBlockBody(body))).isEqualTo(body);
+  }
+
+  @Test
+  public void convertsReceiptsToTheirContainerAndBack() {
+    final BytesValueRLPOutput output = new BytesValueRLPOutput();
+    output.writeList(List.of(TYPED_ITEM, LEGACY_ITEM), Era1ContentTest::writeItem);
+    final Bytes receipts = output.encoded();
+
+    assertThat(Era1Content.toRlpReceipts(Era1Content.toReceipts(receipts))).isEqualTo(receipts);
+  }
+
+  @Test
+  public void takesTheTotalDifficultyFromTheAccumulatorProof() {
+    final Bytes header = TestHelper.createRlpBlockHeader(1);
+    final List<Bytes32> proof =
+        new EpochAccumulator(
+                List.of(TestHelper.createBlockHash(0), TestHelper.createBlockHash(1)),
+                List.of(Bytes32.ZERO, Bytes32.fromHexStringLenient("0x2a")))
+            .proof(1);
+    final Bytes headerWithProof = Era1Content.toBlockHeaderWithProof(header, proof);
+
+    assertThat(Era1Content.toRlpHeader(headerWithProof)).isEqualTo(header);
+    assertThat(Era1Content.toTotalDifficulty(headerWithProof)).contains(proof.getFirst());
+    assertThat(Era1Content.toTotalDifficulty(TestHelper.createBlockHeaderWithProof(1))).isEmpty();
+  }
+
+  private static void writeItem(final Bytes item, final RLPOutput output) {
+    if (item.equals(LEGACY_ITEM)) {
+      output.writeRaw(item);
+    } else {
+      output.writeBytes(item);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package samba.storage.era1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import samba.TestHelper;
+import samba.domain.content.ContentEntry;
+import samba.domain.content.ContentType;
+import samba.domain.content.ContentUtil;
+import samba.schema.content.BlockHeaderWithProofContainer;
+import samba.schema.content.ReceiptsList;
+import samba.storage.ContentValidationPipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.ethereum.core.BlockHeader;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class Era1ImporterTest {
+
+  private static final Bytes BODY = Bytes.fromHexString("0xc2c0c0");
+  private static final Bytes RECEIPTS = Bytes.fromHexString("0xc0");
+
+  @TempDir Path tempDir;
+  private ContentValidationPipeline pipeline;
+  private Era1Importer importer;
+
+  @BeforeEach
+  public void setUp() {
+    pipeline = mock(ContentValidationPipeline.class);
+    when(pipeline.submit(anyList()))
+        .thenAnswer(
+            invocation ->
+                SafeFuture.completedFuture(
+                    Collections.nCopies(invocation.<List<?>>getArgument(0).size(), true)));
+    importer = new Era1Importer(pipeline, 1024, 2, new NoOpMetricsSystem());
+  }
+
+  @AfterEach
+  public void tearDown() {
+    importer.close();
+  }
+
+  @Test
+  public void importsCompleteEpochsWithTheirProofs() throws IOException {
+    final EpochAccumulator accumulator = accumulator(EpochAccumulator.EPOCH_SIZE);
+    final Path file = writeArchive(EpochAccumulator.EPOCH_SIZE, accumulator.root());
+
+    assertThat(importer.importFile(file)).isEqualTo(EpochAccumulator.EPOCH_SIZE);
+
+    final List<ContentEntry> entries = submittedEntries();
+    assertThat(entries).hasSize(3 * EpochAccumulator.EPOCH_SIZE);
+    final ContentEntry header = entries.get(3 * 5);
+    assertThat(header.getContentType()).isEqualTo(ContentType.BLOCK_HEADER_BY_NUMBER);
+    assertThat(header.contentKey().slice(1).toLong(ByteOrder.LITTLE_ENDIAN)).isEqualTo(5);
+    final BlockHeaderWithProofContainer headerWithProof =
+        BlockHeaderWithProofContainer.decode(header.value());
+    assertThat(headerWithProof.getHeader()).isEqualTo(TestHelper.createRlpBlockHeader(5));
+    assertThat(headerWithProof.getProof())
+        .isEqualTo(Bytes.concatenate(accumulator.proof(5).toArray(Bytes[]::new)));
+    final ContentEntry body = entries.get(3 * 5 + 1);
+    final BlockHeader blockHeader =
+        ContentUtil.createBlockHeaderfromSSZBytes(header.value().toArrayUnsafe()).orElseThrow();
+    assertThat(body.contentKey().slice(1)).isEqualTo(TestHelper.createBlockHash(5));
+    assertThat(ContentUtil.isBlockBodyValid(blockHeader, body.value())).isTrue();
+    assertThat(ReceiptsList.decode(entries.get(3 * 5 + 2).value())).isEmpty();
+  }
+
+  @Test
+  public void skipsArchivesWhoseAccumulatorDoesNotMatchTheirBlocks() throws IOException {
+    final Path file = writeArchive(EpochAccumulator.EPOCH_SIZE, Bytes32.random());
+
+    assertThat(importer.importFile(file)).isZero();
+    verifyNoInteractions(pipeline);
+  }
+
+  @Test
+  public void skipsArchivesThatAreNotACompleteEpoch() throws IOException {
+    final Path file = writeArchive(10, accumulator(10).root());
+
+    assertThat(importer.importFile(file)).isZero();
+    verifyNoInteractions(pipeline);
+  }
+
+  private List<ContentEntry> submittedEntries() {
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<List<ContentEntry>> batches = ArgumentCaptor.forClass(List.class);
+    verify(pipeline, atLeastOnce()).submit(batches.capture());
+    final List<ContentEntry> entries = new ArrayList<>();
+    batches.getAllValues().forEach(entries::addAll);
+    return entries;
+  }
+
+  private static EpochAccumulator accumulator(final int blocks) {
+    return new EpochAccumulator(
+        IntStream.range(0, blocks).<Bytes32>mapToObj(TestHelper::createBlockHash).toList(),
+        IntStream.range(0, blocks).mapToObj(Era1ImporterTest::totalDifficulty).toList());
+  }
+
+  private static Bytes32 totalDifficulty(final long blockNumber) {
+    return Bytes32.rightPad(Bytes.ofUnsignedLong(blockNumber + 1, ByteOrder.LITTLE_ENDIAN));
+  }
+
+  private Path writeArchive(final int blocks, final Bytes32 accumulatorRoot) throws IOException {
+    final Path file = tempDir.resolve("mainnet-00000-00000000.era1");
+    final List<Bytes> records = new ArrayList<>();
+    records.add(record(Era1Reader.VERSION, Bytes.EMPTY));
+    for (int i = 0; i < blocks; i++) {
+      final Bytes header = TestHelper.createRlpBlockHeader(i);
+      records.add(record(Era1Reader.COMPRESSED_HEADER, SnappyFrames.compress(header)));
+      records.add(record(Era1Reader.COMPRESSED_BODY, SnappyFrames.compress(BODY)));
+      records.add(record(Era1Reader.COMPRESSED_RECEIPTS, SnappyFrames.compress(RECEIPTS)));
+      records.add(record(Era1Reader.TOTAL_DIFFICULTY, totalDifficulty(i)));
+    }
+    records.add(record(Era1Reader.ACCUMULATOR, accumulatorRoot));
+    Files.write(file, Bytes.concatenate(records.toArray(Bytes[]::new)).toArrayUnsafe());
+    return file;
+  }
+
+  private static Bytes record(final int type, final Bytes payload) {
+    final ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    header.putShort((short) type).putInt(payload.size()).putShort((short) 0);
+    return Bytes.concatenate(Bytes.wrap(header.array()), payload);
+  }
+}
@@ -0,0 +1,89 @@
+package samba.storage.era1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.datatypes.Hash;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class Era1ReaderTest {
+
+  private static final Bytes STREAM_IDENTIFIER = Bytes.fromHexString("0xff060000734e61507059");
+  private static final Bytes HEADER = Bytes.fromHexString("0xf90211a0aabbcc");
+  private static final Bytes BODY = Bytes.fromHexString("0xc2c0c0");
+  private static final Bytes RECEIPTS = Bytes.fromHexString("0xc0");
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void decodesBlockTuples() throws IOException {
+    final Path file = tempDir.resolve("mainnet-00000-5ec1ffb8.era1");
+    Files.write(
+        file,
+        Bytes.concatenate(
+                record(Era1Reader.VERSION, Bytes.EMPTY),
+                blockTuple(),
+                blockTuple(),
+                record(0x07, Bytes.random(32)))
+            .toArrayUnsafe());
+
+    final List<Era1Reader.BlockTuple> tuples = Era1Reader.readBlockTuples(file);
+
+    assertThat(tuples).hasSize(2);
+    final Era1Reader.Block block = tuples.get(0).decode();
+    assertThat(block.header()).isEqualTo(HEADER);
+    assertThat(block.body()).isEqualTo(BODY);
+    assertThat(block.receipts()).isEqualTo(RECEIPTS);
+    assertThat(block.blockHash()).isEqualTo(Hash.hash(HEADER));
+  }
+
+  @Test
+  public void rejectsTruncatedRecords() throws IOException {
+    final Path file = tempDir.resolve("truncated.era1");
+    final Bytes tuple = blockTuple();
+    Files.write(file, tuple.slice(0, tuple.size() - 1).toArrayUnsafe());
+
+    assertThatThrownBy(() -> Era1Reader.readBlockTuples(file)).isInstanceOf(IOException.class);
+  }
+
+  private static Bytes blockTuple() {
+    return Bytes.concatenate(
+        record(Era1Reader.COMPRESSED_HEADER, uncompressedFrame(HEADER)),
+        record(Era1Reader.COMPRESSED_BODY, compressedFrame(BODY)),
+        record(Era1Reader.COMPRESSED_RECEIPTS, uncompressedFrame(RECEIPTS)),
+        record(Era1Reader.TOTAL_DIFFICULTY, Bytes.wrap(new byte[32])));
+  }
+
+  private static Bytes record(final int type, final Bytes payload) {
+    final ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    header.putShort((short) type).putInt(payload.size()).putShort((short) 0);
+    return Bytes.concatenate(Bytes.wrap(header.array()), payload);
+  }
+
+  private static Bytes uncompressedFrame(final Bytes data) {
+    return Bytes.concatenate(STREAM_IDENTIFIER, chunk(0x01, data));
+  }
+
+  private static Bytes compressedFrame(final Bytes data) {
+    // A snappy block made of a single literal: the uncompressed length, then the literal tag.
+    final Bytes block = Bytes.concatenate(Bytes.of(data.size(), (data.size() - 1) << 2), data);
+    return Bytes.concatenate(STREAM_IDENTIFIER, chunk(0x00, block));
+  }
+
+  private static Bytes chunk(final int type, final Bytes data) {
+    final int length = data.size() + 4; // the checksum is not verified
+    return Bytes.concatenate(
+        Bytes.of(type, length & 0xff, (length >> 8) & 0xff, (length >> 16) & 0xff),
+        Bytes.wrap(new byte[4]),
+        data);
+  }
+}
@@ -0,0 +1,87 @@
+package samba.storage.era1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.datatypes.Hash;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class Era1WriterTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void writtenArchivesCanBeReadBack() throws IOException {
+    final Path file = tempDir.resolve("history-00000-00000100.era1");
+    final Bytes header = Bytes.fromHexString("0xf90211a0aabbcc");
+    // Large and repetitive enough to span several snappy chunks and be stored compressed.
+    final Bytes body = Bytes.wrap(new byte[200_000]);
+    final Bytes receipts = Bytes.random(1000);
+    try (Era1Writer writer = new Era1Writer(file, 100)) {
+      writer.writeBlock(header, body, receipts, Bytes32.ZERO);
+      writer.writeBlock(receipts, header, body, Bytes32.ZERO);
+    }
+
+    final List<Era1Reader.BlockTuple> tuples = Era1Reader.readBlockTuples(file);
+
+    assertThat(tuples).hasSize(2);
+    assertThat(tuples.get(0).decode().header()).isEqualTo(header);
+    assertThat(tuples.get(0).decode().body()).isEqualTo(body);
+    assertThat(tuples.get(0).decode().receipts()).isEqualTo(receipts);
+    assertThat(tuples.get(1).decode().header()).isEqualTo(receipts);
+    assertThat(Files.size(file)).isLessThan(body.size());
+  }
+
+  @Test
+  public void blockIndexPointsToTheBlockTuples() throws IOException {
+    final Path file = tempDir.resolve("history-00000-00000007.era1");
+    try (Era1Writer writer = new Era1Writer(file, 7)) {
+      writer.writeBlock(Bytes.of(1), Bytes.of(2), Bytes.of(3), Bytes32.ZERO);
+    }
+
+    final Bytes archive = Bytes.wrap(Files.readAllBytes(file));
+    // block-index := starting-number | offset | count, after its 8 bytes record header.
+    final Bytes index = archive.slice(archive.size() - 3 * Long.BYTES);
+    final long indexRecordStart = archive.size() - 3 * Long.BYTES - 8;
+    final long blockOffset = index.slice(Long.BYTES, Long.BYTES).toLong(ByteOrder.LITTLE_ENDIAN);
+    assertThat(index.slice(0, Long.BYTES).toLong(ByteOrder.LITTLE_ENDIAN)).isEqualTo(7);
+    assertThat(index.slice(2 * Long.BYTES).toLong(ByteOrder.LITTLE_ENDIAN)).isEqualTo(1);
+    // The first tuple follows the 8 bytes version record and starts with a compressed header.
+    assertThat(indexRecordStart + blockOffset).isEqualTo(8);
+    assertThat(archive.get(8)).isEqualTo((byte) Era1Reader.COMPRESSED_HEADER);
+  }
+
+  @Test
+  public void onlyCompleteEpochsGetAnAccumulator() throws IOException {
+    final Path complete = tempDir.resolve("history-00001-00008192.era1");
+    final Path partial = tempDir.resolve("history-00002-00016384.era1");
+    final List<Bytes32> blockHashes = new ArrayList<>();
+    final List<Bytes32> totalDifficulties = new ArrayList<>();
+    try (Era1Writer writer = new Era1Writer(complete, 8192);
+        Era1Writer partialWriter = new Era1Writer(partial, 16384)) {
+      for (int i = 0; i < EpochAccumulator.EPOCH_SIZE; i++) {
+        final Bytes header = Bytes.ofUnsignedInt(i);
+        final Bytes32 totalDifficulty = Bytes32.leftPad(Bytes.ofUnsignedInt(i));
+        writer.writeBlock(header, Bytes.of(2), Bytes.of(3), totalDifficulty);
+        blockHashes.add(Hash.hash(header));
+        totalDifficulties.add(totalDifficulty);
+      }
+      partialWriter.writeBlock(Bytes.of(1), Bytes.of(2), Bytes.of(3), Bytes32.ZERO);
+    }
+
+    assertThat(Era1Reader.readArchive(complete).accumulatorRoot())
+        .contains(new EpochAccumulator(blockHashes, totalDifficulties).root());
+    assertThat(Era1Reader.readArchive(complete).blockTuples().get(7).decodeTotalDifficulty())
+        .isEqualTo(totalDifficulties.get(7));
+    assertThat(Era1Reader.readArchive(partial).accumulatorRoot()).isEmpty();
+  }
+}
@@ -40,7 +40,9 @@ public enum RpcMethod {
   PORTAL_HISTORYT_RACE_GET_CONTENT("portal_historyTraceGetContent"),
 
   PORTAL_HISTORY_STORE("portal_historyStore"),
-  PORTAL_HISTORY_LOCAL_CONTENT("portal_historyLocalContent");
+  PORTAL_HISTORY_LOCAL_CONTENT("portal_historyLocalContent"),
+
+  PORTAL_HISTORY_BACKFILL_STATUS("portal_historyBackfillStatus");
 
   private final String methodName;
 